@@ -0,0 +1,38 @@
+package org.alanzheng.demo.springaidemo.benchmark;
+
+import java.util.Random;
+
+/**
+ * 基准测试数据
+ * 固定随机种子生成文本，保证每次运行的输入完全一致
+ */
+final class BenchmarkData {
+
+    private static final String[] WORDS = {
+            "meeting", "room", "booking", "policy", "employee", "reimbursement", "travel", "approval",
+            "manager", "deadline", "security", "badge", "visitor", "office", "holiday", "schedule",
+            "会议室", "预约", "报销", "审批", "差旅", "访客", "门禁", "假期", "流程", "制度"
+    };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 生成约chars个字符的段落文本
+     */
+    static String text(long seed, int chars) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(chars + 32);
+        int sentence = 0;
+        while (text.length() < chars) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            if (++sentence % 12 == 0) {
+                text.append(".\n");
+            }
+            if (sentence % 120 == 0) {
+                text.append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package org.alanzheng.demo.springaidemo.benchmark;
+
+import org.alanzheng.demo.springaidemo.ingest.DocumentChunker;
+import org.alanzheng.demo.springaidemo.service.RagContextBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RAG上下文构建基准测试
+ * 不同topK和文档块长度下拼接提示词中知识库内容的耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextBuildBenchmark {
+
+    @Param({"4", "16"})
+    private int documentCount;
+
+    @Param({"500", "2000"})
+    private int chunkChars;
+
+    private List<Document> documents;
+
+    @Setup
+    public void setUp() {
+        documents = new ArrayList<>();
+        for (int i = 0; i < documentCount; i++) {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put(DocumentChunker.SOURCE, "kb/policy-" + i + ".md");
+            metadata.put(DocumentChunker.CHUNK_INDEX, i);
+            metadata.put(DocumentChunker.CHAR_START, i * chunkChars);
+            metadata.put(DocumentChunker.CHAR_END, (i + 1) * chunkChars);
+            documents.add(new Document("chunk-" + i, BenchmarkData.text(i, chunkChars), metadata));
+        }
+    }
+
+    @Benchmark
+    public String buildContext() {
+        return RagContextBuilder.build(documents);
+    }
+}
@@ -0,0 +1,105 @@
+package org.alanzheng.demo.springaidemo.benchmark;
+
+import org.alanzheng.demo.springaidemo.ingest.DocumentParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档解析基准测试
+ * 入库流水线解析阶段对文本文件和PDF的解析耗时，PDF在准备阶段用PDFBox生成，内容固定
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentParseBenchmark {
+
+    private static final int LINES_PER_PAGE = 45;
+
+    @Param({"1", "20"})
+    private int pages;
+
+    private DocumentParser parser;
+    private Path tempDir;
+    private Path textFile;
+    private Path pdfFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        parser = new DocumentParser(new DefaultResourceLoader());
+        tempDir = Files.createTempDirectory("document-parse-benchmark");
+
+        // 每页约45行、每行约90个字符，文本文件与PDF内容规模相同
+        String[] lines = BenchmarkData.text(7, pages * LINES_PER_PAGE * 90).replaceAll("[^\\x20-\\x7E\\n]", "")
+                .split("\n");
+        textFile = tempDir.resolve("benchmark.md");
+        Files.writeString(textFile, String.join("\n", lines));
+        pdfFile = tempDir.resolve("benchmark.pdf");
+        writePdf(lines, pdfFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(tempDir);
+    }
+
+    @Benchmark
+    public List<Document> parseText() throws IOException {
+        return parser.parse(textFile);
+    }
+
+    @Benchmark
+    public List<Document> parsePdf() throws IOException {
+        return parser.parse(pdfFile);
+    }
+
+    private void writePdf(String[] lines, Path file) throws IOException {
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (PDDocument document = new PDDocument()) {
+            int line = 0;
+            for (int page = 0; page < pages; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(font, 9);
+                    content.setLeading(14);
+                    content.newLineAtOffset(40, 750);
+                    for (int i = 0; i < LINES_PER_PAGE && line < lines.length; i++, line++) {
+                        content.showText(lines[line].strip());
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+    }
+}
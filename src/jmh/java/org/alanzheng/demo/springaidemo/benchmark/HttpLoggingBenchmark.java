@@ -0,0 +1,91 @@
+package org.alanzheng.demo.springaidemo.benchmark;
+
+import org.alanzheng.demo.springaidemo.config.HttpLoggingInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP请求日志拦截器开销基准测试
+ * 对比不同日志模式和采样率下拦截一次嵌入请求（约1MB请求体）的耗时，
+ * baseline为不经过拦截器直接执行请求。
+ * 日志输出到控制台，运行时可加 -Dlogging.level.org.alanzheng.demo.springaidemo.config=WARN 只测格式化之前的开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpLoggingBenchmark {
+
+    @Param({"OFF", "SUMMARY", "BODY"})
+    private String mode;
+
+    @Param({"1.0", "0.1"})
+    private double sampleRate;
+
+    @Param({"1048576"})
+    private int bodyBytes;
+
+    private HttpLoggingInterceptor interceptor;
+    private MockClientHttpRequest request;
+    private byte[] body;
+    private ClientHttpRequestExecution execution;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        interceptor = new HttpLoggingInterceptor(HttpLoggingInterceptor.Mode.valueOf(mode), sampleRate, 2048, 1024);
+        request = new MockClientHttpRequest(HttpMethod.POST,
+                URI.create("https://dashscope.aliyuncs.com/compatible-mode/v1/embeddings"));
+        request.getHeaders().set(HttpHeaders.AUTHORIZATION, "Bearer sk-benchmark");
+        request.getHeaders().set(HttpHeaders.CONTENT_TYPE, "application/json");
+
+        StringBuilder json = new StringBuilder("{\"model\":\"text-embedding-v4\",\"input\":[");
+        while (json.length() < bodyBytes) {
+            json.append("\"会议室预约需要提前一天提交申请，并注明参会人数和使用时段。\",");
+        }
+        json.setLength(json.length() - 1);
+        json.append("]}");
+        body = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        execution = (req, bytes) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        interceptor.close();
+    }
+
+    @Benchmark
+    public ClientHttpResponse baseline() throws IOException {
+        return execution.execute(request, body);
+    }
+
+    @Benchmark
+    public ClientHttpResponse intercepted() throws IOException {
+        return interceptor.intercept(request, body, execution);
+    }
+}
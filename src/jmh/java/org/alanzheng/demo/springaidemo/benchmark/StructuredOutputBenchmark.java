@@ -0,0 +1,89 @@
+package org.alanzheng.demo.springaidemo.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.alanzheng.demo.springaidemo.dto.WeatherInfo;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.service.StructuredOutputClients;
+import org.alanzheng.demo.springaidemo.tracing.StageTracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.StructuredOutputValidationAdvisor;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 结构化输出请求开销基准测试
+ * 模型替换为直接返回固定JSON的桩，只测客户端一侧：
+ * rebuildPerCall 按原来的写法每次请求构建ChatClient、校验Advisor并由entity(Class)生成转换器和JSON Schema，
+ * cachedClient 从{@link StructuredOutputClients}取复用的客户端和转换器。
+ * 默认带 -prof gc 运行，对比 gc.alloc.rate.norm（每次请求分配的字节数）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StructuredOutputBenchmark {
+
+    private static final String RESPONSE = """
+            {"city":"北京","month":7,"averageTemperature":26.8,"description":"高温多雨，午后常有雷阵雨"}""";
+
+    private static final String PROMPT = "请告诉我北京在7月份的平均气温是多少？";
+
+    @Param({"0", "3"})
+    private int maxRetryAttempts;
+
+    private ChatModel chatModel;
+    private StructuredOutputClients clients;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        chatModel = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return new ChatResponse(List.of(new Generation(new AssistantMessage(RESPONSE))));
+            }
+        };
+        clients = new StructuredOutputClients(chatModel,
+                new AiMetrics(new SimpleMeterRegistry(), StageTracer.NOOP, "benchmark", "benchmark"));
+    }
+
+    @Benchmark
+    public WeatherInfo rebuildPerCall() {
+        ChatClient.Builder builder = ChatClient.builder(chatModel);
+        if (maxRetryAttempts > 0) {
+            builder.defaultAdvisors(StructuredOutputValidationAdvisor.builder()
+                    .outputType(WeatherInfo.class)
+                    .maxRepeatAttempts(maxRetryAttempts)
+                    .build());
+        }
+        return builder.build()
+                .prompt()
+                .user(PROMPT)
+                .call()
+                .entity(WeatherInfo.class);
+    }
+
+    @Benchmark
+    public WeatherInfo cachedClient() {
+        return clients.get(WeatherInfo.class, maxRetryAttempts).call(PROMPT);
+    }
+}
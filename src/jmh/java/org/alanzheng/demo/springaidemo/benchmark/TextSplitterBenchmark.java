@@ -0,0 +1,61 @@
+package org.alanzheng.demo.springaidemo.benchmark;
+
+import org.alanzheng.demo.springaidemo.ingest.DocumentChunker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分块基准测试
+ * TokenTextSplitter（与应用相同的参数）直接分割，以及DocumentChunker逐块产出并计算字符位置的吞吐
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextSplitterBenchmark {
+
+    @Param({"10000", "100000"})
+    private int textChars;
+
+    @Param({"800"})
+    private int chunkSize;
+
+    private TokenTextSplitter splitter;
+    private DocumentChunker chunker;
+    private List<Document> source;
+
+    @Setup
+    public void setUp() {
+        splitter = new TokenTextSplitter(chunkSize, 350, 5, 10000, true);
+        chunker = new DocumentChunker(splitter);
+        source = List.of(new Document(BenchmarkData.text(42, textChars)));
+    }
+
+    @Benchmark
+    public List<Document> tokenTextSplitter() {
+        return splitter.apply(source);
+    }
+
+    @Benchmark
+    public void documentChunker(Blackhole blackhole) {
+        chunker.chunks(Path.of("kb/benchmark.md"), source).forEachRemaining(blackhole::consume);
+    }
+}
@@ -0,0 +1,114 @@
+package org.alanzheng.demo.springaidemo.benchmark;
+
+import org.alanzheng.demo.springaidemo.vectorstore.FakeEmbeddingModel;
+import org.alanzheng.demo.springaidemo.vectorstore.HnswVectorStore;
+import org.alanzheng.demo.springaidemo.vectorstore.MappedVectorStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向量检索基准测试
+ * 不同语料规模和向量维度下，SimpleVectorStore（暴力扫描）与HNSW索引的单次topK检索耗时。
+ * 嵌入使用确定性的FakeEmbeddingModel，结果可离线复现；查询向量的计算也计入耗时（远小于检索本身）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorSearchBenchmark {
+
+    private static final int QUERY_COUNT = 64;
+
+    @Param({"simple", "hnsw"})
+    private String store;
+
+    @Param({"1000", "10000"})
+    private int corpusSize;
+
+    @Param({"256", "1024"})
+    private int dimensions;
+
+    private VectorStore vectorStore;
+    private Path tempDir;
+    private List<SearchRequest> queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(dimensions);
+        if ("hnsw".equals(store)) {
+            tempDir = Files.createTempDirectory("vector-search-benchmark");
+            MappedVectorStore storage = MappedVectorStore.builder(embeddingModel).path(tempDir).build();
+            vectorStore = HnswVectorStore.builder(storage).build();
+        } else {
+            vectorStore = SimpleVectorStore.builder(embeddingModel).build();
+        }
+
+        List<Document> batch = new ArrayList<>();
+        for (int i = 0; i < corpusSize; i++) {
+            batch.add(new Document("doc-" + i, BenchmarkData.text(i, 300), Map.of("source", "kb/" + (i % 50) + ".txt")));
+            if (batch.size() == 500) {
+                vectorStore.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            vectorStore.add(batch);
+        }
+        if (vectorStore instanceof HnswVectorStore hnswVectorStore && !hnswVectorStore.awaitReady(Duration.ofMinutes(10))) {
+            throw new IllegalStateException("HNSW索引构建超时");
+        }
+
+        queries = new ArrayList<>();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queries.add(SearchRequest.builder()
+                    .query(BenchmarkData.text(1_000_000L + i, 40))
+                    .topK(4)
+                    .similarityThreshold(0.0)
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (vectorStore instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+        if (tempDir != null) {
+            FileSystemUtils.deleteRecursively(tempDir);
+        }
+    }
+
+    @Benchmark
+    public List<Document> similaritySearch() {
+        SearchRequest query = queries.get(next++ & (QUERY_COUNT - 1));
+        return vectorStore.similaritySearch(query);
+    }
+}
@@ -0,0 +1,64 @@
+package org.alanzheng.demo.springaidemo.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 模拟延迟分布（毫秒）
+ * <ul>
+ *     <li>fixed:200 固定200ms</li>
+ *     <li>uniform:100:400 100-400ms均匀分布</li>
+ *     <li>lognormal:300:0.5 中位数300ms、sigma为0.5的对数正态分布，长尾接近真实模型接口</li>
+ * </ul>
+ */
+final class LatencyDistribution {
+
+    private final String spec;
+    private final String type;
+    private final double a;
+    private final double b;
+
+    private LatencyDistribution(String spec, String type, double a, double b) {
+        this.spec = spec;
+        this.type = type;
+        this.a = a;
+        this.b = b;
+    }
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "fixed":
+                return new LatencyDistribution(spec, "fixed", Double.parseDouble(parts[1]), 0);
+            case "uniform":
+                return new LatencyDistribution(spec, "uniform", Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+            case "lognormal":
+                return new LatencyDistribution(spec, "lognormal", Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+            default:
+                throw new IllegalArgumentException("不支持的延迟分布: " + spec);
+        }
+    }
+
+    /**
+     * 采样一次延迟
+     */
+    long sampleMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double millis;
+        switch (type) {
+            case "uniform":
+                millis = a + random.nextDouble() * (b - a);
+                break;
+            case "lognormal":
+                millis = a * Math.exp(b * random.nextGaussian());
+                break;
+            default:
+                millis = a;
+        }
+        return Math.max(0, Math.round(millis));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,233 @@
+package org.alanzheng.demo.springaidemo.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压测负载生成器
+ * 按目标RPS以开环方式（不等待上一个请求返回）向 /api/chat、/api/chat/rag、/api/agent/chat 发送请求，
+ * 延迟从计划发送时刻算起，避免服务变慢时发送也随之变慢而低估尾延迟（coordinated omission）。
+ * 结束后输出每个场景的p50/p90/p99/最大延迟、成功吞吐、错误数和统计期间的峰值并发（已发出未返回的请求数）。
+ * <pre>
+ * mvn -Ploadtest test-compile exec:java \
+ *     -Dexec.args="--target=http://localhost:8080 --scenarios=chat,rag,agent --rps=20 --duration=60s --warmup=10s"
+ * </pre>
+ * 参数：
+ * <ul>
+ *     <li>target：应用地址，默认http://localhost:8080</li>
+ *     <li>scenarios：逗号分隔的场景，chat、rag、agent及对应的响应式接口reactive-chat、reactive-rag、reactive-agent，
+ *     默认chat,rag,agent</li>
+ *     <li>rps：每个场景的目标RPS，默认10</li>
+ *     <li>duration：统计时长，默认60s</li>
+ *     <li>warmup：预热时长，期间的请求不计入结果，默认10s</li>
+ *     <li>timeout：单个请求超时，默认120s</li>
+ *     <li>max-in-flight：每个场景最多同时未完成的请求数，超出时跳过并计数，默认2000</li>
+ * </ul>
+ * 问题文本带有递增序号，避免命中查询向量缓存和语义答案缓存；压测缓存路径时可加 --distinct=false。
+ * <p>
+ * 对比平台线程与虚拟线程：在相同堆大小下分别以 spring.threads.virtual.enabled=false/true 启动应用，
+ * 用相同参数压测，使目标并发（RPS × 单次耗时）超过Tomcat默认的200个线程，例如模拟接口默认约2.7s一次回复时：
+ * <pre>
+ * java -Xmx512m -jar target/spring-ai-demo-0.0.1-SNAPSHOT.jar --spring.profiles.active=loadtest --spring.threads.virtual.enabled=false
+ * mvn -Ploadtest test-compile exec:java -Dexec.args="--scenarios=chat --rps=300 --duration=60s"
+ * </pre>
+ * 平台线程下峰值并发停在线程池上限附近，其余请求在连接队列中排队，p99随之上升；虚拟线程下峰值并发接近 RPS × 单次耗时。
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private static final String[] QUESTIONS = {
+            "会议室如何预约？",
+            "差旅报销需要哪些审批？",
+            "访客进入办公区需要登记吗？",
+            "年假可以跨年使用吗？",
+            "门禁卡丢失后怎么补办？"
+    };
+
+    /**
+     * 压测场景
+     */
+    enum Scenario {
+        CHAT("/api/chat", "{\"message\":\"%s\"}"),
+        RAG("/api/chat/rag", "{\"question\":\"%s\"}"),
+        AGENT("/api/agent/chat", "{\"message\":\"%s\"}"),
+        REACTIVE_CHAT("/api/reactive/chat", "{\"message\":\"%s\"}"),
+        REACTIVE_RAG("/api/reactive/chat/rag", "{\"question\":\"%s\"}"),
+        REACTIVE_AGENT("/api/reactive/agent/chat", "{\"message\":\"%s\"}");
+
+        private final String path;
+        private final String bodyTemplate;
+
+        Scenario(String path, String bodyTemplate) {
+            this.path = path;
+            this.bodyTemplate = bodyTemplate;
+        }
+    }
+
+    private final HttpClient httpClient;
+    private final String target;
+    private final List<Scenario> scenarios;
+    private final double rps;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final boolean distinct;
+
+    public LoadGenerator(LoadTestArgs args) {
+        this.target = args.get("target", "http://localhost:8080");
+        this.scenarios = new ArrayList<>();
+        for (String name : args.get("scenarios", "chat,rag,agent").split(",")) {
+            scenarios.add(Scenario.valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT)));
+        }
+        this.rps = args.getDouble("rps", 10);
+        if (rps <= 0) {
+            throw new IllegalArgumentException("rps必须大于0");
+        }
+        this.duration = args.getDuration("duration", Duration.ofSeconds(60));
+        this.warmup = args.getDuration("warmup", Duration.ofSeconds(10));
+        this.timeout = args.getDuration("timeout", Duration.ofSeconds(120));
+        this.maxInFlight = args.getInt("max-in-flight", 2000);
+        this.distinct = Boolean.parseBoolean(args.get("distinct", "true"));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new LoadGenerator(new LoadTestArgs(args)).run();
+    }
+
+    public void run() throws InterruptedException {
+        log.info("开始压测: {}，场景: {}，每个场景 {} RPS，预热 {}s，统计 {}s",
+                target, scenarios, rps, warmup.toSeconds(), duration.toSeconds());
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(scenarios.size());
+        long periodNanos = Math.max(1, Math.round(1_000_000_000.0 / rps));
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFromNanos = startNanos + warmup.toNanos();
+        long endNanos = measureFromNanos + duration.toNanos();
+
+        List<ScenarioStats> allStats = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            ScenarioStats stats = new ScenarioStats(scenario);
+            allStats.add(stats);
+            AtomicLong sequence = new AtomicLong();
+            Semaphore inFlight = new Semaphore(maxInFlight);
+            scheduler.scheduleAtFixedRate(() -> {
+                long n = sequence.getAndIncrement();
+                long intendedNanos = startNanos + n * periodNanos;
+                if (intendedNanos >= endNanos) {
+                    return;
+                }
+                boolean measured = intendedNanos >= measureFromNanos;
+                if (!inFlight.tryAcquire()) {
+                    if (measured) {
+                        stats.skipped.incrementAndGet();
+                    }
+                    return;
+                }
+                send(scenario, n, intendedNanos, measured, stats, inFlight);
+            }, startNanos - System.nanoTime(), periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        // 等待发送结束后再给未完成的请求留出超时时间
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, endNanos - System.nanoTime()));
+        scheduler.shutdownNow();
+        long drainDeadline = System.nanoTime() + timeout.toNanos();
+        while (allStats.stream().anyMatch(stats -> stats.pending.get() > 0) && System.nanoTime() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+
+        log.info(String.format("%-14s %8s %8s %8s %8s %8s %10s %10s %10s %10s %10s",
+                "场景", "成功", "失败", "跳过", "未完成", "峰值并发", "吞吐/s", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)"));
+        for (ScenarioStats stats : allStats) {
+            log.info(stats.report(duration));
+        }
+    }
+
+    private void send(Scenario scenario, long n, long intendedNanos, boolean measured,
+                      ScenarioStats stats, Semaphore inFlight) {
+        String question = QUESTIONS[(int) (n % QUESTIONS.length)];
+        if (distinct) {
+            question = question + " #" + n;
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + scenario.path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(String.format(scenario.bodyTemplate, question)))
+                .build();
+        long concurrent = stats.inFlight.incrementAndGet();
+        if (measured) {
+            stats.pending.incrementAndGet();
+            stats.peakInFlight.accumulateAndGet(concurrent, Math::max);
+        }
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    stats.inFlight.decrementAndGet();
+                    inFlight.release();
+                    if (!measured) {
+                        return;
+                    }
+                    long latencyNanos = System.nanoTime() - intendedNanos;
+                    if (error == null && response.statusCode() < 400) {
+                        stats.latencies.add(latencyNanos);
+                    } else {
+                        stats.failed.incrementAndGet();
+                    }
+                    stats.pending.decrementAndGet();
+                });
+    }
+
+    /**
+     * 单个场景的统计结果
+     */
+    private static final class ScenarioStats {
+
+        private final Scenario scenario;
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong pending = new AtomicLong();
+        private final AtomicLong inFlight = new AtomicLong();
+        private final AtomicLong peakInFlight = new AtomicLong();
+
+        private ScenarioStats(Scenario scenario) {
+            this.scenario = scenario;
+        }
+
+        private String report(Duration duration) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            double throughput = sorted.length / Math.max(1e-3, duration.toMillis() / 1000.0);
+            return String.format("%-14s %8d %8d %8d %8d %8d %10.2f %10.1f %10.1f %10.1f %10.1f",
+                    scenario.name().toLowerCase(Locale.ROOT), sorted.length, failed.get(), skipped.get(), pending.get(),
+                    peakInFlight.get(), throughput, percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 1.0));
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+        }
+    }
+}
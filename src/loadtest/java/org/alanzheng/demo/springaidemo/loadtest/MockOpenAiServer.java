@@ -0,0 +1,281 @@
+package org.alanzheng.demo.springaidemo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地模拟的OpenAI兼容接口
+ * 实现 /v1/chat/completions（含stream=true的SSE流式响应）和 /v1/embeddings，
+ * 用于在不消耗DashScope额度的情况下压测应用。应用以loadtest profile启动即指向本服务：
+ * <pre>
+ * mvn -Ploadtest test-compile exec:java -Dloadtest.main=org.alanzheng.demo.springaidemo.loadtest.MockOpenAiServer \
+ *     -Dexec.args="--port=8089 --chat-latency=lognormal:300:0.5 --tokens-per-second=50 --error-rate=0.01"
+ * mvn spring-boot:run -Dspring-boot.run.profiles=loadtest
+ * </pre>
+ * 参数：
+ * <ul>
+ *     <li>port：监听端口，默认8089</li>
+ *     <li>chat-latency：对话首个token前的延迟分布，默认lognormal:300:0.5</li>
+ *     <li>embedding-latency：嵌入请求延迟分布，默认lognormal:40:0.3</li>
+ *     <li>tokens-per-second：生成速率，非流式响应同样按此速率计入总耗时，默认50</li>
+ *     <li>completion-tokens：每次回复的token数，默认120</li>
+ *     <li>dimensions：请求未指定维度时的向量维度，默认1024</li>
+ *     <li>error-rate：注入错误的比例（0-1），默认0</li>
+ *     <li>error-status：注入错误的状态码，如429、500、503，默认503</li>
+ * </ul>
+ * 对话回复为固定词表拼成的文本，不会返回tool_calls，因此agent接口压测的是不调用工具的路径。
+ * 嵌入向量由文本哈希确定性生成并归一化，相同文本得到相同向量。
+ */
+@Slf4j
+public class MockOpenAiServer implements AutoCloseable {
+
+    private static final String[] WORDS = {
+            "根据", "知识库", "内容", "，", "会议室", "需要", "提前", "在", "系统", "中", "预约", "。",
+            "报销", "流程", "由", "部门", "经理", "审批", "后", "提交", "财务", "处理"
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LatencyDistribution chatLatency;
+    private final LatencyDistribution embeddingLatency;
+    private final double tokensPerSecond;
+    private final int completionTokens;
+    private final int defaultDimensions;
+    private final double errorRate;
+    private final int errorStatus;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    public MockOpenAiServer(LoadTestArgs args) throws IOException {
+        this.chatLatency = LatencyDistribution.parse(args.get("chat-latency", "lognormal:300:0.5"));
+        this.embeddingLatency = LatencyDistribution.parse(args.get("embedding-latency", "lognormal:40:0.3"));
+        this.tokensPerSecond = Math.max(1.0, args.getDouble("tokens-per-second", 50));
+        this.completionTokens = Math.max(1, args.getInt("completion-tokens", 120));
+        this.defaultDimensions = args.getInt("dimensions", 1024);
+        this.errorRate = Math.min(1.0, Math.max(0.0, args.getDouble("error-rate", 0.0)));
+        this.errorStatus = args.getInt("error-status", 503);
+
+        // 每个请求在整个模拟延迟期间占用一个线程，使用虚拟线程以免模拟接口自身成为瓶颈
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(args.getInt("port", 8089)), 1024);
+        this.server.setExecutor(executor);
+        this.server.createContext("/v1/chat/completions", exchange -> handle(exchange, this::chatCompletions));
+        this.server.createContext("/v1/embeddings", exchange -> handle(exchange, this::embeddings));
+    }
+
+    public static void main(String[] args) throws IOException {
+        MockOpenAiServer server = new MockOpenAiServer(new LoadTestArgs(args));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "mock-openai-shutdown"));
+        server.start();
+    }
+
+    public void start() {
+        server.start();
+        log.info("模拟OpenAI接口已启动: http://localhost:{}/v1，对话延迟: {}，嵌入延迟: {}，生成速率: {} token/s，错误率: {}",
+                server.getAddress().getPort(), chatLatency, embeddingLatency, tokensPerSecond, errorRate);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        log.info("模拟OpenAI接口已停止，共处理 {} 个请求，注入错误 {} 个", requestCount.get(), errorCount.get());
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        requestCount.incrementAndGet();
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, error("method not allowed", "invalid_request_error"));
+                return;
+            }
+            JsonNode request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = objectMapper.readTree(body);
+            }
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errorCount.incrementAndGet();
+                sendJson(exchange, errorStatus, error("injected error", errorStatus == 429 ? "rate_limit_exceeded" : "server_error"));
+                return;
+            }
+            handler.handle(exchange, request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 客户端取消流式请求时写入会失败，属于正常情况
+            log.debug("模拟接口响应中断: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("模拟接口处理失败", e);
+        }
+    }
+
+    private void chatCompletions(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        String model = request.path("model").asText("mock-model");
+        int promptTokens = estimateTokens(request.path("messages").toString());
+        TimeUnit.MILLISECONDS.sleep(chatLatency.sampleMillis());
+
+        if (request.path("stream").asBoolean(false)) {
+            streamChat(exchange, model, promptTokens);
+            return;
+        }
+
+        TimeUnit.MILLISECONDS.sleep(Math.round(completionTokens * 1000.0 / tokensPerSecond));
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < completionTokens; i++) {
+            content.append(WORDS[i % WORDS.length]);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", "chatcmpl-" + UUID.randomUUID());
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", model);
+        response.put("choices", List.of(Map.of(
+                "index", 0,
+                "message", Map.of("role", "assistant", "content", content.toString()),
+                "finish_reason", "stop")));
+        response.put("usage", usage(promptTokens, completionTokens));
+        sendJson(exchange, 200, response);
+    }
+
+    private void streamChat(HttpExchange exchange, String model, int promptTokens) throws IOException, InterruptedException {
+        String id = "chatcmpl-" + UUID.randomUUID();
+        long created = System.currentTimeMillis() / 1000;
+        long intervalNanos = Math.round(1_000_000_000.0 / tokensPerSecond);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        long next = System.nanoTime();
+        for (int i = 0; i < completionTokens; i++) {
+            Map<String, Object> delta = i == 0
+                    ? Map.of("role", "assistant", "content", WORDS[0])
+                    : Map.of("content", WORDS[i % WORDS.length]);
+            writeEvent(out, chunk(id, created, model, delta, null, null));
+            next += intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+        writeEvent(out, chunk(id, created, model, Map.of(), "stop", usage(promptTokens, completionTokens)));
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void embeddings(HttpExchange exchange, JsonNode request) throws IOException, InterruptedException {
+        JsonNode input = request.path("input");
+        List<String> texts = new ArrayList<>();
+        if (input.isArray()) {
+            input.forEach(node -> texts.add(node.asText()));
+        } else {
+            texts.add(input.asText());
+        }
+        int dimensions = request.path("dimensions").asInt(defaultDimensions);
+        TimeUnit.MILLISECONDS.sleep(embeddingLatency.sampleMillis());
+
+        List<Map<String, Object>> data = new ArrayList<>(texts.size());
+        int promptTokens = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            data.add(Map.of("object", "embedding", "index", i, "embedding", embed(texts.get(i), dimensions)));
+            promptTokens += estimateTokens(texts.get(i));
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("object", "list");
+        response.put("data", data);
+        response.put("model", request.path("model").asText("mock-embedding"));
+        response.put("usage", Map.of("prompt_tokens", promptTokens, "total_tokens", promptTokens));
+        sendJson(exchange, 200, response);
+    }
+
+    /**
+     * 由文本哈希确定性生成单位向量
+     */
+    static float[] embed(String text, int dimensions) {
+        long seed = text.hashCode() * 0x9E3779B97F4A7C15L;
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            vector[i] = (float) ((seed >>> 11) * 0x1.0p-53 - 0.5);
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1.0 / Math.sqrt(Math.max(norm, 1e-12)));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static int estimateTokens(String text) {
+        return Math.max(1, text.length() / 2);
+    }
+
+    private static Map<String, Object> usage(int promptTokens, int completionTokens) {
+        return Map.of("prompt_tokens", promptTokens,
+                "completion_tokens", completionTokens,
+                "total_tokens", promptTokens + completionTokens);
+    }
+
+    private static Map<String, Object> chunk(String id, long created, String model, Map<String, Object> delta,
+                                             String finishReason, Map<String, Object> usage) {
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("id", id);
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", created);
+        chunk.put("model", model);
+        chunk.put("choices", List.of(choice));
+        if (usage != null) {
+            chunk.put("usage", usage);
+        }
+        return chunk;
+    }
+
+    private static Map<String, Object> error(String message, String type) {
+        return Map.of("error", Map.of("message", message, "type", type));
+    }
+
+    private void writeEvent(OutputStream out, Object data) throws IOException {
+        out.write(("data: " + objectMapper.writeValueAsString(data) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
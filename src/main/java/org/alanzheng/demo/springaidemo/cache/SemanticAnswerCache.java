@@ -0,0 +1,226 @@
+package org.alanzheng.demo.springaidemo.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.dto.SemanticCacheStats;
+import org.alanzheng.demo.springaidemo.ingest.VectorStoreChangedEvent;
+import org.springframework.ai.document.Document;
+import org.springframework.context.event.EventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 语义答案缓存
+ * 以问题向量为键缓存RAG答案：新问题与缓存中某个问题的余弦相似度达到阈值，
+ * 并且本次检索到的文档集合与当时完全一致时，直接返回缓存的答案，省去一次大模型调用。
+ * 按最近使用顺序淘汰，条目超过TTL后失效，向量存储内容变化时整体清空。
+ * 查找为线性扫描，条目数上限在千级时耗时远小于一次嵌入调用。
+ */
+@Slf4j
+public class SemanticAnswerCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final double similarityThreshold;
+    private final Clock clock;
+    private final LinkedHashMap<Long, Entry> entries;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong expirationCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * @param maxEntries 最多缓存的答案数，为0时禁用缓存
+     * @param ttl 答案的有效期
+     * @param similarityThreshold 问题向量的余弦相似度阈值（0-1）
+     * @param clock 时钟，用于计算TTL
+     */
+    public SemanticAnswerCache(int maxEntries, Duration ttl, double similarityThreshold, Clock clock) {
+        Objects.requireNonNull(ttl, "TTL不能为空");
+        Objects.requireNonNull(clock, "Clock不能为空");
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlMillis = ttl.toMillis();
+        this.similarityThreshold = similarityThreshold;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > SemanticAnswerCache.this.maxEntries) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * 查找语义相近且检索文档一致的缓存答案
+     * 相似度达到阈值但检索文档已变化的条目会被移除，并继续比较其余候选
+     *
+     * @param questionEmbedding 问题向量
+     * @param scope 检索参数（如topK、阈值），参数不同的答案互不复用
+     * @param fingerprint 本次检索到的文档集合指纹，见{@link #fingerprint(List)}
+     * @return 缓存的答案，未命中时返回null
+     */
+    public synchronized String get(float[] questionEmbedding, String scope, String fingerprint) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        float[] query = normalize(questionEmbedding);
+        long now = clock.millis();
+        Long bestKey = null;
+        double bestSimilarity = similarityThreshold;
+        Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Entry> candidate = iterator.next();
+            Entry entry = candidate.getValue();
+            if (now - entry.createdAt > ttlMillis) {
+                iterator.remove();
+                expirationCount.incrementAndGet();
+                continue;
+            }
+            if (!entry.scope.equals(scope)) {
+                continue;
+            }
+            double similarity = dot(query, entry.embedding);
+            if (similarity < similarityThreshold) {
+                continue;
+            }
+            if (!entry.fingerprint.equals(fingerprint)) {
+                // 问题相近但检索到的文档已变化，旧答案不再可信
+                iterator.remove();
+                staleCount.incrementAndGet();
+                continue;
+            }
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                bestKey = candidate.getKey();
+            }
+        }
+
+        if (Objects.isNull(bestKey)) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        // get会把条目移动到最近使用的位置
+        Entry best = entries.get(bestKey);
+        hitCount.incrementAndGet();
+        log.debug("语义缓存命中，相似度: {}", bestSimilarity);
+        return best.answer;
+    }
+
+    /**
+     * 缓存答案
+     */
+    public synchronized void put(float[] questionEmbedding, String scope, String fingerprint, String answer) {
+        if (!isEnabled()) {
+            return;
+        }
+        entries.put(sequence.incrementAndGet(),
+                new Entry(normalize(questionEmbedding), scope, fingerprint, answer, clock.millis()));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void invalidate() {
+        if (!entries.isEmpty()) {
+            log.info("清空语义答案缓存，条目数: {}", entries.size());
+        }
+        entries.clear();
+        invalidationCount.incrementAndGet();
+    }
+
+    @EventListener
+    public void onVectorStoreChanged(VectorStoreChangedEvent event) {
+        invalidate();
+    }
+
+    public synchronized SemanticCacheStats stats() {
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        return SemanticCacheStats.builder()
+                .enabled(isEnabled())
+                .size(entries.size())
+                .maxEntries(maxEntries)
+                .hitCount(hits)
+                .missCount(misses)
+                .hitRate(hits + misses == 0 ? 0.0 : (double) hits / (hits + misses))
+                .staleCount(staleCount.get())
+                .evictionCount(evictionCount.get())
+                .expirationCount(expirationCount.get())
+                .invalidationCount(invalidationCount.get())
+                .build();
+    }
+
+    /**
+     * 计算检索结果的指纹：按ID排序后对ID和文本做SHA-256，与检索顺序无关
+     */
+    public static String fingerprint(List<Document> documents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            documents.stream()
+                    .sorted(Comparator.comparing(Document::getId))
+                    .forEach(document -> {
+                        digest.update(document.getId().getBytes(StandardCharsets.UTF_8));
+                        digest.update((byte) 0);
+                        digest.update(Objects.toString(document.getText(), "").getBytes(StandardCharsets.UTF_8));
+                        digest.update((byte) 0);
+                    });
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JDK不支持SHA-256", e);
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private record Entry(float[] embedding, String scope, String fingerprint, String answer, long createdAt) {
+    }
+}
@@ -0,0 +1,42 @@
+package org.alanzheng.demo.springaidemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.cache.SemanticAnswerCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * 缓存配置类
+ * 配置RAG问答的语义答案缓存
+ */
+@Slf4j
+@Configuration
+public class CacheConfig {
+    
+    @Value("${spring.ai.rag.answer-cache.max-entries:1000}")
+    private int answerCacheMaxEntries;
+    
+    @Value("${spring.ai.rag.answer-cache.ttl:30m}")
+    private Duration answerCacheTtl;
+    
+    @Value("${spring.ai.rag.answer-cache.similarity-threshold:0.95}")
+    private double answerCacheSimilarityThreshold;
+    
+    /**
+     * 配置语义答案缓存
+     * max-entries为0时禁用
+     * 
+     * @return 语义答案缓存
+     */
+    @Bean
+    public SemanticAnswerCache semanticAnswerCache() {
+        log.info("初始化语义答案缓存，条目数上限: {}，TTL: {}，相似度阈值: {}", 
+                answerCacheMaxEntries, answerCacheTtl, answerCacheSimilarityThreshold);
+        return new SemanticAnswerCache(answerCacheMaxEntries, answerCacheTtl, 
+                answerCacheSimilarityThreshold, Clock.systemUTC());
+    }
+}
@@ -0,0 +1,136 @@
+package org.alanzheng.demo.springaidemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.memory.BoundedChatMemoryRepository;
+import org.alanzheng.demo.springaidemo.memory.ChatClientConversationSummarizer;
+import org.alanzheng.demo.springaidemo.memory.SummarizingChatMemory;
+import org.alanzheng.demo.springaidemo.memory.TokenWindowChatMemory;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 会话记忆配置类
+ * 按conversationId保存多轮对话，替换Spring AI默认的无界内存存储
+ */
+@Slf4j
+@Configuration
+public class ChatMemoryConfig {
+    
+    @Value("${spring.ai.chat-memory.max-conversations:10000}")
+    private int maxConversations;
+    
+    @Value("${spring.ai.chat-memory.idle-timeout:30m}")
+    private Duration idleTimeout;
+    
+    @Value("${spring.ai.chat-memory.max-messages:20}")
+    private int maxMessages;
+    
+    @Value("${spring.ai.chat-memory.max-tokens:4000}")
+    private int maxTokens;
+    
+    @Value("${spring.ai.chat-memory.spill.enabled:false}")
+    private boolean spillEnabled;
+    
+    @Value("${spring.ai.chat-memory.spill.path:./vector-store/chat-memory}")
+    private String spillPath;
+    
+    @Value("${spring.ai.chat-memory.spill.ttl:7d}")
+    private Duration spillTtl;
+    
+    @Value("${spring.ai.chat-memory.spill.max-files:100000}")
+    private int spillMaxFiles;
+    
+    @Value("${spring.ai.chat-memory.summary.enabled:false}")
+    private boolean summaryEnabled;
+    
+    @Value("${spring.ai.chat-memory.summary.trigger-tokens:2000}")
+    private int summaryTriggerTokens;
+    
+    @Value("${spring.ai.chat-memory.summary.keep-recent-tokens:800}")
+    private int summaryKeepRecentTokens;
+    
+    @Value("${spring.ai.chat-memory.summary.max-chars:300}")
+    private int summaryMaxChars;
+    
+    @Value("${spring.ai.chat-memory.summary.workers:2}")
+    private int summaryWorkers;
+    
+    @Value("${spring.ai.chat-memory.summary.queue-capacity:100}")
+    private int summaryQueueCapacity;
+    
+    /**
+     * 配置会话消息存储
+     * 内存中最多保留max-conversations个会话，开启spill时淘汰的会话写入本地磁盘，
+     * 溢出文件超过spill.ttl或文件数超过spill.max-files时删除
+     * 
+     * @return 会话消息存储
+     */
+    @Bean
+    public BoundedChatMemoryRepository chatMemoryRepository() {
+        Path spillDirectory = spillEnabled ? Paths.get(spillPath) : null;
+        log.info("初始化会话记忆存储，会话数上限: {}，空闲超时: {}，溢出目录: {}，溢出文件有效期: {}，溢出文件数上限: {}", 
+                maxConversations, idleTimeout, spillEnabled ? spillDirectory.toAbsolutePath() : "未启用", 
+                spillTtl, spillMaxFiles);
+        return new BoundedChatMemoryRepository(maxConversations, idleTimeout, spillDirectory, 
+                spillTtl, spillMaxFiles, Clock.systemUTC());
+    }
+    
+    /**
+     * 配置会话记忆
+     * 每个会话只保留最近max-messages条、估算不超过max-tokens的消息；
+     * 开启summary时较早的轮次在后台压缩为摘要，只保留最近的轮次原文
+     * 
+     * @param chatMemoryRepository 会话消息存储
+     * @param chatModel 生成摘要使用的模型
+     * @param aiMetrics AI调用指标
+     * @return 会话记忆
+     */
+    @Bean
+    public ChatMemory chatMemory(BoundedChatMemoryRepository chatMemoryRepository,
+                                 @Qualifier("openAiChatModel") ObjectProvider<ChatModel> chatModel,
+                                 AiMetrics aiMetrics) {
+        if (summaryEnabled) {
+            log.info("初始化带摘要的会话记忆，每个会话最多保留消息数: {}，token预算: {}，摘要触发阈值: {}，保留原文: {} tokens",
+                    maxMessages, maxTokens, summaryTriggerTokens, summaryKeepRecentTokens);
+            ChatClientConversationSummarizer summarizer =
+                    new ChatClientConversationSummarizer(chatModel.getObject(), aiMetrics, summaryMaxChars);
+            return new SummarizingChatMemory(chatMemoryRepository, summarizer, summaryExecutor(),
+                    maxMessages, maxTokens, summaryTriggerTokens, summaryKeepRecentTokens);
+        }
+        log.info("初始化会话记忆，每个会话最多保留消息数: {}，token预算: {}", maxMessages, maxTokens);
+        return new TokenWindowChatMemory(chatMemoryRepository, maxMessages, maxTokens);
+    }
+    
+    /**
+     * 创建生成会话摘要的线程池，不注册为Bean，避免替换Spring Boot默认的任务执行器
+     * 队列满时拒绝任务，对应会话在下一轮写入时重新尝试
+     */
+    private ExecutorService summaryExecutor() {
+        int workers = Math.max(1, summaryWorkers);
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, summaryQueueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "chat-memory-summary-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
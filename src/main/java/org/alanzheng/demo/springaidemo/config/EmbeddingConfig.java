@@ -0,0 +1,119 @@
+package org.alanzheng.demo.springaidemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.embedding.BatchingEmbeddingModel;
+import org.alanzheng.demo.springaidemo.embedding.CachingEmbeddingModel;
+import org.alanzheng.demo.springaidemo.embedding.EmbeddingCache;
+import org.alanzheng.demo.springaidemo.embedding.QueryEmbeddingCache;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.metrics.MeteredEmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.nio.file.Paths;
+import java.util.Objects;
+
+/**
+ * 嵌入模型配置类
+ * 在OpenAI兼容嵌入模型外依次包装批量合并和本地内容哈希缓存：
+ * 缓存未命中的文本才会进入批量队列，与其他调用方的文本合并后发送
+ */
+@Slf4j
+@Configuration
+public class EmbeddingConfig {
+    
+    @Value("${spring.ai.rag.embedding-cache.path:./vector-store/embedding-cache}")
+    private String embeddingCachePath;
+    
+    @Value("${spring.ai.openai.embedding.options.model:text-embedding-ada-002}")
+    private String embeddingModelName;
+    
+    @Value("${spring.ai.openai.embedding.options.dimensions:#{null}}")
+    private Integer embeddingDimensions;
+    
+    @Value("${spring.ai.rag.embedding-batch.max-size:10}")
+    private int batchMaxSize;
+    
+    @Value("${spring.ai.rag.embedding-batch.max-tokens:20000}")
+    private int batchMaxTokens;
+    
+    @Value("${spring.ai.rag.embedding-batch.linger-ms:10}")
+    private long batchLingerMillis;
+    
+    @Value("${spring.ai.rag.embedding-batch.concurrency:4}")
+    private int batchConcurrency;
+    
+    @Value("${spring.ai.rag.embedding-batch.timeout-ms:120000}")
+    private long batchTimeoutMillis;
+    
+    @Value("${spring.ai.rag.query-embedding-cache.max-entries:10000}")
+    private int queryCacheMaxEntries;
+    
+    /**
+     * 配置本地嵌入缓存
+     * 
+     * @return 嵌入缓存
+     */
+    @Bean
+    public EmbeddingCache embeddingCache() {
+        log.info("初始化嵌入缓存，路径: {}", embeddingCachePath);
+        return new EmbeddingCache(Paths.get(embeddingCachePath));
+    }
+    
+    /**
+     * 配置批量合并的嵌入模型
+     * 合并并发调用方的文本，按条数和token预算凑成批次后再请求嵌入接口
+     * 
+     * @param embeddingModel OpenAI兼容嵌入模型
+     * @param aiMetrics AI调用指标，记录每次实际发出的嵌入请求耗时
+     * @return 批量合并的嵌入模型
+     */
+    @Bean
+    public BatchingEmbeddingModel batchingEmbeddingModel(@Qualifier("openAiEmbeddingModel") EmbeddingModel embeddingModel,
+                                                         AiMetrics aiMetrics) {
+        Objects.requireNonNull(embeddingModel, "EmbeddingModel不能为空");
+        
+        log.info("初始化批量嵌入模型，批次条数上限: {}，token上限: {}，linger: {}ms，并发批次数: {}", 
+                batchMaxSize, batchMaxTokens, batchLingerMillis, batchConcurrency);
+        
+        return new BatchingEmbeddingModel(new MeteredEmbeddingModel(embeddingModel, aiMetrics), batchMaxSize, batchMaxTokens, 
+                batchLingerMillis, batchConcurrency, batchTimeoutMillis);
+    }
+    
+    /**
+     * 配置带缓存的嵌入模型
+     * 作为首选EmbeddingModel注入向量存储，未变化的文本不会重复调用嵌入接口
+     * 
+     * @param batchingEmbeddingModel 批量合并的嵌入模型
+     * @param embeddingCache 本地嵌入缓存
+     * @return 带缓存的嵌入模型
+     */
+    @Bean
+    @Primary
+    public CachingEmbeddingModel cachingEmbeddingModel(BatchingEmbeddingModel batchingEmbeddingModel,
+                                                EmbeddingCache embeddingCache) {
+        Objects.requireNonNull(batchingEmbeddingModel, "BatchingEmbeddingModel不能为空");
+        
+        log.info("初始化带缓存的嵌入模型，模型: {}，维度: {}", embeddingModelName, embeddingDimensions);
+        
+        return new CachingEmbeddingModel(batchingEmbeddingModel, embeddingCache, embeddingModelName, embeddingDimensions);
+    }
+    
+    /**
+     * 配置查询向量缓存
+     * 检索和问答共用，直接使用批量嵌入模型，查询向量不写入磁盘缓存
+     * 
+     * @param batchingEmbeddingModel 批量合并的嵌入模型
+     * @return 查询向量缓存
+     */
+    @Bean
+    public QueryEmbeddingCache queryEmbeddingCache(BatchingEmbeddingModel batchingEmbeddingModel) {
+        log.info("初始化查询向量缓存，条目数上限: {}", queryCacheMaxEntries);
+        return new QueryEmbeddingCache(batchingEmbeddingModel, embeddingModelName, embeddingDimensions, 
+                queryCacheMaxEntries);
+    }
+}
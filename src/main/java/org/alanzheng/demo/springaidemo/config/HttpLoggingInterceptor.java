@@ -1,58 +1,198 @@
 package org.alanzheng.demo.springaidemo.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * HTTP请求日志拦截器
- * 用于记录Spring AI向外发送的HTTP请求和响应详情
+ * 用于记录Spring AI向外发送的HTTP请求和响应详情。
+ * 按采样率记录，未采样的请求只在响应失败时记录；请求体只复制前max-body-bytes字节，
+ * 认证相关请求头脱敏。日志在单独的线程中格式化和输出，队列满时丢弃并计数，不阻塞模型调用。
  */
 @Slf4j
-public class HttpLoggingInterceptor implements ClientHttpRequestInterceptor {
+public class HttpLoggingInterceptor implements ClientHttpRequestInterceptor, AutoCloseable {
+
+    /**
+     * 日志模式
+     */
+    public enum Mode {
+        /**
+         * 不记录
+         */
+        OFF,
+        /**
+         * 记录方法、路径、状态码、耗时和请求体大小
+         */
+        SUMMARY,
+        /**
+         * 额外记录脱敏后的请求头和截断后的请求体
+         */
+        BODY
+    }
+
+    static final String REDACTED = "******";
+
+    private final Mode mode;
+    private final double sampleRate;
+    private final int maxBodyBytes;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param mode 日志模式
+     * @param sampleRate 采样率（0-1）
+     * @param maxBodyBytes 请求体最多记录的字节数
+     * @param queueCapacity 待输出日志的队列容量
+     */
+    public HttpLoggingInterceptor(Mode mode, double sampleRate, int maxBodyBytes, int queueCapacity) {
+        Objects.requireNonNull(mode, "日志模式不能为空");
+        this.mode = mode;
+        this.sampleRate = Math.min(1.0, Math.max(0.0, sampleRate));
+        this.maxBodyBytes = Math.max(0, maxBodyBytes);
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "http-logging");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> droppedCount.incrementAndGet());
+    }
 
     @Override
-    public ClientHttpResponse intercept(HttpRequest request, byte[] body, 
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
                                        ClientHttpRequestExecution execution) throws IOException {
-        
-        // 记录请求信息
-        logRequest(request, body);
-        
-        // 执行请求
-        long startTime = System.currentTimeMillis();
-        ClientHttpResponse response = execution.execute(request, body);
-        long duration = System.currentTimeMillis() - startTime;
-        
-        // 记录响应信息
-        logResponse(response, duration);
-        
+        if (mode == Mode.OFF) {
+            return execution.execute(request, body);
+        }
+
+        String method = request.getMethod().name();
+        URI uri = request.getURI();
+        if (!sampled()) {
+            ClientHttpResponse response = execution.execute(request, body);
+            // 未采样的请求只记录失败响应
+            int status = response.getStatusCode().value();
+            if (response.getStatusCode().isError()) {
+                emit(() -> log.warn("HTTP请求失败: {} {}，响应状态码: {}", method, uri, status));
+            }
+            return response;
+        }
+
+        // 调用线程只复制必要的数据，解码和格式化在日志线程中进行
+        Map<String, String> headers = mode == Mode.BODY ? redact(request.getHeaders()) : Map.of();
+        int bodyLength = Objects.nonNull(body) ? body.length : 0;
+        byte[] bodyPrefix = mode == Mode.BODY && bodyLength > 0
+                ? Arrays.copyOf(body, Math.min(bodyLength, maxBodyBytes))
+                : new byte[0];
+
+        long startTime = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException e) {
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            emit(() -> log.warn("HTTP请求异常: {} {}，耗时: {}ms，错误信息: {}", method, uri, duration, e.getMessage()));
+            throw e;
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        int status = response.getStatusCode().value();
+        boolean error = response.getStatusCode().isError();
+
+        emit(() -> {
+            if (error) {
+                log.warn("HTTP请求失败: {} {}，响应状态码: {}，耗时: {}ms，请求体: {}字节",
+                        method, uri, status, duration, bodyLength);
+            } else {
+                log.info("HTTP请求: {} {}，响应状态码: {}，耗时: {}ms，请求体: {}字节",
+                        method, uri, status, duration, bodyLength);
+            }
+            if (mode == Mode.BODY) {
+                log.info("请求头: {}", headers);
+                log.info("请求体: {}", preview(bodyPrefix, bodyLength));
+            }
+        });
         return response;
     }
-    
+
     /**
-     * 记录HTTP请求详情
+     * 因队列已满而丢弃的日志条数
      */
-    private void logRequest(HttpRequest request, byte[] body) {
-        log.info("请求路径: {}", request.getURI());
-        
-        // 记录请求体
-        if (body != null && body.length > 0) {
-            String requestBody = new String(body, StandardCharsets.UTF_8);
-            log.info("请求体: {}", requestBody);
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
     }
-    
+
+    private boolean sampled() {
+        return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private void emit(Runnable task) {
+        if (executor.isShutdown()) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * 请求头脱敏：认证、密钥、令牌和Cookie类请求头只保留名称
+     */
+    static Map<String, String> redact(HttpHeaders headers) {
+        Map<String, String> result = new LinkedHashMap<>();
+        headers.forEach((name, values) -> result.put(name, isSensitive(name) ? REDACTED : String.join(",", values)));
+        return result;
+    }
+
     /**
-     * 记录HTTP响应详情
+     * 请求体预览：只解码已截取的前缀，截断处不完整的多字节字符会显示为替换字符
+     *
+     * @param prefix 请求体前缀
+     * @param totalLength 请求体总字节数
      */
-    private void logResponse(ClientHttpResponse response, long duration) throws IOException {
-        log.info("响应状态码: {}", response.getStatusCode().value());
-        log.info("响应耗时: {}ms", duration);
+    static String preview(byte[] prefix, int totalLength) {
+        if (totalLength == 0) {
+            return "";
+        }
+        String text = new String(prefix, StandardCharsets.UTF_8);
+        if (prefix.length >= totalLength) {
+            return text;
+        }
+        return text + "...(共" + totalLength + "字节，已截断)";
     }
-}
 
+    private static boolean isSensitive(String headerName) {
+        String name = headerName.toLowerCase(Locale.ROOT);
+        return name.contains("authorization") || name.contains("key") || name.contains("token")
+                || name.contains("secret") || name.contains("cookie");
+    }
+}
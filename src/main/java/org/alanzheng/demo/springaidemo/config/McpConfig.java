@@ -2,6 +2,8 @@ package org.alanzheng.demo.springaidemo.config;
 
 import lombok.extern.slf4j.Slf4j;
 import org.alanzheng.demo.springaidemo.mcp.McpTools;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.metrics.MeteredToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.context.annotation.Bean;
@@ -23,17 +25,18 @@ public class McpConfig {
      * 将 McpTools 中定义的工具方法暴露给 MCP Server
      * 
      * @param mcpTools MCP 工具类实例
+     * @param aiMetrics AI调用指标，记录每次工具调用的耗时
      * @return 工具回调提供者
      */
     @Bean
-    public ToolCallbackProvider toolCallbackProvider(@Lazy McpTools mcpTools) {
+    public ToolCallbackProvider toolCallbackProvider(@Lazy McpTools mcpTools, AiMetrics aiMetrics) {
         Objects.requireNonNull(mcpTools, "McpTools不能为空");
         
         log.info("注册 MCP 工具回调提供者");
         
-        return MethodToolCallbackProvider.builder()
+        return MeteredToolCallback.wrap(MethodToolCallbackProvider.builder()
                 .toolObjects(mcpTools)
-                .build();
+                .build(), aiMetrics);
     }
 }
 
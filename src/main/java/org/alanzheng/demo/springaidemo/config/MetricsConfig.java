@@ -0,0 +1,90 @@
+package org.alanzheng.demo.springaidemo.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.cache.SemanticAnswerCache;
+import org.alanzheng.demo.springaidemo.embedding.CachingEmbeddingModel;
+import org.alanzheng.demo.springaidemo.embedding.QueryEmbeddingCache;
+import org.alanzheng.demo.springaidemo.memory.BoundedChatMemoryRepository;
+import org.alanzheng.demo.springaidemo.memory.SummarizingChatMemory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 指标配置类
+ * 把各级缓存已有的命中/未命中计数注册为Micrometer指标，
+ * 耗时和token指标见{@link org.alanzheng.demo.springaidemo.metrics.AiMetrics}
+ */
+@Slf4j
+@Configuration
+public class MetricsConfig {
+    
+    private static final String CACHE_REQUESTS = "ai.cache.requests";
+    private static final String CACHE_SIZE = "ai.cache.size";
+    private static final String MEMORY_CONVERSATIONS = "ai.chat.memory.conversations";
+    private static final String MEMORY_EVICTIONS = "ai.chat.memory.evictions";
+    private static final String MEMORY_SUMMARIES = "ai.chat.memory.summaries";
+    
+    /**
+     * 注册缓存指标：ai.cache.requests{cache, result=hit|miss} 和 ai.cache.size{cache}
+     * 
+     * @param embeddingModel 带磁盘缓存的文档嵌入模型
+     * @param queryEmbeddingCache 查询向量缓存
+     * @param answerCache 语义答案缓存
+     * @return 缓存指标绑定
+     */
+    @Bean
+    public MeterBinder cacheMetrics(CachingEmbeddingModel embeddingModel,
+                                    QueryEmbeddingCache queryEmbeddingCache,
+                                    SemanticAnswerCache answerCache) {
+        log.info("注册缓存指标");
+        return registry -> {
+            FunctionCounter.builder(CACHE_REQUESTS, embeddingModel, CachingEmbeddingModel::getHitCount)
+                    .tags("cache", "embedding", "result", "hit").register(registry);
+            FunctionCounter.builder(CACHE_REQUESTS, embeddingModel, CachingEmbeddingModel::getMissCount)
+                    .tags("cache", "embedding", "result", "miss").register(registry);
+            
+            FunctionCounter.builder(CACHE_REQUESTS, queryEmbeddingCache, QueryEmbeddingCache::getHitCount)
+                    .tags("cache", "query-embedding", "result", "hit").register(registry);
+            FunctionCounter.builder(CACHE_REQUESTS, queryEmbeddingCache, QueryEmbeddingCache::getMissCount)
+                    .tags("cache", "query-embedding", "result", "miss").register(registry);
+            Gauge.builder(CACHE_SIZE, queryEmbeddingCache, QueryEmbeddingCache::size)
+                    .tags("cache", "query-embedding").register(registry);
+            
+            FunctionCounter.builder(CACHE_REQUESTS, answerCache, cache -> cache.stats().getHitCount())
+                    .tags("cache", "answer", "result", "hit").register(registry);
+            FunctionCounter.builder(CACHE_REQUESTS, answerCache, cache -> cache.stats().getMissCount())
+                    .tags("cache", "answer", "result", "miss").register(registry);
+            Gauge.builder(CACHE_SIZE, answerCache, cache -> cache.stats().getSize())
+                    .tags("cache", "answer").register(registry);
+        };
+    }
+    
+    /**
+     * 注册会话记忆指标：ai.chat.memory.conversations（内存中的会话数）和 ai.chat.memory.evictions，
+     * 开启摘要时另有 ai.chat.memory.summaries{outcome=success|error}
+     * 
+     * @param chatMemoryRepository 会话消息存储
+     * @param chatMemory 会话记忆
+     * @return 会话记忆指标绑定
+     */
+    @Bean
+    public MeterBinder chatMemoryMetrics(BoundedChatMemoryRepository chatMemoryRepository, ChatMemory chatMemory) {
+        log.info("注册会话记忆指标");
+        return registry -> {
+            Gauge.builder(MEMORY_CONVERSATIONS, chatMemoryRepository, BoundedChatMemoryRepository::size)
+                    .register(registry);
+            FunctionCounter.builder(MEMORY_EVICTIONS, chatMemoryRepository, BoundedChatMemoryRepository::getEvictionCount)
+                    .register(registry);
+            if (chatMemory instanceof SummarizingChatMemory summarizingChatMemory) {
+                FunctionCounter.builder(MEMORY_SUMMARIES, summarizingChatMemory, SummarizingChatMemory::getSummaryCount)
+                        .tags("outcome", "success").register(registry);
+                FunctionCounter.builder(MEMORY_SUMMARIES, summarizingChatMemory, SummarizingChatMemory::getFailureCount)
+                        .tags("outcome", "error").register(registry);
+            }
+        };
+    }
+}
@@ -1,43 +1,202 @@
 package org.alanzheng.demo.springaidemo.config;
 
+import io.netty.channel.ChannelOption;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.BufferingClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executors;
 
 /**
  * RestClient配置类
- * 配置HTTP请求拦截器，用于记录请求和响应详情
+ * 配置调用模型接口的HTTP传输层（连接池、keep-alive、HTTP/2）和请求日志拦截器。
+ * 同步调用（chat、embedding）走RestClient，流式调用走WebClient，两者都复用已建立的TLS连接。
  */
 @Slf4j
 @Configuration
 public class RestClientConfig {
     
+    /**
+     * RestClient传输实现：jdk（JDK HttpClient，优先HTTP/2）或apache（Apache HttpClient 5，HTTP/1.1连接池）
+     */
+    @Value("${spring.ai.http.transport:jdk}")
+    private String transport;
+    
+    @Value("${spring.ai.http.connect-timeout:30s}")
+    private Duration connectTimeout;
+    
+    @Value("${spring.ai.http.read-timeout:60s}")
+    private Duration readTimeout;
+    
+    @Value("${spring.ai.http.max-connections:200}")
+    private int maxConnections;
+    
+    @Value("${spring.ai.http.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+    
+    /**
+     * WebClient（流式和响应式调用）每个地址的最大连接数，HTTP/1.1下每个进行中的流式回复独占一个连接
+     */
+    @Value("${spring.ai.http.stream.max-connections:${spring.ai.http.max-connections-per-route:50}}")
+    private int maxStreamConnections;
+    
+    @Value("${spring.ai.http.keep-alive:60s}")
+    private Duration keepAlive;
+    
+    /**
+     * 是否以虚拟线程处理请求（spring.threads.virtual.enabled），开启时JDK HttpClient的内部任务也使用虚拟线程
+     */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    
+    @Value("${spring.ai.http.logging.mode:summary}")
+    private String loggingMode;
+    
+    @Value("${spring.ai.http.logging.sample-rate:1.0}")
+    private double loggingSampleRate;
+    
+    @Value("${spring.ai.http.logging.max-body-bytes:2048}")
+    private int loggingMaxBodyBytes;
+    
+    @Value("${spring.ai.http.logging.queue-capacity:1024}")
+    private int loggingQueueCapacity;
+    
+    /**
+     * 配置HTTP请求日志拦截器
+     * 
+     * @return HTTP请求日志拦截器，容器关闭时停止日志线程
+     */
+    @Bean
+    public HttpLoggingInterceptor httpLoggingInterceptor() {
+        HttpLoggingInterceptor.Mode mode = HttpLoggingInterceptor.Mode.valueOf(loggingMode.trim().toUpperCase(Locale.ROOT));
+        log.info("初始化HTTP请求日志拦截器，模式: {}，采样率: {}，请求体最多记录: {}字节", 
+                mode, loggingSampleRate, loggingMaxBodyBytes);
+        return new HttpLoggingInterceptor(mode, loggingSampleRate, loggingMaxBodyBytes, loggingQueueCapacity);
+    }
+    
     /**
      * 配置RestClient拦截器
      * 用于记录Spring AI向阿里云发送的HTTP请求详情
      */
     @Bean
-    public RestClientCustomizer restClientCustomizer() {
+    public RestClientCustomizer restClientCustomizer(HttpLoggingInterceptor httpLoggingInterceptor) {
         log.info("初始化RestClient拦截器，用于记录HTTP请求详情");
+        ClientHttpRequestFactory requestFactory = pooledClientHttpRequestFactory();
         
         return restClientBuilder -> restClientBuilder
-                .requestFactory(bufferingClientHttpRequestFactory())
-                .requestInterceptor(new HttpLoggingInterceptor());
+                .requestFactory(requestFactory)
+                .requestInterceptor(httpLoggingInterceptor);
+    }
+    
+    /**
+     * 配置WebClient连接池
+     * 流式回复使用WebClient（Reactor Netty），每个目标地址一个连接池
+     */
+    @Bean
+    public WebClientCustomizer webClientCustomizer() {
+        log.info("初始化WebClient连接池，每个地址最大连接数: {}，空闲保持: {}", maxStreamConnections, keepAlive);
+        ConnectionProvider provider = ConnectionProvider.builder("spring-ai")
+                .maxConnections(maxStreamConnections)
+                .maxIdleTime(keepAlive)
+                .pendingAcquireTimeout(connectTimeout)
+                .evictInBackground(keepAlive)
+                .build();
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(readTimeout);
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(httpClient);
+        
+        return webClientBuilder -> webClientBuilder.clientConnector(connector);
+    }
+    
+    /**
+     * 创建带连接池的请求工厂
+     * 不再包装BufferingClientHttpRequestFactory：日志拦截器只读取请求体，响应体直接流式读取
+     */
+    private ClientHttpRequestFactory pooledClientHttpRequestFactory() {
+        if ("apache".equalsIgnoreCase(transport)) {
+            return apacheClientHttpRequestFactory();
+        }
+        if (!"jdk".equalsIgnoreCase(transport)) {
+            throw new IllegalArgumentException("不支持的HTTP传输实现: " + transport + "，可选值: jdk、apache");
+        }
+        return jdkClientHttpRequestFactory();
     }
     
     /**
-     * 创建支持缓冲的请求工厂
-     * 允许多次读取请求和响应体
+     * JDK HttpClient：TLS握手时通过ALPN协商HTTP/2，多个并发请求复用同一连接；
+     * 服务端不支持时回退到HTTP/1.1，连接由JDK内置连接池保持
      */
-    private ClientHttpRequestFactory bufferingClientHttpRequestFactory() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(30000); // 30秒连接超时
-        factory.setReadTimeout(60000);    // 60秒读取超时
-        return new BufferingClientHttpRequestFactory(factory);
+    private ClientHttpRequestFactory jdkClientHttpRequestFactory() {
+        // JDK连接池参数只能通过系统属性配置，且在首次创建HttpClient时读取；已显式设置的不覆盖
+        setPropertyIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAlive.toSeconds()));
+        setPropertyIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(maxConnections));
+        
+        java.net.http.HttpClient.Builder builder = java.net.http.HttpClient.newBuilder()
+                .version(java.net.http.HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(java.net.http.HttpClient.Redirect.NORMAL);
+        if (virtualThreads) {
+            // 默认的缓存线程池会随并发请求数增长平台线程，虚拟线程下改为每个任务一个虚拟线程
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        java.net.http.HttpClient httpClient = builder.build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(readTimeout);
+        
+        log.info("使用JDK HttpClient传输（HTTP/2优先），连接超时: {}，读取超时: {}，keep-alive: {}，虚拟线程: {}", 
+                connectTimeout, readTimeout, keepAlive, virtualThreads);
+        return factory;
+    }
+    
+    /**
+     * Apache HttpClient 5：HTTP/1.1连接池，可限制总连接数和每个目标地址的连接数
+     */
+    private ClientHttpRequestFactory apacheClientHttpRequestFactory() {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(5))
+                        .build())
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(TimeValue.of(keepAlive))
+                .evictExpiredConnections()
+                .build();
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        factory.setConnectionRequestTimeout(connectTimeout);
+        
+        log.info("使用Apache HttpClient传输，最大连接数: {}，每个地址最大连接数: {}，空闲保持: {}", 
+                maxConnections, maxConnectionsPerRoute, keepAlive);
+        return factory;
+    }
+    
+    private static void setPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
     }
 }
-
@@ -0,0 +1,89 @@
+package org.alanzheng.demo.springaidemo.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.tool.ParallelToolCallingManager;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工具调用配置类
+ * 替换Spring AI默认的ToolCallingManager，模型在同一轮请求多个工具时并行执行
+ */
+@Slf4j
+@Configuration
+public class ToolCallingConfig {
+    
+    @Value("${spring.ai.agent.tools.execution:parallel}")
+    private String execution;
+    
+    @Value("${spring.ai.agent.tools.parallelism:4}")
+    private int parallelism;
+    
+    @Value("${spring.ai.agent.tools.queue-capacity:100}")
+    private int queueCapacity;
+    
+    @Value("${spring.ai.agent.tools.timeout:30s}")
+    private Duration timeout;
+    
+    /**
+     * 创建工具调用管理器
+     * 解析工具定义和顺序执行仍由默认实现完成，观测与默认实现一致
+     * 
+     * @param toolCallbackResolver 工具回调解析器
+     * @param exceptionProcessor 工具执行异常处理器
+     * @param observationRegistry 观测注册表，未配置时不记录观测
+     * @param aiMetrics AI调用指标
+     * @return 工具调用管理器
+     */
+    @Bean
+    public ToolCallingManager toolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                                 ToolExecutionExceptionProcessor exceptionProcessor,
+                                                 ObjectProvider<ObservationRegistry> observationRegistry,
+                                                 AiMetrics aiMetrics) {
+        boolean parallel = !"sequential".equalsIgnoreCase(execution.trim());
+        ObservationRegistry registry = observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP);
+        ToolCallingManager delegate = DefaultToolCallingManager.builder()
+                .observationRegistry(registry)
+                .toolCallbackResolver(toolCallbackResolver)
+                .toolExecutionExceptionProcessor(exceptionProcessor)
+                .build();
+        
+        log.info("初始化工具调用管理器，执行方式: {}，并行度: {}，单个工具超时: {}ms",
+                parallel ? "parallel" : "sequential", parallelism, timeout.toMillis());
+        return new ParallelToolCallingManager(delegate, toolCallbackResolver, exceptionProcessor,
+                toolExecutor(), timeout, parallel, aiMetrics, registry);
+    }
+    
+    /**
+     * 创建执行工具调用的线程池，不注册为Bean，避免替换Spring Boot默认的任务执行器
+     * 队列满时拒绝任务，由工具调用管理器把拒绝作为该工具的错误结果交给模型，
+     * 不在调用线程上执行，否则这类调用不受超时约束
+     */
+    private ExecutorService toolExecutor() {
+        int workers = Math.max(1, parallelism);
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "agent-tool-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
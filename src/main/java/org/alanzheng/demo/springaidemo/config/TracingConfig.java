@@ -0,0 +1,70 @@
+package org.alanzheng.demo.springaidemo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.tracing.Tracer;
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.tracing.JsonFileSpanExporter;
+import org.alanzheng.demo.springaidemo.tracing.RecentTraceStore;
+import org.alanzheng.demo.springaidemo.tracing.StageTracer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * 追踪配置类
+ * Spring Boot通过Micrometer Tracing的OpenTelemetry桥接创建Tracer，HTTP请求、模型调用自动生成span；
+ * 这里注册阶段追踪，以及两个SpanExporter：内存中的最近trace（供/api/traces查询）和可选的JSON Lines文件
+ */
+@Slf4j
+@Configuration
+public class TracingConfig {
+    
+    @Value("${spring.ai.tracing.memory.max-traces:200}")
+    private int maxTraces;
+    
+    @Value("${spring.ai.tracing.file.path:./logs/spans.jsonl}")
+    private String spanFilePath;
+    
+    /**
+     * 配置阶段追踪
+     * 没有Tracer时（如关闭了tracing）退化为不记录
+     * 
+     * @param tracer Micrometer Tracer
+     * @return 阶段追踪
+     */
+    @Bean
+    public StageTracer stageTracer(ObjectProvider<Tracer> tracer) {
+        Tracer available = tracer.getIfAvailable(() -> Tracer.NOOP);
+        log.info("初始化阶段追踪，Tracer: {}", available.getClass().getSimpleName());
+        return new StageTracer(available);
+    }
+    
+    /**
+     * 配置内存中的最近trace
+     * 
+     * @return 最近trace存储，同时作为SpanExporter
+     */
+    @Bean
+    public RecentTraceStore recentTraceStore() {
+        log.info("初始化内存trace存储，最多保留trace数: {}", maxTraces);
+        return new RecentTraceStore(maxTraces);
+    }
+    
+    /**
+     * 配置span文件导出
+     * spring.ai.tracing.file.enabled=true时启用
+     * 
+     * @param objectMapper JSON序列化
+     * @return JSON Lines文件SpanExporter
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spring.ai.tracing.file.enabled", havingValue = "true")
+    public JsonFileSpanExporter jsonFileSpanExporter(ObjectMapper objectMapper) {
+        log.info("初始化span文件导出，路径: {}", spanFilePath);
+        return new JsonFileSpanExporter(Paths.get(spanFilePath), objectMapper);
+    }
+}
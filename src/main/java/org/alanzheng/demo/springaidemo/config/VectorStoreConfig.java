@@ -1,6 +1,11 @@
 package org.alanzheng.demo.springaidemo.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.embedding.QueryCachingEmbeddingModel;
+import org.alanzheng.demo.springaidemo.embedding.QueryEmbeddingCache;
+import org.alanzheng.demo.springaidemo.ingest.KnowledgeBaseManifest;
+import org.alanzheng.demo.springaidemo.vectorstore.HnswVectorStore;
+import org.alanzheng.demo.springaidemo.vectorstore.MappedVectorStore;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.transformer.splitter.TextSplitter;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
@@ -10,6 +15,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Paths;
 import java.util.Objects;
 
 /**
@@ -20,15 +26,30 @@ import java.util.Objects;
 @Configuration
 public class VectorStoreConfig {
     
+    @Value("${spring.ai.rag.vector-store.type:mapped}")
+    private String vectorStoreType;
+    
     @Value("${spring.ai.rag.vector-store.path:./vector-store}")
     private String vectorStorePath;
     
+    @Value("${spring.ai.rag.vector-store.segment-rows:16384}")
+    private int segmentRows;
+    
+    @Value("${spring.ai.rag.vector-store.compaction-ratio:0.3}")
+    private double compactionRatio;
+    
+    @Value("${spring.ai.rag.vector-store.hnsw.m:16}")
+    private int hnswM;
+    
+    @Value("${spring.ai.rag.vector-store.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+    
+    @Value("${spring.ai.rag.vector-store.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+    
     @Value("${spring.ai.rag.chunk-size:1000}")
     private int chunkSize;
     
-    @Value("${spring.ai.rag.chunk-overlap:200}")
-    private int chunkOverlap;
-    
     /**
      * 配置文本分割器
      * 用于将长文档分割成较小的块，便于向量化和检索
@@ -37,33 +58,68 @@ public class VectorStoreConfig {
      */
     @Bean
     public TextSplitter textSplitter() {
-        log.info("初始化文本分割器，块大小: {}，重叠大小: {}", chunkSize, chunkOverlap);
-        // TokenTextSplitter构造函数参数：chunkSize, chunkOverlap, maxChunkSize, minChunkSize, keepSeparator
-        return new TokenTextSplitter(chunkSize, chunkOverlap, chunkSize * 2, chunkSize / 2, false);
+        log.info("初始化文本分割器，块大小: {}", chunkSize);
+        // TokenTextSplitter构造函数参数：chunkSize（token数）, minChunkSizeChars, minChunkLengthToEmbed, maxNumChunks, keepSeparator
+        // TokenTextSplitter不支持块重叠，因此不提供重叠配置
+        return new TokenTextSplitter(chunkSize, 350, 5, 10000, true);
     }
     
     /**
      * 配置向量存储
-     * 使用SimpleVectorStore作为内存向量存储
+     * mapped：内存映射文件持久化存储（默认），检索为精确扫描
+     * hnsw：在内存映射存储之上构建HNSW近似最近邻索引
+     * simple：SimpleVectorStore内存存储，应用重启后数据会丢失
+     * 存储自行嵌入查询文本时走查询向量缓存，与RagService事先计算的查询向量共享，不写入磁盘缓存
      * 
-     * @param embeddingModel 嵌入模型
+     * @param cachingEmbeddingModel 嵌入模型
+     * @param queryEmbeddingCache 查询向量缓存
      * @return 向量存储
      */
     @Bean
-    public VectorStore vectorStore(EmbeddingModel embeddingModel) {
-        Objects.requireNonNull(embeddingModel, "EmbeddingModel不能为空");
+    public VectorStore vectorStore(EmbeddingModel cachingEmbeddingModel, QueryEmbeddingCache queryEmbeddingCache) {
+        Objects.requireNonNull(cachingEmbeddingModel, "EmbeddingModel不能为空");
+        EmbeddingModel embeddingModel = new QueryCachingEmbeddingModel(cachingEmbeddingModel, queryEmbeddingCache);
+        
+        if ("simple".equalsIgnoreCase(vectorStoreType)) {
+            log.info("初始化向量存储（内存模式）");
+            return SimpleVectorStore.builder(embeddingModel).build();
+        }
         
-        log.info("初始化向量存储（内存模式）");
+        log.info("初始化向量存储（{}模式），路径: {}，每段行数: {}", vectorStoreType, vectorStorePath, segmentRows);
         
-        // 创建SimpleVectorStore实例
-        // 注意：SimpleVectorStore是内存存储，应用重启后数据会丢失
-        // 如需持久化，可以考虑使用其他向量存储实现（如PGVector等）
-        VectorStore vectorStore = SimpleVectorStore.builder(embeddingModel)
+        MappedVectorStore mappedVectorStore = MappedVectorStore.builder(embeddingModel)
+                .path(Paths.get(vectorStorePath))
+                .rowsPerSegment(segmentRows)
+                .compactionRatio(compactionRatio)
                 .build();
         
-        log.info("向量存储初始化完成（内存模式）");
+        if ("hnsw".equalsIgnoreCase(vectorStoreType)) {
+            log.info("初始化HNSW索引，M: {}，efConstruction: {}，efSearch: {}", 
+                    hnswM, hnswEfConstruction, hnswEfSearch);
+            return HnswVectorStore.builder(mappedVectorStore)
+                    .m(hnswM)
+                    .efConstruction(hnswEfConstruction)
+                    .efSearch(hnswEfSearch)
+                    .build();
+        }
         
-        return vectorStore;
+        log.info("向量存储初始化完成（内存映射模式）");
+        
+        return mappedVectorStore;
+    }
+    
+    /**
+     * 配置知识库文件清单
+     * 持久化存储时与向量数据保存在同一目录；内存模式下清单也只保存在内存中，
+     * 保证重启后向量为空时会重新加载全部文件
+     * 
+     * @return 知识库文件清单
+     */
+    @Bean
+    public KnowledgeBaseManifest knowledgeBaseManifest() {
+        if ("simple".equalsIgnoreCase(vectorStoreType)) {
+            return new KnowledgeBaseManifest(null);
+        }
+        return new KnowledgeBaseManifest(Paths.get(vectorStorePath, "manifest.json"));
     }
 }
-
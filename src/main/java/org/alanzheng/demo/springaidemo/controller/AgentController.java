@@ -7,8 +7,11 @@ import org.alanzheng.demo.springaidemo.dto.AgentRequest;
 import org.alanzheng.demo.springaidemo.dto.ChatResponse;
 import org.alanzheng.demo.springaidemo.service.AgentService;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.Objects;
 import java.util.UUID;
@@ -57,6 +60,22 @@ public class AgentController {
         }
     }
     
+    /**
+     * Agent 流式对话接口（SSE）
+     * 
+     * @param message 用户消息
+     * @param systemPrompt 自定义系统提示词，可选
+     * @param conversationId 对话ID，可选，传入时使用该对话的会话记忆
+     * @return Agent 回复片段事件流
+     */
+    @GetMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamChat(@RequestParam String message,
+                                                    @RequestParam(required = false) String systemPrompt,
+                                                    @RequestParam(required = false) String conversationId) {
+        log.info("收到Agent流式对话请求，消息: {}，对话ID: {}", truncateMessage(message), conversationId);
+        return ServerSentEvents.of(agentService.chatStream(systemPrompt, message, conversationId));
+    }
+    
     /**
      * Agent 标准对话接口（POST方式）
      * 
@@ -77,18 +96,18 @@ public class AgentController {
         }
         
         try {
+            // 同一对话ID的请求共享会话记忆；未传入时为无状态对话，不创建会话记忆，响应中也不返回对话ID
+            String conversationId = StringUtils.isNotBlank(request.getConversationId()) 
+                    ? request.getConversationId() 
+                    : null;
+            
             String reply;
             if (StringUtils.isNotBlank(request.getSystemPrompt())) {
-                reply = agentService.chatWithSystemPrompt(request.getSystemPrompt(), request.getMessage());
+                reply = agentService.chatWithSystemPrompt(request.getSystemPrompt(), request.getMessage(), conversationId);
             } else {
-                reply = agentService.chat(request.getMessage());
+                reply = agentService.chat(request.getMessage(), conversationId);
             }
             
-            // 生成或使用现有的对话ID
-            String conversationId = StringUtils.isNotBlank(request.getConversationId()) 
-                    ? request.getConversationId() 
-                    : UUID.randomUUID().toString();
-            
             ChatResponse response = ChatResponse.builder()
                     .reply(reply)
                     .conversationId(conversationId)
@@ -167,6 +186,7 @@ public class AgentController {
                     ))
                     .tools(java.util.Arrays.asList(
                             "loadAllDocuments - 加载所有文档",
+                            "syncDocuments - 增量同步知识库",
                             "loadDocument - 加载指定文档",
                             "answerQuestion - 基于知识库回答问题",
                             "searchDocuments - 检索相关文档"
@@ -1,24 +1,36 @@
 package org.alanzheng.demo.springaidemo.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.cache.SemanticAnswerCache;
 import org.alanzheng.demo.springaidemo.dto.ActorsFilms;
+import org.alanzheng.demo.springaidemo.dto.BatchItemResult;
 import org.alanzheng.demo.springaidemo.dto.ChatRequest;
 import org.alanzheng.demo.springaidemo.dto.ChatResponse;
 import org.alanzheng.demo.springaidemo.dto.DocumentInfo;
+import org.alanzheng.demo.springaidemo.dto.IndexRecallReport;
 import org.alanzheng.demo.springaidemo.dto.RagRequest;
+import org.alanzheng.demo.springaidemo.dto.SemanticCacheStats;
 import org.alanzheng.demo.springaidemo.dto.StructuredResponse;
+import org.alanzheng.demo.springaidemo.dto.SyncResult;
+import org.alanzheng.demo.springaidemo.dto.WeatherBatchRequest;
 import org.alanzheng.demo.springaidemo.dto.WeatherInfo;
 import org.alanzheng.demo.springaidemo.service.ChatbotService;
 import org.alanzheng.demo.springaidemo.service.DocumentService;
 import org.alanzheng.demo.springaidemo.service.RagService;
 import org.alanzheng.demo.springaidemo.service.StructuredOutputService;
+import org.alanzheng.demo.springaidemo.vectorstore.HnswVectorStore;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -36,22 +48,32 @@ public class ChatController {
     private final RagService ragService;
     private final DocumentService documentService;
     private final VectorStore vectorStore;
+    private final SemanticAnswerCache answerCache;
+    
+    @Value("${spring.ai.rag.top-k:4}")
+    private int defaultTopK;
+    
+    @Value("${spring.ai.rag.similarity-threshold:0.0}")
+    private double defaultSimilarityThreshold;
     
     public ChatController(ChatbotService chatbotService, 
                          StructuredOutputService structuredOutputService,
                          RagService ragService,
                          DocumentService documentService,
-                         VectorStore vectorStore) {
+                         VectorStore vectorStore,
+                         SemanticAnswerCache answerCache) {
         Objects.requireNonNull(chatbotService, "ChatbotService不能为空");
         Objects.requireNonNull(structuredOutputService, "StructuredOutputService不能为空");
         Objects.requireNonNull(ragService, "RagService不能为空");
         Objects.requireNonNull(documentService, "DocumentService不能为空");
         Objects.requireNonNull(vectorStore, "VectorStore不能为空");
+        Objects.requireNonNull(answerCache, "SemanticAnswerCache不能为空");
         this.chatbotService = chatbotService;
         this.structuredOutputService = structuredOutputService;
         this.ragService = ragService;
         this.documentService = documentService;
         this.vectorStore = vectorStore;
+        this.answerCache = answerCache;
     }
     
     /**
@@ -83,6 +105,21 @@ public class ChatController {
         }
     }
     
+    /**
+     * 流式聊天接口（SSE）
+     * 回复片段逐个推送，结束时推送done事件，出错时推送error事件
+     * 
+     * @param message 用户消息
+     * @param conversationId 对话ID，可选，传入时使用该对话的会话记忆
+     * @return 回复片段事件流
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamChat(@RequestParam String message,
+                                                    @RequestParam(required = false) String conversationId) {
+        log.info("收到流式聊天请求，消息: {}，对话ID: {}", message, conversationId);
+        return ServerSentEvents.of(chatbotService.chatStream(message, conversationId));
+    }
+    
     /**
      * 标准聊天接口
      * 
@@ -103,12 +140,12 @@ public class ChatController {
         }
         
         try {
-            String reply = chatbotService.chat(request.getMessage());
-            
-            // 生成或使用现有的对话ID
+            // 同一对话ID的请求共享会话记忆；未传入时为无状态对话，不创建会话记忆，响应中也不返回对话ID
             String conversationId = StringUtils.isNotBlank(request.getConversationId()) 
                     ? request.getConversationId() 
-                    : UUID.randomUUID().toString();
+                    : null;
+            
+            String reply = chatbotService.chat(request.getMessage(), conversationId);
             
             ChatResponse response = ChatResponse.builder()
                     .reply(reply)
@@ -217,6 +254,28 @@ public class ChatController {
         }
     }
     
+    /**
+     * 流式结构化输出：逐部推送演员的电影
+     * 每部电影在生成的JSON中一结束就作为一个事件推送，输出不符合Schema时提前中止生成并重试
+     * 
+     * @param actorName 演员姓名
+     * @param movieCount 电影数量（默认5部）
+     * @param maxRetryAttempts 最大重试次数（默认3次）
+     * @return SSE事件流，每个事件的数据为{"t": 电影名称}
+     */
+    @GetMapping(value = "/structured/actors-films/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamActorsFilms(
+            @RequestParam String actorName,
+            @RequestParam(defaultValue = "5") int movieCount,
+            @RequestParam(defaultValue = "3") int maxRetryAttempts) {
+        log.info("收到流式获取演员电影列表请求，演员: {}，数量: {}，最大重试次数: {}", actorName, movieCount, maxRetryAttempts);
+        if (StringUtils.isBlank(actorName)) {
+            log.warn("流式获取演员电影列表请求参数验证失败，演员姓名为空");
+            return Flux.just(ServerSentEvents.error("演员姓名不能为空"));
+        }
+        return ServerSentEvents.of(structuredOutputService.streamActorsFilms(actorName, movieCount, maxRetryAttempts));
+    }
+    
     /**
      * 结构化输出 + Advisors API示例：获取天气信息
      * 演示Spring AI的结构化输出和Advisors API的结合使用
@@ -282,6 +341,70 @@ public class ChatController {
         }
     }
     
+    /**
+     * 批量获取天气信息
+     * 多个城市/月份合并到少量模型请求中并发执行，每条输入各自返回结果或错误
+     * 
+     * @param request 批量天气查询请求
+     * @return 结构化响应，包含与输入顺序一致的结果列表
+     */
+    @PostMapping("/structured/weather/batch")
+    public ResponseEntity<StructuredResponse<List<BatchItemResult<WeatherInfo>>>> getWeatherInfoBatch(
+            @RequestBody WeatherBatchRequest request) {
+        
+        long startTime = System.currentTimeMillis();
+        int size = Objects.nonNull(request) && Objects.nonNull(request.getItems()) ? request.getItems().size() : 0;
+        log.info("收到批量获取天气信息请求，条数: {}", size);
+        
+        if (size == 0) {
+            log.warn("批量获取天气信息请求参数验证失败，查询条件为空");
+            StructuredResponse<List<BatchItemResult<WeatherInfo>>> errorResponse = 
+                    StructuredResponse.<List<BatchItemResult<WeatherInfo>>>builder()
+                    .success(false)
+                    .errorMessage("查询条件不能为空")
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        
+        int maxRetryAttempts = Objects.nonNull(request.getMaxRetryAttempts()) ? request.getMaxRetryAttempts() : 3;
+        try {
+            List<BatchItemResult<WeatherInfo>> results = 
+                    structuredOutputService.getWeatherInfoBatch(request.getItems(), maxRetryAttempts);
+            
+            StructuredResponse<List<BatchItemResult<WeatherInfo>>> response = 
+                    StructuredResponse.<List<BatchItemResult<WeatherInfo>>>builder()
+                    .data(results)
+                    .success(true)
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            
+            long duration = System.currentTimeMillis() - startTime;
+            log.info("批量获取天气信息请求处理成功，总耗时: {}ms，条数: {}", duration, size);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("批量获取天气信息请求参数验证失败: {}", e.getMessage());
+            StructuredResponse<List<BatchItemResult<WeatherInfo>>> errorResponse = 
+                    StructuredResponse.<List<BatchItemResult<WeatherInfo>>>builder()
+                    .success(false)
+                    .errorMessage(e.getMessage())
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            log.error("批量获取天气信息请求处理失败，总耗时: {}ms，错误信息: {}", duration, e.getMessage(), e);
+            
+            StructuredResponse<List<BatchItemResult<WeatherInfo>>> errorResponse = 
+                    StructuredResponse.<List<BatchItemResult<WeatherInfo>>>builder()
+                    .success(false)
+                    .errorMessage("处理请求时发生错误: " + e.getMessage())
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+    
     /**
      * RAG问答接口
      * 基于知识库检索并回答问题
@@ -302,16 +425,12 @@ public class ChatController {
         
         try {
             String question = request.getQuestion();
-            Integer topK = Objects.nonNull(request.getTopK()) ? request.getTopK() : null;
-            Double similarityThreshold = Objects.nonNull(request.getSimilarityThreshold()) 
-                    ? request.getSimilarityThreshold() : null;
+            // 两个参数各自独立地使用默认配置
+            int topK = Objects.nonNull(request.getTopK()) ? request.getTopK() : defaultTopK;
+            double similarityThreshold = Objects.nonNull(request.getSimilarityThreshold()) 
+                    ? request.getSimilarityThreshold() : defaultSimilarityThreshold;
             
-            String answer;
-            if (Objects.nonNull(topK) && Objects.nonNull(similarityThreshold)) {
-                answer = ragService.answer(question, topK, similarityThreshold);
-            } else {
-                answer = ragService.answer(question);
-            }
+            String answer = ragService.answer(question, topK, similarityThreshold);
             
             String conversationId = UUID.randomUUID().toString();
             ChatResponse response = ChatResponse.builder()
@@ -359,6 +478,28 @@ public class ChatController {
         }
     }
     
+    /**
+     * 流式RAG问答接口（SSE）
+     * 
+     * @param question 用户问题
+     * @param topK 检索的文档数量，为空时使用默认配置
+     * @param similarityThreshold 相似度阈值，为空时使用默认配置
+     * @return 回答片段事件流
+     */
+    @GetMapping(value = "/rag/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> ragAnswerStream(@RequestParam String question,
+                                                         @RequestParam(required = false) Integer topK,
+                                                         @RequestParam(required = false) Double similarityThreshold) {
+        log.info("收到流式RAG问答请求，问题: {}，topK: {}，相似度阈值: {}", question, topK, similarityThreshold);
+        if (StringUtils.isBlank(question)) {
+            log.warn("流式RAG问答请求参数验证失败，问题为空");
+            return Flux.just(ServerSentEvents.error("问题不能为空"));
+        }
+        return ServerSentEvents.of(ragService.answerStream(question,
+                Objects.nonNull(topK) ? topK : defaultTopK,
+                Objects.nonNull(similarityThreshold) ? similarityThreshold : defaultSimilarityThreshold));
+    }
+    
     /**
      * 测试上传接口：上传一句话到向量存储
      * 用于测试向量化和存储功能是否正常
@@ -389,7 +530,7 @@ public class ChatController {
             document.getMetadata().put("timestamp", System.currentTimeMillis());
             
             // 上传到向量存储（会自动调用阿里云 Embedding API 进行向量化）
-            vectorStore.add(Collections.singletonList(document));
+            documentService.addDocuments(Collections.singletonList(document));
             
             StructuredResponse<String> response = StructuredResponse.<String>builder()
                     .data("文本上传成功！已向量化并存储到阿里云")
@@ -449,6 +590,43 @@ public class ChatController {
         }
     }
     
+    /**
+     * 增量同步知识库接口
+     * 只重新加载新增或修改的文件，并删除已删除文件对应的文档
+     * 
+     * @return 同步结果
+     */
+    @PostMapping("/rag/sync")
+    public ResponseEntity<StructuredResponse<SyncResult>> syncDocuments() {
+        long startTime = System.currentTimeMillis();
+        log.info("收到增量同步知识库请求");
+        
+        try {
+            SyncResult result = documentService.syncDocuments();
+            
+            StructuredResponse<SyncResult> response = StructuredResponse.<SyncResult>builder()
+                    .data(result)
+                    .success(true)
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            
+            long duration = System.currentTimeMillis() - startTime;
+            log.info("增量同步知识库请求处理成功，总耗时: {}ms，写入文档块数: {}，删除文档块数: {}", 
+                    duration, result.getDocumentsWritten(), result.getDocumentsDeleted());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            log.error("增量同步知识库请求处理失败，总耗时: {}ms，错误信息: {}", duration, e.getMessage(), e);
+            
+            StructuredResponse<SyncResult> errorResponse = StructuredResponse.<SyncResult>builder()
+                    .success(false)
+                    .errorMessage("处理请求时发生错误: " + e.getMessage())
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+    
     /**
      * 加载单个文档接口
      * 
@@ -556,5 +734,76 @@ public class ChatController {
             return ResponseEntity.internalServerError().body(errorResponse);
         }
     }
+    
+    /**
+     * HNSW索引召回率报告接口
+     * 对比HNSW近似检索与精确扫描的召回率和延迟
+     * 
+     * @param sampleSize 采样查询数量（默认100）
+     * @param topK 每次检索返回的文档数量（默认4）
+     * @return 召回率与延迟报告
+     */
+    @GetMapping("/rag/index/report")
+    public ResponseEntity<StructuredResponse<IndexRecallReport>> getIndexRecallReport(
+            @RequestParam(defaultValue = "100") int sampleSize,
+            @RequestParam(defaultValue = "4") int topK) {
+        
+        long startTime = System.currentTimeMillis();
+        log.info("收到HNSW索引召回率报告请求，采样数量: {}，topK: {}", sampleSize, topK);
+        
+        if (!(vectorStore instanceof HnswVectorStore hnswVectorStore)) {
+            log.warn("当前向量存储不是HNSW索引: {}", vectorStore.getName());
+            StructuredResponse<IndexRecallReport> errorResponse = StructuredResponse.<IndexRecallReport>builder()
+                    .success(false)
+                    .errorMessage("当前向量存储不是HNSW索引，请设置 spring.ai.rag.vector-store.type=hnsw")
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        
+        try {
+            IndexRecallReport report = hnswVectorStore.evaluateRecall(sampleSize, topK);
+            
+            StructuredResponse<IndexRecallReport> response = StructuredResponse.<IndexRecallReport>builder()
+                    .data(report)
+                    .success(true)
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            
+            long duration = System.currentTimeMillis() - startTime;
+            log.info("HNSW索引召回率报告生成成功，总耗时: {}ms，索引大小: {}", duration, report.getIndexSize());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            log.error("HNSW索引召回率报告生成失败，总耗时: {}ms，错误信息: {}", duration, e.getMessage(), e);
+            
+            StructuredResponse<IndexRecallReport> errorResponse = StructuredResponse.<IndexRecallReport>builder()
+                    .success(false)
+                    .errorMessage("处理请求时发生错误: " + e.getMessage())
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+    
+    /**
+     * 语义答案缓存统计接口
+     * 
+     * @return 命中率、淘汰和失效次数等统计信息
+     */
+    @GetMapping("/rag/cache/stats")
+    public ResponseEntity<StructuredResponse<SemanticCacheStats>> getAnswerCacheStats() {
+        log.info("收到语义答案缓存统计请求");
+        
+        SemanticCacheStats stats = answerCache.stats();
+        StructuredResponse<SemanticCacheStats> response = StructuredResponse.<SemanticCacheStats>builder()
+                .data(stats)
+                .success(true)
+                .timestamp(System.currentTimeMillis())
+                .build();
+        
+        log.info("语义答案缓存统计：条目数: {}，命中: {}，未命中: {}", 
+                stats.getSize(), stats.getHitCount(), stats.getMissCount());
+        return ResponseEntity.ok(response);
+    }
 }
-
@@ -304,6 +304,14 @@ public class McpController {
                 .returnType("String")
                 .build());
         
+        // syncDocuments 工具
+        tools.add(ToolInfo.builder()
+                .name("syncDocuments")
+                .description("增量同步知识库到向量存储。只处理新增、修改和删除的文件，未变化的文件不会重新嵌入。返回同步结果摘要。")
+                .parameters(Collections.emptyList())
+                .returnType("String")
+                .build());
+        
         // loadDocument 工具
         tools.add(ToolInfo.builder()
                 .name("loadDocument")
@@ -0,0 +1,198 @@
+package org.alanzheng.demo.springaidemo.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.dto.AgentRequest;
+import org.alanzheng.demo.springaidemo.dto.ChatRequest;
+import org.alanzheng.demo.springaidemo.dto.ChatResponse;
+import org.alanzheng.demo.springaidemo.dto.DocumentInfo;
+import org.alanzheng.demo.springaidemo.dto.RagRequest;
+import org.alanzheng.demo.springaidemo.dto.StructuredResponse;
+import org.alanzheng.demo.springaidemo.service.ReactiveAgentService;
+import org.alanzheng.demo.springaidemo.service.ReactiveChatbotService;
+import org.alanzheng.demo.springaidemo.service.ReactiveRagService;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * 响应式聊天控制器
+ * 对话、RAG和Agent接口的非阻塞版本，返回Mono/Flux。
+ * 应用运行在Servlet容器上，Spring MVC以异步请求处理Mono/Flux：Tomcat线程在返回Mono后即释放，
+ * 等待模型期间请求不占用任何线程，结果就绪后再异步写回响应
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/reactive")
+public class ReactiveChatController {
+    
+    private final ReactiveChatbotService chatbotService;
+    private final ReactiveRagService ragService;
+    private final ReactiveAgentService agentService;
+    
+    @Value("${spring.ai.rag.top-k:4}")
+    private int defaultTopK;
+    
+    @Value("${spring.ai.rag.similarity-threshold:0.0}")
+    private double defaultSimilarityThreshold;
+    
+    public ReactiveChatController(ReactiveChatbotService chatbotService,
+                                  ReactiveRagService ragService,
+                                  ReactiveAgentService agentService) {
+        Objects.requireNonNull(chatbotService, "ReactiveChatbotService不能为空");
+        Objects.requireNonNull(ragService, "ReactiveRagService不能为空");
+        Objects.requireNonNull(agentService, "ReactiveAgentService不能为空");
+        this.chatbotService = chatbotService;
+        this.ragService = ragService;
+        this.agentService = agentService;
+    }
+    
+    /**
+     * 标准聊天接口
+     * 
+     * @param request 聊天请求
+     * @return 聊天响应
+     */
+    @PostMapping("/chat")
+    public Mono<ResponseEntity<ChatResponse>> chat(@RequestBody ChatRequest request) {
+        if (Objects.isNull(request) || StringUtils.isBlank(request.getMessage())) {
+            log.warn("响应式聊天请求参数验证失败，请求对象或消息为空");
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        String conversationId = conversationId(request.getConversationId());
+        return reply("响应式聊天", chatbotService.chat(request.getMessage(), conversationId), conversationId);
+    }
+    
+    /**
+     * RAG问答接口
+     * 
+     * @param request RAG请求
+     * @return AI回答
+     */
+    @PostMapping("/chat/rag")
+    public Mono<ResponseEntity<ChatResponse>> ragAnswer(@RequestBody RagRequest request) {
+        if (Objects.isNull(request) || StringUtils.isBlank(request.getQuestion())) {
+            log.warn("响应式RAG问答请求参数验证失败，请求对象或问题为空");
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        Mono<String> answer = ragService.answer(request.getQuestion(),
+                Objects.nonNull(request.getTopK()) ? request.getTopK() : defaultTopK,
+                Objects.nonNull(request.getSimilarityThreshold()) ? request.getSimilarityThreshold() : defaultSimilarityThreshold);
+        return reply("响应式RAG问答", answer, UUID.randomUUID().toString());
+    }
+    
+    /**
+     * 流式RAG问答接口（SSE）
+     * 
+     * @param question 用户问题
+     * @param topK 检索的文档数量，为空时使用默认配置
+     * @param similarityThreshold 相似度阈值，为空时使用默认配置
+     * @return 回答片段事件流
+     */
+    @GetMapping(value = "/chat/rag/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> ragAnswerStream(@RequestParam String question,
+                                                         @RequestParam(required = false) Integer topK,
+                                                         @RequestParam(required = false) Double similarityThreshold) {
+        return ServerSentEvents.of(ragService.answerStream(question,
+                Objects.nonNull(topK) ? topK : defaultTopK,
+                Objects.nonNull(similarityThreshold) ? similarityThreshold : defaultSimilarityThreshold));
+    }
+    
+    /**
+     * 检索文档接口
+     * 
+     * @param query 查询文本
+     * @param topK 返回的文档数量（默认4）
+     * @return 相关文档列表
+     */
+    @GetMapping("/chat/rag/search")
+    public Mono<ResponseEntity<StructuredResponse<List<DocumentInfo>>>> searchDocuments(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "4") int topK) {
+        return ragService.searchDocuments(query, topK)
+                .map(documents -> documents.stream()
+                        .map(doc -> DocumentInfo.builder()
+                                .content(doc.getText())
+                                .metadata(doc.getMetadata())
+                                .source(doc.getMetadata().getOrDefault("source", "未知来源").toString())
+                                .build())
+                        .toList())
+                .map(documentInfos -> ResponseEntity.ok(StructuredResponse.<List<DocumentInfo>>builder()
+                        .data(documentInfos)
+                        .success(true)
+                        .timestamp(System.currentTimeMillis())
+                        .build()))
+                .onErrorResume(e -> {
+                    log.error("响应式文档检索请求处理失败，错误信息: {}", e.getMessage(), e);
+                    StructuredResponse<List<DocumentInfo>> errorResponse = StructuredResponse.<List<DocumentInfo>>builder()
+                            .success(false)
+                            .errorMessage(e instanceof IllegalArgumentException
+                                    ? e.getMessage()
+                                    : "处理请求时发生错误: " + e.getMessage())
+                            .timestamp(System.currentTimeMillis())
+                            .build();
+                    return Mono.just(e instanceof IllegalArgumentException
+                            ? ResponseEntity.badRequest().body(errorResponse)
+                            : ResponseEntity.internalServerError().body(errorResponse));
+                });
+    }
+    
+    /**
+     * Agent 标准对话接口
+     * 
+     * @param request Agent 请求
+     * @return Agent 响应
+     */
+    @PostMapping("/agent/chat")
+    public Mono<ResponseEntity<ChatResponse>> agentChat(@RequestBody AgentRequest request) {
+        if (Objects.isNull(request) || StringUtils.isBlank(request.getMessage())) {
+            log.warn("响应式Agent对话请求参数验证失败，请求对象或消息为空");
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        String conversationId = conversationId(request.getConversationId());
+        return reply("响应式Agent对话",
+                agentService.chatWithSystemPrompt(request.getSystemPrompt(), request.getMessage(), conversationId),
+                conversationId);
+    }
+    
+    /**
+     * 同一对话ID的请求共享会话记忆；未传入时返回null，按无状态对话处理，不创建会话记忆
+     */
+    private static String conversationId(String requested) {
+        return StringUtils.isNotBlank(requested) ? requested : null;
+    }
+    
+    private Mono<ResponseEntity<ChatResponse>> reply(String name, Mono<String> reply, String conversationId) {
+        long startTime = System.currentTimeMillis();
+        return reply
+                .map(text -> {
+                    log.info("{}请求处理成功，总耗时: {}ms，对话ID: {}",
+                            name, System.currentTimeMillis() - startTime, conversationId);
+                    return ResponseEntity.ok(ChatResponse.builder()
+                            .reply(text)
+                            .conversationId(conversationId)
+                            .timestamp(System.currentTimeMillis())
+                            .build());
+                })
+                .onErrorResume(e -> {
+                    log.error("{}请求处理失败，总耗时: {}ms，错误信息: {}",
+                            name, System.currentTimeMillis() - startTime, e.getMessage(), e);
+                    return Mono.just(e instanceof IllegalArgumentException
+                            ? ResponseEntity.badRequest().build()
+                            : ResponseEntity.internalServerError().build());
+                });
+    }
+}
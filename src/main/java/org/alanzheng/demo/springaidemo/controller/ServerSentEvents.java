@@ -0,0 +1,51 @@
+package org.alanzheng.demo.springaidemo.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * 将回复片段流转换为SSE事件流
+ * 每个片段作为一个默认事件推送，数据为JSON对象{"t": 片段}，结束时推送done事件，出错时推送error事件后结束。
+ * 片段不直接作为data：SSE客户端会去掉data值开头的一个空格，以空格开头的片段（如" world"）会丢失空格，
+ * JSON字符串中的空白不受影响。
+ * 客户端断开时Spring MVC取消订阅，取消信号沿流向上传递到模型请求
+ */
+@Slf4j
+final class ServerSentEvents {
+
+    static final String DONE_EVENT = "done";
+    static final String ERROR_EVENT = "error";
+    static final String TOKEN_FIELD = "t";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ServerSentEvents() {
+    }
+
+    static Flux<ServerSentEvent<String>> of(Flux<String> tokens) {
+        return tokens
+                .map(token -> ServerSentEvent.builder(encode(token)).build())
+                .concatWith(Flux.just(ServerSentEvent.<String>builder().event(DONE_EVENT).data("").build()))
+                .onErrorResume(e -> Flux.just(error(e instanceof IllegalArgumentException
+                        ? e.getMessage()
+                        : "处理请求时发生错误: " + e.getMessage())));
+    }
+
+    static String encode(String token) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(Map.of(TOKEN_FIELD, token));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("序列化回复片段失败", e);
+        }
+    }
+
+    static ServerSentEvent<String> error(String message) {
+        return ServerSentEvent.<String>builder().event(ERROR_EVENT).data(message).build();
+    }
+}
@@ -0,0 +1,79 @@
+package org.alanzheng.demo.springaidemo.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.dto.StructuredResponse;
+import org.alanzheng.demo.springaidemo.dto.TraceSpanInfo;
+import org.alanzheng.demo.springaidemo.dto.TraceSummary;
+import org.alanzheng.demo.springaidemo.tracing.RecentTraceStore;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 追踪控制器
+ * 查询内存中最近的trace，按阶段展开单个请求的耗时
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/traces")
+public class TraceController {
+    
+    private final RecentTraceStore traceStore;
+    
+    public TraceController(RecentTraceStore traceStore) {
+        Objects.requireNonNull(traceStore, "RecentTraceStore不能为空");
+        this.traceStore = traceStore;
+    }
+    
+    /**
+     * 最近的trace列表，最新的在前
+     * 
+     * @param limit 返回的数量，默认20
+     * @return trace摘要列表
+     */
+    @GetMapping
+    public ResponseEntity<StructuredResponse<List<TraceSummary>>> recentTraces(
+            @RequestParam(defaultValue = "20") int limit) {
+        log.info("收到最近trace查询请求，数量: {}", limit);
+        
+        StructuredResponse<List<TraceSummary>> response = StructuredResponse.<List<TraceSummary>>builder()
+                .data(traceStore.recent(limit))
+                .success(true)
+                .timestamp(System.currentTimeMillis())
+                .build();
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 单个trace的阶段耗时分解
+     * span按开始时间排序，depth为嵌套深度，startOffsetMillis为相对请求开始的偏移，可直接绘制火焰图
+     * 
+     * @param traceId Trace ID（与日志中的traceId一致）
+     * @return span列表
+     */
+    @GetMapping("/{traceId}")
+    public ResponseEntity<StructuredResponse<List<TraceSpanInfo>>> getTrace(@PathVariable String traceId) {
+        log.info("收到trace查询请求，traceId: {}", traceId);
+        
+        List<TraceSpanInfo> spans = traceStore.trace(traceId);
+        if (spans.isEmpty()) {
+            log.warn("trace不存在或尚未导出，traceId: {}", traceId);
+            StructuredResponse<List<TraceSpanInfo>> errorResponse = StructuredResponse.<List<TraceSpanInfo>>builder()
+                    .success(false)
+                    .errorMessage("trace不存在或尚未导出: " + traceId)
+                    .timestamp(System.currentTimeMillis())
+                    .build();
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+        
+        StructuredResponse<List<TraceSpanInfo>> response = StructuredResponse.<List<TraceSpanInfo>>builder()
+                .data(spans)
+                .success(true)
+                .timestamp(System.currentTimeMillis())
+                .build();
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,36 @@
+package org.alanzheng.demo.springaidemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量请求中单条输入的结果DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult<T> {
+    
+    /**
+     * 在请求列表中的下标
+     */
+    private Integer index;
+    
+    /**
+     * 是否成功
+     */
+    private Boolean success;
+    
+    /**
+     * 结构化数据
+     */
+    private T data;
+    
+    /**
+     * 错误信息（如果失败）
+     */
+    private String errorMessage;
+}
@@ -0,0 +1,79 @@
+package org.alanzheng.demo.springaidemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 近似索引召回率与延迟报告DTO
+ * 对比HNSW检索与精确扫描的结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexRecallReport {
+
+    /**
+     * 索引中的有效文档数
+     */
+    private Integer indexSize;
+
+    /**
+     * 采样查询数量
+     */
+    private Integer sampleSize;
+
+    /**
+     * 每次检索返回的文档数量
+     */
+    private Integer topK;
+
+    /**
+     * 精确扫描平均延迟（微秒）
+     */
+    private Double exactAvgLatencyMicros;
+
+    /**
+     * 精确扫描P99延迟（微秒）
+     */
+    private Double exactP99LatencyMicros;
+
+    /**
+     * 不同efSearch下的召回率与延迟
+     */
+    private List<Entry> entries;
+
+    /**
+     * 单个efSearch取值的测量结果
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+
+        /**
+         * 检索时的候选队列大小
+         */
+        private Integer efSearch;
+
+        /**
+         * 与精确扫描结果相比的召回率（0-1）
+         */
+        private Double recall;
+
+        /**
+         * 平均延迟（微秒）
+         */
+        private Double avgLatencyMicros;
+
+        /**
+         * P99延迟（微秒）
+         */
+        private Double p99LatencyMicros;
+    }
+}
@@ -0,0 +1,66 @@
+package org.alanzheng.demo.springaidemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 语义答案缓存统计DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SemanticCacheStats {
+
+    /**
+     * 是否启用
+     */
+    private Boolean enabled;
+
+    /**
+     * 当前条目数
+     */
+    private Integer size;
+
+    /**
+     * 条目数上限
+     */
+    private Integer maxEntries;
+
+    /**
+     * 命中次数
+     */
+    private Long hitCount;
+
+    /**
+     * 未命中次数（包含因检索文档变化而失效的次数）
+     */
+    private Long missCount;
+
+    /**
+     * 命中率（0-1）
+     */
+    private Double hitRate;
+
+    /**
+     * 问题相近但检索文档已变化而失效的次数
+     */
+    private Long staleCount;
+
+    /**
+     * 因超出条目数上限被淘汰的条目数
+     */
+    private Long evictionCount;
+
+    /**
+     * 因超过TTL被移除的条目数
+     */
+    private Long expirationCount;
+
+    /**
+     * 因向量存储变化被整体清空的次数
+     */
+    private Long invalidationCount;
+}
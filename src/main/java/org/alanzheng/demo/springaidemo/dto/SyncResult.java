@@ -0,0 +1,56 @@
+package org.alanzheng.demo.springaidemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 知识库同步结果DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncResult {
+
+    /**
+     * 新增的文件数
+     */
+    private Integer filesAdded;
+
+    /**
+     * 内容发生变化的文件数
+     */
+    private Integer filesModified;
+
+    /**
+     * 已删除的文件数
+     */
+    private Integer filesDeleted;
+
+    /**
+     * 未变化而跳过的文件数
+     */
+    private Integer filesUnchanged;
+
+    /**
+     * 解析或嵌入失败的文件数，失败的文件保留清单中的旧记录，下次同步时重试
+     */
+    private Integer filesFailed;
+
+    /**
+     * 写入向量存储的文档数
+     */
+    private Integer documentsWritten;
+
+    /**
+     * 从向量存储中删除的文档数
+     */
+    private Integer documentsDeleted;
+
+    /**
+     * 同步耗时（毫秒）
+     */
+    private Long duration;
+}
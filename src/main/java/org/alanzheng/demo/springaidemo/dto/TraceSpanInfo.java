@@ -0,0 +1,59 @@
+package org.alanzheng.demo.springaidemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Trace中单个span的耗时信息DTO
+ * 按开始时间排序并带有嵌套深度，可直接绘制火焰图
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TraceSpanInfo {
+
+    /**
+     * span名称（阶段名称）
+     */
+    private String name;
+
+    /**
+     * span ID
+     */
+    private String spanId;
+
+    /**
+     * 父span ID，根span为空
+     */
+    private String parentSpanId;
+
+    /**
+     * 嵌套深度，根span为0
+     */
+    private Integer depth;
+
+    /**
+     * 相对trace开始时间的偏移（毫秒）
+     */
+    private Double startOffsetMillis;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private Double durationMillis;
+
+    /**
+     * 是否出错
+     */
+    private Boolean error;
+
+    /**
+     * span标签
+     */
+    private Map<String, String> attributes;
+}
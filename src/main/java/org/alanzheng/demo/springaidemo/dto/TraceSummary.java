@@ -0,0 +1,41 @@
+package org.alanzheng.demo.springaidemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Trace摘要DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TraceSummary {
+
+    /**
+     * Trace ID，与日志中的traceId一致
+     */
+    private String traceId;
+
+    /**
+     * 根span名称（通常是HTTP请求）
+     */
+    private String rootName;
+
+    /**
+     * 开始时间（毫秒时间戳）
+     */
+    private Long startTime;
+
+    /**
+     * 总耗时（毫秒）
+     */
+    private Double durationMillis;
+
+    /**
+     * span数量
+     */
+    private Integer spanCount;
+}
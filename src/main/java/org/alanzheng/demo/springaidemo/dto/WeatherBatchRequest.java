@@ -0,0 +1,28 @@
+package org.alanzheng.demo.springaidemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量天气查询请求DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeatherBatchRequest {
+    
+    /**
+     * 查询条件列表
+     */
+    private List<WeatherQuery> items;
+    
+    /**
+     * 单条查询的最大重试次数（为空时使用默认值）
+     */
+    private Integer maxRetryAttempts;
+}
@@ -0,0 +1,15 @@
+package org.alanzheng.demo.springaidemo.dto;
+
+import java.util.List;
+
+/**
+ * 多条天气信息的结构化输出DTO
+ * 批量查询时把多个城市/月份合并到一次模型请求中，按请求顺序返回
+ */
+public record WeatherInfoList(
+        /**
+         * 天气信息列表，与请求中的城市/月份一一对应
+         */
+        List<WeatherInfo> items
+) {
+}
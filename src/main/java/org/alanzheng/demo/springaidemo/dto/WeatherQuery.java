@@ -0,0 +1,26 @@
+package org.alanzheng.demo.springaidemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 天气查询条件DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeatherQuery {
+    
+    /**
+     * 城市名称
+     */
+    private String city;
+    
+    /**
+     * 月份（1-12）
+     */
+    private Integer month;
+}
@@ -0,0 +1,346 @@
+package org.alanzheng.demo.springaidemo.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 合并批量请求的嵌入模型
+ * 并发调用方提交的文本先进入共享队列，由发送线程按条数和token预算合并成接近服务商上限的批次，
+ * 批次凑满或等待超过linger时间后发送。服务商返回413或400时将批次对半拆分重试，
+ * 拆分后的两半都成功才说明是批次过大，此时把之后的批次上限收缩到成功的大小；
+ * 限流（429）等其他错误直接返回给调用方，不拆分也不收缩。
+ * 调用方最多等待timeout时间，发送线程卡住时不会被永久阻塞。
+ * 只合并未指定模型和维度的请求，带自定义选项的请求直接透传。
+ */
+@Slf4j
+public class BatchingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 120_000;
+    /**
+     * Spring AI的响应错误处理器将4xx转换为NonTransientAiException，消息以 "状态码 - " 开头
+     */
+    private static final Pattern STATUS_PREFIX = Pattern.compile("^(\\d{3}) - ");
+
+    private final EmbeddingModel delegate;
+    private final int maxBatchTokens;
+    private final long lingerNanos;
+    private final long timeoutNanos;
+    private final BlockingQueue<PendingText> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> senders = new ArrayList<>();
+    private final AtomicInteger batchSizeLimit;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong textCount = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param delegate 实际的嵌入模型
+     * @param maxBatchSize 单个请求最多包含的文本条数
+     * @param maxBatchTokens 单个请求的估算token上限
+     * @param lingerMillis 批次未凑满时最多等待的毫秒数
+     * @param concurrency 同时发送的批次数
+     */
+    public BatchingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, int maxBatchTokens,
+                                  long lingerMillis, int concurrency) {
+        this(delegate, maxBatchSize, maxBatchTokens, lingerMillis, concurrency, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param delegate 实际的嵌入模型
+     * @param maxBatchSize 单个请求最多包含的文本条数
+     * @param maxBatchTokens 单个请求的估算token上限
+     * @param lingerMillis 批次未凑满时最多等待的毫秒数
+     * @param concurrency 同时发送的批次数
+     * @param timeoutMillis 调用方等待全部结果的最长毫秒数
+     */
+    public BatchingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, int maxBatchTokens,
+                                  long lingerMillis, int concurrency, long timeoutMillis) {
+        Objects.requireNonNull(delegate, "EmbeddingModel不能为空");
+        if (maxBatchSize < 1 || maxBatchTokens < 1 || lingerMillis < 0 || concurrency < 1 || timeoutMillis < 1) {
+            throw new IllegalArgumentException("批量嵌入参数不合法");
+        }
+        this.delegate = delegate;
+        this.batchSizeLimit = new AtomicInteger(maxBatchSize);
+        this.maxBatchTokens = maxBatchTokens;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        for (int i = 1; i <= concurrency; i++) {
+            Thread sender = new Thread(this::sendLoop, "embedding-batch-" + i);
+            sender.setDaemon(true);
+            sender.start();
+            senders.add(sender);
+        }
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        if (hasCustomOptions(request.getOptions())) {
+            requestCount.incrementAndGet();
+            textCount.addAndGet(request.getInstructions().size());
+            return delegate.call(request);
+        }
+        if (closed) {
+            throw new IllegalStateException("批量嵌入模型已关闭");
+        }
+
+        List<String> inputs = request.getInstructions();
+        List<CompletableFuture<float[]>> futures = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            PendingText pending = new PendingText(input, estimateTokens(input));
+            futures.add(pending.result);
+            queue.add(pending);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(inputs.size());
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                embeddings.add(new Embedding(futures.get(i).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS), i));
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("批量嵌入失败: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            // 尚未发送的文本会被发送线程跳过
+            futures.forEach(future -> future.cancel(false));
+            throw new IllegalStateException("等待批量嵌入结果超时，文本数: " + inputs.size());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(false));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待批量嵌入结果时被中断", e);
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * 发送给实际嵌入模型的请求次数
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 发送给实际嵌入模型的文本条数
+     */
+    public long getTextCount() {
+        return textCount.get();
+    }
+
+    /**
+     * 当前生效的批次条数上限，遇到服务商超限错误后会收缩
+     */
+    public int getBatchSizeLimit() {
+        return batchSizeLimit.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        senders.forEach(Thread::interrupt);
+        PendingText pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new IllegalStateException("批量嵌入模型已关闭"));
+        }
+    }
+
+    /**
+     * 发送线程循环：阻塞等待第一条文本，之后在linger时间内继续收集，直到达到条数或token上限。
+     * 超出token预算的文本留到本线程的下一个批次，保证先到先发
+     */
+    private void sendLoop() {
+        PendingText carry = null;
+        List<PendingText> batch = new ArrayList<>();
+        try {
+            while (!closed) {
+                PendingText first = Objects.nonNull(carry) ? carry : queue.take();
+                carry = null;
+                if (first.result.isDone()) {
+                    continue;
+                }
+                batch = new ArrayList<>();
+                batch.add(first);
+                int tokens = first.tokens;
+                int limit = batchSizeLimit.get();
+                long deadline = System.nanoTime() + lingerNanos;
+
+                while (batch.size() < limit) {
+                    long remaining = deadline - System.nanoTime();
+                    // linger时间已过时只取队列中已有的文本，不再等待
+                    PendingText next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (Objects.isNull(next)) {
+                        break;
+                    }
+                    if (next.result.isDone()) {
+                        continue;
+                    }
+                    if (tokens + next.tokens > maxBatchTokens) {
+                        carry = next;
+                        break;
+                    }
+                    batch.add(next);
+                    tokens += next.tokens;
+                }
+
+                send(batch);
+                batch = new ArrayList<>();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            IllegalStateException error = new IllegalStateException("批量嵌入模型已关闭");
+            batch.forEach(pending -> pending.result.completeExceptionally(error));
+            if (Objects.nonNull(carry)) {
+                carry.result.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * 发送一个批次，遇到批次超限错误时对半拆分重试
+     *
+     * @return 批次内全部文本都成功时返回true
+     */
+    private boolean send(List<PendingText> batch) {
+        try {
+            List<String> texts = batch.stream().map(pending -> pending.text).toList();
+            requestCount.incrementAndGet();
+            textCount.addAndGet(texts.size());
+            EmbeddingResponse response = delegate.call(
+                    new EmbeddingRequest(texts, EmbeddingOptions.builder().build()));
+
+            List<Embedding> results = response.getResults();
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException("嵌入结果数量与请求数量不一致");
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Embedding embedding = results.get(i);
+                int index = embedding.getIndex() >= 0 && embedding.getIndex() < batch.size() ? embedding.getIndex() : i;
+                batch.get(index).result.complete(embedding.getOutput());
+            }
+            return true;
+        } catch (Exception e) {
+            if (batch.size() > 1 && isBatchSizeError(e)) {
+                int half = batch.size() / 2;
+                boolean firstHalf = send(batch.subList(0, half));
+                boolean secondHalf = send(batch.subList(half, batch.size()));
+                // 两半都成功说明是批次过大，上限收缩为成功的较大一半；否则是某条文本本身有问题，不收缩上限
+                if (firstHalf && secondHalf) {
+                    int succeeded = batch.size() - half;
+                    int previous = batchSizeLimit.getAndUpdate(limit -> Math.min(limit, succeeded));
+                    if (previous > succeeded) {
+                        log.warn("嵌入批次超出服务商限制，批次上限由 {} 收缩为 {}，错误: {}", previous, succeeded, e.getMessage());
+                    }
+                }
+                return firstHalf && secondHalf;
+            }
+            log.error("嵌入请求失败，批次大小: {}，错误: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return false;
+        }
+    }
+
+    /**
+     * 按HTTP状态码判断是否为批次超限错误：413（请求体过大）或400（如DashScope的批次条数超限），
+     * 429限流及其他状态码不拆分批次
+     */
+    private boolean isBatchSizeError(Exception e) {
+        int status = statusOf(e);
+        return status == 413 || status == 400;
+    }
+
+    /**
+     * 沿异常链查找HTTP状态码，找不到时返回-1
+     */
+    static int statusOf(Throwable error) {
+        for (Throwable t = error; Objects.nonNull(t); t = t.getCause()) {
+            if (t instanceof RestClientResponseException responseException) {
+                return responseException.getStatusCode().value();
+            }
+            if (t instanceof WebClientResponseException responseException) {
+                return responseException.getStatusCode().value();
+            }
+            if (t instanceof NonTransientAiException && Objects.nonNull(t.getMessage())) {
+                Matcher matcher = STATUS_PREFIX.matcher(t.getMessage());
+                if (matcher.find()) {
+                    return Integer.parseInt(matcher.group(1));
+                }
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private boolean hasCustomOptions(EmbeddingOptions options) {
+        return Objects.nonNull(options)
+                && (Objects.nonNull(options.getModel()) || Objects.nonNull(options.getDimensions()));
+    }
+
+    /**
+     * 粗略估算token数：非ASCII字符（如中文）按每字1个token，ASCII字符按每4个1个token
+     */
+    static int estimateTokens(String text) {
+        if (Objects.isNull(text)) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return other + (ascii + 3) / 4;
+    }
+
+    /**
+     * 队列中等待发送的单条文本
+     */
+    private static final class PendingText {
+
+        private final String text;
+        private final int tokens;
+        private final CompletableFuture<float[]> result = new CompletableFuture<>();
+
+        private PendingText(String text, int tokens) {
+            this.text = text;
+            this.tokens = tokens;
+        }
+    }
+}
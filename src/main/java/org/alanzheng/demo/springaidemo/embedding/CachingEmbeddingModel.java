@@ -0,0 +1,120 @@
+package org.alanzheng.demo.springaidemo.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带内容哈希缓存的嵌入模型
+ * 每次嵌入前先按 模型名 + 维度 + 文本 查询本地缓存，只把未命中的文本发送给实际的嵌入模型
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCache cache;
+    private final String defaultModel;
+    private final Integer defaultDimensions;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param delegate 实际的嵌入模型
+     * @param cache 本地嵌入缓存
+     * @param defaultModel 请求未指定模型时使用的模型名称
+     * @param defaultDimensions 请求未指定维度时使用的维度，可为null
+     */
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCache cache,
+                                 String defaultModel, Integer defaultDimensions) {
+        Objects.requireNonNull(delegate, "EmbeddingModel不能为空");
+        Objects.requireNonNull(cache, "EmbeddingCache不能为空");
+        this.delegate = delegate;
+        this.cache = cache;
+        this.defaultModel = defaultModel;
+        this.defaultDimensions = defaultDimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> inputs = request.getInstructions();
+        String model = defaultModel;
+        Integer dimensions = defaultDimensions;
+        EmbeddingOptions options = request.getOptions();
+        if (Objects.nonNull(options)) {
+            model = Objects.nonNull(options.getModel()) ? options.getModel() : model;
+            dimensions = Objects.nonNull(options.getDimensions()) ? options.getDimensions() : dimensions;
+        }
+
+        float[][] vectors = new float[inputs.size()][];
+        // 未命中的文本去重后再请求，键 -> 原始文本
+        Map<String, String> misses = new LinkedHashMap<>();
+        String[] keys = new String[inputs.size()];
+        for (int i = 0; i < inputs.size(); i++) {
+            keys[i] = EmbeddingCache.key(model, dimensions, inputs.get(i));
+            vectors[i] = cache.get(keys[i]);
+            if (Objects.isNull(vectors[i])) {
+                misses.putIfAbsent(keys[i], inputs.get(i));
+            }
+        }
+
+        hitCount.addAndGet(inputs.size() - misses.size());
+        missCount.addAndGet(misses.size());
+
+        if (!misses.isEmpty()) {
+            List<String> missKeys = new ArrayList<>(misses.keySet());
+            EmbeddingResponse response = delegate.call(
+                    new EmbeddingRequest(new ArrayList<>(misses.values()), options));
+
+            Map<String, float[]> computed = new LinkedHashMap<>();
+            List<Embedding> results = response.getResults();
+            for (int i = 0; i < results.size(); i++) {
+                computed.put(missKeys.get(i), results.get(i).getOutput());
+            }
+            cache.putAll(computed);
+
+            for (int i = 0; i < inputs.size(); i++) {
+                if (Objects.isNull(vectors[i])) {
+                    vectors[i] = computed.get(keys[i]);
+                }
+            }
+            log.debug("嵌入缓存命中 {} 条，请求嵌入模型 {} 条", inputs.size() - misses.size(), misses.size());
+        } else {
+            log.debug("嵌入缓存全部命中，共 {} 条", inputs.size());
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return Objects.nonNull(defaultDimensions) ? defaultDimensions : delegate.dimensions();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
@@ -0,0 +1,196 @@
+package org.alanzheng.demo.springaidemo.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于内容哈希的本地嵌入缓存
+ * 键为 SHA-256(模型名 + 维度 + 文本)，向量追加写入磁盘文件，
+ * 内存中只保存键到文件偏移的索引，命中时按偏移读取向量
+ *
+ * 文件记录格式：[short 键长度][键][int 维度][float... 向量]
+ */
+@Slf4j
+public class EmbeddingCache implements AutoCloseable {
+
+    private static final String CACHE_FILE = "embeddings.bin";
+
+    private final Path directory;
+    private final FileChannel channel;
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+
+    public EmbeddingCache(Path directory) {
+        Objects.requireNonNull(directory, "嵌入缓存路径不能为空");
+        this.directory = directory;
+
+        try {
+            Files.createDirectories(directory);
+            Path cacheFile = directory.resolve(CACHE_FILE);
+            long validLength = Files.exists(cacheFile) ? loadIndex(cacheFile) : 0;
+            this.channel = FileChannel.open(cacheFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            // 截掉上次异常退出时写了一半的记录
+            if (channel.size() > validLength) {
+                log.warn("嵌入缓存文件末尾存在不完整记录，截断至 {} 字节", validLength);
+                channel.truncate(validLength);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("初始化嵌入缓存失败: " + e.getMessage(), e);
+        }
+
+        log.info("嵌入缓存已打开，路径: {}，缓存条目数: {}", directory.toAbsolutePath(), offsets.size());
+    }
+
+    /**
+     * 计算缓存键
+     *
+     * @param model 嵌入模型名称
+     * @param dimensions 向量维度
+     * @param text 文本内容
+     * @return 十六进制SHA-256摘要
+     */
+    public static String key(String model, Integer dimensions, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(model).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(String.valueOf(dimensions).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(String.valueOf(text).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JDK不支持SHA-256", e);
+        }
+    }
+
+    /**
+     * 读取缓存的向量
+     *
+     * @param key 缓存键
+     * @return 向量，未命中时返回null
+     */
+    public float[] get(String key) {
+        Long offset = offsets.get(key);
+        if (Objects.isNull(offset)) {
+            return null;
+        }
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            readFully(header, offset);
+            int dimensions = header.flip().getInt();
+
+            ByteBuffer body = ByteBuffer.allocate(dimensions * Float.BYTES);
+            readFully(body, offset + Integer.BYTES);
+            body.flip();
+            float[] vector = new float[dimensions];
+            body.asFloatBuffer().get(vector);
+            return vector;
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取嵌入缓存失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 批量写入向量并刷盘，已存在的键会被跳过
+     *
+     * @param vectors 缓存键到向量的映射
+     */
+    public synchronized void putAll(Map<String, float[]> vectors) {
+        if (vectors.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (Map.Entry<String, float[]> entry : vectors.entrySet()) {
+                if (offsets.containsKey(entry.getKey())) {
+                    continue;
+                }
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                float[] vector = entry.getValue();
+
+                ByteBuffer record = ByteBuffer.allocate(Short.BYTES + key.length + Integer.BYTES
+                        + vector.length * Float.BYTES);
+                record.putShort((short) key.length).put(key).putInt(vector.length);
+                record.asFloatBuffer().put(vector);
+                record.clear();
+
+                long recordStart = channel.size();
+                long position = recordStart;
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position);
+                }
+                offsets.put(entry.getKey(), recordStart + Short.BYTES + key.length);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入嵌入缓存失败: " + e.getMessage(), e);
+        }
+    }
+
+    public int size() {
+        return offsets.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        log.info("嵌入缓存已关闭，路径: {}", directory.toAbsolutePath());
+    }
+
+    /**
+     * 启动时只扫描键并记录偏移，向量本身按需读取
+     *
+     * @return 完整记录的总长度
+     */
+    private long loadIndex(Path cacheFile) throws IOException {
+        long fileSize = Files.size(cacheFile);
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            while (validLength < fileSize) {
+                int keyLength = in.readUnsignedShort();
+                String key = new String(in.readNBytes(keyLength), StandardCharsets.UTF_8);
+                int dimensions = in.readInt();
+                long vectorOffset = validLength + Short.BYTES + keyLength;
+                long recordEnd = vectorOffset + Integer.BYTES + (long) dimensions * Float.BYTES;
+                if (keyLength == 0 || dimensions <= 0 || recordEnd > fileSize) {
+                    break;
+                }
+                in.skipNBytes((long) dimensions * Float.BYTES);
+                offsets.put(key, vectorOffset);
+                validLength = recordEnd;
+            }
+        } catch (EOFException e) {
+            // 最后一条记录不完整
+        }
+        return validLength;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("嵌入缓存文件意外结束，位置: " + position);
+            }
+            position += read;
+        }
+    }
+}
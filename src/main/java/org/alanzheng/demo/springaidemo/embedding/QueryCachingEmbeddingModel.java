@@ -0,0 +1,51 @@
+package org.alanzheng.demo.springaidemo.embedding;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.Objects;
+
+/**
+ * 区分查询和文档的嵌入模型，注入向量存储使用
+ * 向量存储检索时通过embed(String)嵌入查询文本，这类调用交给查询向量缓存：
+ * 与RagService事先计算的查询向量共享同一条目，不会重复调用嵌入接口，也不写入文档嵌入的磁盘缓存。
+ * 文档写入走批量请求，仍由带磁盘缓存的嵌入模型处理。
+ */
+public class QueryCachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel documentModel;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+
+    /**
+     * @param documentModel 嵌入文档的模型（带磁盘缓存）
+     * @param queryEmbeddingCache 查询向量缓存
+     */
+    public QueryCachingEmbeddingModel(EmbeddingModel documentModel, QueryEmbeddingCache queryEmbeddingCache) {
+        Objects.requireNonNull(documentModel, "EmbeddingModel不能为空");
+        Objects.requireNonNull(queryEmbeddingCache, "QueryEmbeddingCache不能为空");
+        this.documentModel = documentModel;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return documentModel.call(request);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        return queryEmbeddingCache.embed(text);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return documentModel.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return documentModel.dimensions();
+    }
+}
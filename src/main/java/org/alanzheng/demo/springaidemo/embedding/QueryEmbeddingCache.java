@@ -0,0 +1,142 @@
+package org.alanzheng.demo.springaidemo.embedding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 查询向量缓存
+ * 检索和问答对同一个查询文本（如Agent先检索再回答）只调用一次嵌入模型。
+ * 键为 模型名 + 维度 + 规范化后查询文本 的128位摘要，值直接保存float[]，
+ * 每个条目的额外开销只有几十字节，内存占用约为 条目数 × 维度 × 4 字节。
+ * 查询向量只保存在内存中，不写入文档嵌入的磁盘缓存。
+ */
+@Slf4j
+public class QueryEmbeddingCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final EmbeddingModel delegate;
+    private final String model;
+    private final Integer dimensions;
+    private final int maxEntries;
+    private final LinkedHashMap<Key, float[]> entries;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param delegate 实际计算查询向量的嵌入模型
+     * @param model 模型名称
+     * @param dimensions 向量维度，可为null
+     * @param maxEntries 最多缓存的查询数，为0时禁用缓存
+     */
+    public QueryEmbeddingCache(EmbeddingModel delegate, String model, Integer dimensions, int maxEntries) {
+        Objects.requireNonNull(delegate, "EmbeddingModel不能为空");
+        this.delegate = delegate;
+        this.model = model;
+        this.dimensions = dimensions;
+        this.maxEntries = Math.max(0, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, float[]> eldest) {
+                return size() > QueryEmbeddingCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 计算查询向量，相同查询直接返回缓存结果
+     * 返回的数组由缓存共享，调用方不能修改
+     *
+     * @param query 查询文本
+     * @return 查询向量
+     */
+    public float[] embed(String query) {
+        if (maxEntries == 0) {
+            return delegate.embed(query);
+        }
+
+        String normalized = normalize(query);
+        Key key = key(normalized);
+        synchronized (this) {
+            float[] cached = entries.get(key);
+            if (Objects.nonNull(cached)) {
+                hitCount.incrementAndGet();
+                return cached;
+            }
+        }
+
+        // 嵌入调用不持锁；同一查询并发未命中时各自计算，结果相同
+        missCount.incrementAndGet();
+        float[] embedding = delegate.embed(normalized);
+        synchronized (this) {
+            entries.put(key, embedding);
+        }
+        return embedding;
+    }
+
+    /**
+     * 只查缓存，不调用嵌入模型；未命中时返回null且不计入未命中数
+     * 供响应式调用在事件循环线程上先查缓存，未命中再切换到弹性线程池调用embed
+     *
+     * @param query 查询文本
+     * @return 缓存的查询向量，未命中时为null
+     */
+    public float[] getIfPresent(String query) {
+        if (maxEntries == 0) {
+            return null;
+        }
+        Key key = key(normalize(query));
+        synchronized (this) {
+            float[] cached = entries.get(key);
+            if (Objects.nonNull(cached)) {
+                hitCount.incrementAndGet();
+            }
+            return cached;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 规范化查询文本：Unicode NFKC（全角转半角等）、去除首尾空白、合并连续空白
+     */
+    static String normalize(String query) {
+        String text = Normalizer.normalize(Objects.toString(query, ""), Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(text.strip()).replaceAll(" ");
+    }
+
+    private Key key(String normalized) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((model + "\n" + dimensions + "\n" + normalized).getBytes(StandardCharsets.UTF_8));
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+            return new Key(hash.getLong(), hash.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JDK不支持SHA-256", e);
+        }
+    }
+
+    private record Key(long high, long low) {
+    }
+}
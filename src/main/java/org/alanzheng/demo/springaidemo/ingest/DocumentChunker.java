@@ -0,0 +1,109 @@
+package org.alanzheng.demo.springaidemo.ingest;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * 文档分块器
+ * 按文档逐个调用TextSplitter，以迭代器形式逐块返回：只有取到某个文档的块时才会分割该文档，
+ * 多页PDF等由多个文档组成的文件不会一次性全部分割到内存中。
+ * 每个块带有来源、序号和在原文档中的字符偏移，检索时可以直接定位到原文片段
+ */
+public class DocumentChunker {
+
+    public static final String SOURCE = "source";
+    public static final String CHUNK_INDEX = "chunk_index";
+    public static final String CHAR_START = "char_start";
+    public static final String CHAR_END = "char_end";
+
+    private final TextSplitter textSplitter;
+
+    public DocumentChunker(TextSplitter textSplitter) {
+        Objects.requireNonNull(textSplitter, "TextSplitter不能为空");
+        this.textSplitter = textSplitter;
+    }
+
+    /**
+     * 按需分块
+     * 块ID由 文件路径 + 块序号 生成，重复加载同一文件时覆盖向量存储中的旧记录
+     *
+     * @param filePath 文档所属文件
+     * @param documents 文件解析出的原始文档
+     * @return 逐块返回的迭代器
+     */
+    public Iterator<Document> chunks(Path filePath, List<Document> documents) {
+        return new ChunkIterator(filePath, documents.iterator());
+    }
+
+    private final class ChunkIterator implements Iterator<Document> {
+
+        private final String idPrefix;
+        private final String source;
+        private final Iterator<Document> documents;
+        private final Deque<Document> pending = new ArrayDeque<>();
+        private String currentText;
+        private int cursor;
+        private int chunkIndex;
+
+        private ChunkIterator(Path filePath, Iterator<Document> documents) {
+            this.idPrefix = filePath.toAbsolutePath().normalize().toString();
+            this.source = filePath.toString();
+            this.documents = documents;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pending.isEmpty() && documents.hasNext()) {
+                Document document = documents.next();
+                if (StringUtils.isBlank(document.getText())) {
+                    continue;
+                }
+                currentText = document.getText();
+                cursor = 0;
+                pending.addAll(textSplitter.split(document));
+            }
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public Document next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Document chunk = pending.poll();
+            String text = chunk.getText();
+
+            // 分割器会去掉块首尾空白，从上一个块的结束位置向后查找；
+            // 找不到时（如多字节字符被截断）按顺序近似
+            int start = currentText.indexOf(text, cursor);
+            if (start < 0) {
+                start = Math.min(cursor, currentText.length());
+            }
+            int end = Math.min(start + text.length(), currentText.length());
+            cursor = end;
+
+            Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+            metadata.putIfAbsent(SOURCE, source);
+            metadata.put(CHUNK_INDEX, chunkIndex);
+            metadata.put(CHAR_START, start);
+            metadata.put(CHAR_END, end);
+
+            String id = UUID.nameUUIDFromBytes((idPrefix + "#" + chunkIndex).getBytes(StandardCharsets.UTF_8)).toString();
+            chunkIndex++;
+            return new Document(id, text, metadata);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.alanzheng.demo.springaidemo.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
+import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 文档解析器
+ * 将知识库文件解析为原始文档，供入库流水线的解析阶段使用
+ */
+@Slf4j
+@Component
+public class DocumentParser {
+    
+    private static final String[] SUPPORTED_TEXT_EXTENSIONS = {".txt", ".md", ".text"};
+    private static final String PDF_EXTENSION = ".pdf";
+    
+    private final ResourceLoader resourceLoader;
+    
+    public DocumentParser(ResourceLoader resourceLoader) {
+        Objects.requireNonNull(resourceLoader, "ResourceLoader不能为空");
+        this.resourceLoader = resourceLoader;
+    }
+    
+    /**
+     * 从文件加载文档
+     * PDF按页解析，文本文件整体作为一个文档，其他格式交给Tika自动检测
+     * 
+     * @param filePath 文件路径
+     * @return 原始文档列表，文件为空或无法解析时返回空列表
+     */
+    public List<Document> parse(Path filePath) throws IOException {
+        String fileName = filePath.getFileName().toString().toLowerCase();
+        
+        List<Document> documents;
+        if (fileName.endsWith(PDF_EXTENSION)) {
+            documents = loadPdfDocument(filePath);
+        } else if (isTextFile(fileName)) {
+            documents = loadTextDocument(filePath);
+        } else {
+            // 尝试使用Tika自动检测文件类型
+            documents = loadDocumentWithTika(filePath);
+        }
+        return documents;
+    }
+    
+    /**
+     * 加载PDF文档
+     */
+    private List<Document> loadPdfDocument(Path filePath) {
+        try {
+            Resource resource = resourceLoader.getResource("file:" + filePath.toAbsolutePath());
+            PagePdfDocumentReader pdfReader = new PagePdfDocumentReader(
+                    resource, 
+                    PdfDocumentReaderConfig.defaultConfig());
+            return pdfReader.get();
+        } catch (Exception e) {
+            log.error("加载PDF文档失败: {}，错误: {}", filePath, e.getMessage(), e);
+            return Collections.emptyList();
+        }
+    }
+    
+    /**
+     * 加载文本文档
+     */
+    private List<Document> loadTextDocument(Path filePath) throws IOException {
+        try {
+            String content = Files.readString(filePath);
+            if (StringUtils.isBlank(content)) {
+                return Collections.emptyList();
+            }
+            
+            Document document = new Document(content);
+            document.getMetadata().put("source", filePath.toString());
+            document.getMetadata().put("filename", filePath.getFileName().toString());
+            
+            return Collections.singletonList(document);
+        } catch (Exception e) {
+            log.error("加载文本文档失败: {}，错误: {}", filePath, e.getMessage(), e);
+            return Collections.emptyList();
+        }
+    }
+    
+    /**
+     * 使用Tika加载文档（自动检测文件类型）
+     */
+    private List<Document> loadDocumentWithTika(Path filePath) {
+        try {
+            Resource resource = resourceLoader.getResource("file:" + filePath.toAbsolutePath());
+            TikaDocumentReader tikaReader = new TikaDocumentReader(resource);
+            return tikaReader.get();
+        } catch (Exception e) {
+            log.warn("使用Tika加载文档失败: {}，错误: {}", filePath, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+    
+    /**
+     * 判断是否为文本文件
+     */
+    private boolean isTextFile(String fileName) {
+        for (String ext : SUPPORTED_TEXT_EXTENSIONS) {
+            if (fileName.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
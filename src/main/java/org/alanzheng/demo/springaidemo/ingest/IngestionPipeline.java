@@ -0,0 +1,409 @@
+package org.alanzheng.demo.springaidemo.ingest;
+
+import io.micrometer.tracing.Span;
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.tracing.StageTracer;
+import org.alanzheng.demo.springaidemo.vectorstore.EmbeddedDocumentWriter;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 文档入库流水线
+ * 按 发现 → 解析 → 分块 → 嵌入 → 写入 五个阶段处理文件，阶段之间通过有界队列连接：
+ * 下游处理不过来时上游会阻塞等待，内存占用只与队列容量有关，与知识库规模无关。
+ * 分块阶段逐块产出，每凑满一个嵌入批次就交给下游，大文件不会等全部分块完成才开始嵌入。
+ * 解析和分块阶段是CPU/IO密集型，按CPU核数并发；嵌入阶段调用远程模型，单独限制并发数；
+ * 写入阶段单线程顺序写入向量存储。
+ * 文件在部分批次已写入后失败时，流水线结束前会删除这些已写入的文档，失败的文件不会在存储中留下孤立的块。
+ * 调用线程在trace中时，每个阶段处理一个文件（或一个批次）都会创建一个子span，标签为文件键。
+ */
+@Slf4j
+@Component
+public class IngestionPipeline {
+
+    /**
+     * 结束标记，每个阶段的最后一个工作线程退出时向下游每个工作线程发送一个
+     */
+    private static final FileWork POISON = new FileWork(null, null);
+
+    private final VectorStore vectorStore;
+    private final EmbeddingModel embeddingModel;
+    private final DocumentChunker chunker;
+    private final StageTracer stageTracer;
+
+    @Value("${spring.ai.rag.ingest.parse-workers:0}")
+    private int parseWorkers;
+
+    @Value("${spring.ai.rag.ingest.split-workers:2}")
+    private int splitWorkers;
+
+    @Value("${spring.ai.rag.ingest.embed-workers:2}")
+    private int embedWorkers;
+
+    @Value("${spring.ai.rag.ingest.embed-batch-size:10}")
+    private int embedBatchSize;
+
+    @Value("${spring.ai.rag.ingest.queue-capacity:16}")
+    private int queueCapacity;
+
+    public IngestionPipeline(VectorStore vectorStore, EmbeddingModel embeddingModel, TextSplitter textSplitter) {
+        this(vectorStore, embeddingModel, textSplitter, StageTracer.NOOP);
+    }
+
+    @Autowired
+    public IngestionPipeline(VectorStore vectorStore, EmbeddingModel embeddingModel, TextSplitter textSplitter,
+                             StageTracer stageTracer) {
+        Objects.requireNonNull(vectorStore, "VectorStore不能为空");
+        Objects.requireNonNull(embeddingModel, "EmbeddingModel不能为空");
+        Objects.requireNonNull(textSplitter, "TextSplitter不能为空");
+        Objects.requireNonNull(stageTracer, "StageTracer不能为空");
+        this.vectorStore = vectorStore;
+        this.embeddingModel = embeddingModel;
+        this.chunker = new DocumentChunker(textSplitter);
+        this.stageTracer = stageTracer;
+    }
+
+    /**
+     * 运行一次入库
+     * 单个文件解析或嵌入失败只记录到结果中，不影响其他文件，该文件已写入的批次会被删除；
+     * 发现阶段或写入阶段出现异常时中止整个流水线并抛出异常
+     *
+     * @param discoverer 发现阶段，向sink提交需要入库的文件，提交时队列已满会阻塞
+     * @param parser 将单个文件解析为原始文档
+     * @return 每个成功入库的文件对应的文档ID，以及失败文件的错误信息
+     */
+    public Result run(Discoverer discoverer, Parser parser) {
+        Objects.requireNonNull(discoverer, "Discoverer不能为空");
+        Objects.requireNonNull(parser, "Parser不能为空");
+
+        int parseCount = parseWorkers > 0 ? parseWorkers : Runtime.getRuntime().availableProcessors();
+        int splitCount = Math.max(1, splitWorkers);
+        int embedCount = Math.max(1, embedWorkers);
+        int capacity = Math.max(1, queueCapacity);
+        boolean precompute = vectorStore instanceof EmbeddedDocumentWriter;
+
+        BlockingQueue<FileWork> parseQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<FileWork> splitQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<FileWork> embedQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<FileWork> writeQueue = new ArrayBlockingQueue<>(capacity);
+
+        Map<String, List<String>> documentIds = new ConcurrentHashMap<>();
+        List<FileState> states = Collections.synchronizedList(new ArrayList<>());
+        Map<String, String> failures = new ConcurrentHashMap<>();
+        AtomicInteger documentsWritten = new AtomicInteger();
+        AtomicReference<Throwable> fatal = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        // 工作线程没有调用线程的trace上下文，各阶段的span显式挂到这个父span下
+        Span parent = stageTracer.currentSpan();
+
+        threads.add(new Thread(() -> {
+            try (StageTracer.Stage stage = stageTracer.startIfTraced("ingest.discover", parent)) {
+                discoverer.discover(task -> {
+                    try {
+                        FileState state = new FileState();
+                        states.add(state);
+                        parseQueue.put(new FileWork(task, state));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("入库流水线已中止", e);
+                    }
+                });
+            } catch (IOException e) {
+                throw new RuntimeException("发现待入库文件失败: " + e.getMessage(), e);
+            } finally {
+                if (!Thread.currentThread().isInterrupted()) {
+                    sendPoison(parseQueue, parseCount);
+                }
+            }
+        }, "ingest-discover"));
+
+        AtomicInteger parseRemaining = new AtomicInteger(parseCount);
+        for (int i = 1; i <= parseCount; i++) {
+            threads.add(new Thread(() -> runStage("parse", parent, parseQueue, splitQueue, parseRemaining, splitCount, failures,
+                    (work, out) -> {
+                        work.documents = parser.parse(work.task.path());
+                        out.emit(work);
+                    }), "ingest-parse-" + i));
+        }
+
+        AtomicInteger splitRemaining = new AtomicInteger(splitCount);
+        for (int i = 1; i <= splitCount; i++) {
+            threads.add(new Thread(() -> runStage("split", parent, splitQueue, embedQueue, splitRemaining, embedCount, failures,
+                    this::split), "ingest-split-" + i));
+        }
+
+        AtomicInteger embedRemaining = new AtomicInteger(embedCount);
+        for (int i = 1; i <= embedCount; i++) {
+            threads.add(new Thread(() -> runStage("embed", parent, embedQueue, writeQueue, embedRemaining, 1, failures, (work, out) -> {
+                if (precompute && !work.state.failed) {
+                    work.embeddings = embed(work.documents);
+                }
+                out.emit(work);
+            }), "ingest-embed-" + i));
+        }
+
+        // 写入阶段异常说明存储本身不可用，直接中止流水线
+        // 同一文件的各批次可能乱序到达，全部批次写入后该文件才算完成
+        threads.add(new Thread(() -> runStage("write", parent, writeQueue, null, new AtomicInteger(1), 0, null, (work, out) -> {
+            FileState state = work.state;
+            if (state.failed) {
+                return;
+            }
+            if (!work.documents.isEmpty()) {
+                if (precompute) {
+                    ((EmbeddedDocumentWriter) vectorStore).write(work.documents, work.embeddings);
+                } else {
+                    vectorStore.add(work.documents);
+                }
+                work.documents.forEach(document -> state.documentIds.add(document.getId()));
+                documentsWritten.addAndGet(work.documents.size());
+            }
+            state.writtenBatches++;
+            if (state.writtenBatches == state.totalBatches) {
+                documentIds.put(work.task.key(), List.copyOf(state.documentIds));
+            }
+        }), "ingest-write"));
+
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                if (fatal.compareAndSet(null, e)) {
+                    log.error("入库流水线线程 {} 异常，中止流水线: {}", t.getName(), e.getMessage(), e);
+                    threads.forEach(Thread::interrupt);
+                }
+            });
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待入库流水线完成时被中断", e);
+        }
+
+        Throwable error = fatal.get();
+        if (Objects.nonNull(error)) {
+            throw new RuntimeException("入库流水线执行失败: " + error.getMessage(), error);
+        }
+
+        documentsWritten.addAndGet(-deletePartiallyWritten(states));
+        log.debug("入库流水线完成，解析线程: {}，分块线程: {}，嵌入线程: {}，写入文件: {}，失败文件: {}",
+                parseCount, splitCount, embedCount, documentIds.size(), failures.size());
+        return new Result(documentIds, failures, documentsWritten.get());
+    }
+
+    /**
+     * 阶段工作循环
+     * 收到结束标记后退出，最后一个退出的工作线程负责通知下游阶段
+     *
+     * @param stage 阶段名称，用于span名称
+     * @param parent 各次处理的span的父span，为null时不记录span
+     * @param failures 单个文件失败时记录错误并继续；为null时异常直接抛出并中止流水线
+     */
+    private void runStage(String stage, Span parent, BlockingQueue<FileWork> input, BlockingQueue<FileWork> output,
+                          AtomicInteger remaining, int downstreamWorkers,
+                          Map<String, String> failures, StageAction action) {
+        Emitter emitter = Objects.nonNull(output) ? output::put : ignored -> {
+        };
+        try {
+            while (true) {
+                FileWork work = input.take();
+                if (work == POISON) {
+                    if (remaining.decrementAndGet() == 0 && Objects.nonNull(output)) {
+                        sendPoison(output, downstreamWorkers);
+                    }
+                    return;
+                }
+
+                try (StageTracer.Stage span = stageTracer.startIfTraced("ingest." + stage, parent)) {
+                    span.tag("file", work.task.key());
+                    try {
+                        action.apply(work, emitter);
+                    } catch (Exception e) {
+                        span.error(e);
+                        throw e;
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (Objects.isNull(failures)) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                    log.warn("文件入库失败: {}，阶段: {}，错误: {}",
+                            work.task.path(), Thread.currentThread().getName(), e.getMessage());
+                    // 已进入下游的批次看到失败标记后会被丢弃，该文件不会出现在成功结果中
+                    work.state.failed = true;
+                    failures.put(work.task.key(), Objects.toString(e.getMessage(), e.toString()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 删除失败文件在失败前已经写入的批次，返回删除的文档数
+     * 所有线程结束后才调用，此时各文件的documentIds不再变化
+     */
+    private int deletePartiallyWritten(List<FileState> states) {
+        List<String> orphanIds = new ArrayList<>();
+        for (FileState state : states) {
+            if (state.failed) {
+                orphanIds.addAll(state.documentIds);
+            }
+        }
+        if (orphanIds.isEmpty()) {
+            return 0;
+        }
+        log.warn("删除失败文件已写入的 {} 个文档", orphanIds.size());
+        vectorStore.delete(orphanIds);
+        return orphanIds.size();
+    }
+
+    private void sendPoison(BlockingQueue<FileWork> queue, int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                queue.put(POISON);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 逐块分割文件，每凑满一个嵌入批次就发送给下游
+     * 最后一个批次发送前记录该文件的批次总数，没有任何块的文件也会发送一个空批次以便写入阶段记录结果
+     */
+    private void split(FileWork work, Emitter out) throws InterruptedException {
+        int batchSize = Math.max(1, embedBatchSize);
+        Iterator<Document> chunks = chunker.chunks(work.task.path(), work.documents);
+        work.documents = null;
+
+        List<Document> batch = new ArrayList<>(batchSize);
+        int batches = 0;
+        while (chunks.hasNext()) {
+            batch.add(chunks.next());
+            if (batch.size() == batchSize && chunks.hasNext()) {
+                out.emit(work.batch(batch));
+                batches++;
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        work.state.totalBatches = batches + 1;
+        out.emit(work.batch(batch));
+    }
+
+    /**
+     * 按批调用嵌入模型计算文档向量
+     */
+    private List<float[]> embed(List<Document> documents) {
+        List<float[]> embeddings = new ArrayList<>(documents.size());
+        int batchSize = Math.max(1, embedBatchSize);
+        for (int from = 0; from < documents.size(); from += batchSize) {
+            List<String> texts = documents.subList(from, Math.min(from + batchSize, documents.size()))
+                    .stream()
+                    .map(Document::getText)
+                    .toList();
+            embeddings.addAll(embeddingModel.embed(texts));
+        }
+        return embeddings;
+    }
+
+    /**
+     * 待入库的文件
+     *
+     * @param key 文件标识（如相对知识库目录的路径），用于在结果中对应文件
+     * @param path 文件路径
+     */
+    public record FileTask(String key, Path path) {
+    }
+
+    /**
+     * 入库结果
+     *
+     * @param documentIds 成功入库的文件标识 -> 该文件写入的文档ID
+     * @param failures 失败的文件标识 -> 错误信息
+     * @param documentsWritten 写入的文档总数
+     */
+    public record Result(Map<String, List<String>> documentIds, Map<String, String> failures, int documentsWritten) {
+    }
+
+    @FunctionalInterface
+    public interface Discoverer {
+        void discover(Consumer<FileTask> sink) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Parser {
+        List<Document> parse(Path path) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface StageAction {
+        void apply(FileWork work, Emitter out) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Emitter {
+        void emit(FileWork work) throws InterruptedException;
+    }
+
+    /**
+     * 在阶段之间传递的工作单元
+     * 分块之前代表整个文件，分块之后代表该文件的一个块批次，同一时刻只被一个阶段持有
+     */
+    private static final class FileWork {
+
+        private final FileTask task;
+        private final FileState state;
+        private List<Document> documents;
+        private List<float[]> embeddings;
+
+        private FileWork(FileTask task, FileState state) {
+            this.task = task;
+            this.state = state;
+        }
+
+        private FileWork batch(List<Document> chunks) {
+            FileWork batch = new FileWork(task, state);
+            batch.documents = chunks;
+            return batch;
+        }
+    }
+
+    /**
+     * 单个文件在各批次之间共享的状态
+     * writtenBatches和documentIds只由写入线程访问
+     */
+    private static final class FileState {
+
+        private volatile boolean failed;
+        private volatile int totalBatches;
+        private int writtenBatches;
+        private final List<String> documentIds = new ArrayList<>();
+    }
+}
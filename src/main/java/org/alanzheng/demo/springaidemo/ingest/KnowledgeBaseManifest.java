@@ -0,0 +1,132 @@
+package org.alanzheng.demo.springaidemo.ingest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 知识库文件清单
+ * 记录每个已入库文件的大小、修改时间、内容哈希以及对应的文档ID，
+ * 用于增量同步时判断文件的新增、修改和删除
+ */
+@Slf4j
+public class KnowledgeBaseManifest {
+
+    private static final TypeReference<TreeMap<String, FileEntry>> ENTRIES_TYPE = new TypeReference<>() {
+    };
+
+    private final Path manifestFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, FileEntry> entries;
+
+    /**
+     * @param manifestFile 清单文件路径，为null时只保存在内存中（用于非持久化的向量存储）
+     */
+    public KnowledgeBaseManifest(Path manifestFile) {
+        this.manifestFile = manifestFile;
+        this.entries = Objects.nonNull(manifestFile) ? load() : new TreeMap<>();
+    }
+
+    /**
+     * 计算文件内容的SHA-256
+     */
+    public static String hash(Path file) {
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(file),
+                MessageDigest.getInstance("SHA-256"))) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(in.getMessageDigest().digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException("计算文件哈希失败: " + file, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前JDK不支持SHA-256", e);
+        }
+    }
+
+    public synchronized FileEntry get(String relativePath) {
+        return entries.get(relativePath);
+    }
+
+    public synchronized void put(String relativePath, FileEntry entry) {
+        entries.put(relativePath, entry);
+    }
+
+    public synchronized FileEntry remove(String relativePath) {
+        return entries.remove(relativePath);
+    }
+
+    public synchronized List<String> paths() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * 所有已记录文件对应的文档ID
+     */
+    public synchronized List<String> allDocumentIds() {
+        List<String> ids = new ArrayList<>();
+        entries.values().forEach(entry -> ids.addAll(entry.documentIds()));
+        return ids;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 先写临时文件再原子替换，避免写入中途退出导致清单损坏
+     */
+    public synchronized void save() {
+        if (Objects.isNull(manifestFile)) {
+            return;
+        }
+        try {
+            Files.createDirectories(manifestFile.toAbsolutePath().getParent());
+            Path tempFile = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(tempFile.toFile(), entries);
+            Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("保存知识库清单失败: " + e.getMessage(), e);
+        }
+    }
+
+    private Map<String, FileEntry> load() {
+        if (!Files.exists(manifestFile)) {
+            return new TreeMap<>();
+        }
+        try (InputStream in = Files.newInputStream(manifestFile)) {
+            TreeMap<String, FileEntry> loaded = objectMapper.readValue(in, ENTRIES_TYPE);
+            log.info("加载知识库清单，路径: {}，文件数: {}", manifestFile, loaded.size());
+            return loaded;
+        } catch (IOException e) {
+            log.warn("读取知识库清单失败，将按全部文件为新增处理: {}", e.getMessage());
+            return new TreeMap<>();
+        }
+    }
+
+    /**
+     * 单个文件的清单记录
+     *
+     * @param size 文件大小（字节）
+     * @param lastModified 最后修改时间（毫秒）
+     * @param sha256 文件内容哈希
+     * @param documentIds 该文件写入向量存储的文档ID
+     */
+    public record FileEntry(long size, long lastModified, String sha256, List<String> documentIds) {
+    }
+}
@@ -0,0 +1,11 @@
+package org.alanzheng.demo.springaidemo.ingest;
+
+/**
+ * 向量存储内容变化事件
+ * DocumentService写入或删除文档后发布，依赖检索结果的缓存据此失效
+ *
+ * @param documentsWritten 写入的文档数
+ * @param documentsDeleted 删除的文档数
+ */
+public record VectorStoreChangedEvent(int documentsWritten, int documentsDeleted) {
+}
@@ -1,6 +1,7 @@
 package org.alanzheng.demo.springaidemo.mcp;
 
 import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.dto.SyncResult;
 import org.alanzheng.demo.springaidemo.service.DocumentService;
 import org.alanzheng.demo.springaidemo.service.RagService;
 import org.apache.commons.lang3.StringUtils;
@@ -47,6 +48,26 @@ public class McpTools {
         }
     }
     
+    /**
+     * 增量同步知识库工具
+     * 只重新加载新增或修改的文件，并删除已删除文件对应的文档
+     * 
+     * @return 同步结果摘要
+     */
+    @Tool(description = "增量同步知识库到向量存储。只处理新增、修改和删除的文件，未变化的文件不会重新嵌入。返回同步结果摘要。")
+    public String syncDocuments() {
+        try {
+            log.info("MCP工具调用：增量同步知识库");
+            SyncResult result = documentService.syncDocuments();
+            return String.format("同步完成：新增文件 %d 个，修改文件 %d 个，删除文件 %d 个，未变化文件 %d 个，失败文件 %d 个，写入 %d 个文档，删除 %d 个文档",
+                    result.getFilesAdded(), result.getFilesModified(), result.getFilesDeleted(),
+                    result.getFilesUnchanged(), result.getFilesFailed(), result.getDocumentsWritten(), result.getDocumentsDeleted());
+        } catch (Exception e) {
+            log.error("同步知识库失败", e);
+            return "同步知识库失败: " + e.getMessage();
+        }
+    }
+    
     /**
      * 加载指定文档工具
      * 
@@ -0,0 +1,422 @@
+package org.alanzheng.demo.springaidemo.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 有界会话记忆存储
+ * 按conversationId保存会话消息，只保留类型和文本（不保存元数据、媒体和工具调用），
+ * 会话数超过上限时淘汰最久未访问的会话，空闲超过idle-timeout的会话在下次写入时同样淘汰。
+ * 配置了溢出目录时，被淘汰的会话写入本地磁盘（每个会话一个文件），再次访问时读回内存并删除文件；
+ * 未配置时直接丢弃。磁盘读写不持锁，同一会话的并发写入以后写入者为准。
+ * 溢出文件超过spillTtl未被读回即过期，文件数超过maxSpillFiles时删除最早写入的文件；
+ * 启动时清理一次，之后写入溢出文件时按需清理。
+ */
+@Slf4j
+public class BoundedChatMemoryRepository implements ChatMemoryRepository {
+
+    private static final String SPILL_SUFFIX = ".mem";
+    private static final Duration DEFAULT_SPILL_TTL = Duration.ofDays(7);
+    private static final int DEFAULT_MAX_SPILL_FILES = 100_000;
+    /**
+     * 两次过期清理的最小间隔；文件数超限时不受此限制
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 60_000;
+
+    private final int maxConversations;
+    private final long idleTimeoutMillis;
+    private final Path spillDirectory;
+    private final long spillTtlMillis;
+    private final int maxSpillFiles;
+    private final Clock clock;
+    private final LinkedHashMap<String, Conversation> conversations = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong spillCount = new AtomicLong();
+    private final AtomicLong restoreCount = new AtomicLong();
+    private final AtomicLong spillExpiredCount = new AtomicLong();
+    private final AtomicInteger spillFileCount = new AtomicInteger();
+    private final AtomicLong lastSweepMillis = new AtomicLong();
+    private final Object sweepLock = new Object();
+
+    /**
+     * @param maxConversations 内存中最多保留的会话数
+     * @param idleTimeout 会话空闲多久后淘汰
+     * @param spillDirectory 溢出目录，为null时淘汰的会话直接丢弃
+     * @param clock 时钟，用于计算空闲时间
+     */
+    public BoundedChatMemoryRepository(int maxConversations, Duration idleTimeout, Path spillDirectory, Clock clock) {
+        this(maxConversations, idleTimeout, spillDirectory, DEFAULT_SPILL_TTL, DEFAULT_MAX_SPILL_FILES, clock);
+    }
+
+    /**
+     * @param maxConversations 内存中最多保留的会话数
+     * @param idleTimeout 会话空闲多久后淘汰
+     * @param spillDirectory 溢出目录，为null时淘汰的会话直接丢弃
+     * @param spillTtl 溢出文件的有效期
+     * @param maxSpillFiles 溢出目录中最多保留的会话文件数
+     * @param clock 时钟，用于计算空闲时间和溢出文件的写入时间
+     */
+    public BoundedChatMemoryRepository(int maxConversations, Duration idleTimeout, Path spillDirectory,
+                                       Duration spillTtl, int maxSpillFiles, Clock clock) {
+        Objects.requireNonNull(idleTimeout, "空闲超时不能为空");
+        Objects.requireNonNull(spillTtl, "溢出文件有效期不能为空");
+        Objects.requireNonNull(clock, "Clock不能为空");
+        this.maxConversations = Math.max(1, maxConversations);
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.spillDirectory = spillDirectory;
+        this.spillTtlMillis = spillTtl.toMillis();
+        this.maxSpillFiles = Math.max(1, maxSpillFiles);
+        this.clock = clock;
+        if (Objects.nonNull(spillDirectory)) {
+            try {
+                Files.createDirectories(spillDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("创建会话记忆溢出目录失败: " + spillDirectory, e);
+            }
+            sweepSpillDirectory();
+        }
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        Set<String> ids;
+        synchronized (this) {
+            ids = new LinkedHashSet<>(conversations.keySet());
+        }
+        if (Objects.nonNull(spillDirectory)) {
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(SPILL_SUFFIX))
+                        .map(name -> decodeId(name.substring(0, name.length() - SPILL_SUFFIX.length())))
+                        .forEach(ids::add);
+            } catch (IOException e) {
+                log.warn("读取会话记忆溢出目录失败: {}", e.getMessage());
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        Objects.requireNonNull(conversationId, "conversationId不能为空");
+        List<StoredMessage> messages;
+        synchronized (this) {
+            Conversation conversation = conversations.get(conversationId);
+            if (Objects.nonNull(conversation)) {
+                conversation.lastAccessMillis = clock.millis();
+                messages = conversation.messages;
+            } else {
+                messages = null;
+            }
+        }
+        if (Objects.isNull(messages)) {
+            messages = restore(conversationId);
+            if (messages.isEmpty()) {
+                return List.of();
+            }
+            put(conversationId, messages);
+        }
+        return messages.stream().map(StoredMessage::toMessage).toList();
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        Objects.requireNonNull(conversationId, "conversationId不能为空");
+        Objects.requireNonNull(messages, "messages不能为空");
+        List<StoredMessage> stored = messages.stream()
+                .map(StoredMessage::of)
+                .filter(Objects::nonNull)
+                .toList();
+        if (stored.isEmpty()) {
+            deleteByConversationId(conversationId);
+            return;
+        }
+        put(conversationId, stored);
+        deleteSpillFile(conversationId);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        Objects.requireNonNull(conversationId, "conversationId不能为空");
+        synchronized (this) {
+            conversations.remove(conversationId);
+        }
+        deleteSpillFile(conversationId);
+    }
+
+    /**
+     * 内存中的会话数
+     */
+    public synchronized int size() {
+        return conversations.size();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getSpillCount() {
+        return spillCount.get();
+    }
+
+    public long getRestoreCount() {
+        return restoreCount.get();
+    }
+
+    /**
+     * 因过期或文件数超限而删除的溢出文件数
+     */
+    public long getSpillExpiredCount() {
+        return spillExpiredCount.get();
+    }
+
+    private void put(String conversationId, List<StoredMessage> messages) {
+        Map<String, List<StoredMessage>> evicted = new LinkedHashMap<>();
+        synchronized (this) {
+            long now = clock.millis();
+            conversations.put(conversationId, new Conversation(messages, now));
+            Iterator<Map.Entry<String, Conversation>> iterator = conversations.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Conversation> eldest = iterator.next();
+                boolean idle = now - eldest.getValue().lastAccessMillis > idleTimeoutMillis;
+                if (!idle && conversations.size() <= maxConversations) {
+                    break;
+                }
+                evicted.put(eldest.getKey(), eldest.getValue().messages);
+                iterator.remove();
+            }
+        }
+        evictionCount.addAndGet(evicted.size());
+        evicted.forEach(this::spill);
+        if (!evicted.isEmpty() && Objects.nonNull(spillDirectory)) {
+            long now = clock.millis();
+            long last = lastSweepMillis.get();
+            if (spillFileCount.get() > maxSpillFiles
+                    || (now - last >= SWEEP_INTERVAL_MILLIS && lastSweepMillis.compareAndSet(last, now))) {
+                sweepSpillDirectory();
+            }
+        }
+    }
+
+    /**
+     * 删除过期的溢出文件，文件数仍超过上限时按写入时间从早到晚删除
+     * 只持有清理锁，不阻塞内存中的会话读写
+     */
+    private void sweepSpillDirectory() {
+        synchronized (sweepLock) {
+            long now = clock.millis();
+            lastSweepMillis.set(now);
+            List<SpillFile> live = new ArrayList<>();
+            int removed = 0;
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    // 写入中途失败遗留的临时文件同样按有效期清理
+                    boolean temp = name.endsWith(SPILL_SUFFIX + ".tmp");
+                    if (!temp && !name.endsWith(SPILL_SUFFIX)) {
+                        continue;
+                    }
+                    long modified = Files.getLastModifiedTime(file).toMillis();
+                    if (now - modified > spillTtlMillis) {
+                        removed += deleteQuietly(file) ? 1 : 0;
+                    } else if (!temp) {
+                        live.add(new SpillFile(file, modified));
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("清理会话记忆溢出目录失败: {}", e.getMessage());
+                return;
+            }
+            if (live.size() > maxSpillFiles) {
+                live.sort(Comparator.comparingLong(SpillFile::modifiedMillis));
+                for (SpillFile file : live.subList(0, live.size() - maxSpillFiles)) {
+                    removed += deleteQuietly(file.path()) ? 1 : 0;
+                }
+                live = live.subList(live.size() - maxSpillFiles, live.size());
+            }
+            spillFileCount.set(live.size());
+            spillExpiredCount.addAndGet(removed);
+            if (removed > 0) {
+                log.info("清理会话记忆溢出文件 {} 个，剩余: {}", removed, live.size());
+            }
+        }
+    }
+
+    private static boolean deleteQuietly(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除会话记忆溢出文件失败: {}，错误: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    private void spill(String conversationId, List<StoredMessage> messages) {
+        if (Objects.isNull(spillDirectory)) {
+            return;
+        }
+        Path file = spillFile(conversationId);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(messages.size());
+            for (StoredMessage message : messages) {
+                byte[] text = message.text().getBytes(StandardCharsets.UTF_8);
+                out.writeUTF(message.type().name());
+                out.writeInt(text.length);
+                out.write(text);
+            }
+        } catch (IOException e) {
+            log.warn("会话记忆写入磁盘失败，conversationId: {}，错误: {}", conversationId, e.getMessage());
+            return;
+        }
+        try {
+            // 写入时间取自clock，与过期判断使用同一时钟
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(clock.millis()));
+            boolean replaced = Files.exists(file);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            spillCount.incrementAndGet();
+            if (!replaced) {
+                spillFileCount.incrementAndGet();
+            }
+        } catch (IOException e) {
+            log.warn("会话记忆写入磁盘失败，conversationId: {}，错误: {}", conversationId, e.getMessage());
+        }
+    }
+
+    private List<StoredMessage> restore(String conversationId) {
+        if (Objects.isNull(spillDirectory)) {
+            return List.of();
+        }
+        Path file = spillFile(conversationId);
+        try {
+            if (!Files.exists(file)) {
+                return List.of();
+            }
+            if (clock.millis() - Files.getLastModifiedTime(file).toMillis() > spillTtlMillis) {
+                if (Files.deleteIfExists(file)) {
+                    spillFileCount.decrementAndGet();
+                    spillExpiredCount.incrementAndGet();
+                }
+                return List.of();
+            }
+        } catch (IOException e) {
+            log.warn("读取磁盘上的会话记忆失败，conversationId: {}，错误: {}", conversationId, e.getMessage());
+            return List.of();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = in.readInt();
+            List<StoredMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                MessageType type = MessageType.valueOf(in.readUTF());
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                messages.add(new StoredMessage(type, new String(text, StandardCharsets.UTF_8)));
+            }
+            if (Files.deleteIfExists(file)) {
+                spillFileCount.decrementAndGet();
+            }
+            restoreCount.incrementAndGet();
+            return messages;
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取磁盘上的会话记忆失败，conversationId: {}，错误: {}", conversationId, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void deleteSpillFile(String conversationId) {
+        if (Objects.isNull(spillDirectory)) {
+            return;
+        }
+        try {
+            if (Files.deleteIfExists(spillFile(conversationId))) {
+                spillFileCount.decrementAndGet();
+            }
+        } catch (IOException e) {
+            log.warn("删除磁盘上的会话记忆失败，conversationId: {}，错误: {}", conversationId, e.getMessage());
+        }
+    }
+
+    private Path spillFile(String conversationId) {
+        // conversationId来自客户端，编码后作为文件名，避免路径穿越
+        String name = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(conversationId.getBytes(StandardCharsets.UTF_8));
+        return spillDirectory.resolve(name + SPILL_SUFFIX);
+    }
+
+    private static String decodeId(String name) {
+        return new String(Base64.getUrlDecoder().decode(name), StandardCharsets.UTF_8);
+    }
+
+    private record SpillFile(Path path, long modifiedMillis) {
+    }
+
+    private static final class Conversation {
+
+        private final List<StoredMessage> messages;
+        private long lastAccessMillis;
+
+        private Conversation(List<StoredMessage> messages, long lastAccessMillis) {
+            this.messages = messages;
+            this.lastAccessMillis = lastAccessMillis;
+        }
+    }
+
+    /**
+     * 精简后的消息：只保留类型和文本
+     */
+    private record StoredMessage(MessageType type, String text) {
+
+        /**
+         * 只保存用户、助手和系统消息的文本，工具消息和空文本返回null
+         */
+        static StoredMessage of(Message message) {
+            MessageType type = message.getMessageType();
+            String text = message.getText();
+            if (type == MessageType.TOOL || Objects.isNull(text) || text.isEmpty()) {
+                return null;
+            }
+            return new StoredMessage(type, text);
+        }
+
+        Message toMessage() {
+            return switch (type) {
+                case USER -> new UserMessage(text);
+                case ASSISTANT -> new AssistantMessage(text);
+                case SYSTEM -> new SystemMessage(text);
+                default -> throw new IllegalStateException("不支持的消息类型: " + type);
+            };
+        }
+    }
+}
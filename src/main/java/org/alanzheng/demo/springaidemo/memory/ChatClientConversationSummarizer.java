@@ -0,0 +1,70 @@
+package org.alanzheng.demo.springaidemo.memory;
+
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 调用模型生成会话摘要
+ * 摘要请求不带会话记忆和工具，耗时和token用量记在 endpoint=chat-memory-summary 下
+ */
+public class ChatClientConversationSummarizer implements ConversationSummarizer {
+
+    static final String ENDPOINT = "chat-memory-summary";
+
+    private static final String SYSTEM_PROMPT = """
+            你负责压缩多轮对话的历史记录。请把已有摘要和新增的对话合并为一段新的摘要，
+            保留用户的身份、偏好、已确认的事实、做出的决定和尚未解决的问题，省略寒暄和重复内容，
+            使用与对话相同的语言，不超过%d字，只输出摘要本身。""";
+
+    private final ChatClient chatClient;
+    private final AiMetrics aiMetrics;
+    private final String systemPrompt;
+
+    /**
+     * @param chatModel 用于生成摘要的模型
+     * @param aiMetrics AI调用指标
+     * @param maxSummaryChars 摘要的最大字数
+     */
+    public ChatClientConversationSummarizer(ChatModel chatModel, AiMetrics aiMetrics, int maxSummaryChars) {
+        Objects.requireNonNull(chatModel, "ChatModel不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        this.chatClient = ChatClient.builder(chatModel).build();
+        this.aiMetrics = aiMetrics;
+        this.systemPrompt = SYSTEM_PROMPT.formatted(Math.max(1, maxSummaryChars));
+    }
+
+    @Override
+    public String summarize(String previousSummary, List<Message> messages) {
+        StringBuilder user = new StringBuilder();
+        if (StringUtils.isNotBlank(previousSummary)) {
+            user.append("已有摘要：\n").append(previousSummary).append("\n\n");
+        }
+        user.append("新增对话：\n");
+        for (Message message : messages) {
+            user.append(message.getMessageType() == MessageType.USER ? "用户：" : "助手：")
+                    .append(message.getText())
+                    .append('\n');
+        }
+        ChatResponse chatResponse = aiMetrics.timeChat(ENDPOINT, () -> chatClient.prompt()
+                .system(systemPrompt)
+                .user(user.toString())
+                .call()
+                .chatResponse());
+        aiMetrics.recordUsage(ENDPOINT, chatResponse);
+        String summary = Objects.nonNull(chatResponse) && Objects.nonNull(chatResponse.getResult())
+                ? chatResponse.getResult().getOutput().getText()
+                : null;
+        if (StringUtils.isBlank(summary)) {
+            throw new RuntimeException("摘要内容为空");
+        }
+        return summary.strip();
+    }
+}
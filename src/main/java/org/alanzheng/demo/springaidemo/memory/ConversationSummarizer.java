@@ -0,0 +1,22 @@
+package org.alanzheng.demo.springaidemo.memory;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 会话摘要生成器
+ * 把较早的对话轮次与已有摘要合并为新的摘要
+ */
+@FunctionalInterface
+public interface ConversationSummarizer {
+
+    /**
+     * 生成摘要
+     *
+     * @param previousSummary 已有摘要，没有时为null
+     * @param messages 需要并入摘要的消息，按时间顺序
+     * @return 新的摘要文本
+     */
+    String summarize(String previousSummary, List<Message> messages);
+}
@@ -0,0 +1,249 @@
+package org.alanzheng.demo.springaidemo.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带滚动摘要的会话记忆
+ * 会话中原文保留的消息估算超过trigger-tokens时，在后台把较早的轮次与已有摘要合并为新摘要，
+ * 只保留最近约keep-recent-tokens的轮次原文，每轮请求的历史大小因此基本不随会话长度增长。
+ * 摘要以一问一答（用户消息给出摘要、助手消息确认）放在会话开头，与原文一起保存在会话存储中，
+ * 随会话一起淘汰或写入磁盘；不使用系统消息，避免部分模型拒绝不在首位的系统消息，历史也始终以用户消息开头。
+ * 摘要生成期间的新消息照常写入；摘要完成时若较早的轮次已被其他写入截断，则放弃本次结果。
+ * 原文仍受max-messages和max-tokens约束，摘要跟不上或失败时按窗口丢弃最早的消息。
+ */
+@Slf4j
+public class SummarizingChatMemory implements ChatMemory, AutoCloseable {
+
+    static final String SUMMARY_PREFIX = "以下是此前对话的摘要：\n";
+    static final String SUMMARY_ACK = "好的，我会结合此前对话的摘要继续回答。";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ChatMemoryRepository repository;
+    private final ConversationSummarizer summarizer;
+    private final Executor executor;
+    private final int maxMessages;
+    private final int maxTokens;
+    private final int triggerTokens;
+    private final int keepRecentTokens;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Set<String> summarizing = ConcurrentHashMap.newKeySet();
+    private final AtomicLong summaryCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * @param repository 会话消息存储
+     * @param summarizer 摘要生成器
+     * @param executor 执行摘要生成的线程池
+     * @param maxMessages 原文最多保留的消息数
+     * @param maxTokens 摘要和原文合计的估算token数上限
+     * @param triggerTokens 原文估算token数超过该值时生成摘要
+     * @param keepRecentTokens 生成摘要时保留原文的最近轮次的估算token数
+     */
+    public SummarizingChatMemory(ChatMemoryRepository repository, ConversationSummarizer summarizer, Executor executor,
+                                 int maxMessages, int maxTokens, int triggerTokens, int keepRecentTokens) {
+        Objects.requireNonNull(repository, "ChatMemoryRepository不能为空");
+        Objects.requireNonNull(summarizer, "ConversationSummarizer不能为空");
+        Objects.requireNonNull(executor, "Executor不能为空");
+        this.repository = repository;
+        this.summarizer = summarizer;
+        this.executor = executor;
+        this.maxMessages = Math.max(1, maxMessages);
+        this.maxTokens = Math.max(1, maxTokens);
+        this.triggerTokens = Math.max(1, triggerTokens);
+        this.keepRecentTokens = Math.max(0, Math.min(keepRecentTokens, this.triggerTokens));
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Objects.requireNonNull(conversationId, "conversationId不能为空");
+        Objects.requireNonNull(messages, "messages不能为空");
+        List<Message> summary;
+        List<Message> recent;
+        synchronized (lock(conversationId)) {
+            List<Message> stored = repository.findByConversationId(conversationId);
+            summary = summaryOf(stored);
+            List<Message> window = new ArrayList<>(withoutSummary(stored));
+            window.addAll(messages);
+            int budget = Math.max(1, maxTokens - tokens(summary));
+            recent = TokenWindowChatMemory.trim(window, maxMessages, budget);
+            repository.saveAll(conversationId, join(summary, recent));
+        }
+        if (tokens(recent) > triggerTokens) {
+            summarizeAsync(conversationId, summary, recent);
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        Objects.requireNonNull(conversationId, "conversationId不能为空");
+        return repository.findByConversationId(conversationId);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        Objects.requireNonNull(conversationId, "conversationId不能为空");
+        synchronized (lock(conversationId)) {
+            repository.deleteByConversationId(conversationId);
+        }
+    }
+
+    public long getSummaryCount() {
+        return summaryCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * 关闭摘要线程池（executor为ExecutorService时），未完成的摘要直接放弃
+     */
+    @Override
+    public void close() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void summarizeAsync(String conversationId, List<Message> summary, List<Message> recent) {
+        int split = splitIndex(recent);
+        if (split <= 0 || !summarizing.add(conversationId)) {
+            return;
+        }
+        List<Message> older = List.copyOf(recent.subList(0, split));
+        try {
+            executor.execute(() -> {
+                try {
+                    String previous = summary.isEmpty() ? null : text(summary.get(0)).substring(SUMMARY_PREFIX.length());
+                    compact(conversationId, older, summarizer.summarize(previous, older));
+                } catch (RuntimeException e) {
+                    failureCount.incrementAndGet();
+                    log.warn("生成会话摘要失败，conversationId: {}，错误: {}", conversationId, e.getMessage());
+                } finally {
+                    summarizing.remove(conversationId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            summarizing.remove(conversationId);
+            log.debug("会话摘要任务队列已满，暂不生成摘要，conversationId: {}", conversationId);
+        }
+    }
+
+    /**
+     * 用新摘要替换已并入摘要的较早轮次，期间新写入的消息原样保留
+     */
+    private void compact(String conversationId, List<Message> older, String summaryText) {
+        synchronized (lock(conversationId)) {
+            List<Message> stored = repository.findByConversationId(conversationId);
+            List<Message> current = withoutSummary(stored);
+            if (!startsWith(current, older)) {
+                log.debug("会话在生成摘要期间已被截断或清空，放弃本次摘要，conversationId: {}", conversationId);
+                return;
+            }
+            repository.saveAll(conversationId,
+                    join(summaryMessages(summaryText), current.subList(older.size(), current.size())));
+        }
+        summaryCount.incrementAndGet();
+        log.debug("会话摘要已更新，conversationId: {}，并入消息数: {}", conversationId, older.size());
+    }
+
+    /**
+     * 从末尾向前保留约keepRecentTokens的消息，较早部分并入摘要；保留部分向前扩展到用户消息，保证轮次完整
+     *
+     * @return 并入摘要的消息数，为0时不需要生成摘要
+     */
+    private int splitIndex(List<Message> messages) {
+        int split = messages.size() - 1;
+        int tokens = TokenWindowChatMemory.estimateTokens(messages.get(split).getText());
+        while (split > 0 && tokens + TokenWindowChatMemory.estimateTokens(messages.get(split - 1).getText()) <= keepRecentTokens) {
+            split--;
+            tokens += TokenWindowChatMemory.estimateTokens(messages.get(split).getText());
+        }
+        while (split > 0 && messages.get(split).getMessageType() != MessageType.USER) {
+            split--;
+        }
+        return split;
+    }
+
+    private Object lock(String conversationId) {
+        return locks[Math.floorMod(conversationId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static List<Message> summaryMessages(String summaryText) {
+        return List.of(new UserMessage(SUMMARY_PREFIX + summaryText), new AssistantMessage(SUMMARY_ACK));
+    }
+
+    /**
+     * 会话开头的摘要问答，没有摘要时返回空列表
+     */
+    private static List<Message> summaryOf(List<Message> stored) {
+        if (stored.size() >= 2
+                && stored.get(0).getMessageType() == MessageType.USER
+                && text(stored.get(0)).startsWith(SUMMARY_PREFIX)
+                && stored.get(1).getMessageType() == MessageType.ASSISTANT
+                && SUMMARY_ACK.equals(text(stored.get(1)))) {
+            return stored.subList(0, 2);
+        }
+        return List.of();
+    }
+
+    private static List<Message> withoutSummary(List<Message> stored) {
+        return stored.subList(summaryOf(stored).size(), stored.size());
+    }
+
+    private static List<Message> join(List<Message> summary, List<Message> messages) {
+        if (summary.isEmpty()) {
+            return messages;
+        }
+        List<Message> joined = new ArrayList<>(summary.size() + messages.size());
+        joined.addAll(summary);
+        joined.addAll(messages);
+        return joined;
+    }
+
+    private static boolean startsWith(List<Message> messages, List<Message> prefix) {
+        if (messages.size() < prefix.size()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.size(); i++) {
+            Message a = messages.get(i);
+            Message b = prefix.get(i);
+            if (a.getMessageType() != b.getMessageType() || !Objects.equals(a.getText(), b.getText())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int tokens(List<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += TokenWindowChatMemory.estimateTokens(message.getText());
+        }
+        return tokens;
+    }
+
+    private static String text(Message message) {
+        return Objects.isNull(message) || Objects.isNull(message.getText()) ? "" : message.getText();
+    }
+}
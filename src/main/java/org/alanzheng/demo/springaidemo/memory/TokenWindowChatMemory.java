@@ -0,0 +1,106 @@
+package org.alanzheng.demo.springaidemo.memory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 按消息数和token预算截断的会话记忆
+ * 每次写入后从最早的消息开始丢弃，直到消息数不超过max-messages且估算token数不超过max-tokens，
+ * 最新一条消息始终保留；截断后若以助手消息开头则一并丢弃，保证窗口从用户提问开始。
+ * 每轮对话只把窗口内的历史随请求发送，而不是整个会话记录。
+ */
+public class TokenWindowChatMemory implements ChatMemory {
+
+    private final ChatMemoryRepository repository;
+    private final int maxMessages;
+    private final int maxTokens;
+
+    /**
+     * @param repository 会话消息存储
+     * @param maxMessages 每个会话最多保留的消息数
+     * @param maxTokens 每个会话保留消息的估算token数上限
+     */
+    public TokenWindowChatMemory(ChatMemoryRepository repository, int maxMessages, int maxTokens) {
+        Objects.requireNonNull(repository, "ChatMemoryRepository不能为空");
+        this.repository = repository;
+        this.maxMessages = Math.max(1, maxMessages);
+        this.maxTokens = Math.max(1, maxTokens);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Objects.requireNonNull(conversationId, "conversationId不能为空");
+        Objects.requireNonNull(messages, "messages不能为空");
+        List<Message> window = new ArrayList<>(repository.findByConversationId(conversationId));
+        window.addAll(messages);
+        repository.saveAll(conversationId, trim(window, maxMessages, maxTokens));
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        Objects.requireNonNull(conversationId, "conversationId不能为空");
+        return repository.findByConversationId(conversationId);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        Objects.requireNonNull(conversationId, "conversationId不能为空");
+        repository.deleteByConversationId(conversationId);
+    }
+
+    /**
+     * 从最早的消息开始丢弃，直到消息数和估算token数都不超过上限，最新一条消息始终保留
+     *
+     * @param messages 消息，按时间顺序
+     * @param maxMessages 消息数上限
+     * @param maxTokens 估算token数上限
+     * @return 截断后的消息，发生截断时不以助手消息开头（只剩最后一条时除外）
+     */
+    static List<Message> trim(List<Message> messages, int maxMessages, int maxTokens) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += estimateTokens(message.getText());
+        }
+        int start = 0;
+        while (start < messages.size() - 1
+                && (messages.size() - start > maxMessages || tokens > maxTokens)) {
+            tokens -= estimateTokens(messages.get(start).getText());
+            start++;
+        }
+        while (start > 0 && start < messages.size() - 1
+                && messages.get(start).getMessageType() == MessageType.ASSISTANT) {
+            start++;
+        }
+        return start == 0 ? messages : messages.subList(start, messages.size());
+    }
+
+    /**
+     * 估算token数：中日韩字符按每字1个token，其余字符按每4个字符1个token
+     *
+     * @param text 文本，可为null
+     * @return 估算的token数
+     */
+    static int estimateTokens(String text) {
+        if (Objects.isNull(text) || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            Character.UnicodeScript script = Character.UnicodeScript.of(text.charAt(i));
+            if (script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                    || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+}
@@ -0,0 +1,222 @@
+package org.alanzheng.demo.springaidemo.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.tracing.StageTracer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * AI调用指标
+ * 统一记录对话、首个片段、嵌入、向量检索、上下文构建和工具调用的耗时直方图，
+ * 以及token数和错误数，按接口（endpoint）和模型打标签，通过Actuator的prometheus端点导出。
+ * 计时的同时在当前trace中创建同名（去掉.latency后缀）的span，标签与指标相同。
+ * 模型层的原始调用耗时另见Spring AI自带的gen_ai.client.operation指标。
+ */
+@Slf4j
+@Component
+public class AiMetrics {
+
+    public static final String CHAT_LATENCY = "ai.chat.latency";
+    public static final String FIRST_TOKEN_LATENCY = "ai.chat.first.token.latency";
+    public static final String EMBEDDING_LATENCY = "ai.embedding.latency";
+    public static final String VECTOR_SEARCH_LATENCY = "ai.vectorstore.search.latency";
+    public static final String CONTEXT_BUILD_LATENCY = "ai.rag.context.build.latency";
+    public static final String TOOL_CALL_LATENCY = "ai.tool.call.latency";
+    public static final String INGEST_LATENCY = "ai.ingest.latency";
+    public static final String TOKENS = "ai.tokens";
+    public static final String ERRORS = "ai.errors";
+    public static final String STRUCTURED_REPAIRS = "ai.structured.repairs";
+    public static final String STRUCTURED_RETRIES_SAVED = "ai.structured.retries.saved";
+
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_ERROR = "error";
+    static final String OUTCOME_CANCELLED = "cancelled";
+
+    private final MeterRegistry registry;
+    private final StageTracer stageTracer;
+    private final String chatModel;
+    private final String embeddingModel;
+
+    public AiMetrics(MeterRegistry registry,
+                     StageTracer stageTracer,
+                     @Value("${spring.ai.openai.chat.options.model:unknown}") String chatModel,
+                     @Value("${spring.ai.openai.embedding.options.model:unknown}") String embeddingModel) {
+        Objects.requireNonNull(registry, "MeterRegistry不能为空");
+        Objects.requireNonNull(stageTracer, "StageTracer不能为空");
+        this.registry = registry;
+        this.stageTracer = stageTracer;
+        this.chatModel = chatModel;
+        this.embeddingModel = embeddingModel;
+    }
+
+    /**
+     * 记录一次对话调用的耗时，失败时额外累加错误数
+     *
+     * @param endpoint 接口名称，如chat、rag、agent
+     * @param call 对话调用
+     * @return 调用结果
+     */
+    public <T> T timeChat(String endpoint, Supplier<T> call) {
+        return time(CHAT_LATENCY, Tags.of("endpoint", endpoint, "model", chatModel), endpoint, call);
+    }
+
+    /**
+     * 记录一次实际发往嵌入接口的请求耗时
+     */
+    public <T> T timeEmbedding(Supplier<T> call) {
+        return time(EMBEDDING_LATENCY, Tags.of("model", embeddingModel), "embedding", call);
+    }
+
+    /**
+     * 记录一次向量检索的耗时
+     *
+     * @param endpoint 接口名称
+     * @param store 向量存储实现名称
+     */
+    public <T> T timeVectorSearch(String endpoint, String store, Supplier<T> call) {
+        return time(VECTOR_SEARCH_LATENCY, Tags.of("endpoint", endpoint, "store", store), endpoint, call);
+    }
+
+    /**
+     * 记录一次RAG上下文构建的耗时
+     */
+    public <T> T timeContextBuild(String endpoint, Supplier<T> call) {
+        return time(CONTEXT_BUILD_LATENCY, Tags.of("endpoint", endpoint), endpoint, call);
+    }
+
+    /**
+     * 记录一次工具调用的耗时
+     *
+     * @param tool 工具名称
+     */
+    public <T> T timeToolCall(String tool, Supplier<T> call) {
+        return time(TOOL_CALL_LATENCY, Tags.of("tool", tool), "tool", call);
+    }
+
+    /**
+     * 记录一次文档加载或同步的耗时
+     *
+     * @param operation 操作名称，如sync、load-all、load-one
+     */
+    public <T> T timeIngest(String operation, Supplier<T> call) {
+        return time(INGEST_LATENCY, Tags.of("operation", operation), "ingest", call);
+    }
+
+    /**
+     * 记录流式对话的总耗时
+     *
+     * @param outcome success、error或cancelled
+     */
+    public void recordStream(String endpoint, long nanos, String outcome) {
+        timer(CHAT_LATENCY, Tags.of("endpoint", endpoint, "model", chatModel, "outcome", outcome))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录流式对话从发起到首个片段的耗时
+     */
+    public void recordFirstToken(String endpoint, long nanos) {
+        timer(FIRST_TOKEN_LATENCY, Tags.of("endpoint", endpoint, "model", chatModel))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 按模型返回的用量累加prompt和completion的token数
+     *
+     * @param endpoint 接口名称
+     * @param response 模型响应，可为null
+     */
+    public void recordUsage(String endpoint, ChatResponse response) {
+        if (Objects.isNull(response) || Objects.isNull(response.getMetadata())) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (Objects.isNull(usage)) {
+            return;
+        }
+        String model = Objects.toString(response.getMetadata().getModel(), chatModel);
+        if (model.isEmpty()) {
+            model = chatModel;
+        }
+        if (Objects.nonNull(usage.getPromptTokens()) && usage.getPromptTokens() > 0) {
+            tokenCounter(endpoint, model, "prompt").increment(usage.getPromptTokens());
+        }
+        if (Objects.nonNull(usage.getCompletionTokens()) && usage.getCompletionTokens() > 0) {
+            tokenCounter(endpoint, model, "completion").increment(usage.getCompletionTokens());
+        }
+    }
+
+    /**
+     * 累加错误数
+     */
+    public void recordError(String endpoint, Throwable error) {
+        Counter.builder(ERRORS)
+                .description("AI调用错误数")
+                .tags("endpoint", endpoint, "exception", error.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 记录一次结构化输出的本地修复
+     *
+     * @param outputType 输出类型
+     * @param repaired 是否修复成功
+     * @param retrySaved 修复成功是否省掉了一次校验重试
+     */
+    public void recordStructuredRepair(String outputType, boolean repaired, boolean retrySaved) {
+        Counter.builder(STRUCTURED_REPAIRS)
+                .description("结构化输出本地修复次数")
+                .tags("type", outputType, "outcome", repaired ? "repaired" : "unrepairable")
+                .register(registry)
+                .increment();
+        if (repaired && retrySaved) {
+            Counter.builder(STRUCTURED_RETRIES_SAVED)
+                    .description("本地修复省掉的模型重试次数")
+                    .tags("type", outputType)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    private <T> T time(String name, Tags tags, String endpoint, Supplier<T> call) {
+        try (StageTracer.Stage stage = stageTracer.startIfTraced(name.replace(".latency", ""))) {
+            tags.forEach(tag -> stage.tag(tag.getKey(), tag.getValue()));
+            long start = System.nanoTime();
+            try {
+                T result = call.get();
+                timer(name, tags.and("outcome", OUTCOME_SUCCESS)).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return result;
+            } catch (RuntimeException e) {
+                timer(name, tags.and("outcome", OUTCOME_ERROR)).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                recordError(endpoint, e);
+                stage.error(e);
+                throw e;
+            }
+        }
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter tokenCounter(String endpoint, String model, String type) {
+        return Counter.builder(TOKENS)
+                .description("模型返回的token用量")
+                .tags("endpoint", endpoint, "model", model, "type", type)
+                .register(registry);
+    }
+}
@@ -0,0 +1,40 @@
+package org.alanzheng.demo.springaidemo.metrics;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.Objects;
+
+/**
+ * 记录嵌入接口调用耗时的EmbeddingModel包装
+ * 位于批量合并之后、实际嵌入模型之前，每条记录对应一次真正发出的嵌入请求
+ */
+public class MeteredEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final AiMetrics aiMetrics;
+
+    public MeteredEmbeddingModel(EmbeddingModel delegate, AiMetrics aiMetrics) {
+        Objects.requireNonNull(delegate, "EmbeddingModel不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        this.delegate = delegate;
+        this.aiMetrics = aiMetrics;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return aiMetrics.timeEmbedding(() -> delegate.call(request));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return aiMetrics.timeEmbedding(() -> delegate.embed(document));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
@@ -0,0 +1,56 @@
+package org.alanzheng.demo.springaidemo.metrics;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 记录工具调用耗时的ToolCallback包装
+ * Agent和MCP Server调用工具时都经过ToolCallback，在这一层计时不需要改动各个工具方法
+ */
+public class MeteredToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final AiMetrics aiMetrics;
+
+    public MeteredToolCallback(ToolCallback delegate, AiMetrics aiMetrics) {
+        Objects.requireNonNull(delegate, "ToolCallback不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        this.delegate = delegate;
+        this.aiMetrics = aiMetrics;
+    }
+
+    /**
+     * 包装工具回调提供者，每次取工具列表时再包装，保留原提供者的延迟初始化
+     */
+    public static ToolCallbackProvider wrap(ToolCallbackProvider provider, AiMetrics aiMetrics) {
+        return () -> Arrays.stream(provider.getToolCallbacks())
+                .map(callback -> new MeteredToolCallback(callback, aiMetrics))
+                .toArray(ToolCallback[]::new);
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return aiMetrics.timeToolCall(getToolDefinition().name(), () -> delegate.call(toolInput));
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return aiMetrics.timeToolCall(getToolDefinition().name(), () -> delegate.call(toolInput, toolContext));
+    }
+}
@@ -2,21 +2,28 @@ package org.alanzheng.demo.springaidemo.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.alanzheng.demo.springaidemo.mcp.McpTools;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.metrics.MeteredToolCallback;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.util.Objects;
 
 /**
  * Agent 服务类
- * 集成 MCP 工具，让 AI Agent 能够自动调用工具完成任务
+ * 集成 MCP 工具，让 AI Agent 能够自动调用工具完成任务，传入会话ID时带上该会话的历史消息
+ * 模型在同一轮请求多个工具时，由{@link org.alanzheng.demo.springaidemo.tool.ParallelToolCallingManager}并行执行
  */
 @Slf4j
 @Service
@@ -26,9 +33,10 @@ public class AgentService {
             你是一个智能助手，可以使用以下工具来帮助用户：
             
             1. loadAllDocuments - 加载知识库中的所有文档到向量存储。返回加载的文档数量。
-            2. loadDocument - 加载指定文件到向量存储。参数：filePath - 文件的完整路径。返回加载的文档数量。
-            3. answerQuestion - 基于知识库回答用户问题。使用RAG（检索增强生成）技术，从知识库中检索相关信息并生成回答。参数：question - 用户的问题。
-            4. searchDocuments - 从知识库中检索与查询相关的文档。参数：query - 查询文本；topK - 返回的文档数量（可选，默认4）。返回检索到的文档摘要。
+            2. syncDocuments - 增量同步知识库到向量存储。只处理新增、修改和删除的文件，未变化的文件不会重新嵌入。返回同步结果摘要。
+            3. loadDocument - 加载指定文件到向量存储。参数：filePath - 文件的完整路径。返回加载的文档数量。
+            4. answerQuestion - 基于知识库回答用户问题。使用RAG（检索增强生成）技术，从知识库中检索相关信息并生成回答。参数：question - 用户的问题。
+            5. searchDocuments - 从知识库中检索与查询相关的文档。参数：query - 查询文本；topK - 返回的文档数量（可选，默认4）。返回检索到的文档摘要。
             
             当用户需要查询知识库、加载文档或检索信息时，你应该主动使用相应的工具。
             使用工具后，请根据工具返回的结果给用户一个清晰的回答。
@@ -37,6 +45,8 @@ public class AgentService {
     private ChatClient chatClient;
     private final ChatModel chatModel;
     private final McpTools mcpTools;
+    private final AiMetrics aiMetrics;
+    private final MessageChatMemoryAdvisor memoryAdvisor;
     
     @Value("${spring.ai.agent.system-prompt:}")
     private String customSystemPrompt;
@@ -46,14 +56,22 @@ public class AgentService {
      * 
      * @param chatModel ChatModel 实例
      * @param mcpTools MCP 工具实例
+     * @param aiMetrics AI调用指标
+     * @param chatMemory 会话记忆
      */
     public AgentService(@Qualifier("openAiChatModel") ChatModel chatModel,
-                       @Lazy McpTools mcpTools) {
+                       @Lazy McpTools mcpTools,
+                       AiMetrics aiMetrics,
+                       ChatMemory chatMemory) {
         Objects.requireNonNull(chatModel, "ChatModel不能为空");
         Objects.requireNonNull(mcpTools, "McpTools不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        Objects.requireNonNull(chatMemory, "ChatMemory不能为空");
         
         this.chatModel = chatModel;
         this.mcpTools = mcpTools;
+        this.aiMetrics = aiMetrics;
+        this.memoryAdvisor = MessageChatMemoryAdvisor.builder(chatMemory).build();
         
         log.info("AgentService 初始化完成");
     }
@@ -81,9 +99,11 @@ public class AgentService {
                     }
                     
                     // 在运行时创建 ToolCallbackProvider，此时 mcpTools 已经初始化
-                    ToolCallbackProvider toolCallbackProvider = MethodToolCallbackProvider.builder()
-                            .toolObjects(mcpTools)
-                            .build();
+                    ToolCallbackProvider toolCallbackProvider = MeteredToolCallback.wrap(
+                            MethodToolCallbackProvider.builder()
+                                    .toolObjects(mcpTools)
+                                    .build(),
+                            aiMetrics);
                     
                     // 构建 ChatClient，集成工具支持
                     // 通过 ToolCallbackProvider 注册工具
@@ -105,6 +125,17 @@ public class AgentService {
      * @return Agent 回复
      */
     public String chat(String message) {
+        return chat(message, null);
+    }
+    
+    /**
+     * Agent 对话接口（指定会话）
+     * 
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return Agent 回复
+     */
+    public String chat(String message, String conversationId) {
         long startTime = System.currentTimeMillis();
         log.info("Agent 收到用户消息: {}", truncateMessage(message));
         
@@ -118,11 +149,13 @@ public class AgentService {
                     : DEFAULT_SYSTEM_PROMPT;
             
             // Agent 会自动根据用户需求调用工具
-            String response = getChatClient().prompt()
+            ChatResponse chatResponse = aiMetrics.timeChat("agent", () -> withMemory(getChatClient().prompt(), conversationId)
                     .system(systemPrompt)
                     .user(message)
                     .call()
-                    .content();
+                    .chatResponse());
+            aiMetrics.recordUsage("agent", chatResponse);
+            String response = ChatResponses.text(chatResponse);
             
             if (StringUtils.isBlank(response)) {
                 throw new RuntimeException("Agent返回内容为空");
@@ -147,6 +180,18 @@ public class AgentService {
      * @return Agent 回复
      */
     public String chatWithSystemPrompt(String systemPrompt, String message) {
+        return chatWithSystemPrompt(systemPrompt, message, null);
+    }
+    
+    /**
+     * Agent 对话接口（带自定义系统提示，指定会话）
+     * 
+     * @param systemPrompt 自定义系统提示词
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return Agent 回复
+     */
+    public String chatWithSystemPrompt(String systemPrompt, String message, String conversationId) {
         long startTime = System.currentTimeMillis();
         log.info("Agent 收到用户消息（自定义提示）: {}", truncateMessage(message));
         
@@ -159,11 +204,13 @@ public class AgentService {
                     ? systemPrompt 
                     : DEFAULT_SYSTEM_PROMPT;
             
-            String response = getChatClient().prompt()
+            ChatResponse chatResponse = aiMetrics.timeChat("agent-with-prompt", () -> withMemory(getChatClient().prompt(), conversationId)
                     .system(finalSystemPrompt)
                     .user(message)
                     .call()
-                    .content();
+                    .chatResponse());
+            aiMetrics.recordUsage("agent-with-prompt", chatResponse);
+            String response = ChatResponses.text(chatResponse);
             
             if (StringUtils.isBlank(response)) {
                 throw new RuntimeException("Agent返回内容为空");
@@ -180,6 +227,66 @@ public class AgentService {
         }
     }
     
+    /**
+     * Agent 流式对话接口
+     * 工具调用在模型返回工具请求时同步执行，执行期间流中不会有新片段
+     * 
+     * @param systemPrompt 自定义系统提示词，为空时使用默认提示词
+     * @param message 用户消息
+     * @return Agent 回复片段流
+     */
+    public Flux<String> chatStream(String systemPrompt, String message) {
+        return chatStream(systemPrompt, message, null);
+    }
+    
+    /**
+     * Agent 流式对话接口（指定会话）
+     * 
+     * @param systemPrompt 自定义系统提示词，为空时使用默认提示词
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return Agent 回复片段流
+     */
+    public Flux<String> chatStream(String systemPrompt, String message, String conversationId) {
+        if (StringUtils.isBlank(message)) {
+            return Flux.error(new IllegalArgumentException("消息内容不能为空"));
+        }
+        return StreamLogging.timed(tokens(systemPrompt, message, conversationId), "Agent流式对话", message, aiMetrics, "agent-stream");
+    }
+    
+    /**
+     * 流式调用集成工具的模型，返回未附加日志和指标的回复片段流
+     * 
+     * @param systemPrompt 自定义系统提示词，为空时使用配置或默认提示词
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     */
+    Flux<String> tokens(String systemPrompt, String message, String conversationId) {
+        String finalSystemPrompt = StringUtils.isNotBlank(systemPrompt)
+                ? systemPrompt
+                : StringUtils.isNotBlank(customSystemPrompt) ? customSystemPrompt : DEFAULT_SYSTEM_PROMPT;
+        return Flux.defer(() -> withMemory(getChatClient().prompt(), conversationId)
+                .system(finalSystemPrompt)
+                .user(message)
+                .stream()
+                .content());
+    }
+    
+    /**
+     * 会话ID不为空时附加会话记忆：请求前带上窗口内的历史消息，回复后写入本轮问答
+     * 
+     * @param spec 请求
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return 请求
+     */
+    private ChatClient.ChatClientRequestSpec withMemory(ChatClient.ChatClientRequestSpec spec, String conversationId) {
+        if (StringUtils.isBlank(conversationId)) {
+            return spec;
+        }
+        return spec.advisors(memoryAdvisor)
+                .advisors(advisor -> advisor.param(ChatMemory.CONVERSATION_ID, conversationId));
+    }
+    
     /**
      * 截断消息内容用于日志记录
      * 
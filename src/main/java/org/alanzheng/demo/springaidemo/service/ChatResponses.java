@@ -0,0 +1,43 @@
+package org.alanzheng.demo.springaidemo.service;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.chat.model.ChatResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * 模型响应工具
+ * 同步调用取完整的ChatResponse以便记录token用量，再从中取回复文本
+ */
+final class ChatResponses {
+
+    private ChatResponses() {
+    }
+
+    /**
+     * 取回复文本，响应为空时返回null
+     */
+    static String text(ChatResponse response) {
+        if (Objects.isNull(response) || Objects.isNull(response.getResult())
+                || Objects.isNull(response.getResult().getOutput())) {
+            return null;
+        }
+        return response.getResult().getOutput().getText();
+    }
+
+    /**
+     * 将回复片段流拼接为完整回复，内容为空时以RuntimeException结束
+     *
+     * @param tokens 回复片段流
+     * @param emptyMessage 内容为空时的错误信息
+     */
+    static Mono<String> join(Flux<String> tokens, String emptyMessage) {
+        return tokens.collect(Collectors.joining())
+                .flatMap(text -> StringUtils.isBlank(text)
+                        ? Mono.error(new RuntimeException(emptyMessage))
+                        : Mono.just(text));
+    }
+}
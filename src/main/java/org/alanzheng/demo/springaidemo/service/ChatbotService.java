@@ -1,17 +1,22 @@
 package org.alanzheng.demo.springaidemo.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.util.Objects;
 
 /**
  * Chatbot服务类
- * 使用Spring AI的ChatClient进行对话
+ * 使用Spring AI的ChatClient进行对话，传入会话ID时带上该会话的历史消息
  */
 @Slf4j
 @Service
@@ -20,14 +25,22 @@ public class ChatbotService {
     private static final int MAX_LOG_MESSAGE_LENGTH = 200;
     
     private final ChatClient chatClient;
+    private final AiMetrics aiMetrics;
+    private final MessageChatMemoryAdvisor memoryAdvisor;
     
     /**
      * 构造函数注入ChatModel，并创建ChatClient
      * 使用@Qualifier指定使用OpenAI的ChatModel
      */
-    public ChatbotService(@Qualifier("openAiChatModel") ChatModel chatModel) {
+    public ChatbotService(@Qualifier("openAiChatModel") ChatModel chatModel, 
+                          AiMetrics aiMetrics,
+                          ChatMemory chatMemory) {
         Objects.requireNonNull(chatModel, "ChatModel不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        Objects.requireNonNull(chatMemory, "ChatMemory不能为空");
         this.chatClient = ChatClient.builder(chatModel).build();
+        this.aiMetrics = aiMetrics;
+        this.memoryAdvisor = MessageChatMemoryAdvisor.builder(chatMemory).build();
     }
     
     /**
@@ -37,6 +50,17 @@ public class ChatbotService {
      * @return AI回复内容
      */
     public String chat(String message) {
+        return chat(message, null);
+    }
+    
+    /**
+     * 在指定会话中发送消息并获取AI回复
+     * 
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return AI回复内容
+     */
+    public String chat(String message, String conversationId) {
         long startTime = System.currentTimeMillis();
         String truncatedMessage = truncateMessage(message);
         
@@ -47,10 +71,12 @@ public class ChatbotService {
                 throw new IllegalArgumentException("消息内容不能为空");
             }
             
-            String response = chatClient.prompt()
+            ChatResponse chatResponse = aiMetrics.timeChat("chat", () -> withMemory(chatClient.prompt(), conversationId)
                     .user(message)
                     .call()
-                    .content();
+                    .chatResponse());
+            aiMetrics.recordUsage("chat", chatResponse);
+            String response = ChatResponses.text(chatResponse);
             
             // 判空处理
             if (StringUtils.isBlank(response)) {
@@ -70,6 +96,46 @@ public class ChatbotService {
         }
     }
     
+    /**
+     * 流式发送消息，按片段返回AI回复
+     * 取消订阅（如客户端断开）会取消上游模型请求
+     * 
+     * @param message 用户消息
+     * @return AI回复片段流
+     */
+    public Flux<String> chatStream(String message) {
+        return chatStream(message, null);
+    }
+    
+    /**
+     * 在指定会话中流式发送消息
+     * 
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return AI回复片段流
+     */
+    public Flux<String> chatStream(String message, String conversationId) {
+        if (StringUtils.isBlank(message)) {
+            return Flux.error(new IllegalArgumentException("消息内容不能为空"));
+        }
+        return StreamLogging.timed(tokens(null, message, conversationId), "流式chat", message, aiMetrics, "chat-stream");
+    }
+    
+    /**
+     * 流式调用模型，返回未附加日志和指标的回复片段流
+     * 
+     * @param systemPrompt 系统提示词，为空时不设置
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     */
+    Flux<String> tokens(String systemPrompt, String message, String conversationId) {
+        ChatClient.ChatClientRequestSpec spec = withMemory(chatClient.prompt(), conversationId).user(message);
+        if (StringUtils.isNotBlank(systemPrompt)) {
+            spec = spec.system(systemPrompt);
+        }
+        return spec.stream().content();
+    }
+    
     /**
      * 带系统提示的聊天
      * 
@@ -100,11 +166,13 @@ public class ChatbotService {
 //
 //            String response = spec.call().content();
 
-            String response = chatClient.prompt()
+            ChatResponse chatResponse = aiMetrics.timeChat("chat-with-prompt", () -> chatClient.prompt()
                     .user(userMessage)
                     .system(systemPrompt)
                     .call()
-                    .content();
+                    .chatResponse());
+            aiMetrics.recordUsage("chat-with-prompt", chatResponse);
+            String response = ChatResponses.text(chatResponse);
             
             // 判空处理
             if (StringUtils.isBlank(response)) {
@@ -125,6 +193,21 @@ public class ChatbotService {
         }
     }
     
+    /**
+     * 会话ID不为空时附加会话记忆：请求前带上窗口内的历史消息，回复后写入本轮问答
+     * 
+     * @param spec 请求
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return 请求
+     */
+    private ChatClient.ChatClientRequestSpec withMemory(ChatClient.ChatClientRequestSpec spec, String conversationId) {
+        if (StringUtils.isBlank(conversationId)) {
+            return spec;
+        }
+        return spec.advisors(memoryAdvisor)
+                .advisors(advisor -> advisor.param(ChatMemory.CONVERSATION_ID, conversationId));
+    }
+    
     /**
      * 截断消息内容用于日志记录，避免日志过长
      * 
@@ -1,16 +1,18 @@
 package org.alanzheng.demo.springaidemo.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.dto.SyncResult;
+import org.alanzheng.demo.springaidemo.ingest.DocumentParser;
+import org.alanzheng.demo.springaidemo.ingest.IngestionPipeline;
+import org.alanzheng.demo.springaidemo.ingest.KnowledgeBaseManifest;
+import org.alanzheng.demo.springaidemo.ingest.VectorStoreChangedEvent;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.vectorstore.CompactableVectorStore;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
-import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.transformer.splitter.TextSplitter;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -19,8 +21,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * 文档服务类
@@ -30,62 +40,69 @@ import java.util.Objects;
 @Service
 public class DocumentService {
     
-    private static final String[] SUPPORTED_TEXT_EXTENSIONS = {".txt", ".md", ".text"};
-    private static final String PDF_EXTENSION = ".pdf";
-    
     private final VectorStore vectorStore;
-    private final TextSplitter textSplitter;
-    private final ResourceLoader resourceLoader;
+    private final IngestionPipeline ingestionPipeline;
+    private final DocumentParser documentParser;
+    private final KnowledgeBaseManifest manifest;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AiMetrics aiMetrics;
+    
+    /**
+     * 串行化加载、同步和清空操作。使用ReentrantLock而非synchronized：
+     * 这些操作会长时间等待入库流水线和嵌入接口，在虚拟线程上持有监视器会占住载体线程
+     */
+    private final ReentrantLock ingestLock = new ReentrantLock();
     
     @Value("${spring.ai.rag.knowledge-base.path:./knowledge-base}")
     private String knowledgeBasePath;
     
     public DocumentService(VectorStore vectorStore, 
-                          TextSplitter textSplitter,
-                          ResourceLoader resourceLoader) {
+                          IngestionPipeline ingestionPipeline,
+                          DocumentParser documentParser,
+                          KnowledgeBaseManifest manifest,
+                          ApplicationEventPublisher eventPublisher,
+                          AiMetrics aiMetrics) {
         Objects.requireNonNull(vectorStore, "VectorStore不能为空");
-        Objects.requireNonNull(textSplitter, "TextSplitter不能为空");
-        Objects.requireNonNull(resourceLoader, "ResourceLoader不能为空");
+        Objects.requireNonNull(ingestionPipeline, "IngestionPipeline不能为空");
+        Objects.requireNonNull(documentParser, "DocumentParser不能为空");
+        Objects.requireNonNull(manifest, "KnowledgeBaseManifest不能为空");
+        Objects.requireNonNull(eventPublisher, "ApplicationEventPublisher不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
         this.vectorStore = vectorStore;
-        this.textSplitter = textSplitter;
-        this.resourceLoader = resourceLoader;
+        this.ingestionPipeline = ingestionPipeline;
+        this.documentParser = documentParser;
+        this.manifest = manifest;
+        this.eventPublisher = eventPublisher;
+        this.aiMetrics = aiMetrics;
     }
     
     /**
      * 加载知识库中的所有文档
+     * 重新写入全部文件，并删除已不存在的文件对应的文档
      * 
      * @return 加载的文档数量
      */
     public int loadAllDocuments() {
+        return withIngestLock(this::doLoadAllDocuments);
+    }
+    
+    private int doLoadAllDocuments() {
         long startTime = System.currentTimeMillis();
         log.info("开始加载知识库文档，路径: {}", knowledgeBasePath);
         
         try {
-            Path knowledgeBaseDir = Paths.get(knowledgeBasePath);
-            if (!Files.exists(knowledgeBaseDir)) {
-                log.warn("知识库目录不存在，将创建: {}", knowledgeBasePath);
-                Files.createDirectories(knowledgeBaseDir);
-                return 0;
-            }
+            SyncResult result = sync(true);
             
-            List<Document> allDocuments = new ArrayList<>();
-            loadDocumentsFromDirectory(knowledgeBaseDir, allDocuments);
-            
-            if (allDocuments.isEmpty()) {
+            if (result.getDocumentsWritten() == 0) {
                 log.warn("知识库目录中没有找到可加载的文档");
                 return 0;
             }
             
-            log.info("读取到 {} 个文档，准备直接上传（不分割）", allDocuments.size());
-            
-            // 直接添加到向量存储（不分割）
-            vectorStore.add(allDocuments);
-            
             long duration = System.currentTimeMillis() - startTime;
             log.info("知识库文档加载完成，耗时: {}ms，加载文档数: {}", 
-                    duration, allDocuments.size());
+                    duration, result.getDocumentsWritten());
             
-            return allDocuments.size();
+            return result.getDocumentsWritten();
         } catch (Exception e) {
             long duration = System.currentTimeMillis() - startTime;
             log.error("加载知识库文档失败，耗时: {}ms，错误信息: {}", duration, e.getMessage(), e);
@@ -93,6 +110,37 @@ public class DocumentService {
         }
     }
     
+    /**
+     * 增量同步知识库
+     * 根据清单中记录的文件大小、修改时间和内容哈希，只重新写入新增或修改的文件，
+     * 并按文档ID删除已删除或已修改文件的旧向量
+     * 
+     * @return 同步结果
+     */
+    public SyncResult syncDocuments() {
+        return withIngestLock(this::doSyncDocuments);
+    }
+    
+    private SyncResult doSyncDocuments() {
+        long startTime = System.currentTimeMillis();
+        log.info("开始增量同步知识库，路径: {}", knowledgeBasePath);
+        
+        try {
+            SyncResult result = sync(false);
+            
+            long duration = System.currentTimeMillis() - startTime;
+            log.info("知识库增量同步完成，耗时: {}ms，新增文件: {}，修改文件: {}，删除文件: {}，未变化文件: {}，失败文件: {}，写入文档: {}，删除文档: {}", 
+                    duration, result.getFilesAdded(), result.getFilesModified(), result.getFilesDeleted(),
+                    result.getFilesUnchanged(), result.getFilesFailed(), result.getDocumentsWritten(), result.getDocumentsDeleted());
+            
+            return result;
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            log.error("知识库增量同步失败，耗时: {}ms，错误信息: {}", duration, e.getMessage(), e);
+            throw new RuntimeException("知识库增量同步失败: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * 加载指定文件到向量存储
      * 
@@ -100,6 +148,10 @@ public class DocumentService {
      * @return 加载的文档块数量
      */
     public int loadDocument(String filePath) {
+        return withIngestLock(() -> doLoadDocument(filePath));
+    }
+    
+    private int doLoadDocument(String filePath) {
         long startTime = System.currentTimeMillis();
         log.info("开始加载单个文档，路径: {}", filePath);
         
@@ -113,21 +165,40 @@ public class DocumentService {
                 throw new IllegalArgumentException("文件不存在: " + filePath);
             }
             
-            List<Document> documents = loadDocumentFromFile(path);
-            if (documents.isEmpty()) {
-                log.warn("文件加载后为空: {}", filePath);
-                return 0;
+            // 知识库目录内的文件同时更新清单，避免下次同步时重复写入
+            Path knowledgeBaseDir = Paths.get(knowledgeBasePath).toAbsolutePath().normalize();
+            Path absolutePath = path.toAbsolutePath().normalize();
+            boolean inKnowledgeBase = absolutePath.startsWith(knowledgeBaseDir);
+            String key = inKnowledgeBase ? relativeKey(knowledgeBaseDir, absolutePath) : absolutePath.toString();
+            KnowledgeBaseManifest.FileEntry pending = inKnowledgeBase ? snapshot(absolutePath) : null;
+            
+            IngestionPipeline.Result result = aiMetrics.timeIngest("load-one", () -> ingestionPipeline.run(
+                    sink -> sink.accept(new IngestionPipeline.FileTask(key, absolutePath)),
+                    documentParser::parse));
+            if (!result.failures().isEmpty()) {
+                throw new RuntimeException(result.failures().get(key));
             }
             
-            log.info("读取到 {} 个文档，准备直接上传（不分割）", documents.size());
+            List<String> staleIds = new ArrayList<>();
+            if (inKnowledgeBase) {
+                recordIngested(key, pending, result.documentIds().get(key), staleIds);
+                if (!staleIds.isEmpty()) {
+                    vectorStore.delete(staleIds);
+                }
+                manifest.save();
+            }
+            int count = result.documentsWritten();
+            publishChange(count, staleIds.size());
             
-            // 直接添加到向量存储（不分割）
-            vectorStore.add(documents);
+            if (count == 0) {
+                log.warn("文件加载后为空: {}", filePath);
+                return 0;
+            }
             
             long duration = System.currentTimeMillis() - startTime;
-            log.info("单个文档加载完成，耗时: {}ms，文档数: {}", duration, documents.size());
+            log.info("单个文档加载完成，耗时: {}ms，文档数: {}", duration, count);
             
-            return documents.size();
+            return count;
         } catch (Exception e) {
             long duration = System.currentTimeMillis() - startTime;
             log.error("加载单个文档失败，耗时: {}ms，路径: {}，错误信息: {}", 
@@ -137,117 +208,205 @@ public class DocumentService {
     }
     
     /**
-     * 递归加载目录中的所有文档
+     * 对比清单同步知识库目录
+     * 发现阶段边遍历目录边比对清单，变化的文件直接提交给入库流水线，
+     * 流水线完成后再统一更新清单并删除过期的文档
+     * 
+     * @param force 为true时忽略清单，重新写入所有文件
      */
-    private void loadDocumentsFromDirectory(Path directory, List<Document> documents) throws IOException {
-        if (!Files.isDirectory(directory)) {
-            return;
+    private SyncResult sync(boolean force) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Path knowledgeBaseDir = Paths.get(knowledgeBasePath).toAbsolutePath().normalize();
+        if (!Files.exists(knowledgeBaseDir)) {
+            log.warn("知识库目录不存在，将创建: {}", knowledgeBasePath);
+            Files.createDirectories(knowledgeBaseDir);
         }
         
-        Files.list(directory).forEach(path -> {
-            try {
-                if (Files.isDirectory(path)) {
-                    // 递归处理子目录
-                    loadDocumentsFromDirectory(path, documents);
-                } else if (Files.isRegularFile(path)) {
-                    // 处理文件
-                    List<Document> fileDocuments = loadDocumentFromFile(path);
-                    documents.addAll(fileDocuments);
-                }
-            } catch (Exception e) {
-                log.warn("加载文件失败: {}，错误: {}", path, e.getMessage());
+        // 以下集合只在发现线程中写入，流水线结束（线程join）后才读取
+        Set<String> seen = new HashSet<>();
+        Map<String, KnowledgeBaseManifest.FileEntry> pending = new HashMap<>();
+        AtomicInteger unchanged = new AtomicInteger();
+        
+        IngestionPipeline.Result result = aiMetrics.timeIngest(force ? "load-all" : "sync", () -> ingestionPipeline.run(sink -> {
+            try (Stream<Path> paths = Files.walk(knowledgeBaseDir)) {
+                paths.filter(Files::isRegularFile).forEach(file -> {
+                    String key = relativeKey(knowledgeBaseDir, file);
+                    seen.add(key);
+                    try {
+                        KnowledgeBaseManifest.FileEntry current = force
+                                ? snapshot(file)
+                                : changedSnapshot(file, key, manifest.get(key));
+                        if (Objects.isNull(current)) {
+                            unchanged.incrementAndGet();
+                            return;
+                        }
+                        pending.put(key, current);
+                    } catch (Exception e) {
+                        log.warn("读取文件失败: {}，错误: {}", file, e.getMessage());
+                        return;
+                    }
+                    sink.accept(new IngestionPipeline.FileTask(key, file));
+                });
             }
-        });
+        }, documentParser::parse));
+        
+        int added = 0;
+        int modified = 0;
+        int deleted = 0;
+        List<String> staleIds = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : result.documentIds().entrySet()) {
+            if (recordIngested(entry.getKey(), pending.get(entry.getKey()), entry.getValue(), staleIds)) {
+                added++;
+            } else {
+                modified++;
+            }
+        }
+        
+        // 清单中存在但目录中已删除的文件
+        for (String key : manifest.paths()) {
+            if (!seen.contains(key)) {
+                staleIds.addAll(manifest.remove(key).documentIds());
+                deleted++;
+            }
+        }
+        
+        if (!staleIds.isEmpty()) {
+            vectorStore.delete(staleIds);
+        }
+        manifest.save();
+        compactIfNeeded();
+        publishChange(result.documentsWritten(), staleIds.size());
+        
+        return SyncResult.builder()
+                .filesAdded(added)
+                .filesModified(modified)
+                .filesDeleted(deleted)
+                .filesUnchanged(unchanged.get())
+                .filesFailed(result.failures().size())
+                .documentsWritten(result.documentsWritten())
+                .documentsDeleted(staleIds.size())
+                .duration(System.currentTimeMillis() - startTime)
+                .build();
     }
     
     /**
-     * 从文件加载文档
+     * 对比清单记录判断文件是否变化，变化时返回入库前的快照，未变化时返回null
+     * 大小和修改时间一致时直接跳过；否则计算一次内容哈希，哈希一致时只更新清单中的修改时间，
+     * 不一致时该哈希直接用于快照，不再重复读取文件
      */
-    private List<Document> loadDocumentFromFile(Path filePath) throws IOException {
-        String fileName = filePath.getFileName().toString().toLowerCase();
+    private KnowledgeBaseManifest.FileEntry changedSnapshot(Path file, String key,
+                                                            KnowledgeBaseManifest.FileEntry previous) throws IOException {
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        if (Objects.nonNull(previous) && previous.size() == size && previous.lastModified() == lastModified) {
+            return null;
+        }
         
-        if (fileName.endsWith(PDF_EXTENSION)) {
-            return loadPdfDocument(filePath);
-        } else if (isTextFile(fileName)) {
-            return loadTextDocument(filePath);
-        } else {
-            // 尝试使用Tika自动检测文件类型
-            return loadDocumentWithTika(filePath);
+        String sha256 = KnowledgeBaseManifest.hash(file);
+        if (Objects.nonNull(previous) && sha256.equals(previous.sha256())) {
+            manifest.put(key, new KnowledgeBaseManifest.FileEntry(size, lastModified, sha256, previous.documentIds()));
+            return null;
         }
+        return new KnowledgeBaseManifest.FileEntry(size, lastModified, sha256, Collections.emptyList());
     }
     
     /**
-     * 加载PDF文档
+     * 记录文件入库前的大小、修改时间和内容哈希，文档ID在入库完成后补充
      */
-    private List<Document> loadPdfDocument(Path filePath) {
-        try {
-            Resource resource = resourceLoader.getResource("file:" + filePath.toAbsolutePath());
-            PagePdfDocumentReader pdfReader = new PagePdfDocumentReader(
-                    resource, 
-                    PdfDocumentReaderConfig.defaultConfig());
-            return pdfReader.get();
-        } catch (Exception e) {
-            log.error("加载PDF文档失败: {}，错误: {}", filePath, e.getMessage(), e);
-            return Collections.emptyList();
+    private KnowledgeBaseManifest.FileEntry snapshot(Path file) throws IOException {
+        return new KnowledgeBaseManifest.FileEntry(Files.size(file), Files.getLastModifiedTime(file).toMillis(),
+                KnowledgeBaseManifest.hash(file), Collections.emptyList());
+    }
+    
+    /**
+     * 将入库完成的文件写入清单
+     * 旧记录中不再出现的文档ID加入staleIds，由调用方统一删除
+     * 
+     * @return 清单中原先没有该文件时返回true
+     */
+    private boolean recordIngested(String key, KnowledgeBaseManifest.FileEntry pending,
+                                   List<String> documentIds, List<String> staleIds) {
+        KnowledgeBaseManifest.FileEntry previous = manifest.get(key);
+        if (Objects.nonNull(previous)) {
+            Set<String> current = new HashSet<>(documentIds);
+            previous.documentIds().stream()
+                    .filter(id -> !current.contains(id))
+                    .forEach(staleIds::add);
         }
+        manifest.put(key, new KnowledgeBaseManifest.FileEntry(pending.size(), pending.lastModified(),
+                pending.sha256(), documentIds));
+        return Objects.isNull(previous);
     }
     
     /**
-     * 加载文本文档
+     * 直接写入文档（不经过知识库文件清单）
+     * 用于测试上传等场景，文档不会在同步时被删除
+     * 
+     * @param documents 文档列表
      */
-    private List<Document> loadTextDocument(Path filePath) throws IOException {
-        try {
-            String content = Files.readString(filePath);
-            if (StringUtils.isBlank(content)) {
-                return Collections.emptyList();
-            }
-            
-            Document document = new Document(content);
-            document.getMetadata().put("source", filePath.toString());
-            document.getMetadata().put("filename", filePath.getFileName().toString());
-            
-            return Collections.singletonList(document);
-        } catch (Exception e) {
-            log.error("加载文本文档失败: {}，错误: {}", filePath, e.getMessage(), e);
-            return Collections.emptyList();
+    public void addDocuments(List<Document> documents) {
+        if (Objects.isNull(documents) || documents.isEmpty()) {
+            return;
         }
+        vectorStore.add(documents);
+        publishChange(documents.size(), 0);
     }
     
     /**
-     * 使用Tika加载文档（自动检测文件类型）
+     * 通知依赖检索结果的组件（如语义答案缓存）向量存储已变化
      */
-    private List<Document> loadDocumentWithTika(Path filePath) {
-        try {
-            Resource resource = resourceLoader.getResource("file:" + filePath.toAbsolutePath());
-            TikaDocumentReader tikaReader = new TikaDocumentReader(resource);
-            return tikaReader.get();
-        } catch (Exception e) {
-            log.warn("使用Tika加载文档失败: {}，错误: {}", filePath, e.getMessage());
-            return Collections.emptyList();
+    private void publishChange(int documentsWritten, int documentsDeleted) {
+        if (documentsWritten > 0 || documentsDeleted > 0) {
+            eventPublisher.publishEvent(new VectorStoreChangedEvent(documentsWritten, documentsDeleted));
         }
     }
     
     /**
-     * 判断是否为文本文件
+     * 批量覆盖或删除后，由支持压缩的向量存储按删除比例决定是否重写有效数据
      */
-    private boolean isTextFile(String fileName) {
-        for (String ext : SUPPORTED_TEXT_EXTENSIONS) {
-            if (fileName.endsWith(ext)) {
-                return true;
-            }
+    private void compactIfNeeded() {
+        if (vectorStore instanceof CompactableVectorStore compactable && compactable.compactIfNeeded()) {
+            log.info("向量存储已压缩");
         }
-        return false;
+    }
+    
+    private <T> T withIngestLock(Supplier<T> operation) {
+        ingestLock.lock();
+        try {
+            return operation.get();
+        } finally {
+            ingestLock.unlock();
+        }
+    }
+    
+    private String relativeKey(Path knowledgeBaseDir, Path file) {
+        return knowledgeBaseDir.relativize(file).toString().replace('\\', '/');
     }
     
     /**
      * 清空向量存储
+     * 按清单删除所有知识库文件对应的文档，并清空清单
+     * 注意：不在知识库清单中的文档（如测试上传的文本）不会被删除
      */
     public void clearVectorStore() {
+        withIngestLock(() -> {
+            doClearVectorStore();
+            return null;
+        });
+    }
+    
+    private void doClearVectorStore() {
         log.info("清空向量存储");
         try {
-            // SimpleVectorStore没有直接的清空方法，需要重新创建
-            // 这里记录日志，实际清空操作可能需要重新初始化VectorStore
-            log.warn("清空向量存储功能需要重新初始化VectorStore，当前仅记录操作");
+            List<String> documentIds = manifest.allDocumentIds();
+            if (!documentIds.isEmpty()) {
+                vectorStore.delete(documentIds);
+            }
+            manifest.clear();
+            manifest.save();
+            compactIfNeeded();
+            publishChange(0, documentIds.size());
+            log.info("清空向量存储完成，删除文档数: {}", documentIds.size());
         } catch (Exception e) {
             log.error("清空向量存储失败，错误信息: {}", e.getMessage(), e);
             throw new RuntimeException("清空向量存储失败: " + e.getMessage(), e);
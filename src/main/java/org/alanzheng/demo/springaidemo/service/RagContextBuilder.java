@@ -0,0 +1,58 @@
+package org.alanzheng.demo.springaidemo.service;
+
+import org.alanzheng.demo.springaidemo.ingest.DocumentChunker;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * RAG上下文构建
+ * 将检索到的文档块连同来源和位置合并成提示词中的知识库内容
+ */
+public final class RagContextBuilder {
+
+    private static final String SEPARATOR = "\n\n---\n\n";
+
+    private RagContextBuilder() {
+    }
+
+    /**
+     * 构建上下文内容
+     *
+     * @param documents 文档列表
+     * @return 上下文字符串，没有文档时返回空字符串
+     */
+    public static String build(List<Document> documents) {
+        if (Objects.isNull(documents) || documents.isEmpty()) {
+            return "";
+        }
+
+        // 预估容量，避免多次扩容复制
+        int capacity = 0;
+        for (Document document : documents) {
+            capacity += Objects.toString(document.getText(), "").length() + 96;
+        }
+        StringBuilder context = new StringBuilder(capacity);
+        for (int i = 0; i < documents.size(); i++) {
+            if (i > 0) {
+                context.append(SEPARATOR);
+            }
+            appendDocument(context, documents.get(i));
+        }
+        return context.toString();
+    }
+
+    private static void appendDocument(StringBuilder context, Document document) {
+        Map<String, Object> metadata = document.getMetadata();
+        context.append("【来源：").append(metadata.getOrDefault(DocumentChunker.SOURCE, "未知来源"));
+        Object chunkIndex = metadata.get(DocumentChunker.CHUNK_INDEX);
+        if (Objects.nonNull(chunkIndex)) {
+            context.append("，片段：").append(chunkIndex)
+                    .append("，字符位置：").append(metadata.get(DocumentChunker.CHAR_START))
+                    .append('-').append(metadata.get(DocumentChunker.CHAR_END));
+        }
+        context.append("】\n").append(document.getText());
+    }
+}
@@ -1,9 +1,15 @@
 package org.alanzheng.demo.springaidemo.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.cache.SemanticAnswerCache;
+import org.alanzheng.demo.springaidemo.embedding.QueryEmbeddingCache;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.tracing.StageTracer;
+import org.alanzheng.demo.springaidemo.vectorstore.EmbeddedQuerySearcher;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
@@ -11,10 +17,12 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * RAG服务类
@@ -31,10 +39,15 @@ public class RagService {
                     你是一个智能助手，基于提供的知识库内容回答问题。
                     请根据以下知识库内容回答用户的问题。如果知识库中没有相关信息，请如实说明。
                     回答要准确、简洁，并引用知识库中的具体内容。""";
+    private static final String NO_RELEVANT_DOCUMENTS_ANSWER = "抱歉，知识库中没有找到与您的问题相关的信息。";
     
     private ChatClient chatClient;
     private final ChatModel chatModel;
     private final VectorStore vectorStore;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final SemanticAnswerCache answerCache;
+    private final AiMetrics aiMetrics;
+    private final StageTracer stageTracer;
     
     @Value("${spring.ai.rag.top-k:4}")
     private int topK;
@@ -49,11 +62,23 @@ public class RagService {
      * 构造函数
      */
     public RagService(@Qualifier("openAiChatModel") @Lazy ChatModel chatModel, 
-                     VectorStore vectorStore) {
+                     VectorStore vectorStore,
+                     QueryEmbeddingCache queryEmbeddingCache,
+                     SemanticAnswerCache answerCache,
+                     AiMetrics aiMetrics,
+                     StageTracer stageTracer) {
         Objects.requireNonNull(chatModel, "ChatModel不能为空");
         Objects.requireNonNull(vectorStore, "VectorStore不能为空");
+        Objects.requireNonNull(queryEmbeddingCache, "QueryEmbeddingCache不能为空");
+        Objects.requireNonNull(answerCache, "SemanticAnswerCache不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        Objects.requireNonNull(stageTracer, "StageTracer不能为空");
         this.chatModel = chatModel;
         this.vectorStore = vectorStore;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.answerCache = answerCache;
+        this.aiMetrics = aiMetrics;
+        this.stageTracer = stageTracer;
     }
     
     /**
@@ -93,41 +118,37 @@ public class RagService {
      * @return AI回答
      */
     public String answer(String question, int topK, double similarityThreshold) {
+        return stageTracer.trace("rag.answer", () -> doAnswer(question, topK, similarityThreshold));
+    }
+    
+    private String doAnswer(String question, int topK, double similarityThreshold) {
         long startTime = System.currentTimeMillis();
         log.info("开始RAG问答，问题: {}，topK: {}，相似度阈值: {}", question, topK, similarityThreshold);
         
         try {
-            if (StringUtils.isBlank(question)) {
-                throw new IllegalArgumentException("问题不能为空");
-            }
-            
-            // 1. 从向量存储中检索相关文档
-            List<Document> relevantDocuments = retrieveDocuments(question, topK, similarityThreshold);
-            
-            if (relevantDocuments.isEmpty()) {
-                log.warn("未检索到相关文档，问题: {}", question);
-                return "抱歉，知识库中没有找到与您的问题相关的信息。";
+            // 1. 检索相关文档并构建提示词
+            PreparedAnswer prepared = prepare("rag", question, topK, similarityThreshold);
+            if (Objects.nonNull(prepared.cachedAnswer())) {
+                long duration = System.currentTimeMillis() - startTime;
+                log.info("RAG问答命中语义缓存或无相关文档，耗时: {}ms，问题: {}", duration, question);
+                return prepared.cachedAnswer();
             }
             
-            log.info("检索到 {} 个相关文档块", relevantDocuments.size());
-            
-            // 2. 构建包含知识库内容的提示词
-            String context = buildContext(relevantDocuments);
-            String finalSystemPrompt = StringUtils.isNotBlank(this.systemPrompt) 
-                    ? this.systemPrompt 
-                    : DEFAULT_SYSTEM_PROMPT;
-            
-            // 3. 调用LLM生成回答
-            String answer = getChatClient().prompt()
-                    .system(finalSystemPrompt)
-                    .user("知识库内容：\n" + context + "\n\n用户问题：" + question)
+            // 2. 调用LLM生成回答
+            ChatResponse chatResponse = aiMetrics.timeChat("rag", () -> getChatClient().prompt()
+                    .system(prepared.systemPrompt())
+                    .user(prepared.userPrompt())
                     .call()
-                    .content();
+                    .chatResponse());
+            aiMetrics.recordUsage("rag", chatResponse);
+            String answer = ChatResponses.text(chatResponse);
             
             if (StringUtils.isBlank(answer)) {
                 throw new RuntimeException("AI返回内容为空");
             }
             
+            answerCache.put(prepared.questionEmbedding(), prepared.cacheScope(), prepared.fingerprint(), answer);
+            
             long duration = System.currentTimeMillis() - startTime;
             log.info("RAG问答完成，耗时: {}ms，问题: {}，回答长度: {}", 
                     duration, question, answer.length());
@@ -141,15 +162,137 @@ public class RagService {
         }
     }
     
+    /**
+     * 基于知识库流式回答问题
+     * 检索在弹性线程池中执行，回答按模型生成的片段逐个推送；
+     * 完整生成后才写入语义缓存，客户端中途断开时取消上游请求且不缓存
+     * 
+     * @param question 用户问题
+     * @param topK 检索的文档数量
+     * @param similarityThreshold 相似度阈值
+     * @return 回答片段流
+     */
+    public Flux<String> answerStream(String question, int topK, double similarityThreshold) {
+        return Mono.fromCallable(() -> prepare("rag-stream", question, topK, similarityThreshold))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(this::generateStream)
+                .transform(tokens -> StreamLogging.timed(tokens, "RAG流式问答", question, aiMetrics, "rag-stream"));
+    }
+    
+    /**
+     * 按已构建的提示词流式生成回答
+     * 命中语义缓存或没有相关文档时直接返回最终回答；完整生成后才写入语义缓存
+     * 
+     * @param prepared 检索完成后生成回答所需的内容
+     * @return 回答片段流
+     */
+    Flux<String> generateStream(PreparedAnswer prepared) {
+        if (Objects.nonNull(prepared.cachedAnswer())) {
+            return Flux.just(prepared.cachedAnswer());
+        }
+        StringBuilder answer = new StringBuilder();
+        return getChatClient().prompt()
+                .system(prepared.systemPrompt())
+                .user(prepared.userPrompt())
+                .stream()
+                .content()
+                .doOnNext(answer::append)
+                .doOnComplete(() -> {
+                    if (StringUtils.isNotBlank(answer)) {
+                        answerCache.put(prepared.questionEmbedding(), prepared.cacheScope(),
+                                prepared.fingerprint(), answer.toString());
+                    }
+                });
+    }
+    
+    /**
+     * 基于知识库流式回答问题（使用默认检索参数）
+     * 
+     * @param question 用户问题
+     * @return 回答片段流
+     */
+    public Flux<String> answerStream(String question) {
+        return answerStream(question, topK, similarityThreshold);
+    }
+    
+    /**
+     * 检索相关文档并构建提示词
+     * 没有相关文档或命中语义缓存时，cachedAnswer即为最终回答
+     * 
+     * @param endpoint 接口名称，用于指标标签
+     */
+    private PreparedAnswer prepare(String endpoint, String question, int topK, double similarityThreshold) {
+        if (StringUtils.isBlank(question)) {
+            throw new IllegalArgumentException("问题不能为空");
+        }
+        
+        // 计算问题向量并从向量存储中检索相关文档
+        float[] questionEmbedding = stageTracer.trace("rag.embed-query", () -> embedQuery(question));
+        return prepare(endpoint, question, questionEmbedding, topK, similarityThreshold);
+    }
+    
+    /**
+     * 用已计算的问题向量检索相关文档并构建提示词
+     * 不调用嵌入模型；向量存储支持按向量检索时整个过程只占用CPU
+     * 
+     * @param endpoint 接口名称，用于指标标签
+     * @param questionEmbedding 问题向量
+     */
+    PreparedAnswer prepare(String endpoint, String question, float[] questionEmbedding,
+                           int topK, double similarityThreshold) {
+        List<Document> relevantDocuments = retrieveDocuments(endpoint, question, questionEmbedding, topK, similarityThreshold);
+        
+        if (relevantDocuments.isEmpty()) {
+            log.warn("未检索到相关文档，问题: {}", question);
+            return new PreparedAnswer(questionEmbedding, null, null, null, null, NO_RELEVANT_DOCUMENTS_ANSWER);
+        }
+        
+        log.info("检索到 {} 个相关文档块", relevantDocuments.size());
+        
+        // 相近问题检索到相同文档时直接复用答案
+        String cacheScope = topK + "|" + similarityThreshold;
+        String fingerprint = SemanticAnswerCache.fingerprint(relevantDocuments);
+        String cachedAnswer = stageTracer.trace("rag.answer-cache.lookup",
+                () -> answerCache.get(questionEmbedding, cacheScope, fingerprint));
+        if (Objects.nonNull(cachedAnswer)) {
+            return new PreparedAnswer(questionEmbedding, cacheScope, fingerprint, null, null, cachedAnswer);
+        }
+        
+        // 未命中缓存时才构建包含知识库内容的提示词
+        String context = aiMetrics.timeContextBuild(endpoint, () -> RagContextBuilder.build(relevantDocuments));
+        String finalSystemPrompt = StringUtils.isNotBlank(this.systemPrompt) 
+                ? this.systemPrompt 
+                : DEFAULT_SYSTEM_PROMPT;
+        String userPrompt = "知识库内容：\n" + context + "\n\n用户问题：" + question;
+        
+        return new PreparedAnswer(questionEmbedding, cacheScope, fingerprint, 
+                finalSystemPrompt, userPrompt, cachedAnswer);
+    }
+    
+    /**
+     * 计算查询向量
+     * 同一个向量既用于检索，也用于语义缓存查找；检索和问答对同一查询共享查询向量缓存
+     * 
+     * @param query 查询文本
+     * @return 查询向量
+     */
+    private float[] embedQuery(String query) {
+        return queryEmbeddingCache.embed(query);
+    }
+    
     /**
      * 从向量存储中检索相关文档
      * 
+     * @param endpoint 接口名称，用于指标标签
      * @param query 查询文本
+     * @param queryEmbedding 查询向量，向量存储不支持按向量检索时由其自行嵌入查询文本，
+     *                       此时命中同一个查询向量缓存条目，不会再次调用嵌入接口
      * @param topK 返回的文档数量
      * @param similarityThreshold 相似度阈值
      * @return 相关文档列表
      */
-    private List<Document> retrieveDocuments(String query, int topK, double similarityThreshold) {
+    private List<Document> retrieveDocuments(String endpoint, String query, float[] queryEmbedding,
+                                             int topK, double similarityThreshold) {
         try {
             // 使用SearchRequest的静态方法创建请求
             SearchRequest searchRequest = SearchRequest.builder()
@@ -158,7 +301,12 @@ public class RagService {
                     .similarityThreshold(similarityThreshold)
                     .build();
 
-            return vectorStore.similaritySearch(searchRequest);
+            String store = vectorStore.getClass().getSimpleName();
+            if (vectorStore instanceof EmbeddedQuerySearcher searcher) {
+                return aiMetrics.timeVectorSearch(endpoint, store,
+                        () -> searcher.similaritySearch(queryEmbedding, searchRequest));
+            }
+            return aiMetrics.timeVectorSearch(endpoint, store, () -> vectorStore.similaritySearch(searchRequest));
         } catch (Exception e) {
             log.error("检索文档失败，查询: {}，错误: {}", query, e.getMessage(), e);
             return List.of();
@@ -166,24 +314,12 @@ public class RagService {
     }
     
     /**
-     * 构建上下文内容
-     * 将检索到的文档合并成上下文字符串
+     * 用已计算的查询向量检索相关文档，使用默认相似度阈值
      * 
-     * @param documents 文档列表
-     * @return 上下文字符串
+     * @param endpoint 接口名称，用于指标标签
      */
-    private String buildContext(List<Document> documents) {
-        if (Objects.isNull(documents) || documents.isEmpty()) {
-            return "";
-        }
-        
-        return documents.stream()
-                .map(doc -> {
-                    String content = doc.getText();
-                    String source = doc.getMetadata().getOrDefault("source", "未知来源").toString();
-                    return String.format("【来源：%s】\n%s", source, content);
-                })
-                .collect(Collectors.joining("\n\n---\n\n"));
+    List<Document> search(String endpoint, String query, float[] queryEmbedding, int topK) {
+        return retrieveDocuments(endpoint, query, queryEmbedding, topK, similarityThreshold);
     }
     
     /**
@@ -195,6 +331,10 @@ public class RagService {
      * @return 相关文档列表
      */
     public List<Document> searchDocuments(String query, int topK) {
+        return stageTracer.trace("rag.search", () -> doSearchDocuments(query, topK));
+    }
+    
+    private List<Document> doSearchDocuments(String query, int topK) {
         long startTime = System.currentTimeMillis();
         log.info("开始检索文档，查询: {}，topK: {}", query, topK);
         
@@ -203,7 +343,8 @@ public class RagService {
                 throw new IllegalArgumentException("查询文本不能为空");
             }
             
-            List<Document> documents = retrieveDocuments(query, topK, similarityThreshold);
+            float[] queryEmbedding = stageTracer.trace("rag.embed-query", () -> embedQuery(query));
+            List<Document> documents = retrieveDocuments("search", query, queryEmbedding, topK, similarityThreshold);
             
             long duration = System.currentTimeMillis() - startTime;
             log.info("文档检索完成，耗时: {}ms，查询: {}，检索到文档数: {}", 
@@ -217,5 +358,13 @@ public class RagService {
             throw new RuntimeException("文档检索失败: " + e.getMessage(), e);
         }
     }
+    
+    /**
+     * 检索完成后生成回答所需的全部内容
+     * 
+     * @param cachedAnswer 不需要调用大模型时的最终回答（语义缓存命中或没有相关文档）
+     */
+    record PreparedAnswer(float[] questionEmbedding, String cacheScope, String fingerprint,
+                                  String systemPrompt, String userPrompt, String cachedAnswer) {
+    }
 }
-
@@ -0,0 +1,58 @@
+package org.alanzheng.demo.springaidemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+
+/**
+ * 响应式Agent服务类
+ * AgentService的非阻塞版本：模型调用走WebClient流式接口；模型请求工具调用时，
+ * Spring AI在弹性线程池中执行工具（工具本身是阻塞的），不会阻塞事件循环线程
+ */
+@Slf4j
+@Service
+public class ReactiveAgentService {
+    
+    private final AgentService agentService;
+    private final AiMetrics aiMetrics;
+    
+    public ReactiveAgentService(AgentService agentService, AiMetrics aiMetrics) {
+        Objects.requireNonNull(agentService, "AgentService不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        this.agentService = agentService;
+        this.aiMetrics = aiMetrics;
+    }
+    
+    /**
+     * Agent 对话接口
+     * 
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return Agent 回复
+     */
+    public Mono<String> chat(String message, String conversationId) {
+        return chatWithSystemPrompt(null, message, conversationId);
+    }
+    
+    /**
+     * Agent 对话接口（带自定义系统提示）
+     * 
+     * @param systemPrompt 自定义系统提示词，为空时使用配置或默认提示词
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return Agent 回复
+     */
+    public Mono<String> chatWithSystemPrompt(String systemPrompt, String message, String conversationId) {
+        if (StringUtils.isBlank(message)) {
+            return Mono.error(new IllegalArgumentException("消息内容不能为空"));
+        }
+        return ChatResponses.join(
+                StreamLogging.timed(agentService.tokens(systemPrompt, message, conversationId),
+                        "响应式Agent对话", message, aiMetrics, "agent-reactive"),
+                "Agent返回内容为空");
+    }
+}
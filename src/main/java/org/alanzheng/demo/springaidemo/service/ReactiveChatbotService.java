@@ -0,0 +1,58 @@
+package org.alanzheng.demo.springaidemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+
+/**
+ * 响应式Chatbot服务类
+ * ChatbotService的非阻塞版本：模型调用走WebClient流式接口，拼接完整回复后返回，
+ * 等待模型期间不占用任何线程
+ */
+@Slf4j
+@Service
+public class ReactiveChatbotService {
+    
+    private final ChatbotService chatbotService;
+    private final AiMetrics aiMetrics;
+    
+    public ReactiveChatbotService(ChatbotService chatbotService, AiMetrics aiMetrics) {
+        Objects.requireNonNull(chatbotService, "ChatbotService不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        this.chatbotService = chatbotService;
+        this.aiMetrics = aiMetrics;
+    }
+    
+    /**
+     * 发送消息并获取AI回复
+     * 
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return AI回复内容
+     */
+    public Mono<String> chat(String message, String conversationId) {
+        return chatWithSystemPrompt(null, message, conversationId);
+    }
+    
+    /**
+     * 带系统提示的聊天
+     * 
+     * @param systemPrompt 系统提示词，为空时不设置
+     * @param message 用户消息
+     * @param conversationId 会话ID，为空时不使用会话记忆
+     * @return AI回复内容
+     */
+    public Mono<String> chatWithSystemPrompt(String systemPrompt, String message, String conversationId) {
+        if (StringUtils.isBlank(message)) {
+            return Mono.error(new IllegalArgumentException("消息内容不能为空"));
+        }
+        return ChatResponses.join(
+                StreamLogging.timed(chatbotService.tokens(systemPrompt, message, conversationId),
+                        "响应式chat", message, aiMetrics, "chat-reactive"),
+                "AI返回内容为空");
+    }
+}
@@ -0,0 +1,138 @@
+package org.alanzheng.demo.springaidemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.embedding.QueryEmbeddingCache;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.vectorstore.EmbeddedQuerySearcher;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 响应式RAG服务类
+ * RagService的非阻塞版本，各阶段按性质分配线程：
+ * <ul>
+ *     <li>查询向量：先在调用线程查查询向量缓存，未命中时嵌入接口（同步RestClient）在弹性线程池中调用</li>
+ *     <li>向量检索和上下文构建：纯CPU计算，在parallel线程池（与CPU核数相同）中执行；
+ *     向量存储不支持按向量检索时检索内部会再次调用嵌入接口，改在弹性线程池中执行</li>
+ *     <li>生成回答：WebClient流式接口，等待模型期间不占用线程</li>
+ * </ul>
+ * 语义缓存、指标和链路追踪与RagService一致。
+ */
+@Slf4j
+@Service
+public class ReactiveRagService {
+    
+    private final RagService ragService;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final AiMetrics aiMetrics;
+    private final Scheduler retrievalScheduler;
+    
+    @Value("${spring.ai.rag.top-k:4}")
+    private int topK;
+    
+    @Value("${spring.ai.rag.similarity-threshold:0.0}")
+    private double similarityThreshold;
+    
+    public ReactiveRagService(RagService ragService,
+                              QueryEmbeddingCache queryEmbeddingCache,
+                              VectorStore vectorStore,
+                              AiMetrics aiMetrics) {
+        Objects.requireNonNull(ragService, "RagService不能为空");
+        Objects.requireNonNull(queryEmbeddingCache, "QueryEmbeddingCache不能为空");
+        Objects.requireNonNull(vectorStore, "VectorStore不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        this.ragService = ragService;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.aiMetrics = aiMetrics;
+        this.retrievalScheduler = vectorStore instanceof EmbeddedQuerySearcher
+                ? Schedulers.parallel()
+                : Schedulers.boundedElastic();
+    }
+    
+    /**
+     * 基于知识库回答问题（使用默认检索参数）
+     * 
+     * @param question 用户问题
+     * @return AI回答
+     */
+    public Mono<String> answer(String question) {
+        return answer(question, topK, similarityThreshold);
+    }
+    
+    /**
+     * 基于知识库回答问题
+     * 
+     * @param question 用户问题
+     * @param topK 检索的文档数量
+     * @param similarityThreshold 相似度阈值
+     * @return AI回答
+     */
+    public Mono<String> answer(String question, int topK, double similarityThreshold) {
+        return ChatResponses.join(
+                tokens("rag-reactive", "响应式RAG问答", question, topK, similarityThreshold),
+                "AI返回内容为空");
+    }
+    
+    /**
+     * 基于知识库流式回答问题
+     * 
+     * @param question 用户问题
+     * @param topK 检索的文档数量
+     * @param similarityThreshold 相似度阈值
+     * @return 回答片段流
+     */
+    public Flux<String> answerStream(String question, int topK, double similarityThreshold) {
+        return tokens("rag-reactive-stream", "响应式RAG流式问答", question, topK, similarityThreshold);
+    }
+    
+    /**
+     * 检索相关文档（不生成回答）
+     * 
+     * @param query 查询文本
+     * @param topK 返回的文档数量
+     * @return 相关文档列表
+     */
+    public Mono<List<Document>> searchDocuments(String query, int topK) {
+        if (StringUtils.isBlank(query)) {
+            return Mono.error(new IllegalArgumentException("查询文本不能为空"));
+        }
+        return embedQuery(query)
+                .publishOn(retrievalScheduler)
+                .map(embedding -> ragService.search("search-reactive", query, embedding, topK));
+    }
+    
+    private Flux<String> tokens(String endpoint, String name, String question, int topK, double similarityThreshold) {
+        if (StringUtils.isBlank(question)) {
+            return Flux.error(new IllegalArgumentException("问题不能为空"));
+        }
+        return embedQuery(question)
+                .publishOn(retrievalScheduler)
+                .map(embedding -> ragService.prepare(endpoint, question, embedding, topK, similarityThreshold))
+                .flatMapMany(ragService::generateStream)
+                .transform(tokens -> StreamLogging.timed(tokens, name, question, aiMetrics, endpoint));
+    }
+    
+    /**
+     * 计算查询向量：缓存命中时不切换线程，未命中时在弹性线程池中调用嵌入接口
+     */
+    private Mono<float[]> embedQuery(String query) {
+        return Mono.defer(() -> {
+            float[] cached = queryEmbeddingCache.getIfPresent(query);
+            if (Objects.nonNull(cached)) {
+                return Mono.just(cached);
+            }
+            return Mono.fromCallable(() -> queryEmbeddingCache.embed(query))
+                    .subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package org.alanzheng.demo.springaidemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.apache.commons.lang3.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式回复的日志工具
+ * 记录首个片段延迟、总耗时和片段数，以及客户端断开导致的取消，同时写入对应的指标
+ */
+@Slf4j
+final class StreamLogging {
+
+    private static final int MAX_LOG_MESSAGE_LENGTH = 200;
+
+    private StreamLogging() {
+    }
+
+    /**
+     * 为片段流附加耗时日志，计时从订阅开始
+     *
+     * @param tokens 片段流
+     * @param name 操作名称
+     * @param input 用户输入，用于日志
+     * @param metrics AI调用指标
+     * @param endpoint 接口名称，用于指标标签
+     * @return 附加日志后的片段流
+     */
+    static Flux<String> timed(Flux<String> tokens, String name, String input, AiMetrics metrics, String endpoint) {
+        return Flux.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            AtomicLong firstTokenTime = new AtomicLong();
+            AtomicInteger count = new AtomicInteger();
+            log.info("开始{}，用户输入: {}", name, truncate(input));
+            return tokens
+                    .doOnNext(token -> {
+                        if (count.getAndIncrement() == 0) {
+                            firstTokenTime.set(System.currentTimeMillis() - startTime);
+                            metrics.recordFirstToken(endpoint, System.nanoTime() - startNanos);
+                            log.info("{}首个片段到达，耗时: {}ms", name, firstTokenTime.get());
+                        }
+                    })
+                    .doFinally(signal -> {
+                        long duration = System.currentTimeMillis() - startTime;
+                        long nanos = System.nanoTime() - startNanos;
+                        if (signal == SignalType.ON_COMPLETE) {
+                            metrics.recordStream(endpoint, nanos, "success");
+                            log.info("{}完成，总耗时: {}ms，首个片段耗时: {}ms，片段数: {}",
+                                    name, duration, firstTokenTime.get(), count.get());
+                        } else if (signal == SignalType.CANCEL) {
+                            metrics.recordStream(endpoint, nanos, "cancelled");
+                            log.info("{}被客户端取消，已取消上游请求，耗时: {}ms，已推送片段数: {}",
+                                    name, duration, count.get());
+                        }
+                    })
+                    .doOnError(e -> {
+                        metrics.recordStream(endpoint, System.nanoTime() - startNanos, "error");
+                        metrics.recordError(endpoint, e);
+                        log.error("{}失败，耗时: {}ms，错误信息: {}",
+                                name, System.currentTimeMillis() - startTime, e.getMessage(), e);
+                    });
+        });
+    }
+
+    private static String truncate(String message) {
+        if (StringUtils.isBlank(message)) {
+            return "";
+        }
+        if (message.length() <= MAX_LOG_MESSAGE_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_LOG_MESSAGE_LENGTH) + "...(已截断)";
+    }
+}
@@ -0,0 +1,106 @@
+package org.alanzheng.demo.springaidemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.structured.JsonRepairAdvisor;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.StructuredOutputValidationAdvisor;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 结构化输出客户端注册表
+ * 按输出类型和重试次数缓存构建好的ChatClient（带本地修复的JsonRepairAdvisor，重试次数大于0时
+ * 另带StructuredOutputValidationAdvisor）和BeanOutputConverter，JSON Schema只在首次使用时生成一次，之后每次请求只创建请求对象。
+ * ChatClient、Advisor和Converter构建后都是只读的，可以在并发请求间共享。
+ * 重试次数来自请求参数，缓存条目数超过上限后新的组合不再缓存，按需构建。
+ */
+@Slf4j
+@Component
+public class StructuredOutputClients {
+
+    static final int MAX_ENTRIES = 32;
+
+    private final ChatModel chatModel;
+    private final AiMetrics aiMetrics;
+    private final ConcurrentHashMap<Key, StructuredClient<?>> clients = new ConcurrentHashMap<>();
+
+    public StructuredOutputClients(@Qualifier("openAiChatModel") ChatModel chatModel, AiMetrics aiMetrics) {
+        Objects.requireNonNull(chatModel, "ChatModel不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        this.chatModel = chatModel;
+        this.aiMetrics = aiMetrics;
+    }
+
+    /**
+     * 获取指定输出类型的客户端
+     *
+     * @param outputType 输出类型
+     * @param maxRetryAttempts 输出校验失败时的最大重试次数，为0时不校验
+     * @return 结构化输出客户端
+     */
+    @SuppressWarnings("unchecked")
+    public <T> StructuredClient<T> get(Class<T> outputType, int maxRetryAttempts) {
+        Objects.requireNonNull(outputType, "输出类型不能为空");
+        if (maxRetryAttempts < 0) {
+            throw new IllegalArgumentException("最大重试次数不能小于0");
+        }
+        Key key = new Key(outputType, maxRetryAttempts);
+        StructuredClient<?> client = clients.get(key);
+        if (Objects.nonNull(client)) {
+            return (StructuredClient<T>) client;
+        }
+        if (clients.size() >= MAX_ENTRIES) {
+            log.debug("结构化输出客户端缓存已满，按需构建，类型: {}，重试次数: {}", outputType.getSimpleName(), maxRetryAttempts);
+            return build(outputType, maxRetryAttempts);
+        }
+        return (StructuredClient<T>) clients.computeIfAbsent(key, k -> build(outputType, maxRetryAttempts));
+    }
+
+    /**
+     * 已缓存的客户端数
+     */
+    public int size() {
+        return clients.size();
+    }
+
+    private <T> StructuredClient<T> build(Class<T> outputType, int maxRetryAttempts) {
+        log.info("构建结构化输出客户端，类型: {}，重试次数: {}", outputType.getSimpleName(), maxRetryAttempts);
+        ChatClient.Builder builder = ChatClient.builder(chatModel)
+                .defaultAdvisors(new JsonRepairAdvisor(outputType, aiMetrics, maxRetryAttempts > 0));
+        if (maxRetryAttempts > 0) {
+            builder.defaultAdvisors(StructuredOutputValidationAdvisor.builder()
+                    .outputType(outputType)
+                    .maxRepeatAttempts(maxRetryAttempts)
+                    .build());
+        }
+        return new StructuredClient<>(builder.build(), new BeanOutputConverter<>(outputType));
+    }
+
+    private record Key(Class<?> outputType, int maxRetryAttempts) {
+    }
+
+    /**
+     * 构建好的客户端和输出转换器
+     */
+    public record StructuredClient<T>(ChatClient chatClient, BeanOutputConverter<T> converter) {
+
+        /**
+         * 同步调用并把回复转换为输出类型
+         *
+         * @param userPrompt 用户提示词
+         * @return 转换结果
+         */
+        public T call(String userPrompt) {
+            return chatClient.prompt()
+                    .user(userPrompt)
+                    .call()
+                    .entity(converter);
+        }
+    }
+}
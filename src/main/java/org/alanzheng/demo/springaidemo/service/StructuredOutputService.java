@@ -1,20 +1,37 @@
 package org.alanzheng.demo.springaidemo.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.alanzheng.demo.springaidemo.dto.ActorsFilms;
+import org.alanzheng.demo.springaidemo.dto.BatchItemResult;
 import org.alanzheng.demo.springaidemo.dto.WeatherInfo;
+import org.alanzheng.demo.springaidemo.dto.WeatherInfoList;
+import org.alanzheng.demo.springaidemo.dto.WeatherQuery;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.structured.IncrementalJsonParser;
+import org.alanzheng.demo.springaidemo.structured.StructuredOutputViolationException;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.StructuredOutputValidationAdvisor;
-import org.springframework.ai.chat.model.ChatModel;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 /**
  * 结构化输出服务
  * 演示Spring AI的结构化输出和Advisors API功能
+ * ChatClient、校验Advisor和输出转换器由{@link StructuredOutputClients}按类型和重试次数复用，不在每次请求时重建
  */
 @Slf4j
 @Service
@@ -23,14 +40,32 @@ public class StructuredOutputService {
     private static final int MAX_LOG_MESSAGE_LENGTH = 200;
     private static final int DEFAULT_MAX_RETRY_ATTEMPTS = 3;
     
-    private final ChatModel chatModel;
+    @Value("${spring.ai.structured.batch.concurrency:4}")
+    private int batchConcurrency;
+    
+    @Value("${spring.ai.structured.batch.requests-per-second:0}")
+    private double batchRequestsPerSecond;
+    
+    @Value("${spring.ai.structured.batch.pack-size:10}")
+    private int batchPackSize;
+    
+    @Value("${spring.ai.structured.batch.max-items:500}")
+    private int batchMaxItems;
+    
+    private final StructuredOutputClients clients;
+    private final ObjectMapper objectMapper;
+    private final AiMetrics aiMetrics;
     
     /**
-     * 构造函数注入ChatModel
+     * 构造函数注入结构化输出客户端注册表
      */
-    public StructuredOutputService(@Qualifier("openAiChatModel") ChatModel chatModel) {
-        Objects.requireNonNull(chatModel, "ChatModel不能为空");
-        this.chatModel = chatModel;
+    public StructuredOutputService(StructuredOutputClients clients, ObjectMapper objectMapper, AiMetrics aiMetrics) {
+        Objects.requireNonNull(clients, "StructuredOutputClients不能为空");
+        Objects.requireNonNull(objectMapper, "ObjectMapper不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        this.clients = clients;
+        this.objectMapper = objectMapper;
+        this.aiMetrics = aiMetrics;
     }
     
     /**
@@ -52,16 +87,10 @@ public class StructuredOutputService {
                 throw new IllegalArgumentException("电影数量必须大于0");
             }
             
-            // 使用ChatClient进行结构化输出
-            ChatClient chatClient = ChatClient.builder(chatModel).build();
-            
             String prompt = String.format("列出%s主演的%d部电影", actorName, movieCount);
             
-            ActorsFilms result = chatClient.prompt()
-                    .user(prompt)
-                    .call()
-                    /// 添加.entity()能够做到【同步调用】后的【相应转换】
-                    .entity(ActorsFilms.class);  // 直接映射到POJO
+            /// 同步调用后由缓存的BeanOutputConverter直接映射到POJO，不做校验重试
+            ActorsFilms result = clients.get(ActorsFilms.class, 0).call(prompt);
             
             // 判空处理
             if (Objects.isNull(result)) {
@@ -82,6 +111,59 @@ public class StructuredOutputService {
         }
     }
     
+    /**
+     * 流式获取演员的电影列表
+     * 边生成边增量解析JSON，movies中每部电影一结束就推送；输出一旦不符合Schema立即取消生成并重试，
+     * 不必等完整回复生成后再校验。
+     * 重试时按位置续接：新一次生成的前N部（N为此前已推送的数量）直接跳过，从第N+1部开始推送，
+     * 因此每个位置最多推送一次，总数不超过movieCount；已推送的部分来自失败的那次生成，之后的来自重试的生成。
+     * 
+     * @param actorName 演员姓名
+     * @param movieCount 电影数量
+     * @param maxRetryAttempts 输出不符合Schema时的最大重试次数
+     * @return 电影名称流，最多movieCount部
+     */
+    public Flux<String> streamActorsFilms(String actorName, int movieCount, int maxRetryAttempts) {
+        if (StringUtils.isBlank(actorName)) {
+            return Flux.error(new IllegalArgumentException("演员姓名不能为空"));
+        }
+        if (movieCount <= 0) {
+            return Flux.error(new IllegalArgumentException("电影数量必须大于0"));
+        }
+        if (maxRetryAttempts < 0) {
+            return Flux.error(new IllegalArgumentException("最大重试次数不能小于0"));
+        }
+        StructuredOutputClients.StructuredClient<ActorsFilms> client = clients.get(ActorsFilms.class, 0);
+        String prompt = String.format("列出%s主演的%d部电影", actorName, movieCount)
+                + System.lineSeparator() + client.converter().getFormat();
+        
+        Flux<String> movies = Flux.defer(() -> {
+            // 本次订阅已推送的电影数，各次尝试共享
+            AtomicInteger emitted = new AtomicInteger();
+            return Flux.defer(() -> {
+                        IncrementalJsonParser<ActorsFilms, String> parser =
+                                new IncrementalJsonParser<>(objectMapper, ActorsFilms.class, "movies", String.class);
+                        int skip = emitted.get();
+                        // 解析器抛出异常时concatMapIterable取消上游，模型请求随之中止
+                        return client.chatClient().prompt()
+                                .user(prompt)
+                                .stream()
+                                .content()
+                                .concatMapIterable(parser::feed)
+                                .concatWith(Mono.fromRunnable(parser::finish))
+                                .skip(skip)
+                                .doOnNext(movie -> emitted.incrementAndGet());
+                    })
+                    .retryWhen(Retry.max(maxRetryAttempts)
+                            .filter(StructuredOutputViolationException.class::isInstance)
+                            .doBeforeRetry(signal -> log.warn("流式结构化输出不符合Schema，提前中止并重试，第{}次重试，已推送: {}，原因: {}",
+                                    signal.totalRetries() + 1, emitted.get(), signal.failure().getMessage()))
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    .take(movieCount);
+        });
+        return StreamLogging.timed(movies, "流式获取演员电影列表", actorName, aiMetrics, "structured-stream");
+    }
+    
     /**
      * 获取天气信息（使用Advisors API的结构化输出示例）
      * 使用StructuredOutputValidationAdvisor确保输出的有效性，自动重试
@@ -118,27 +200,13 @@ public class StructuredOutputService {
                 throw new IllegalArgumentException("最大重试次数必须大于0");
             }
             
-            /// 创建验证Advisor，用于确保结构化输出的有效性
-            StructuredOutputValidationAdvisor validationAdvisor = 
-                    StructuredOutputValidationAdvisor.builder()
-                    .outputType(WeatherInfo.class)          // 指定目标类型
-                    .maxRepeatAttempts(maxRetryAttempts)    // 最多重试次数
-                    .build();
-            
-            /// 构建ChatClient并注入Advisor
-            ChatClient chatClient = ChatClient.builder(chatModel)
-                    .defaultAdvisors(validationAdvisor)
-                    .build();
-            
             // 构建包含月份信息的prompt，要求返回该城市的月平均气温
             String prompt = String.format(
                     "请告诉我%s在%d月份的平均气温是多少？请提供城市名称、月份、平均温度（摄氏度）和该月份的天气特点描述。", 
                     city, month);
             
-            WeatherInfo result = chatClient.prompt()
-                    .user(prompt)
-                    .call()
-                    .entity(WeatherInfo.class);  // 直接映射到POJO，Advisor会自动验证和重试
+            /// 带StructuredOutputValidationAdvisor的客户端按重试次数缓存，Advisor会自动验证和重试
+            WeatherInfo result = clients.get(WeatherInfo.class, maxRetryAttempts).call(prompt);
             
             // 判空处理
             if (Objects.isNull(result)) {
@@ -157,5 +225,209 @@ public class StructuredOutputService {
             throw e;
         }
     }
+    
+    /**
+     * 批量获取天气信息
+     * 多个城市/月份按pack-size合并到一次模型请求中（WeatherInfo字段少且扁平，适合合并），
+     * 合并请求以batch.concurrency为并发上限、按batch.requests-per-second限速发出；
+     * 合并请求失败或返回结果对不上的条目再单独请求（带校验重试），每条输入各自返回结果或错误。
+     * 
+     * @param queries 查询条件列表
+     * @param maxRetryAttempts 单条查询的最大重试次数，同时用于合并请求的输出校验
+     * @return 与输入顺序一致的结果列表
+     */
+    public List<BatchItemResult<WeatherInfo>> getWeatherInfoBatch(List<WeatherQuery> queries, int maxRetryAttempts) {
+        if (Objects.isNull(queries) || queries.isEmpty()) {
+            throw new IllegalArgumentException("查询条件不能为空");
+        }
+        if (queries.size() > batchMaxItems) {
+            throw new IllegalArgumentException("单次最多查询" + batchMaxItems + "条");
+        }
+        if (maxRetryAttempts < 1) {
+            throw new IllegalArgumentException("最大重试次数必须大于0");
+        }
+        
+        long startTime = System.currentTimeMillis();
+        log.info("开始批量获取天气信息，条数: {}，合并大小: {}，并发: {}，限速: {}/s", 
+                queries.size(), batchPackSize, batchConcurrency, batchRequestsPerSecond);
+        
+        AtomicReferenceArray<BatchItemResult<WeatherInfo>> results = new AtomicReferenceArray<>(queries.size());
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            String error = validate(queries.get(i));
+            if (Objects.nonNull(error)) {
+                results.set(i, failure(i, error));
+            } else {
+                valid.add(i);
+            }
+        }
+        
+        List<List<Integer>> packs = new ArrayList<>();
+        int packSize = Math.max(1, batchPackSize);
+        for (int from = 0; from < valid.size(); from += packSize) {
+            packs.add(valid.subList(from, Math.min(valid.size(), from + packSize)));
+        }
+        Queue<Integer> fallback = new ConcurrentLinkedQueue<>();
+        AtomicInteger requestCount = new AtomicInteger();
+        dispatch(packs, pack -> {
+            requestCount.incrementAndGet();
+            runPack(queries, pack, maxRetryAttempts, results, fallback);
+        });
+        
+        // 合并请求没有得到结果的条目逐条重新请求，同样受并发和限速约束
+        List<List<Integer>> singles = fallback.stream().sorted().map(List::of).toList();
+        dispatch(singles, single -> {
+            requestCount.incrementAndGet();
+            runPack(queries, single, maxRetryAttempts, results, fallback);
+        });
+        
+        List<BatchItemResult<WeatherInfo>> list = new ArrayList<>(queries.size());
+        int succeeded = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            BatchItemResult<WeatherInfo> result = results.get(i);
+            list.add(result);
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                succeeded++;
+            }
+        }
+        long duration = System.currentTimeMillis() - startTime;
+        log.info("批量获取天气信息完成，耗时: {}ms，条数: {}，成功: {}，失败: {}，模型请求数: {}，其中逐条补查: {}", 
+                duration, queries.size(), succeeded, queries.size() - succeeded, requestCount.get(), singles.size());
+        return list;
+    }
+    
+    /**
+     * 以batch.concurrency为并发上限执行各组请求，配置了限速时按固定间隔发出
+     */
+    private void dispatch(List<List<Integer>> packs, Consumer<List<Integer>> task) {
+        if (packs.isEmpty()) {
+            return;
+        }
+        Flux<List<Integer>> source = Flux.fromIterable(packs);
+        if (batchRequestsPerSecond > 0) {
+            source = source.delayElements(Duration.ofNanos(Math.round(1_000_000_000.0 / batchRequestsPerSecond)));
+        }
+        source.flatMap(pack -> Mono.fromRunnable(() -> task.accept(pack)).subscribeOn(Schedulers.boundedElastic()),
+                        Math.max(1, batchConcurrency))
+                .then()
+                .block();
+    }
+    
+    /**
+     * 执行一组查询：单条时走带校验重试的单条接口，多条时合并为一次请求并按城市和月份对应结果，
+     * 对不上的条目放入fallback等待逐条补查
+     */
+    private void runPack(List<WeatherQuery> queries, List<Integer> pack, int maxRetryAttempts,
+                         AtomicReferenceArray<BatchItemResult<WeatherInfo>> results, Queue<Integer> fallback) {
+        if (pack.size() == 1) {
+            int index = pack.get(0);
+            WeatherQuery query = queries.get(index);
+            try {
+                results.set(index, success(index, getWeatherInfo(query.getCity(), query.getMonth(), maxRetryAttempts)));
+            } catch (RuntimeException e) {
+                results.set(index, failure(index, "处理请求时发生错误: " + e.getMessage()));
+            }
+            return;
+        }
+        
+        StringBuilder prompt = new StringBuilder("请分别告诉我以下城市在对应月份的平均气温，按顺序逐条返回，"
+                + "每条提供城市名称、月份、平均温度（摄氏度）和该月份的天气特点描述：");
+        for (int k = 0; k < pack.size(); k++) {
+            WeatherQuery query = queries.get(pack.get(k));
+            prompt.append('\n').append(k + 1).append(". ").append(query.getCity()).append("，").append(query.getMonth()).append("月");
+        }
+        List<WeatherInfo> items;
+        try {
+            WeatherInfoList list = clients.get(WeatherInfoList.class, maxRetryAttempts).call(prompt.toString());
+            items = Objects.nonNull(list) && Objects.nonNull(list.items()) ? list.items() : List.of();
+        } catch (RuntimeException e) {
+            log.warn("合并的天气查询请求失败，改为逐条请求，条数: {}，错误信息: {}", pack.size(), e.getMessage());
+            fallback.addAll(pack);
+            return;
+        }
+        List<WeatherQuery> packQueries = pack.stream().map(queries::get).toList();
+        WeatherInfo[] matched = match(packQueries, items);
+        for (int k = 0; k < pack.size(); k++) {
+            int index = pack.get(k);
+            if (Objects.nonNull(matched[k])) {
+                results.set(index, success(index, matched[k]));
+            } else {
+                fallback.add(index);
+            }
+        }
+    }
+    
+    /**
+     * 把合并请求返回的结果一一对应到查询，每条结果最多分给一个查询：
+     * 先按城市名完全一致匹配，再按包含关系（如"北京"与"北京市"）匹配剩下的查询，每轮都优先按位置对应。
+     * 完全一致优先，避免"上海"先按包含关系拿走"上海浦东"的结果
+     * 
+     * @return 与queries下标对应的结果，对不上的为null
+     */
+    static WeatherInfo[] match(List<WeatherQuery> queries, List<WeatherInfo> items) {
+        WeatherInfo[] matched = new WeatherInfo[queries.size()];
+        boolean[] used = new boolean[items.size()];
+        for (boolean exact : new boolean[]{true, false}) {
+            for (int k = 0; k < queries.size(); k++) {
+                if (Objects.nonNull(matched[k])) {
+                    continue;
+                }
+                int found = -1;
+                if (k < items.size() && !used[k] && matches(queries.get(k), items.get(k), exact)) {
+                    found = k;
+                } else {
+                    for (int j = 0; j < items.size() && found < 0; j++) {
+                        if (!used[j] && matches(queries.get(k), items.get(j), exact)) {
+                            found = j;
+                        }
+                    }
+                }
+                if (found >= 0) {
+                    used[found] = true;
+                    matched[k] = items.get(found);
+                }
+            }
+        }
+        return matched;
+    }
+    
+    private static boolean matches(WeatherQuery query, WeatherInfo info, boolean exact) {
+        if (Objects.isNull(info) || StringUtils.isBlank(info.city()) || Objects.isNull(info.averageTemperature())
+                || !Objects.equals(query.getMonth(), info.month())) {
+            return false;
+        }
+        String expected = query.getCity().strip();
+        String actual = info.city().strip();
+        if (actual.equalsIgnoreCase(expected)) {
+            return true;
+        }
+        // 模型可能返回"北京市"之类的全称
+        return !exact && (actual.contains(expected) || expected.contains(actual));
+    }
+    
+    private static String validate(WeatherQuery query) {
+        if (Objects.isNull(query) || StringUtils.isBlank(query.getCity())) {
+            return "城市名称不能为空";
+        }
+        if (Objects.isNull(query.getMonth()) || query.getMonth() < 1 || query.getMonth() > 12) {
+            return "月份必须在1-12之间";
+        }
+        return null;
+    }
+    
+    private static BatchItemResult<WeatherInfo> success(int index, WeatherInfo info) {
+        return BatchItemResult.<WeatherInfo>builder()
+                .index(index)
+                .success(true)
+                .data(info)
+                .build();
+    }
+    
+    private static BatchItemResult<WeatherInfo> failure(int index, String errorMessage) {
+        return BatchItemResult.<WeatherInfo>builder()
+                .index(index)
+                .success(false)
+                .errorMessage(errorMessage)
+                .build();
+    }
 }
-
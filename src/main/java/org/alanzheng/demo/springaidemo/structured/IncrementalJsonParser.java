@@ -0,0 +1,251 @@
+package org.alanzheng.demo.springaidemo.structured;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 结构化输出的增量JSON解析器
+ * 按模型流式返回的片段逐段喂给Jackson非阻塞解析器，不等待完整回复：
+ * 指定的列表字段中每个元素一结束就转换为元素类型并返回，其余字段在各自的值结束时转换并校验。
+ * 出现以下情况时立即抛出{@link StructuredOutputViolationException}，调用方可据此中止生成：
+ * 输出不以JSON对象开头（允许前面有```json代码块标记）、JSON语法错误、未知字段、字段值与类型不符。
+ * 与BeanOutputConverter生成的Schema一致，所有字段都是必填的，缺失字段在{@link #finish()}时报告。
+ * 顶层对象结束后的内容（如结尾的```）被忽略。非线程安全，每次生成使用一个实例。
+ *
+ * @param <T> 输出类型
+ * @param <E> 列表字段的元素类型
+ */
+public class IncrementalJsonParser<T, E> {
+
+    private static final String FENCE = "```json";
+
+    private final ObjectMapper objectMapper;
+    private final JavaType type;
+    private final String streamedField;
+    private final JavaType elementType;
+    private final Map<String, JavaType> properties = new LinkedHashMap<>();
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final Map<String, Object> values = new LinkedHashMap<>();
+    private final List<E> elements = new ArrayList<>();
+    private final StringBuilder prefix = new StringBuilder();
+
+    private boolean started;
+    private boolean finished;
+    private String pending = "";
+    private int depth;
+    private String field;
+    private TokenBuffer value;
+    private int valueDepth;
+
+    /**
+     * @param objectMapper 用于字段转换的ObjectMapper
+     * @param type 输出类型
+     * @param streamedField 逐个返回元素的列表字段
+     * @param elementClass 列表字段的元素类型
+     */
+    public IncrementalJsonParser(ObjectMapper objectMapper, Class<T> type, String streamedField, Class<E> elementClass) {
+        Objects.requireNonNull(objectMapper, "ObjectMapper不能为空");
+        Objects.requireNonNull(type, "输出类型不能为空");
+        Objects.requireNonNull(streamedField, "列表字段不能为空");
+        Objects.requireNonNull(elementClass, "元素类型不能为空");
+        this.objectMapper = objectMapper;
+        this.type = objectMapper.constructType(type);
+        this.streamedField = streamedField;
+        BeanDescription description = objectMapper.getDeserializationConfig().introspect(this.type);
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            properties.put(property.getName(), property.getPrimaryType());
+        }
+        JavaType fieldType = properties.get(streamedField);
+        if (Objects.isNull(fieldType) || !fieldType.isCollectionLikeType()
+                || !elementClass.isAssignableFrom(fieldType.getContentType().getRawClass())) {
+            throw new IllegalArgumentException(type.getSimpleName() + "没有元素类型为"
+                    + elementClass.getSimpleName() + "的列表字段: " + streamedField);
+        }
+        this.elementType = fieldType.getContentType();
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * 喂入一段模型输出
+     *
+     * @param chunk 输出片段
+     * @return 本段中结束的列表元素，按出现顺序
+     * @throws StructuredOutputViolationException 输出不符合Schema时
+     */
+    public List<E> feed(String chunk) {
+        if (finished || Objects.isNull(chunk) || chunk.isEmpty()) {
+            return List.of();
+        }
+        String text = pending + chunk;
+        pending = "";
+        // 代理对被拆在两个片段之间时，高位留到下一段再编码
+        if (Character.isHighSurrogate(text.charAt(text.length() - 1))) {
+            pending = text.substring(text.length() - 1);
+            text = text.substring(0, text.length() - 1);
+        }
+        if (!started) {
+            text = skipPrefix(text);
+            if (text.isEmpty()) {
+                return List.of();
+            }
+        }
+        int before = elements.size();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while (!finished && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                handle(token);
+            }
+        } catch (IOException e) {
+            throw new StructuredOutputViolationException("输出不是合法的JSON: " + e.getMessage(), e);
+        }
+        return elements.size() == before ? List.of() : List.copyOf(elements.subList(before, elements.size()));
+    }
+
+    /**
+     * 输出结束后调用，校验完整性并返回结果
+     *
+     * @return 转换后的输出对象
+     * @throws StructuredOutputViolationException JSON不完整或缺少字段时
+     */
+    public T finish() {
+        if (!finished) {
+            throw new StructuredOutputViolationException("输出的JSON不完整");
+        }
+        List<String> missing = properties.keySet().stream()
+                .filter(name -> !values.containsKey(name))
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new StructuredOutputViolationException("缺少字段: " + missing);
+        }
+        return objectMapper.convertValue(values, type);
+    }
+
+    /**
+     * 已返回的列表元素
+     */
+    public List<E> elements() {
+        return List.copyOf(elements);
+    }
+
+    private String skipPrefix(String text) {
+        int start = text.indexOf('{');
+        prefix.append(start < 0 ? text : text.substring(0, start));
+        String skipped = prefix.toString().strip();
+        if (!FENCE.startsWith(skipped)) {
+            throw new StructuredOutputViolationException("输出不以JSON对象开头");
+        }
+        if (start < 0) {
+            return "";
+        }
+        started = true;
+        return text.substring(start);
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        if (Objects.nonNull(value)) {
+            value.copyCurrentEvent(parser);
+            track(token);
+            if (depth == valueDepth) {
+                completeValue();
+            }
+            return;
+        }
+        switch (depth) {
+            case 0 -> {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new StructuredOutputViolationException("输出不是JSON对象");
+                }
+                depth = 1;
+            }
+            case 1 -> {
+                if (token == JsonToken.END_OBJECT) {
+                    depth = 0;
+                    finished = true;
+                } else if (token == JsonToken.FIELD_NAME) {
+                    field = parser.currentName();
+                    if (!properties.containsKey(field)) {
+                        throw new StructuredOutputViolationException("未知字段: " + field);
+                    }
+                } else if (streamedField.equals(field)) {
+                    if (token != JsonToken.START_ARRAY) {
+                        throw new StructuredOutputViolationException("字段" + field + "应为数组");
+                    }
+                    depth = 2;
+                } else {
+                    startValue(token, 1);
+                }
+            }
+            default -> {
+                if (token == JsonToken.END_ARRAY) {
+                    depth = 1;
+                    values.put(field, new ArrayList<>(elements));
+                } else {
+                    startValue(token, 2);
+                }
+            }
+        }
+    }
+
+    private void startValue(JsonToken token, int atDepth) throws IOException {
+        value = new TokenBuffer(parser);
+        value.copyCurrentEvent(parser);
+        valueDepth = atDepth;
+        track(token);
+        if (depth == valueDepth) {
+            completeValue();
+        }
+    }
+
+    private void track(JsonToken token) {
+        if (token.isStructStart()) {
+            depth++;
+        } else if (token.isStructEnd()) {
+            depth--;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void completeValue() {
+        TokenBuffer buffer = value;
+        value = null;
+        boolean element = valueDepth == 2;
+        JavaType target = element ? elementType : properties.get(field);
+        Object converted;
+        try (JsonParser bufferParser = buffer.asParser(objectMapper)) {
+            converted = objectMapper.readValue(bufferParser, target);
+        } catch (IOException e) {
+            throw new StructuredOutputViolationException(
+                    "字段" + field + (element ? "的元素" : "") + "类型不符: " + e.getMessage(), e);
+        }
+        if (!element) {
+            values.put(field, converted);
+        } else if (Objects.isNull(converted)) {
+            throw new StructuredOutputViolationException("字段" + field + "的元素不能为null");
+        } else {
+            elements.add((E) converted);
+        }
+    }
+}
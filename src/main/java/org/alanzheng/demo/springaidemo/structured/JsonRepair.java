@@ -0,0 +1,184 @@
+package org.alanzheng.demo.springaidemo.structured;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * 模型输出的JSON文本修复
+ * 只处理常见的格式问题：去掉JSON前后的说明文字和markdown代码块标记，单引号字符串改为双引号，
+ * 字符串内的原始换行转义，\'还原为单引号，删除对象和数组末尾多余的逗号，补齐截断的字符串和缺失的右括号，
+ * 截断在键之后的不完整键值对整体删除。括号未闭合时，字符串外出现的代码块标记或说明文字视为JSON已结束。
+ * 不理解语义，修复结果仍需按目标类型解析校验。
+ */
+public final class JsonRepair {
+
+    private JsonRepair() {
+    }
+
+    /**
+     * 修复JSON文本
+     *
+     * @param text 模型输出
+     * @return 修复后的JSON文本，找不到JSON对象或数组时返回null
+     */
+    public static String repair(String text) {
+        if (Objects.isNull(text)) {
+            return null;
+        }
+        int start = firstStructureStart(text);
+        if (start < 0) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder(text.length() - start + 8);
+        Deque<Character> closers = new ArrayDeque<>();
+        char quote = 0;
+        boolean escape = false;
+        // 最后一个尚未跟冒号的对象键在out中的起始位置，截断在键之后时从这里删除
+        int danglingKey = -1;
+        scan:
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (escape) {
+                    if (c == '\'') {
+                        // JSON不支持\'，去掉反斜杠
+                        out.setLength(out.length() - 1);
+                    }
+                    out.append(c);
+                    escape = false;
+                } else if (c == '\\') {
+                    out.append(c);
+                    escape = true;
+                } else if (c == quote) {
+                    out.append('"');
+                    quote = 0;
+                } else if (c == '"') {
+                    out.append("\\\"");
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else if (c == '\r') {
+                    out.append("\\r");
+                } else if (c == '\t') {
+                    out.append("\\t");
+                } else {
+                    out.append(c);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"', '\'' -> {
+                    danglingKey = isKeyPosition(out, closers) ? out.length() : -1;
+                    quote = c;
+                    out.append('"');
+                }
+                case ':' -> {
+                    danglingKey = -1;
+                    out.append(c);
+                }
+                case '{' -> {
+                    closers.push('}');
+                    out.append(c);
+                }
+                case '[' -> {
+                    closers.push(']');
+                    out.append(c);
+                }
+                case '}', ']' -> {
+                    if (!closers.contains(c)) {
+                        // 多余的右括号直接丢弃
+                        continue;
+                    }
+                    // 括号不配对时先补齐内层缺失的右括号
+                    char closer;
+                    do {
+                        closer = closers.pop();
+                        trimTrailingComma(out);
+                        out.append(closer);
+                    } while (closer != c);
+                    if (closers.isEmpty()) {
+                        // 顶层结构结束，之后的说明文字和代码块标记丢弃
+                        return out.toString();
+                    }
+                }
+                default -> {
+                    if (!isBareJsonChar(c)) {
+                        // 结构未闭合时遇到代码块结束标记或说明文字，之后的内容不再属于JSON
+                        break scan;
+                    }
+                    out.append(c);
+                }
+            }
+        }
+        if (quote != 0) {
+            if (escape) {
+                out.setLength(out.length() - 1);
+            }
+            out.append('"');
+        }
+        if (danglingKey >= 0) {
+            out.setLength(danglingKey);
+        }
+        trimDangling(out);
+        out.setLength(lastNonWhitespace(out) + 1);
+        while (!closers.isEmpty()) {
+            trimTrailingComma(out);
+            out.append(closers.pop());
+        }
+        return out.toString();
+    }
+
+    private static int firstStructureStart(String text) {
+        int brace = text.indexOf('{');
+        int bracket = text.indexOf('[');
+        if (brace < 0) {
+            return bracket;
+        }
+        return bracket < 0 ? brace : Math.min(brace, bracket);
+    }
+
+    /**
+     * 字符串外可以出现在JSON中的字符：空白、逗号和数字、true/false/null等字面量的字符
+     */
+    private static boolean isBareJsonChar(char c) {
+        return Character.isWhitespace(c) || c == ',' || c == '+' || c == '-' || c == '.'
+                || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * 在对象中紧跟左括号或逗号的字符串是键
+     */
+    private static boolean isKeyPosition(StringBuilder out, Deque<Character> closers) {
+        if (closers.isEmpty() || closers.peek() != '}') {
+            return false;
+        }
+        int end = lastNonWhitespace(out);
+        return end >= 0 && (out.charAt(end) == '{' || out.charAt(end) == ',');
+    }
+
+    /**
+     * 截断在冒号之后时，补一个null值
+     */
+    private static void trimDangling(StringBuilder out) {
+        int end = lastNonWhitespace(out);
+        if (end >= 0 && out.charAt(end) == ':') {
+            out.setLength(end + 1);
+            out.append("null");
+        }
+    }
+
+    private static void trimTrailingComma(StringBuilder out) {
+        int end = lastNonWhitespace(out);
+        if (end >= 0 && out.charAt(end) == ',') {
+            out.setLength(end);
+        }
+    }
+
+    private static int lastNonWhitespace(StringBuilder out) {
+        int end = out.length() - 1;
+        while (end >= 0 && Character.isWhitespace(out.charAt(end))) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,160 @@
+package org.alanzheng.demo.springaidemo.structured;
+
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.core.Ordered;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 结构化输出的本地修复Advisor
+ * 排在StructuredOutputValidationAdvisor之内、紧挨模型调用：模型返回后先检查输出能否按目标类型解析，
+ * 不能时用{@link JsonRepair}修复格式并宽松解析（单引号、无引号字段名、字符串形式的数字、单值转数组、
+ * 忽略未知字段和大小写差异），成功则把回复替换为规范化的JSON，外层的校验随之通过，省掉一次模型重试；
+ * 修复不了（如缺少字段）时原样返回，由外层校验按原逻辑重试。
+ * 结果记入 ai.structured.repairs{type, outcome=repaired|unrepairable}，
+ * 带校验重试的客户端修复成功时另计 ai.structured.retries.saved{type}。
+ */
+@Slf4j
+public class JsonRepairAdvisor implements CallAdvisor {
+
+    private static final ObjectMapper STRICT = JsonMapper.builder()
+            .enable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+            .build();
+
+    private static final ObjectMapper LENIENT = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_SINGLE_QUOTES)
+            .enable(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES)
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .enable(JsonReadFeature.ALLOW_BACKSLASH_ESCAPING_ANY_CHARACTER)
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .enable(JsonReadFeature.ALLOW_LEADING_PLUS_SIGN_FOR_NUMBERS)
+            .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES)
+            .enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private static final Comparator<JsonNode> NUMERIC_AWARE = (a, b) -> {
+        if (a.equals(b)) {
+            return 0;
+        }
+        return a.isNumber() && b.isNumber() && a.decimalValue().compareTo(b.decimalValue()) == 0 ? 0 : 1;
+    };
+
+    private final JavaType type;
+    private final String typeName;
+    private final AiMetrics aiMetrics;
+    private final boolean validated;
+
+    /**
+     * @param outputType 输出类型
+     * @param aiMetrics AI调用指标
+     * @param validated 外层是否有会触发重试的校验Advisor，决定修复成功时是否计入省掉的重试
+     */
+    public JsonRepairAdvisor(Class<?> outputType, AiMetrics aiMetrics, boolean validated) {
+        Objects.requireNonNull(outputType, "输出类型不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        this.type = STRICT.constructType(outputType);
+        this.typeName = outputType.getSimpleName();
+        this.aiMetrics = aiMetrics;
+        this.validated = validated;
+    }
+
+    @Override
+    public String getName() {
+        return "JsonRepairAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // 紧挨模型调用，先于校验Advisor看到回复
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        ChatClientResponse response = chain.nextCall(request);
+        ChatResponse chatResponse = response.chatResponse();
+        if (Objects.isNull(chatResponse) || Objects.isNull(chatResponse.getResult())
+                || Objects.isNull(chatResponse.getResult().getOutput())) {
+            return response;
+        }
+        String text = chatResponse.getResult().getOutput().getText();
+        String normalized = normalize(text);
+        if (Objects.isNull(normalized)) {
+            aiMetrics.recordStructuredRepair(typeName, false, false);
+            log.debug("结构化输出无法本地修复，类型: {}", typeName);
+            return response;
+        }
+        if (isCanonical(text, normalized)) {
+            return response;
+        }
+        aiMetrics.recordStructuredRepair(typeName, true, validated);
+        log.info("结构化输出已本地修复，类型: {}，原始长度: {}，修复后长度: {}", typeName, text.length(), normalized.length());
+        Generation generation = chatResponse.getResult();
+        ChatResponse repaired = ChatResponse.builder()
+                .from(chatResponse)
+                .generations(List.of(new Generation(new AssistantMessage(normalized), generation.getMetadata())))
+                .build();
+        return new ChatClientResponse(repaired, response.context());
+    }
+
+    /**
+     * 修复并按目标类型解析，返回规范化的JSON
+     *
+     * @param text 模型输出
+     * @return 规范化的JSON，无法修复或顶层字段缺失时返回null
+     */
+    String normalize(String text) {
+        String candidate = JsonRepair.repair(text);
+        if (Objects.isNull(candidate)) {
+            return null;
+        }
+        try {
+            Object value = LENIENT.readValue(candidate, type);
+            JsonNode tree = STRICT.valueToTree(value);
+            if (Objects.isNull(tree) || !tree.isContainerNode()) {
+                return null;
+            }
+            // 与Schema一致，所有字段都是必填的
+            if (tree.isObject()) {
+                for (JsonNode field : tree) {
+                    if (field.isNull()) {
+                        return null;
+                    }
+                }
+            }
+            return STRICT.writeValueAsString(tree);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 原始输出本身就是合法JSON，且与规范化结果一致（数值按大小比较，26与26.0视为相同）时不需要替换
+     */
+    private static boolean isCanonical(String text, String normalized) {
+        try {
+            return STRICT.readTree(text.strip()).equals(NUMERIC_AWARE, STRICT.readTree(normalized));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.alanzheng.demo.springaidemo.structured;
+
+/**
+ * 模型输出不符合结构化输出Schema时抛出
+ * 流式解析中一旦发现即抛出，用于提前中止生成并重试
+ */
+public class StructuredOutputViolationException extends RuntimeException {
+
+    public StructuredOutputViolationException(String message) {
+        super(message);
+    }
+
+    public StructuredOutputViolationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
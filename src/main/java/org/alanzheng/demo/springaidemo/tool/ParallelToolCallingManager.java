@@ -0,0 +1,290 @@
+package org.alanzheng.demo.springaidemo.tool;
+
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.observation.DefaultToolCallingObservationConvention;
+import org.springframework.ai.tool.observation.ToolCallingObservationContext;
+import org.springframework.ai.tool.observation.ToolCallingObservationConvention;
+import org.springframework.ai.tool.observation.ToolCallingObservationDocumentation;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 并行执行工具调用的ToolCallingManager
+ * 模型在同一轮回复中请求多个工具时，这些调用彼此独立，提交到有界线程池同时执行，
+ * 本轮耗时约为最慢的一个工具而不是所有工具之和；工具结果仍按模型请求的顺序放回对话。
+ * 每个工具从开始执行起最多运行timeout，在队列中等待的时间不计入；排队超过timeout仍未开始的调用同样取消。
+ * 超时的调用被取消并以错误信息作为该工具的结果交给模型，不影响其他工具；线程池已满时不在调用线程上执行，直接返回错误信息。
+ * 执行线程上恢复调用线程的观测和追踪上下文，并与默认实现一样为每个工具调用记录观测，
+ * 各工具的耗时由{@link org.alanzheng.demo.springaidemo.metrics.MeteredToolCallback}记录。
+ * 只有一个工具调用或关闭并行时交给Spring AI默认的实现顺序执行。关闭时停止线程池。
+ */
+@Slf4j
+public class ParallelToolCallingManager implements ToolCallingManager, AutoCloseable {
+
+    private static final String TOOL_TIMEOUT_ENDPOINT = "tool";
+
+    private static final ToolCallingObservationConvention OBSERVATION_CONVENTION =
+            new DefaultToolCallingObservationConvention();
+
+    private final ToolCallingManager delegate;
+    private final ToolCallbackResolver toolCallbackResolver;
+    private final ToolExecutionExceptionProcessor exceptionProcessor;
+    private final ExecutorService executor;
+    private final Duration timeout;
+    private final boolean parallel;
+    private final AiMetrics aiMetrics;
+    private final ObservationRegistry observationRegistry;
+    private final ContextSnapshotFactory snapshotFactory = ContextSnapshotFactory.builder().build();
+
+    /**
+     * @param delegate 默认实现，用于解析工具定义和顺序执行
+     * @param toolCallbackResolver 按名称查找请求选项中没有的工具
+     * @param exceptionProcessor 工具执行异常的处理器，与默认实现一致
+     * @param executor 执行工具调用的有界线程池，队列满时应拒绝任务
+     * @param timeout 单个工具调用的超时时间，从开始执行起计算
+     * @param parallel 是否并行执行同一轮的多个工具调用
+     * @param aiMetrics AI调用指标
+     * @param observationRegistry 观测注册表，记录每个工具调用
+     */
+    public ParallelToolCallingManager(ToolCallingManager delegate,
+                                      ToolCallbackResolver toolCallbackResolver,
+                                      ToolExecutionExceptionProcessor exceptionProcessor,
+                                      ExecutorService executor,
+                                      Duration timeout,
+                                      boolean parallel,
+                                      AiMetrics aiMetrics,
+                                      ObservationRegistry observationRegistry) {
+        Objects.requireNonNull(delegate, "ToolCallingManager不能为空");
+        Objects.requireNonNull(toolCallbackResolver, "ToolCallbackResolver不能为空");
+        Objects.requireNonNull(exceptionProcessor, "ToolExecutionExceptionProcessor不能为空");
+        Objects.requireNonNull(executor, "Executor不能为空");
+        Objects.requireNonNull(timeout, "超时时间不能为空");
+        Objects.requireNonNull(aiMetrics, "AiMetrics不能为空");
+        Objects.requireNonNull(observationRegistry, "ObservationRegistry不能为空");
+        this.delegate = delegate;
+        this.toolCallbackResolver = toolCallbackResolver;
+        this.exceptionProcessor = exceptionProcessor;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.parallel = parallel;
+        this.aiMetrics = aiMetrics;
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        Objects.requireNonNull(prompt, "prompt不能为空");
+        Objects.requireNonNull(chatResponse, "chatResponse不能为空");
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(AssistantMessage::hasToolCalls)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        if (!parallel || toolCalls.size() < 2) {
+            return delegate.executeToolCalls(prompt, chatResponse);
+        }
+
+        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+        history.add(assistantMessage);
+        ToolContext toolContext = toolContext(prompt, history);
+        List<ToolCallback> callbacks = prompt.getOptions() instanceof ToolCallingChatOptions options
+                ? options.getToolCallbacks()
+                : List.of();
+
+        long startNanos = System.nanoTime();
+        ContextSnapshot snapshot = snapshotFactory.captureAll();
+        List<ToolTask> tasks = new ArrayList<>(toolCalls.size());
+        boolean returnDirect = true;
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            ToolCallback callback = resolve(toolCall.name(), callbacks);
+            returnDirect = returnDirect && callback.getToolMetadata().returnDirect();
+            ToolTask task = new ToolTask(callback, toolCall.arguments(), toolContext);
+            try {
+                task.future = executor.submit(snapshot.wrap(task));
+            } catch (RejectedExecutionException e) {
+                aiMetrics.recordError(TOOL_TIMEOUT_ENDPOINT, e);
+                log.warn("工具线程池已满，拒绝执行工具: {}", toolCall.name());
+            }
+            tasks.add(task);
+        }
+
+        long queueDeadline = startNanos + timeout.toNanos();
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        try {
+            for (int i = 0; i < toolCalls.size(); i++) {
+                AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+                responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(),
+                        await(toolCall.name(), tasks.get(i), queueDeadline)));
+            }
+        } finally {
+            // 某个工具抛出异常导致本轮失败时，取消其余仍在排队或执行的调用，释放工具线程池
+            for (ToolTask task : tasks) {
+                if (Objects.nonNull(task.future)) {
+                    task.future.cancel(true);
+                }
+            }
+        }
+        log.info("并行执行工具调用完成，工具数: {}，耗时: {}ms", toolCalls.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        history.add(ToolResponseMessage.builder().responses(responses).build());
+        return ToolExecutionResult.builder()
+                .conversationHistory(history)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 与默认实现一致，每个工具调用记录一次观测，追踪中对应一个工具span
+     */
+    private String call(ToolCallback callback, String arguments, ToolContext toolContext) {
+        ToolCallingObservationContext observationContext = ToolCallingObservationContext.builder()
+                .toolDefinition(callback.getToolDefinition())
+                .toolMetadata(callback.getToolMetadata())
+                .toolCallArguments(arguments)
+                .build();
+        return ToolCallingObservationDocumentation.TOOL_CALL
+                .observation(null, OBSERVATION_CONVENTION, () -> observationContext, observationRegistry)
+                .observe(() -> {
+                    String result;
+                    try {
+                        result = Objects.toString(callback.call(arguments, toolContext), "");
+                    } catch (ToolExecutionException e) {
+                        result = exceptionProcessor.process(e);
+                    }
+                    observationContext.setToolCallResult(result);
+                    return result;
+                });
+    }
+
+    /**
+     * 先等待调用开始执行（最多到queueDeadline），再从开始执行的时刻起最多等待timeout
+     */
+    private String await(String toolName, ToolTask task, long queueDeadline) {
+        Future<String> future = task.future;
+        if (Objects.isNull(future)) {
+            return "工具" + toolName + "未能执行：工具线程池已满，请不依赖该工具的结果继续回答";
+        }
+        try {
+            if (!task.started.await(Math.max(0, queueDeadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                future.cancel(true);
+                aiMetrics.recordError(TOOL_TIMEOUT_ENDPOINT, new TimeoutException("queued for more than " + timeout));
+                log.warn("工具调用排队超时，已取消，工具: {}，超时时间: {}ms", toolName, timeout.toMillis());
+                return "工具" + toolName + "排队等待超时（超过" + timeout.toMillis() + "ms），请不依赖该工具的结果继续回答";
+            }
+            long deadline = task.startNanos + timeout.toNanos();
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            aiMetrics.recordError(TOOL_TIMEOUT_ENDPOINT, e);
+            log.warn("工具调用超时，已取消，工具: {}，超时时间: {}ms", toolName, timeout.toMillis());
+            return "工具" + toolName + "执行超时（超过" + timeout.toMillis() + "ms），请不依赖该工具的结果继续回答";
+        } catch (CancellationException e) {
+            return "工具" + toolName + "已取消";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("等待工具调用结果时被中断: " + toolName, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("工具调用失败: " + toolName, cause);
+        }
+    }
+
+    /**
+     * 单个工具调用，记录开始执行的时刻，超时从这里开始计算
+     */
+    private final class ToolTask implements Callable<String> {
+
+        private final ToolCallback callback;
+        private final String arguments;
+        private final ToolContext toolContext;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long startNanos;
+        private Future<String> future;
+
+        private ToolTask(ToolCallback callback, String arguments, ToolContext toolContext) {
+            this.callback = callback;
+            this.arguments = arguments;
+            this.toolContext = toolContext;
+        }
+
+        @Override
+        public String call() {
+            startNanos = System.nanoTime();
+            started.countDown();
+            return ParallelToolCallingManager.this.call(callback, arguments, toolContext);
+        }
+    }
+
+    private ToolCallback resolve(String toolName, List<ToolCallback> callbacks) {
+        ToolCallback callback = callbacks.stream()
+                .filter(candidate -> toolName.equals(candidate.getToolDefinition().name()))
+                .findFirst()
+                .orElseGet(() -> toolCallbackResolver.resolve(toolName));
+        if (Objects.isNull(callback)) {
+            throw new IllegalStateException("No ToolCallback found for tool name: " + toolName);
+        }
+        return callback;
+    }
+
+    /**
+     * 与默认实现一致：请求选项中带有工具上下文时才附加对话历史，否则传空上下文
+     */
+    private static ToolContext toolContext(Prompt prompt, List<Message> history) {
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options
+                && Objects.nonNull(options.getToolContext()) && !options.getToolContext().isEmpty()) {
+            Map<String, Object> context = new HashMap<>(options.getToolContext());
+            context.put(ToolContext.TOOL_CALL_HISTORY, List.copyOf(history));
+            return new ToolContext(context);
+        }
+        return new ToolContext(Map.of());
+    }
+}
@@ -0,0 +1,149 @@
+package org.alanzheng.demo.springaidemo.tracing;
+
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.alanzheng.demo.springaidemo.dto.TraceSpanInfo;
+import org.alanzheng.demo.springaidemo.dto.TraceSummary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 内存中的最近trace
+ * 作为OpenTelemetry的SpanExporter接收导出的span，按trace分组保留最近的若干个，
+ * 用于在不部署追踪后端的情况下查看单个请求的阶段耗时分解。
+ * span由批量处理器异步导出，请求结束后通常要等几秒才能查到。
+ */
+public class RecentTraceStore implements SpanExporter {
+
+    private static final int MAX_SPANS_PER_TRACE = 1000;
+
+    private final int maxTraces;
+    private final LinkedHashMap<String, List<SpanData>> traces;
+
+    /**
+     * @param maxTraces 最多保留的trace数
+     */
+    public RecentTraceStore(int maxTraces) {
+        this.maxTraces = Math.max(1, maxTraces);
+        this.traces = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<SpanData>> eldest) {
+                return size() > RecentTraceStore.this.maxTraces;
+            }
+        };
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        for (SpanData span : spans) {
+            List<SpanData> trace = traces.computeIfAbsent(span.getTraceId(), id -> new ArrayList<>());
+            if (trace.size() < MAX_SPANS_PER_TRACE) {
+                trace.add(span);
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        traces.clear();
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * 最近的trace摘要，最新的在前
+     *
+     * @param limit 返回的数量
+     */
+    public synchronized List<TraceSummary> recent(int limit) {
+        List<TraceSummary> result = new ArrayList<>();
+        for (Map.Entry<String, List<SpanData>> entry : traces.entrySet()) {
+            List<SpanData> spans = entry.getValue();
+            SpanData root = root(spans);
+            long start = spans.stream().mapToLong(SpanData::getStartEpochNanos).min().orElse(0);
+            long end = spans.stream().mapToLong(SpanData::getEndEpochNanos).max().orElse(start);
+            result.add(TraceSummary.builder()
+                    .traceId(entry.getKey())
+                    .rootName(root.getName())
+                    .startTime(start / 1_000_000)
+                    .durationMillis(millis(end - start))
+                    .spanCount(spans.size())
+                    .build());
+        }
+        result.sort(Comparator.comparing(TraceSummary::getStartTime).reversed());
+        return result.subList(0, Math.min(Math.max(0, limit), result.size()));
+    }
+
+    /**
+     * 单个trace的span列表，按开始时间排序，附带嵌套深度和相对开始时间
+     *
+     * @return span列表，trace不存在时返回空列表
+     */
+    public synchronized List<TraceSpanInfo> trace(String traceId) {
+        List<SpanData> spans = traces.get(traceId);
+        if (Objects.isNull(spans) || spans.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, SpanData> byId = new HashMap<>();
+        spans.forEach(span -> byId.put(span.getSpanId(), span));
+        long traceStart = spans.stream().mapToLong(SpanData::getStartEpochNanos).min().orElse(0);
+
+        return spans.stream()
+                .sorted(Comparator.comparingLong(SpanData::getStartEpochNanos))
+                .map(span -> {
+                    Map<String, String> attributes = new LinkedHashMap<>();
+                    span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+                    return TraceSpanInfo.builder()
+                            .name(span.getName())
+                            .spanId(span.getSpanId())
+                            .parentSpanId(SpanId.isValid(span.getParentSpanId()) ? span.getParentSpanId() : null)
+                            .depth(depth(span, byId))
+                            .startOffsetMillis(millis(span.getStartEpochNanos() - traceStart))
+                            .durationMillis(millis(span.getEndEpochNanos() - span.getStartEpochNanos()))
+                            .error(span.getStatus().getStatusCode() == StatusCode.ERROR)
+                            .attributes(attributes)
+                            .build();
+                })
+                .toList();
+    }
+
+    private static SpanData root(List<SpanData> spans) {
+        return spans.stream()
+                .filter(span -> !SpanId.isValid(span.getParentSpanId()))
+                .findFirst()
+                .orElseGet(() -> spans.stream().min(Comparator.comparingLong(SpanData::getStartEpochNanos)).orElseThrow());
+    }
+
+    /**
+     * 嵌套深度：沿父span向上数，父span不在本trace中（如跨进程或已被截断）时停止
+     */
+    private static int depth(SpanData span, Map<String, SpanData> byId) {
+        int depth = 0;
+        SpanData current = byId.get(span.getParentSpanId());
+        while (Objects.nonNull(current) && depth < MAX_SPANS_PER_TRACE) {
+            depth++;
+            current = byId.get(current.getParentSpanId());
+        }
+        return depth;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,120 @@
+package org.alanzheng.demo.springaidemo.tracing;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * 阶段追踪
+ * 为RAG问答、检索、入库和工具调用的各个阶段创建span，span之间的父子关系反映阶段的嵌套，
+ * 导出后可按请求展开为火焰图式的耗时分解。没有配置tracing时使用{@link #NOOP}，不产生任何开销。
+ */
+public class StageTracer {
+
+    public static final StageTracer NOOP = new StageTracer(Tracer.NOOP);
+
+    private final Tracer tracer;
+
+    public StageTracer(Tracer tracer) {
+        Objects.requireNonNull(tracer, "Tracer不能为空");
+        this.tracer = tracer;
+    }
+
+    /**
+     * 当前线程上的span，跨线程传递父span时使用
+     *
+     * @return 当前span，没有时返回null
+     */
+    public Span currentSpan() {
+        return tracer.currentSpan();
+    }
+
+    /**
+     * 以当前span为父span开始一个阶段，没有当前span时开始新的trace
+     */
+    public Stage start(String name) {
+        return start(name, tracer.currentSpan());
+    }
+
+    /**
+     * 只在已有trace中开始一个阶段，没有当前span时不记录
+     * 用于后台线程中也会执行的代码（如批量嵌入的发送线程），避免产生大量孤立的trace
+     */
+    public Stage startIfTraced(String name) {
+        Span parent = tracer.currentSpan();
+        return Objects.isNull(parent) ? Stage.NONE : start(name, parent);
+    }
+
+    /**
+     * 以指定span为父span开始一个阶段，父span为null时不记录
+     * 用于工作线程中的阶段，父span由提交任务的线程捕获后传入
+     */
+    public Stage startIfTraced(String name, Span parent) {
+        return Objects.isNull(parent) ? Stage.NONE : start(name, parent);
+    }
+
+    /**
+     * 以指定span为父span开始一个阶段，并设为当前线程的span直到阶段结束
+     *
+     * @param parent 父span，为null时开始新的trace
+     */
+    public Stage start(String name, Span parent) {
+        Span span = (Objects.isNull(parent) ? tracer.nextSpan() : tracer.nextSpan(parent)).name(name).start();
+        return new Stage(span, tracer.withSpan(span));
+    }
+
+    /**
+     * 在一个阶段中执行调用，异常记录到span后原样抛出
+     */
+    public <T> T trace(String name, Supplier<T> call) {
+        try (Stage stage = start(name)) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                stage.error(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 进行中的阶段，关闭时结束span并恢复之前的当前span
+     */
+    public static final class Stage implements AutoCloseable {
+
+        static final Stage NONE = new Stage(null, null);
+
+        private final Span span;
+        private final Tracer.SpanInScope scope;
+
+        private Stage(Span span, Tracer.SpanInScope scope) {
+            this.span = span;
+            this.scope = scope;
+        }
+
+        public Stage tag(String key, Object value) {
+            if (Objects.nonNull(span)) {
+                span.tag(key, Objects.toString(value, ""));
+            }
+            return this;
+        }
+
+        public void error(Throwable error) {
+            if (Objects.nonNull(span)) {
+                span.error(error);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (Objects.nonNull(scope)) {
+                scope.close();
+            }
+            if (Objects.nonNull(span)) {
+                span.end();
+            }
+        }
+    }
+}
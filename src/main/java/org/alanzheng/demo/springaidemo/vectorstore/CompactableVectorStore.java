@@ -0,0 +1,15 @@
+package org.alanzheng.demo.springaidemo.vectorstore;
+
+/**
+ * 删除和覆盖只打标记、需要定期重写有效数据的向量存储
+ * 由入库服务在同步、删除等批量变更后触发，是否真正压缩由存储自行按删除比例判断
+ */
+public interface CompactableVectorStore {
+
+    /**
+     * 删除行占比达到阈值时压缩存储
+     *
+     * @return 是否执行了压缩
+     */
+    boolean compactIfNeeded();
+}
@@ -0,0 +1,20 @@
+package org.alanzheng.demo.springaidemo.vectorstore;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * 支持直接写入已计算好向量的文档的向量存储
+ * 入库流水线可以在独立的阶段并发计算嵌入，再交给存储顺序写入
+ */
+public interface EmbeddedDocumentWriter {
+
+    /**
+     * 写入已计算好向量的文档，ID已存在时覆盖旧记录
+     *
+     * @param documents 文档列表
+     * @param embeddings 与文档一一对应的向量
+     */
+    void write(List<Document> documents, List<float[]> embeddings);
+}
@@ -0,0 +1,22 @@
+package org.alanzheng.demo.springaidemo.vectorstore;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.util.List;
+
+/**
+ * 支持直接使用已计算好的查询向量检索的向量存储
+ * 调用方已经有查询向量（如语义缓存、查询向量缓存）时，避免再次调用嵌入模型
+ */
+public interface EmbeddedQuerySearcher {
+
+    /**
+     * 使用查询向量检索
+     *
+     * @param queryEmbedding 查询向量，无需归一化
+     * @param request 检索参数，其中的query文本会被忽略
+     * @return 按相似度降序排列的文档
+     */
+    List<Document> similaritySearch(float[] queryEmbedding, SearchRequest request);
+}
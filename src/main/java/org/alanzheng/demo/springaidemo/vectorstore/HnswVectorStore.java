@@ -0,0 +1,676 @@
+package org.alanzheng.demo.springaidemo.vectorstore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.alanzheng.demo.springaidemo.dto.IndexRecallReport;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于HNSW（分层可导航小世界图）的近似最近邻向量存储
+ * 向量和文档记录持久化在MappedVectorStore中，图结构常驻内存：
+ * 启动或存储压缩后在后台线程中根据已持久化的向量重建（无需重新调用嵌入接口），之后随add增量插入，
+ * 图构建完成前的检索退回到精确扫描，不阻塞应用启动
+ *
+ * 带元数据过滤条件的检索会退回到精确扫描，以保证过滤结果的完整性
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore, EmbeddedDocumentWriter, EmbeddedQuerySearcher,
+        CompactableVectorStore, AutoCloseable {
+
+    private static final int MAX_LEVEL = 16;
+    /**
+     * 后台构建每次持有读锁插入的行数，批次之间让出锁给写入
+     */
+    private static final int BUILD_BATCH_ROWS = 1024;
+    private static final AtomicInteger BUILDER_THREAD_COUNTER = new AtomicInteger();
+    private static final Comparator<Candidate> BY_SIMILARITY = Comparator.comparingDouble(Candidate::similarity);
+
+    private final MappedVectorStore storage;
+    private final int m;
+    private final int maxConnections0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Random random = new Random(42);
+    /**
+     * 按行号索引的邻接表：graph[row][level][0]为邻居数量，其后为邻居行号
+     */
+    private final List<int[][]> graph = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    /**
+     * 图中的节点数，包括插入后被删除的节点
+     */
+    private int nodeCount;
+    /**
+     * 后台构建已处理到的行号
+     */
+    private int builtRows;
+    /**
+     * 每次重建递增，旧的构建线程发现代数变化后退出
+     */
+    private int buildGeneration;
+    private boolean ready;
+    private boolean closed;
+    private volatile CountDownLatch readyLatch = new CountDownLatch(1);
+
+    private HnswVectorStore(MappedVectorStore storage, int m, int efConstruction, int efSearch) {
+        Objects.requireNonNull(storage, "MappedVectorStore不能为空");
+        this.storage = storage;
+        this.m = m;
+        this.maxConnections0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        startBuild();
+    }
+
+    public static Builder builder(MappedVectorStore storage) {
+        return new Builder(storage);
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (Objects.isNull(documents) || documents.isEmpty()) {
+            return;
+        }
+
+        // 嵌入调用在锁外进行，避免阻塞并发检索
+        write(documents, storage.embed(documents));
+    }
+
+    @Override
+    public void write(List<Document> documents, List<float[]> embeddings) {
+        if (documents.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            int[] rows = storage.appendRows(documents, embeddings);
+            // 构建中的图由后台线程补齐新追加的行
+            if (ready) {
+                for (int row : rows) {
+                    insert(row);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("HNSW索引增量插入 {} 个文档", documents.size());
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            // 已删除的节点保留在图中参与导航，检索结果中会被过滤
+            storage.delete(idList);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        lock.writeLock().lock();
+        try {
+            storage.delete(filterExpression);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        Objects.requireNonNull(request, "SearchRequest不能为空");
+        if (size() == 0) {
+            return List.of();
+        }
+        return similaritySearch(storage.embed(request.getQuery()), request);
+    }
+
+    @Override
+    public List<Document> similaritySearch(float[] queryEmbedding, SearchRequest request) {
+        lock.readLock().lock();
+        try {
+            if (request.hasFilterExpression() || !ready) {
+                return storage.similaritySearch(queryEmbedding, request);
+            }
+
+            float[] query = MappedVectorStore.normalize(queryEmbedding);
+            List<Document> results = new ArrayList<>(request.getTopK());
+            for (Candidate candidate : searchTopRows(query, request.getTopK(), efSearch)) {
+                if (candidate.similarity() < request.getSimilarityThreshold()) {
+                    break;
+                }
+                results.add(storage.document(candidate.row(), candidate.similarity()));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 当前有效（未删除）的文档数量
+     */
+    public int size() {
+        return storage.size();
+    }
+
+    /**
+     * 图是否已构建完成，未完成时检索使用精确扫描
+     */
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return ready;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 等待后台构建完成
+     *
+     * @return 超时前完成时返回true
+     */
+    public boolean awaitReady(Duration timeout) throws InterruptedException {
+        return readyLatch.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 压缩底层存储，压缩后行号重新编排，需要在后台重建整张图
+     */
+    @Override
+    public boolean compactIfNeeded() {
+        lock.writeLock().lock();
+        try {
+            if (!storage.compactIfNeeded()) {
+                return false;
+            }
+            startBuild();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 对比HNSW与精确扫描的召回率和延迟
+     * 从索引中随机抽取已有向量作为查询，依次测量不同efSearch取值
+     *
+     * @param sampleSize 采样查询数量
+     * @param topK 每次检索返回的数量
+     * @return 召回率与延迟报告
+     */
+    public IndexRecallReport evaluateRecall(int sampleSize, int topK) {
+        if (sampleSize <= 0 || topK <= 0) {
+            throw new IllegalArgumentException("采样数量和topK必须大于0");
+        }
+
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                throw new IllegalStateException("HNSW索引正在后台构建，请稍后再评估召回率");
+            }
+            List<float[]> queries = sampleQueries(sampleSize);
+            if (queries.isEmpty()) {
+                throw new IllegalStateException("索引为空，无法评估召回率");
+            }
+
+            List<Set<Integer>> exactResults = new ArrayList<>(queries.size());
+            long[] exactLatencies = new long[queries.size()];
+            for (int i = 0; i < queries.size(); i++) {
+                long start = System.nanoTime();
+                List<Candidate> exact = exactTopRows(queries.get(i), topK);
+                exactLatencies[i] = System.nanoTime() - start;
+                exactResults.add(rowsOf(exact));
+            }
+
+            TreeSet<Integer> efValues = new TreeSet<>(List.of(
+                    Math.max(topK, efSearch / 2), Math.max(topK, efSearch),
+                    Math.max(topK, efSearch * 2), Math.max(topK, efSearch * 4)));
+
+            List<IndexRecallReport.Entry> entries = new ArrayList<>();
+            for (int ef : efValues) {
+                long[] latencies = new long[queries.size()];
+                double recallSum = 0.0;
+                for (int i = 0; i < queries.size(); i++) {
+                    long start = System.nanoTime();
+                    List<Candidate> approximate = searchTopRows(queries.get(i), topK, ef);
+                    latencies[i] = System.nanoTime() - start;
+
+                    Set<Integer> expected = exactResults.get(i);
+                    if (expected.isEmpty()) {
+                        recallSum += 1.0;
+                        continue;
+                    }
+                    Set<Integer> hits = rowsOf(approximate);
+                    hits.retainAll(expected);
+                    recallSum += (double) hits.size() / expected.size();
+                }
+                entries.add(IndexRecallReport.Entry.builder()
+                        .efSearch(ef)
+                        .recall(recallSum / queries.size())
+                        .avgLatencyMicros(average(latencies))
+                        .p99LatencyMicros(percentile(latencies, 0.99))
+                        .build());
+            }
+
+            return IndexRecallReport.builder()
+                    .indexSize(storage.size())
+                    .sampleSize(queries.size())
+                    .topK(topK)
+                    .exactAvgLatencyMicros(average(exactLatencies))
+                    .exactP99LatencyMicros(percentile(exactLatencies, 0.99))
+                    .entries(entries)
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            storage.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空图并启动后台构建线程（调用方持有写锁或处于构造阶段）
+     */
+    private void startBuild() {
+        int generation = ++buildGeneration;
+        ready = false;
+        graph.clear();
+        entryPoint = -1;
+        maxLevel = -1;
+        nodeCount = 0;
+        builtRows = 0;
+        if (readyLatch.getCount() == 0) {
+            readyLatch = new CountDownLatch(1);
+        }
+
+        Thread builder = new Thread(() -> build(generation),
+                "hnsw-index-builder-" + BUILDER_THREAD_COUNTER.incrementAndGet());
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * 后台构建：分批持有读锁插入已持久化的行，检索可以并发进行（此时走精确扫描），写入在批次之间执行；
+     * 追上最新行后在写锁下补齐剩余行并切换为图检索
+     */
+    private void build(int generation) {
+        long startTime = System.currentTimeMillis();
+        try {
+            while (true) {
+                lock.readLock().lock();
+                try {
+                    if (closed || generation != buildGeneration) {
+                        return;
+                    }
+                    if (insertBatch(storage.rowCount())) {
+                        continue;
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+
+                lock.writeLock().lock();
+                try {
+                    if (closed || generation != buildGeneration) {
+                        return;
+                    }
+                    while (insertBatch(storage.rowCount())) {
+                        // 写锁下补齐最后几批
+                    }
+                    ready = true;
+                    readyLatch.countDown();
+                    log.info("HNSW索引构建完成，耗时: {}ms，节点数: {}，M: {}，efConstruction: {}，efSearch: {}",
+                            System.currentTimeMillis() - startTime, nodeCount, m, efConstruction, efSearch);
+                    return;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("HNSW索引构建失败，检索将继续使用精确扫描: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 插入下一批行，返回是否还有未处理的行
+     */
+    private boolean insertBatch(int rowCount) {
+        int end = Math.min(rowCount, builtRows + BUILD_BATCH_ROWS);
+        for (; builtRows < end; builtRows++) {
+            if (storage.isLive(builtRows)) {
+                insert(builtRows);
+            }
+        }
+        return builtRows < rowCount;
+    }
+
+    /**
+     * 插入一个节点（调用方持有写锁，或为持有读锁的构建线程）
+     */
+    private void insert(int row) {
+        float[] vector = storage.vector(row);
+        int level = randomLevel();
+
+        int[][] layers = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            layers[l] = new int[maxConnections(l) + 1];
+        }
+        while (graph.size() <= row) {
+            graph.add(null);
+        }
+        graph.set(row, layers);
+        nodeCount++;
+
+        if (entryPoint < 0) {
+            entryPoint = row;
+            maxLevel = level;
+            return;
+        }
+
+        Candidate nearest = new Candidate(entryPoint, storage.similarity(vector, entryPoint));
+        for (int l = maxLevel; l > level; l--) {
+            nearest = greedySearch(vector, nearest, l);
+        }
+
+        List<Candidate> entryPoints = List.of(nearest);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = searchLayer(vector, entryPoints, efConstruction, l);
+            int linked = 0;
+            for (Candidate neighbor : found) {
+                if (linked >= m) {
+                    break;
+                }
+                if (neighbor.row() == row) {
+                    continue;
+                }
+                link(row, neighbor.row(), l);
+                link(neighbor.row(), row, l);
+                linked++;
+            }
+            entryPoints = found;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = row;
+        }
+    }
+
+    /**
+     * 添加一条有向边，邻居已满时只保留相似度最高的连接
+     */
+    private void link(int from, int to, int level) {
+        int[] neighbors = graph.get(from)[level];
+        int count = neighbors[0];
+        int capacity = neighbors.length - 1;
+        if (count < capacity) {
+            neighbors[count + 1] = to;
+            neighbors[0] = count + 1;
+            return;
+        }
+
+        float[] base = storage.vector(from);
+        List<Candidate> candidates = new ArrayList<>(capacity + 1);
+        candidates.add(new Candidate(to, storage.similarity(base, to)));
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Candidate(neighbors[i], storage.similarity(base, neighbors[i])));
+        }
+        candidates.sort(BY_SIMILARITY.reversed());
+        for (int i = 0; i < capacity; i++) {
+            neighbors[i + 1] = candidates.get(i).row();
+        }
+    }
+
+    /**
+     * 分层检索：高层贪心定位入口，第0层以ef为候选队列大小进行搜索
+     * 已删除的节点仍参与导航但不计入结果，ef按删除比例放大；结果仍不足topK时加倍ef重试，直到覆盖全部节点
+     */
+    private List<Candidate> searchTopRows(float[] query, int topK, int ef) {
+        int liveNodes = storage.size();
+        if (entryPoint < 0 || liveNodes == 0) {
+            return List.of();
+        }
+
+        Candidate nearest = new Candidate(entryPoint, storage.similarity(query, entryPoint));
+        for (int l = maxLevel; l > 0; l--) {
+            nearest = greedySearch(query, nearest, l);
+        }
+
+        double liveFraction = Math.min(1.0, (double) liveNodes / nodeCount);
+        int width = (int) Math.min(nodeCount, Math.ceil(Math.max(ef, topK) / liveFraction));
+        while (true) {
+            List<Candidate> results = new ArrayList<>(topK);
+            for (Candidate candidate : searchLayer(query, List.of(nearest), width, 0)) {
+                if (results.size() >= topK) {
+                    break;
+                }
+                if (storage.isLive(candidate.row())) {
+                    results.add(candidate);
+                }
+            }
+            if (results.size() >= topK || results.size() >= liveNodes || width >= nodeCount) {
+                return results;
+            }
+            width = Math.min(nodeCount, width * 2);
+        }
+    }
+
+    private Candidate greedySearch(float[] query, Candidate start, int level) {
+        Candidate current = start;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = neighborsOf(current.row(), level);
+            for (int i = 1; i <= neighbors[0]; i++) {
+                double similarity = storage.similarity(query, neighbors[i]);
+                if (similarity > current.similarity()) {
+                    current = new Candidate(neighbors[i], similarity);
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层最佳优先搜索，返回按相似度降序排列的ef个候选
+     */
+    private List<Candidate> searchLayer(float[] query, List<Candidate> entryPoints, int ef, int level) {
+        BitSet visited = new BitSet(graph.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BY_SIMILARITY.reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(BY_SIMILARITY);
+
+        for (Candidate entry : entryPoints) {
+            if (!visited.get(entry.row())) {
+                visited.set(entry.row());
+                candidates.add(entry);
+                results.add(entry);
+            }
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.similarity() < results.peek().similarity()) {
+                break;
+            }
+
+            int[] neighbors = neighborsOf(current.row(), level);
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+
+                double similarity = storage.similarity(query, neighbor);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbor, similarity);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(BY_SIMILARITY.reversed());
+        return sorted;
+    }
+
+    private List<Candidate> exactTopRows(float[] query, int topK) {
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(BY_SIMILARITY);
+        int rowCount = storage.rowCount();
+        for (int row = 0; row < rowCount; row++) {
+            if (!storage.isLive(row)) {
+                continue;
+            }
+            double similarity = storage.similarity(query, row);
+            if (heap.size() < topK || similarity > heap.peek().similarity()) {
+                heap.add(new Candidate(row, similarity));
+                if (heap.size() > topK) {
+                    heap.poll();
+                }
+            }
+        }
+        return new ArrayList<>(heap);
+    }
+
+    private List<float[]> sampleQueries(int sampleSize) {
+        int rowCount = storage.rowCount();
+        List<Integer> liveRows = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (storage.isLive(row)) {
+                liveRows.add(row);
+            }
+        }
+
+        Random sampler = new Random(7);
+        List<float[]> queries = new ArrayList<>(Math.min(sampleSize, liveRows.size()));
+        for (int i = 0; i < sampleSize && !liveRows.isEmpty(); i++) {
+            queries.add(storage.vector(liveRows.get(sampler.nextInt(liveRows.size()))));
+        }
+        return queries;
+    }
+
+    private int[] neighborsOf(int row, int level) {
+        int[][] layers = graph.get(row);
+        return level < layers.length ? layers[level] : new int[1];
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxConnections0 : m;
+    }
+
+    private int randomLevel() {
+        double level = -Math.log(1.0 - random.nextDouble()) * levelMultiplier;
+        return Math.min((int) level, MAX_LEVEL);
+    }
+
+    private static Set<Integer> rowsOf(List<Candidate> candidates) {
+        Set<Integer> rows = new HashSet<>();
+        for (Candidate candidate : candidates) {
+            rows.add(candidate.row());
+        }
+        return rows;
+    }
+
+    private static double average(long[] nanos) {
+        return Arrays.stream(nanos).average().orElse(0.0) / 1000.0;
+    }
+
+    private static double percentile(long[] nanos, double quantile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+    }
+
+    private record Candidate(int row, double similarity) {
+    }
+
+    /**
+     * HnswVectorStore构建器
+     */
+    public static final class Builder {
+
+        private final MappedVectorStore storage;
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 64;
+
+        private Builder(MappedVectorStore storage) {
+            this.storage = storage;
+        }
+
+        /**
+         * 每个节点在高层的最大连接数，第0层为其2倍
+         */
+        public Builder m(int m) {
+            if (m < 2) {
+                throw new IllegalArgumentException("M必须不小于2");
+            }
+            this.m = m;
+            return this;
+        }
+
+        public Builder efConstruction(int efConstruction) {
+            if (efConstruction <= 0) {
+                throw new IllegalArgumentException("efConstruction必须大于0");
+            }
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        public Builder efSearch(int efSearch) {
+            if (efSearch <= 0) {
+                throw new IllegalArgumentException("efSearch必须大于0");
+            }
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        public HnswVectorStore build() {
+            return new HnswVectorStore(storage, m, efConstruction, efSearch);
+        }
+    }
+}
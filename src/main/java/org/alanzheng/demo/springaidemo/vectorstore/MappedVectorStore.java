@@ -0,0 +1,880 @@
+package org.alanzheng.demo.springaidemo.vectorstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentMetadata;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 基于内存映射文件的持久化向量存储
+ * 向量以float32连续存放在分段文件中，检索时直接扫描映射内存，
+ * 只有最终的topK结果才会从记录文件中反序列化为Document
+ *
+ * 目录结构：
+ * store.properties - 向量维度和每段行数
+ * segment-NNNNN.f32 - 归一化后的向量分段（小端float32）
+ * records.log - 追加写入的文档记录（JSON）
+ * rows.idx - 每行16字节：记录偏移、记录长度、删除标记
+ * ids.log - 按行号顺序记录的文档ID，启动时用于重建ID索引
+ *
+ * 更新和删除只打删除标记，删除行占比超过阈值时由compactIfNeeded重写有效行，
+ * 新文件先完整写入compacting子目录并落下完成标记，再整体替换，中途崩溃时启动阶段会继续或放弃替换
+ */
+@Slf4j
+public class MappedVectorStore implements VectorStore, EmbeddedDocumentWriter, EmbeddedQuerySearcher,
+        CompactableVectorStore, AutoCloseable {
+
+    private static final String META_FILE = "store.properties";
+    private static final String RECORDS_FILE = "records.log";
+    private static final String ROWS_FILE = "rows.idx";
+    private static final String IDS_FILE = "ids.log";
+    private static final String SEGMENT_FILE_PATTERN = "segment-%05d.f32";
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String COMPACT_DIR = "compacting";
+    private static final String COMPACT_DONE_FILE = "compact.done";
+    private static final int ROW_ENTRY_BYTES = 16;
+    private static final int FLAG_OFFSET = 12;
+    private static final int FLAG_DELETED = 1;
+    private static final int DEFAULT_ROWS_PER_SEGMENT = 16384;
+    private static final double DEFAULT_COMPACTION_RATIO = 0.3;
+    /**
+     * 删除行少于该数量时不压缩，避免小存储频繁重写
+     */
+    private static final int MIN_DELETED_ROWS_TO_COMPACT = 1024;
+    /**
+     * 单次嵌入请求的文本数量，DashScope text-embedding-v4 单批最多10条
+     */
+    private static final int EMBEDDING_BATCH_SIZE = 10;
+
+    private final EmbeddingModel embeddingModel;
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<FloatBuffer> segmentViews = new ArrayList<>();
+    private final Map<String, Integer> rowById = new HashMap<>();
+    private final BitSet deletedRows = new BitSet();
+    private final double compactionRatio;
+    private FileChannel recordsChannel;
+    private FileChannel rowsChannel;
+    private FileChannel idsChannel;
+    private int rowsPerSegment;
+    private int dimensions;
+    private int rowCount;
+
+    private MappedVectorStore(EmbeddingModel embeddingModel, Path directory, int rowsPerSegment,
+                              double compactionRatio) {
+        Objects.requireNonNull(embeddingModel, "EmbeddingModel不能为空");
+        Objects.requireNonNull(directory, "向量存储路径不能为空");
+        this.embeddingModel = embeddingModel;
+        this.directory = directory;
+        this.rowsPerSegment = rowsPerSegment;
+        this.compactionRatio = compactionRatio;
+
+        try {
+            Files.createDirectories(directory);
+            finishCompaction();
+            loadMeta();
+            openFiles();
+        } catch (IOException e) {
+            throw new RuntimeException("初始化内存映射向量存储失败: " + e.getMessage(), e);
+        }
+
+        log.info("内存映射向量存储已打开，路径: {}，维度: {}，行数: {}，有效文档数: {}",
+                directory.toAbsolutePath(), dimensions, rowCount, rowById.size());
+    }
+
+    public static Builder builder(EmbeddingModel embeddingModel) {
+        return new Builder(embeddingModel);
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (Objects.isNull(documents) || documents.isEmpty()) {
+            return;
+        }
+        write(documents, embed(documents));
+    }
+
+    @Override
+    public void write(List<Document> documents, List<float[]> embeddings) {
+        appendRows(documents, embeddings);
+    }
+
+    /**
+     * 追加写入文档并返回各文档对应的行号
+     */
+    int[] appendRows(List<Document> documents, List<float[]> embeddings) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("文档数量与向量数量不一致");
+        }
+        if (documents.isEmpty()) {
+            return new int[0];
+        }
+
+        lock.writeLock().lock();
+        try {
+            ensureDimensions(embeddings.get(0).length);
+            int firstSegment = rowCount / rowsPerSegment;
+
+            int firstRow = rowCount;
+            long recordsSize = recordsChannel.size();
+            long idsSize = idsChannel.size();
+            int[] rows = new int[documents.size()];
+            try {
+                for (int i = 0; i < documents.size(); i++) {
+                    rows[i] = appendRow(documents.get(i), embeddings.get(i));
+                }
+
+                for (int s = firstSegment; s < segments.size(); s++) {
+                    segments.get(s).force();
+                }
+                recordsChannel.force(false);
+                idsChannel.force(false);
+                rowsChannel.force(false);
+            } catch (IOException | RuntimeException e) {
+                rollback(firstRow, recordsSize, idsSize, e);
+                throw e;
+            }
+
+            // 新行（含ids.log）已持久化，再将同ID的旧行标记为删除，崩溃时最多留下重复行而不会丢失文档
+            boolean superseded = false;
+            for (int i = 0; i < documents.size(); i++) {
+                Integer previous = rowById.put(documents.get(i).getId(), rows[i]);
+                if (Objects.nonNull(previous)) {
+                    markDeleted(previous);
+                    superseded = true;
+                }
+            }
+            if (superseded) {
+                rowsChannel.force(false);
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入向量存储失败: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        if (Objects.isNull(idList) || idList.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer row = rowById.remove(id);
+                if (Objects.nonNull(row)) {
+                    markDeleted(row);
+                }
+            }
+            rowsChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("删除向量失败: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> filter = MetadataFilter.of(filterExpression);
+
+        lock.writeLock().lock();
+        try {
+            for (int row = 0; row < rowCount; row++) {
+                if (deletedRows.get(row)) {
+                    continue;
+                }
+                StoredDocument stored = readRecord(row);
+                if (filter.test(metadataOf(stored))) {
+                    rowById.remove(stored.id());
+                    markDeleted(row);
+                }
+            }
+            rowsChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("按条件删除向量失败: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        Objects.requireNonNull(request, "SearchRequest不能为空");
+        if (size() == 0) {
+            return List.of();
+        }
+        return similaritySearch(embed(request.getQuery()), request);
+    }
+
+    @Override
+    public List<Document> similaritySearch(float[] queryEmbedding, SearchRequest request) {
+        lock.readLock().lock();
+        try {
+            if (rowCount == 0 || dimensions == 0) {
+                return List.of();
+            }
+            if (queryEmbedding.length != dimensions) {
+                throw new IllegalArgumentException(String.format(
+                        "查询向量维度(%d)与存储维度(%d)不一致", queryEmbedding.length, dimensions));
+            }
+
+            float[] query = normalize(queryEmbedding);
+            int topK = request.getTopK();
+            double threshold = request.getSimilarityThreshold();
+            Predicate<Map<String, Object>> filter = MetadataFilter.of(request);
+            Map<Integer, StoredDocument> loaded = new HashMap<>();
+            PriorityQueue<ScoredRow> heap = new PriorityQueue<>(Comparator.comparingDouble(ScoredRow::score));
+
+            for (int row = 0; row < rowCount; row++) {
+                if (deletedRows.get(row)) {
+                    continue;
+                }
+                double score = dot(query, row);
+                if (score < threshold) {
+                    continue;
+                }
+                if (heap.size() >= topK && score <= heap.peek().score()) {
+                    continue;
+                }
+                if (Objects.nonNull(filter)) {
+                    // 只有可能进入topK的候选才读取元数据
+                    StoredDocument stored = readRecord(row);
+                    if (!filter.test(metadataOf(stored))) {
+                        continue;
+                    }
+                    loaded.put(row, stored);
+                }
+                heap.offer(new ScoredRow(row, score));
+                if (heap.size() > topK) {
+                    loaded.remove(heap.poll().row());
+                }
+            }
+
+            List<ScoredRow> top = new ArrayList<>(heap);
+            top.sort(Comparator.comparingDouble(ScoredRow::score).reversed());
+
+            List<Document> results = new ArrayList<>(top.size());
+            for (ScoredRow scored : top) {
+                StoredDocument stored = loaded.containsKey(scored.row())
+                        ? loaded.get(scored.row())
+                        : readRecord(scored.row());
+                results.add(toDocument(stored, scored.score()));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 当前有效（未删除）的文档数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rowById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 删除行（含被覆盖的旧版本）占总行数的比例达到阈值时压缩存储
+     *
+     * @return 是否执行了压缩
+     */
+    @Override
+    public boolean compactIfNeeded() {
+        lock.writeLock().lock();
+        try {
+            int deleted = rowCount - rowById.size();
+            if (deleted < MIN_DELETED_ROWS_TO_COMPACT || deleted < rowCount * compactionRatio) {
+                return false;
+            }
+            return compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 只保留有效行重写向量分段、记录文件和行索引，行号会按原顺序重新编排
+     *
+     * @return 存在删除行并完成压缩时返回true
+     */
+    public boolean compact() {
+        lock.writeLock().lock();
+        try {
+            int deleted = rowCount - rowById.size();
+            if (deleted == 0) {
+                return false;
+            }
+
+            long startTime = System.currentTimeMillis();
+            int previousRows = rowCount;
+            Path work = directory.resolve(COMPACT_DIR);
+            deleteDirectory(work);
+            Files.createDirectories(work);
+            int liveRows = writeLiveRows(work);
+            // 完成标记是压缩的提交点，记录新的分段数量以便清理多余的旧分段
+            Files.writeString(work.resolve(COMPACT_DONE_FILE),
+                    String.valueOf(segmentCount(liveRows)), StandardCharsets.UTF_8);
+
+            closeFiles();
+            finishCompaction();
+            openFiles();
+
+            log.info("向量存储压缩完成，耗时: {}ms，行数: {} -> {}，清理删除行: {}",
+                    System.currentTimeMillis() - startTime, previousRows, liveRows, deleted);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("压缩向量存储失败: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按批调用嵌入模型计算文档向量
+     */
+    List<float[]> embed(List<Document> documents) {
+        List<float[]> embeddings = new ArrayList<>(documents.size());
+        for (int from = 0; from < documents.size(); from += EMBEDDING_BATCH_SIZE) {
+            List<String> texts = documents.subList(from, Math.min(from + EMBEDDING_BATCH_SIZE, documents.size()))
+                    .stream()
+                    .map(Document::getText)
+                    .toList();
+            embeddings.addAll(embeddingModel.embed(texts));
+        }
+        return embeddings;
+    }
+
+    /**
+     * 调用嵌入模型计算查询向量
+     */
+    float[] embed(String query) {
+        return embeddingModel.embed(query);
+    }
+
+    // ===== 以下方法供同包的索引实现（如HnswVectorStore）按行号访问，调用方负责并发控制 =====
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    boolean isLive(int row) {
+        return !deletedRows.get(row);
+    }
+
+    /**
+     * 读取指定行的归一化向量副本
+     */
+    float[] vector(int row) {
+        FloatBuffer view = segmentViews.get(row / rowsPerSegment);
+        int base = (row % rowsPerSegment) * dimensions;
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = view.get(base + i);
+        }
+        return vector;
+    }
+
+    /**
+     * 归一化查询向量与指定行的余弦相似度
+     */
+    double similarity(float[] normalizedQuery, int row) {
+        return dot(normalizedQuery, row);
+    }
+
+    Document document(int row, double score) {
+        return toDocument(readRecord(row), score);
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closeFiles();
+            log.info("内存映射向量存储已关闭，路径: {}", directory.toAbsolutePath());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int appendRow(Document document, float[] embedding) throws IOException {
+        if (embedding.length != dimensions) {
+            throw new IllegalArgumentException(String.format(
+                    "向量维度(%d)与存储维度(%d)不一致", embedding.length, dimensions));
+        }
+
+        int row = rowCount;
+        ensureSegment(row / rowsPerSegment);
+        writeVector(row, embedding);
+
+        byte[] record = objectMapper.writeValueAsBytes(
+                new StoredDocument(document.getId(), document.getText(), document.getMetadata()));
+        long offset = recordsChannel.size();
+        writeFully(recordsChannel, ByteBuffer.wrap(record), offset);
+
+        appendLine(idsChannel, document.getId());
+
+        // 行索引最后写入，作为该行的提交点
+        ByteBuffer entry = ByteBuffer.allocate(ROW_ENTRY_BYTES)
+                .putLong(offset)
+                .putInt(record.length)
+                .putInt(0)
+                .flip();
+        writeFully(rowsChannel, entry, (long) row * ROW_ENTRY_BYTES);
+
+        rowCount++;
+        return row;
+    }
+
+    /**
+     * 写入失败时把行索引、ID列表和记录文件截断回写入前的长度，部分写入的行不会在重启后按ID去重时覆盖原有的行
+     * 截断失败时退而只在内存中标记这些行删除
+     */
+    private void rollback(int firstRow, long recordsSize, long idsSize, Exception cause) {
+        try {
+            // 行索引是提交点，先截断
+            rowsChannel.truncate((long) firstRow * ROW_ENTRY_BYTES);
+            rowsChannel.force(false);
+            idsChannel.truncate(idsSize);
+            idsChannel.force(false);
+            recordsChannel.truncate(recordsSize);
+            recordsChannel.force(false);
+            rowCount = firstRow;
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            deletedRows.set(firstRow, rowCount);
+            log.error("回滚未完成的写入失败，行号: {} - {}，错误信息: {}", firstRow, rowCount - 1, e.getMessage());
+        }
+    }
+
+    private void writeVector(int row, float[] embedding) {
+        FloatBuffer view = segmentViews.get(row / rowsPerSegment);
+        int base = (row % rowsPerSegment) * dimensions;
+        float[] normalized = normalize(embedding);
+        for (int i = 0; i < dimensions; i++) {
+            view.put(base + i, normalized[i]);
+        }
+    }
+
+    private double dot(float[] query, int row) {
+        FloatBuffer view = segmentViews.get(row / rowsPerSegment);
+        int base = (row % rowsPerSegment) * dimensions;
+        double sum = 0.0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * view.get(base + i);
+        }
+        return sum;
+    }
+
+    private void markDeleted(int row) throws IOException {
+        deletedRows.set(row);
+        ByteBuffer flag = ByteBuffer.allocate(Integer.BYTES).putInt(FLAG_DELETED).flip();
+        writeFully(rowsChannel, flag, (long) row * ROW_ENTRY_BYTES + FLAG_OFFSET);
+    }
+
+    private StoredDocument readRecord(int row) {
+        try {
+            return objectMapper.readValue(readRecordBytes(row).array(), StoredDocument.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取文档记录失败，行号: " + row, e);
+        }
+    }
+
+    /**
+     * 读取指定行的原始记录字节，返回的缓冲区已翻转为可读
+     */
+    private ByteBuffer readRecordBytes(int row) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(ROW_ENTRY_BYTES);
+        readFully(rowsChannel, entry, (long) row * ROW_ENTRY_BYTES);
+        entry.flip();
+        long offset = entry.getLong();
+        int length = entry.getInt();
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        readFully(recordsChannel, record, offset);
+        return record.flip();
+    }
+
+    private Document toDocument(StoredDocument stored, double score) {
+        Map<String, Object> metadata = new HashMap<>(metadataOf(stored));
+        metadata.put(DocumentMetadata.DISTANCE.value(), 1.0 - score);
+        return Document.builder()
+                .id(stored.id())
+                .text(stored.text())
+                .metadata(metadata)
+                .score(score)
+                .build();
+    }
+
+    private Map<String, Object> metadataOf(StoredDocument stored) {
+        return Objects.nonNull(stored.metadata()) ? stored.metadata() : Collections.emptyMap();
+    }
+
+    private void ensureDimensions(int embeddingDimensions) throws IOException {
+        if (dimensions == 0) {
+            long segmentBytes = (long) rowsPerSegment * embeddingDimensions * Float.BYTES;
+            if (segmentBytes > Integer.MAX_VALUE) {
+                throw new IllegalStateException("单个向量分段超过2GB，请调小每段行数");
+            }
+            dimensions = embeddingDimensions;
+            saveMeta();
+            log.info("向量存储维度确定为: {}", dimensions);
+        }
+    }
+
+    private void ensureSegment(int segmentIndex) throws IOException {
+        while (segments.size() <= segmentIndex) {
+            Path file = directory.resolve(String.format(SEGMENT_FILE_PATTERN, segments.size()));
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        (long) rowsPerSegment * dimensions * Float.BYTES);
+                segments.add(buffer);
+                segmentViews.add(buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+            }
+        }
+    }
+
+    private void loadMeta() throws IOException {
+        Path metaFile = directory.resolve(META_FILE);
+        if (!Files.exists(metaFile)) {
+            return;
+        }
+
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(metaFile)) {
+            meta.load(in);
+        }
+        dimensions = Integer.parseInt(meta.getProperty("dimensions", "0"));
+        int storedRowsPerSegment = Integer.parseInt(
+                meta.getProperty("rowsPerSegment", String.valueOf(rowsPerSegment)));
+        if (storedRowsPerSegment != rowsPerSegment) {
+            log.warn("已有存储的每段行数为 {}，忽略配置值 {}", storedRowsPerSegment, rowsPerSegment);
+            rowsPerSegment = storedRowsPerSegment;
+        }
+    }
+
+    private void saveMeta() throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty("dimensions", String.valueOf(dimensions));
+        meta.setProperty("rowsPerSegment", String.valueOf(rowsPerSegment));
+        try (OutputStream out = Files.newOutputStream(directory.resolve(META_FILE))) {
+            meta.store(out, "MappedVectorStore");
+        }
+    }
+
+    private void loadRows() throws IOException {
+        Path idsFile = directory.resolve(IDS_FILE);
+        List<String> ids = Files.exists(idsFile)
+                ? Files.readAllLines(idsFile, StandardCharsets.UTF_8)
+                : List.of();
+        int indexedRows = (int) (rowsChannel.size() / ROW_ENTRY_BYTES);
+        rowCount = Math.min(indexedRows, ids.size());
+
+        // 丢弃上次异常退出时未提交完整的行
+        if (indexedRows > rowCount) {
+            rowsChannel.truncate((long) rowCount * ROW_ENTRY_BYTES);
+        }
+        if (ids.size() > rowCount) {
+            Files.write(idsFile, ids.subList(0, rowCount), StandardCharsets.UTF_8);
+        }
+        if (rowCount == 0) {
+            return;
+        }
+
+        MappedByteBuffer rowIndex = rowsChannel.map(FileChannel.MapMode.READ_ONLY, 0,
+                (long) rowCount * ROW_ENTRY_BYTES);
+        int repaired = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (rowIndex.getInt(row * ROW_ENTRY_BYTES + FLAG_OFFSET) == FLAG_DELETED) {
+                deletedRows.set(row);
+                continue;
+            }
+            // 上次在新行提交后、旧行标记删除前退出时，同一ID会有多行有效，保留最新的一行
+            Integer previous = rowById.put(ids.get(row), row);
+            if (Objects.nonNull(previous)) {
+                markDeleted(previous);
+                repaired++;
+            }
+        }
+        if (repaired > 0) {
+            rowsChannel.force(false);
+            log.warn("修复了 {} 个未完成覆盖的重复行", repaired);
+        }
+
+        ensureSegment((rowCount - 1) / rowsPerSegment);
+    }
+
+    private void openFiles() throws IOException {
+        segments.clear();
+        segmentViews.clear();
+        rowById.clear();
+        deletedRows.clear();
+        recordsChannel = FileChannel.open(directory.resolve(RECORDS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        rowsChannel = FileChannel.open(directory.resolve(ROWS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadRows();
+        idsChannel = FileChannel.open(directory.resolve(IDS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void closeFiles() throws IOException {
+        idsChannel.close();
+        recordsChannel.close();
+        rowsChannel.close();
+    }
+
+    /**
+     * 将有效行按原顺序写入工作目录，返回写入的行数
+     */
+    private int writeLiveRows(Path work) throws IOException {
+        String[] idByRow = new String[rowCount];
+        rowById.forEach((id, row) -> idByRow[row] = id);
+
+        int written = 0;
+        List<FileChannel> newSegments = new ArrayList<>();
+        try (FileChannel records = FileChannel.open(work.resolve(RECORDS_FILE),
+                     StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             FileChannel rows = FileChannel.open(work.resolve(ROWS_FILE),
+                     StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             FileChannel ids = FileChannel.open(work.resolve(IDS_FILE),
+                     StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer vector = ByteBuffer.allocate(dimensions * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long recordOffset = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (deletedRows.get(row)) {
+                    continue;
+                }
+
+                int segment = written / rowsPerSegment;
+                if (segment == newSegments.size()) {
+                    newSegments.add(FileChannel.open(work.resolve(String.format(SEGMENT_FILE_PATTERN, segment)),
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+                }
+                vector.clear();
+                vector.asFloatBuffer().put(vector(row));
+                writeFully(newSegments.get(segment), vector,
+                        (long) (written % rowsPerSegment) * dimensions * Float.BYTES);
+
+                ByteBuffer record = readRecordBytes(row);
+                int length = record.remaining();
+                writeFully(records, record, recordOffset);
+                ByteBuffer entry = ByteBuffer.allocate(ROW_ENTRY_BYTES)
+                        .putLong(recordOffset)
+                        .putInt(length)
+                        .putInt(0)
+                        .flip();
+                writeFully(rows, entry, (long) written * ROW_ENTRY_BYTES);
+                recordOffset += length;
+
+                appendLine(ids, idByRow[row]);
+                written++;
+            }
+
+            ids.force(false);
+            records.force(false);
+            rows.force(false);
+            for (FileChannel channel : newSegments) {
+                channel.force(false);
+            }
+        } finally {
+            for (FileChannel channel : newSegments) {
+                channel.close();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 完成或放弃上次的压缩：有完成标记时将新文件移入存储目录并删除多余的旧分段，否则丢弃工作目录
+     * 每一步都可重复执行，替换过程中再次崩溃时下次启动会继续
+     */
+    private void finishCompaction() throws IOException {
+        Path work = directory.resolve(COMPACT_DIR);
+        if (!Files.isDirectory(work)) {
+            return;
+        }
+        Path doneFile = work.resolve(COMPACT_DONE_FILE);
+        if (!Files.exists(doneFile)) {
+            log.warn("丢弃未完成的向量存储压缩: {}", work.toAbsolutePath());
+            deleteDirectory(work);
+            return;
+        }
+
+        int segmentCount = Integer.parseInt(Files.readString(doneFile, StandardCharsets.UTF_8).trim());
+        try (Stream<Path> files = Files.list(work)) {
+            for (Path file : files.filter(file -> !file.equals(doneFile)).toList()) {
+                Files.move(file, directory.resolve(file.getFileName()),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(MappedVectorStore::isSegmentFile).toList()) {
+                if (segmentIndex(file) >= segmentCount) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.delete(doneFile);
+        Files.delete(work);
+    }
+
+    private int segmentCount(int rows) {
+        return (rows + rowsPerSegment - 1) / rowsPerSegment;
+    }
+
+    private static boolean isSegmentFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(".f32");
+    }
+
+    private static int segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - ".f32".length()));
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+
+        float[] normalized = new float[vector.length];
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                normalized[i] = (float) (vector[i] / norm);
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * 在文件末尾写入一行文本
+     */
+    private static void appendLine(FileChannel channel, String line) throws IOException {
+        writeFully(channel, ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)), channel.size());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("文件意外结束，位置: " + position);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * 持久化的文档记录
+     */
+    record StoredDocument(String id, String text, Map<String, Object> metadata) {
+    }
+
+    private record ScoredRow(int row, double score) {
+    }
+
+    /**
+     * MappedVectorStore构建器
+     */
+    public static final class Builder {
+
+        private final EmbeddingModel embeddingModel;
+        private Path path;
+        private int rowsPerSegment = DEFAULT_ROWS_PER_SEGMENT;
+        private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+
+        private Builder(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+        }
+
+        public Builder path(Path path) {
+            this.path = path;
+            return this;
+        }
+
+        public Builder rowsPerSegment(int rowsPerSegment) {
+            if (rowsPerSegment <= 0) {
+                throw new IllegalArgumentException("每段行数必须大于0");
+            }
+            this.rowsPerSegment = rowsPerSegment;
+            return this;
+        }
+
+        /**
+         * 删除行占比达到该值时compactIfNeeded才会压缩
+         */
+        public Builder compactionRatio(double compactionRatio) {
+            if (compactionRatio <= 0 || compactionRatio > 1) {
+                throw new IllegalArgumentException("压缩阈值必须在(0, 1]之间");
+            }
+            this.compactionRatio = compactionRatio;
+            return this;
+        }
+
+        public MappedVectorStore build() {
+            return new MappedVectorStore(embeddingModel, path, rowsPerSegment, compactionRatio);
+        }
+    }
+}
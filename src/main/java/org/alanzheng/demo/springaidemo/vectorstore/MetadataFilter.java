@@ -0,0 +1,49 @@
+package org.alanzheng.demo.springaidemo.vectorstore;
+
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * 元数据过滤工具
+ * 与SimpleVectorStore保持一致，将过滤表达式转换为SpEL后基于文档元数据求值
+ */
+final class MetadataFilter {
+
+    private static final SimpleVectorStoreFilterExpressionConverter CONVERTER =
+            new SimpleVectorStoreFilterExpressionConverter();
+    private static final ExpressionParser PARSER = new SpelExpressionParser();
+
+    private MetadataFilter() {
+    }
+
+    /**
+     * 根据检索请求创建过滤条件，没有过滤表达式时返回null
+     */
+    static Predicate<Map<String, Object>> of(SearchRequest request) {
+        if (Objects.isNull(request) || !request.hasFilterExpression()) {
+            return null;
+        }
+        return of(request.getFilterExpression());
+    }
+
+    /**
+     * 根据过滤表达式创建过滤条件
+     */
+    static Predicate<Map<String, Object>> of(Filter.Expression expression) {
+        Objects.requireNonNull(expression, "过滤表达式不能为空");
+        var spel = PARSER.parseExpression(CONVERTER.convertExpression(expression));
+        return metadata -> {
+            StandardEvaluationContext context = new StandardEvaluationContext();
+            context.setVariable("metadata", metadata);
+            return Boolean.TRUE.equals(spel.getValue(context, Boolean.class));
+        };
+    }
+}
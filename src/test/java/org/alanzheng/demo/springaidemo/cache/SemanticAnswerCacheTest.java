@@ -0,0 +1,102 @@
+package org.alanzheng.demo.springaidemo.cache;
+
+import org.alanzheng.demo.springaidemo.ingest.VectorStoreChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 语义答案缓存测试
+ */
+class SemanticAnswerCacheTest {
+
+    private static final String SCOPE = "4|0.0";
+
+    private final String fingerprint = SemanticAnswerCache.fingerprint(List.of(
+            new Document("a", "会议室预约需要提前一天提交申请", Map.of())));
+
+    @Test
+    void testSimilarQuestionHitsOnlyWhenDocumentsUnchanged() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(10, Duration.ofMinutes(30), 0.95, Clock.systemUTC());
+        cache.put(new float[]{1, 0, 0}, SCOPE, fingerprint, "提前一天申请");
+
+        assertEquals("提前一天申请", cache.get(new float[]{0.99f, 0.05f, 0}, SCOPE, fingerprint));
+        assertNull(cache.get(new float[]{0, 1, 0}, SCOPE, fingerprint), "不相近的问题不应命中");
+        assertNull(cache.get(new float[]{1, 0, 0}, "8|0.0", fingerprint), "检索参数不同不应命中");
+
+        String changed = SemanticAnswerCache.fingerprint(List.of(new Document("a", "会议室预约需要提前两天提交申请", Map.of())));
+        assertNull(cache.get(new float[]{1, 0, 0}, SCOPE, changed), "检索文档变化后不应返回旧答案");
+        assertEquals(0, cache.stats().getSize());
+        assertEquals(1, cache.stats().getHitCount());
+        assertEquals(1, cache.stats().getStaleCount());
+    }
+
+    @Test
+    void testStaleBestMatchFallsBackToNextCandidate() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(10, Duration.ofMinutes(30), 0.9, Clock.systemUTC());
+        String changed = SemanticAnswerCache.fingerprint(List.of(new Document("a", "会议室预约需要提前两天提交申请", Map.of())));
+        cache.put(new float[]{0.95f, 0.3f, 0}, SCOPE, fingerprint, "提前一天申请");
+        cache.put(new float[]{1, 0, 0}, SCOPE, changed, "提前两天申请");
+
+        assertEquals("提前一天申请", cache.get(new float[]{1, 0, 0}, SCOPE, fingerprint),
+                "最相近的条目文档已变化时应继续匹配其余候选");
+        assertEquals(1, cache.stats().getSize());
+        assertEquals(1, cache.stats().getStaleCount());
+        assertEquals(1, cache.stats().getHitCount());
+    }
+
+    @Test
+    void testLruEvictionTtlAndInvalidation() {
+        MutableClock clock = new MutableClock();
+        SemanticAnswerCache cache = new SemanticAnswerCache(2, Duration.ofMinutes(1), 0.95, clock);
+        cache.put(new float[]{1, 0, 0}, SCOPE, fingerprint, "A");
+        cache.put(new float[]{0, 1, 0}, SCOPE, fingerprint, "B");
+        assertEquals("A", cache.get(new float[]{1, 0, 0}, SCOPE, fingerprint));
+        cache.put(new float[]{0, 0, 1}, SCOPE, fingerprint, "C");
+
+        assertNull(cache.get(new float[]{0, 1, 0}, SCOPE, fingerprint), "最久未使用的条目应被淘汰");
+        assertEquals("A", cache.get(new float[]{1, 0, 0}, SCOPE, fingerprint));
+        assertEquals(1, cache.stats().getEvictionCount());
+
+        clock.advance(Duration.ofMinutes(2));
+        assertNull(cache.get(new float[]{1, 0, 0}, SCOPE, fingerprint), "超过TTL的条目应失效");
+        assertEquals(2, cache.stats().getExpirationCount());
+
+        cache.put(new float[]{1, 0, 0}, SCOPE, fingerprint, "A");
+        cache.onVectorStoreChanged(new VectorStoreChangedEvent(1, 0));
+        assertNull(cache.get(new float[]{1, 0, 0}, SCOPE, fingerprint));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.alanzheng.demo.springaidemo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HTTP请求日志拦截器测试
+ */
+class HttpLoggingInterceptorTest {
+
+    @Test
+    void testSensitiveHeadersAreRedacted() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.AUTHORIZATION, "Bearer sk-secret");
+        headers.set("X-DashScope-Api-Key", "sk-secret");
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+
+        Map<String, String> redacted = HttpLoggingInterceptor.redact(headers);
+
+        assertEquals(HttpLoggingInterceptor.REDACTED, redacted.get(HttpHeaders.AUTHORIZATION));
+        assertEquals(HttpLoggingInterceptor.REDACTED, redacted.get("X-DashScope-Api-Key"));
+        assertEquals("application/json", redacted.get(HttpHeaders.CONTENT_TYPE));
+    }
+
+    @Test
+    void testPreviewDecodesOnlyPrefix() {
+        byte[] body = "{\"input\":\"会议室预约\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("{\"input\":\"会议室预约\"}", HttpLoggingInterceptor.preview(body, body.length));
+        String preview = HttpLoggingInterceptor.preview(Arrays.copyOf(body, 10), body.length);
+        assertTrue(preview.startsWith("{\"input\":\""));
+        assertTrue(preview.endsWith("(共" + body.length + "字节，已截断)"));
+    }
+
+    @Test
+    void testRequestIsExecutedOnceInEveryMode() throws Exception {
+        for (HttpLoggingInterceptor.Mode mode : HttpLoggingInterceptor.Mode.values()) {
+            try (HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor(mode, 0.5, 16, 4)) {
+                AtomicInteger executions = new AtomicInteger();
+                MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, URI.create("http://localhost/v1/embeddings"));
+                for (int i = 0; i < 20; i++) {
+                    interceptor.intercept(request, new byte[64], (req, bytes) -> {
+                        executions.incrementAndGet();
+                        return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+                    });
+                }
+                assertEquals(20, executions.get());
+            }
+        }
+    }
+}
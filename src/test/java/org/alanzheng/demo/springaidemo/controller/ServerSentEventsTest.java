@@ -0,0 +1,50 @@
+package org.alanzheng.demo.springaidemo.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SSE事件转换测试
+ */
+class ServerSentEventsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testTokenWithLeadingSpaceSurvivesClientParsing() throws Exception {
+        List<ServerSentEvent<String>> events = ServerSentEvents.of(Flux.just("Hello", " world", "  ")).collectList().block();
+
+        assertEquals(4, events.size());
+        assertEquals(List.of("Hello", " world", "  "), List.of(
+                receive(events.get(0)), receive(events.get(1)), receive(events.get(2))));
+        assertEquals(ServerSentEvents.DONE_EVENT, events.get(3).event());
+    }
+
+    @Test
+    void testErrorEndsStream() {
+        List<ServerSentEvent<String>> events = ServerSentEvents.of(
+                Flux.concat(Flux.just("a"), Flux.error(new IllegalArgumentException("参数错误")))).collectList().block();
+
+        assertEquals(2, events.size());
+        assertEquals(ServerSentEvents.ERROR_EVENT, events.get(1).event());
+        assertEquals("参数错误", events.get(1).data());
+    }
+
+    /**
+     * 按SSE规范模拟客户端：服务端写出"data:"加数据，客户端去掉值开头的一个空格后再解析JSON
+     */
+    private String receive(ServerSentEvent<String> event) throws Exception {
+        String line = "data:" + event.data();
+        String value = line.substring("data:".length());
+        if (value.startsWith(" ")) {
+            value = value.substring(1);
+        }
+        return objectMapper.readTree(value).get(ServerSentEvents.TOKEN_FIELD).asText();
+    }
+}
@@ -0,0 +1,137 @@
+package org.alanzheng.demo.springaidemo.embedding;
+
+import org.alanzheng.demo.springaidemo.vectorstore.FakeEmbeddingModel;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量合并嵌入模型测试
+ */
+class BatchingEmbeddingModelTest {
+
+    @Test
+    void testConcurrentSingleTextCallsAreCoalesced() throws Exception {
+        FakeEmbeddingModel delegate = new FakeEmbeddingModel(16);
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        try (BatchingEmbeddingModel model = new BatchingEmbeddingModel(delegate, 10, 10000, 200, 1)) {
+            List<CompletableFuture<float[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String text = "上传的文本 " + i;
+                futures.add(CompletableFuture.supplyAsync(() -> model.embed(text), executor));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                assertArrayEquals(delegate.embed("上传的文本 " + i), futures.get(i).get());
+            }
+            assertEquals(20, model.getTextCount());
+            assertTrue(model.getRequestCount() < 20, "并发的单条请求应被合并发送");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testBatchIsSplitAndLimitShrinksOnProviderLimitError() {
+        FakeEmbeddingModel fake = new FakeEmbeddingModel(16);
+        FakeEmbeddingModel limited = new FakeEmbeddingModel(16) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                if (request.getInstructions().size() > 4) {
+                    throw new HttpClientErrorException(HttpStatus.BAD_REQUEST,
+                            "batch size is invalid, it should not be larger than 4");
+                }
+                return super.call(request);
+            }
+        };
+
+        try (BatchingEmbeddingModel model = new BatchingEmbeddingModel(limited, 10, 10000, 200, 1)) {
+            List<String> texts = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                texts.add("文本 " + i);
+            }
+
+            List<float[]> embeddings = model.embed(texts);
+
+            assertEquals(10, embeddings.size());
+            for (int i = 0; i < texts.size(); i++) {
+                assertArrayEquals(fake.embed(texts.get(i)), embeddings.get(i));
+            }
+            assertTrue(model.getBatchSizeLimit() <= 4);
+        }
+    }
+
+    @Test
+    void testRateLimitErrorIsNotSplit() {
+        AtomicInteger calls = new AtomicInteger();
+        FakeEmbeddingModel throttled = new FakeEmbeddingModel(16) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                calls.incrementAndGet();
+                throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS, "request rate limit exceeded");
+            }
+        };
+
+        try (BatchingEmbeddingModel model = new BatchingEmbeddingModel(throttled, 10, 10000, 200, 1)) {
+            List<String> texts = List.of("文本 1", "文本 2", "文本 3", "文本 4");
+
+            HttpClientErrorException error = assertThrows(HttpClientErrorException.class, () -> model.embed(texts));
+
+            assertEquals(HttpStatus.TOO_MANY_REQUESTS, error.getStatusCode());
+            assertEquals(1, calls.get());
+            assertEquals(10, model.getBatchSizeLimit());
+        }
+    }
+
+    @Test
+    void testBadInputDoesNotShrinkLimit() {
+        FakeEmbeddingModel rejecting = new FakeEmbeddingModel(16) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                if (request.getInstructions().contains("")) {
+                    throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "input should not be empty");
+                }
+                return super.call(request);
+            }
+        };
+
+        try (BatchingEmbeddingModel model = new BatchingEmbeddingModel(rejecting, 10, 10000, 200, 1)) {
+            assertThrows(HttpClientErrorException.class, () -> model.embed(List.of("文本 1", "", "文本 3", "文本 4")));
+            assertEquals(10, model.getBatchSizeLimit());
+        }
+    }
+
+    @Test
+    void testCallerTimesOutWhenSenderIsStuck() {
+        CountDownLatch release = new CountDownLatch(1);
+        FakeEmbeddingModel stuck = new FakeEmbeddingModel(16) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.call(request);
+            }
+        };
+
+        try (BatchingEmbeddingModel model = new BatchingEmbeddingModel(stuck, 10, 10000, 0, 1, 200)) {
+            assertThrows(IllegalStateException.class, () -> model.embed("文本"));
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.alanzheng.demo.springaidemo.embedding;
+
+import org.alanzheng.demo.springaidemo.vectorstore.FakeEmbeddingModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 带缓存嵌入模型测试
+ */
+class CachingEmbeddingModelTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testUnchangedTextsAreServedFromDiskAfterReopen() throws Exception {
+        FakeEmbeddingModel delegate = new FakeEmbeddingModel(16);
+        List<float[]> first;
+        try (EmbeddingCache cache = new EmbeddingCache(tempDir)) {
+            first = new CachingEmbeddingModel(delegate, cache, "text-embedding-v4", 16)
+                    .embed(List.of("第一段", "第二段", "第一段"));
+        }
+        assertEquals(1, delegate.getCallCount());
+
+        try (EmbeddingCache reopened = new EmbeddingCache(tempDir)) {
+            CachingEmbeddingModel model = new CachingEmbeddingModel(delegate, reopened, "text-embedding-v4", 16);
+            List<float[]> second = model.embed(List.of("第一段", "第二段"));
+
+            assertEquals(1, delegate.getCallCount(), "未变化的文本不应再次调用嵌入模型");
+            assertArrayEquals(first.get(0), second.get(0));
+            assertArrayEquals(first.get(1), second.get(1));
+            assertEquals(2, model.getHitCount());
+        }
+    }
+
+    @Test
+    void testModelNameIsPartOfKey() throws Exception {
+        FakeEmbeddingModel delegate = new FakeEmbeddingModel(16);
+        try (EmbeddingCache cache = new EmbeddingCache(tempDir)) {
+            new CachingEmbeddingModel(delegate, cache, "model-a", 16).embed("相同文本");
+            new CachingEmbeddingModel(delegate, cache, "model-b", 16).embed("相同文本");
+        }
+        assertEquals(2, delegate.getCallCount());
+    }
+}
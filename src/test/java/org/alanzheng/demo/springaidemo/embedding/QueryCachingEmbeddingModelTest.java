@@ -0,0 +1,44 @@
+package org.alanzheng.demo.springaidemo.embedding;
+
+import org.alanzheng.demo.springaidemo.vectorstore.FakeEmbeddingModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 区分查询和文档的嵌入模型测试
+ */
+class QueryCachingEmbeddingModelTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testStoreQueryReusesQueryCacheAndSkipsDiskCache() throws Exception {
+        FakeEmbeddingModel delegate = new FakeEmbeddingModel(16);
+        try (EmbeddingCache diskCache = new EmbeddingCache(tempDir)) {
+            CachingEmbeddingModel documentModel = new CachingEmbeddingModel(delegate, diskCache, "text-embedding-v4", 16);
+            QueryEmbeddingCache queryCache = new QueryEmbeddingCache(delegate, "text-embedding-v4", 16, 100);
+            SimpleVectorStore store = SimpleVectorStore.builder(new QueryCachingEmbeddingModel(documentModel, queryCache)).build();
+            store.add(List.of(new Document("a", "会议室预约需要提前一天提交申请", Map.of())));
+            int callsAfterAdd = delegate.getCallCount();
+
+            // RagService先计算查询向量，存储检索时再次嵌入同一查询
+            queryCache.embed("如何预约会议室");
+            List<Document> results = store.similaritySearch(SearchRequest.builder().query("如何预约会议室").topK(1).build());
+
+            assertEquals("a", results.get(0).getId());
+            assertEquals(callsAfterAdd + 1, delegate.getCallCount(), "同一查询只应调用一次嵌入接口");
+            assertEquals(1, queryCache.getHitCount());
+            assertEquals(1, documentModel.getMissCount(), "查询向量不应进入文档嵌入的磁盘缓存");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.alanzheng.demo.springaidemo.embedding;
+
+import org.alanzheng.demo.springaidemo.vectorstore.FakeEmbeddingModel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询向量缓存测试
+ */
+class QueryEmbeddingCacheTest {
+
+    @Test
+    void testNormalizedQueriesShareOneEmbeddingCall() {
+        FakeEmbeddingModel delegate = new FakeEmbeddingModel(16);
+        QueryEmbeddingCache cache = new QueryEmbeddingCache(delegate, "text-embedding-v4", 16, 100);
+
+        float[] first = cache.embed("如何 预约会议室？");
+        float[] second = cache.embed("  如何   预约会议室？ ");
+
+        assertSame(first, second);
+        assertEquals(1, delegate.getCallCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testLeastRecentlyUsedQueryIsEvicted() {
+        FakeEmbeddingModel delegate = new FakeEmbeddingModel(16);
+        QueryEmbeddingCache cache = new QueryEmbeddingCache(delegate, "text-embedding-v4", 16, 2);
+
+        cache.embed("a");
+        cache.embed("b");
+        cache.embed("a");
+        cache.embed("c");
+        assertEquals(2, cache.size());
+
+        cache.embed("a");
+        assertEquals(3, delegate.getCallCount(), "a最近被使用，不应被淘汰");
+        cache.embed("b");
+        assertEquals(4, delegate.getCallCount(), "b最久未使用，应已被淘汰");
+    }
+}
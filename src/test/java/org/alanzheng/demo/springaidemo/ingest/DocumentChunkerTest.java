@@ -0,0 +1,71 @@
+package org.alanzheng.demo.springaidemo.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文档分块器测试
+ */
+class DocumentChunkerTest {
+
+    @Test
+    void testChunksCarryOrdinalAndCharOffsets() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("Paragraph ").append(i).append(" explains how the meeting room booking works.\n");
+        }
+        Document source = new Document(text.toString());
+
+        DocumentChunker chunker = new DocumentChunker(new TokenTextSplitter(100, 50, 5, 10000, true));
+        List<Document> chunks = new ArrayList<>();
+        chunker.chunks(Path.of("kb/guide.txt"), List.of(source)).forEachRemaining(chunks::add);
+
+        assertTrue(chunks.size() > 1, "长文档应被分成多个块");
+        int previousEnd = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            Document chunk = chunks.get(i);
+            int start = (Integer) chunk.getMetadata().get(DocumentChunker.CHAR_START);
+            int end = (Integer) chunk.getMetadata().get(DocumentChunker.CHAR_END);
+
+            assertEquals(i, chunk.getMetadata().get(DocumentChunker.CHUNK_INDEX));
+            assertEquals(Path.of("kb/guide.txt").toString(), chunk.getMetadata().get(DocumentChunker.SOURCE));
+            assertTrue(start >= previousEnd);
+            assertEquals(chunk.getText(), text.substring(start, end));
+            previousEnd = end;
+        }
+    }
+
+    @Test
+    void testDocumentsAreSplitLazilyWithStableIds() {
+        List<String> splitCalls = new ArrayList<>();
+        TokenTextSplitter splitter = new TokenTextSplitter() {
+            @Override
+            protected List<String> splitText(String text) {
+                splitCalls.add(text);
+                return super.splitText(text);
+            }
+        };
+        DocumentChunker chunker = new DocumentChunker(splitter);
+        List<Document> pages = List.of(new Document("第一页的内容"), new Document("   "), new Document("第二页的内容"));
+
+        Iterator<Document> chunks = chunker.chunks(Path.of("kb/manual.pdf"), pages);
+        Document first = chunks.next();
+        assertEquals(1, splitCalls.size(), "取第一个块时只应分割第一页");
+
+        Document second = chunks.next();
+        assertFalse(chunks.hasNext());
+        assertEquals(1, second.getMetadata().get(DocumentChunker.CHUNK_INDEX));
+
+        Document again = chunker.chunks(Path.of("kb/manual.pdf"), pages).next();
+        assertEquals(first.getId(), again.getId());
+        assertNotEquals(first.getId(), second.getId());
+    }
+}
@@ -0,0 +1,114 @@
+package org.alanzheng.demo.springaidemo.ingest;
+
+import org.alanzheng.demo.springaidemo.vectorstore.FakeEmbeddingModel;
+import org.alanzheng.demo.springaidemo.vectorstore.MappedVectorStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 入库流水线测试
+ */
+class IngestionPipelineTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testIngestsAllFilesAndReportsFailures() throws Exception {
+        Path docs = Files.createDirectories(tempDir.resolve("docs"));
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(docs.resolve("doc-" + i + ".txt"), "文档内容 " + i);
+        }
+        Files.writeString(docs.resolve("broken.txt"), "无法解析");
+
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(64);
+        try (MappedVectorStore store = MappedVectorStore.builder(embeddingModel)
+                .path(tempDir.resolve("store"))
+                .build()) {
+            IngestionPipeline pipeline = new IngestionPipeline(store, embeddingModel, new TokenTextSplitter());
+
+            IngestionPipeline.Result result = pipeline.run(sink -> {
+                try (var files = Files.list(docs)) {
+                    files.forEach(file -> sink.accept(
+                            new IngestionPipeline.FileTask(file.getFileName().toString(), file)));
+                }
+            }, path -> {
+                if (path.getFileName().toString().equals("broken.txt")) {
+                    throw new IOException("格式错误");
+                }
+                return List.of(new Document(Files.readString(path)));
+            });
+
+            assertEquals(20, result.documentIds().size());
+            assertEquals(20, result.documentsWritten());
+            assertEquals("格式错误", result.failures().get("broken.txt"));
+            assertEquals(20, store.size());
+        }
+    }
+
+    @Test
+    void testFailedFileLeavesNoPartiallyWrittenChunks() throws Exception {
+        Path good = Files.writeString(tempDir.resolve("good.txt"), "会议室预约需要提前一天提交申请");
+        Path bad = Files.writeString(tempDir.resolve("bad.txt"), "unused");
+
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(64);
+        // 第二段嵌入失败，此前第一段可能已经写入存储
+        FakeEmbeddingModel failingModel = new FakeEmbeddingModel(64) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                if (request.getInstructions().stream().anyMatch(text -> text.contains("嵌入失败"))) {
+                    throw new IllegalStateException("嵌入接口错误");
+                }
+                return super.call(request);
+            }
+        };
+        try (MappedVectorStore store = MappedVectorStore.builder(embeddingModel)
+                .path(tempDir.resolve("store"))
+                .build()) {
+            IngestionPipeline pipeline = new IngestionPipeline(store, failingModel, new TokenTextSplitter());
+
+            IngestionPipeline.Result result = pipeline.run(sink -> {
+                sink.accept(new IngestionPipeline.FileTask("bad.txt", bad));
+                sink.accept(new IngestionPipeline.FileTask("good.txt", good));
+            }, path -> path.equals(bad)
+                    ? List.of(new Document("第一段正常内容"), new Document("第二段嵌入失败"), new Document("第三段正常内容"))
+                    : List.of(new Document(Files.readString(path))));
+
+            assertEquals("嵌入接口错误", result.failures().get("bad.txt"));
+            assertEquals(List.of("good.txt"), List.copyOf(result.documentIds().keySet()));
+            assertEquals(1, result.documentsWritten());
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    void testReingestingSameFileKeepsStableIds() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("a.txt"), "会议室预约需要提前一天提交申请");
+
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(64);
+        try (MappedVectorStore store = MappedVectorStore.builder(embeddingModel)
+                .path(tempDir.resolve("store"))
+                .build()) {
+            IngestionPipeline pipeline = new IngestionPipeline(store, embeddingModel, new TokenTextSplitter());
+            IngestionPipeline.Discoverer discoverer = sink -> sink.accept(new IngestionPipeline.FileTask("a.txt", file));
+            IngestionPipeline.Parser parser = path -> List.of(new Document(Files.readString(path)));
+
+            List<String> first = pipeline.run(discoverer, parser).documentIds().get("a.txt");
+            List<String> second = pipeline.run(discoverer, parser).documentIds().get("a.txt");
+
+            assertEquals(first, second);
+            assertEquals(1, store.size());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.alanzheng.demo.springaidemo.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 有界会话记忆存储测试
+ */
+class BoundedChatMemoryRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEvictedConversationIsSpilledAndRestored() {
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(
+                2, Duration.ofMinutes(30), tempDir, Clock.systemUTC());
+
+        repository.saveAll("a", List.of(new UserMessage("会议室怎么预约？"), new AssistantMessage("在OA系统中预约。")));
+        repository.saveAll("b", List.of(new UserMessage("b")));
+        repository.saveAll("c", List.of(new UserMessage("c")));
+
+        assertEquals(2, repository.size());
+        assertEquals(1, repository.getSpillCount(), "最久未访问的会话a应写入磁盘");
+        assertTrue(repository.findConversationIds().containsAll(List.of("a", "b", "c")));
+
+        List<Message> restored = repository.findByConversationId("a");
+        assertEquals(2, restored.size());
+        assertEquals("会议室怎么预约？", restored.get(0).getText());
+        assertInstanceOf(AssistantMessage.class, restored.get(1));
+        assertEquals(1, repository.getRestoreCount());
+        assertEquals(2, repository.size(), "读回a后应淘汰b");
+    }
+
+    @Test
+    void testExpiredSpillFilesAreDeleted() {
+        MutableClock clock = new MutableClock();
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(
+                1, Duration.ofDays(1), tempDir, Duration.ofHours(1), 100, clock);
+
+        repository.saveAll("a", List.of(new UserMessage("a")));
+        repository.saveAll("b", List.of(new UserMessage("b")));
+        repository.saveAll("c", List.of(new UserMessage("c")));
+        clock.advance(Duration.ofHours(2));
+
+        assertTrue(repository.findByConversationId("a").isEmpty(), "过期的溢出文件不应被读回");
+
+        BoundedChatMemoryRepository reopened = new BoundedChatMemoryRepository(
+                1, Duration.ofDays(1), tempDir, Duration.ofHours(1), 100, clock);
+        assertTrue(reopened.findConversationIds().isEmpty(), "启动时应删除过期的溢出文件");
+        assertEquals(1, reopened.getSpillExpiredCount());
+    }
+
+    @Test
+    void testOldestSpillFilesAreDeletedBeyondLimit() {
+        MutableClock clock = new MutableClock();
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(
+                1, Duration.ofDays(1), tempDir, Duration.ofDays(7), 2, clock);
+
+        for (String id : List.of("a", "b", "c", "d")) {
+            repository.saveAll(id, List.of(new UserMessage(id)));
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        assertEquals(Set.of("b", "c", "d"), Set.copyOf(repository.findConversationIds()));
+        assertTrue(repository.findByConversationId("a").isEmpty(), "超出文件数上限时应删除最早写入的会话");
+        assertEquals(List.of("b"), repository.findByConversationId("b").stream().map(Message::getText).toList());
+    }
+
+    @Test
+    void testEvictedConversationIsDroppedWithoutSpillDirectory() {
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(
+                1, Duration.ofMinutes(30), null, Clock.systemUTC());
+
+        repository.saveAll("a", List.of(new UserMessage("a")));
+        repository.saveAll("b", List.of(new UserMessage("b")));
+
+        assertTrue(repository.findByConversationId("a").isEmpty());
+        assertEquals(List.of("b"), repository.findConversationIds());
+    }
+
+    @Test
+    void testTokenWindowKeepsRecentMessagesStartingWithUser() {
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(
+                10, Duration.ofMinutes(30), null, Clock.systemUTC());
+        TokenWindowChatMemory memory = new TokenWindowChatMemory(repository, 3, 1000);
+
+        memory.add("a", List.of(new UserMessage("q1"), new AssistantMessage("a1")));
+        memory.add("a", List.of(new UserMessage("q2"), new AssistantMessage("a2")));
+
+        List<Message> window = memory.get("a");
+        assertEquals(List.of("q2", "a2"), window.stream().map(Message::getText).toList(),
+                "截断到3条后以助手消息a1开头，应一并丢弃");
+    }
+
+    @Test
+    void testTokenBudgetDropsOldestMessages() {
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(
+                10, Duration.ofMinutes(30), null, Clock.systemUTC());
+        TokenWindowChatMemory memory = new TokenWindowChatMemory(repository, 100, 10);
+
+        memory.add("a", List.of(new UserMessage("一二三四五六七八"), new AssistantMessage("九十")));
+        memory.add("a", List.of(new UserMessage("甲乙丙")));
+
+        assertEquals(8, TokenWindowChatMemory.estimateTokens("一二三四五六七八"));
+        assertEquals(List.of("甲乙丙"), memory.get("a").stream().map(Message::getText).toList());
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
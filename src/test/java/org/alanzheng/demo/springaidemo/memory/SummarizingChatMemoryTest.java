@@ -0,0 +1,66 @@
+package org.alanzheng.demo.springaidemo.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 带滚动摘要的会话记忆测试
+ */
+class SummarizingChatMemoryTest {
+
+    @Test
+    void testOlderTurnsAreReplacedBySummary() {
+        List<String> previousSummaries = new ArrayList<>();
+        ConversationSummarizer summarizer = (previous, messages) -> {
+            previousSummaries.add(previous);
+            return "摘要" + previousSummaries.size() + "(" + messages.size() + ")";
+        };
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(
+                10, Duration.ofMinutes(30), null, Clock.systemUTC());
+        SummarizingChatMemory memory = new SummarizingChatMemory(repository, summarizer, Runnable::run, 100, 1000, 10, 4);
+
+        memory.add("a", List.of(new UserMessage("一二三四五"), new AssistantMessage("六七八九十")));
+        assertEquals(0, memory.getSummaryCount(), "未超过阈值时不生成摘要");
+
+        memory.add("a", List.of(new UserMessage("甲乙"), new AssistantMessage("丙丁")));
+        List<Message> messages = memory.get("a");
+        assertEquals(4, messages.size());
+        assertEquals(MessageType.USER, messages.get(0).getMessageType(), "摘要应以用户消息保存，不使用系统消息");
+        assertEquals(SummarizingChatMemory.SUMMARY_PREFIX + "摘要1(2)", messages.get(0).getText());
+        assertEquals(MessageType.ASSISTANT, messages.get(1).getMessageType());
+        assertEquals(SummarizingChatMemory.SUMMARY_ACK, messages.get(1).getText());
+        assertEquals(List.of("甲乙", "丙丁"), messages.subList(2, 4).stream().map(Message::getText).toList());
+
+        memory.add("a", List.of(new UserMessage("戊己庚辛"), new AssistantMessage("壬癸子丑")));
+        messages = memory.get("a");
+        assertEquals(SummarizingChatMemory.SUMMARY_PREFIX + "摘要2(2)", messages.get(0).getText());
+        assertEquals("摘要1(2)", previousSummaries.get(1), "新摘要应在已有摘要的基础上合并");
+        assertEquals(2, memory.getSummaryCount());
+    }
+
+    @Test
+    void testFailedSummaryKeepsHistory() {
+        ConversationSummarizer summarizer = (previous, messages) -> {
+            throw new RuntimeException("模型不可用");
+        };
+        BoundedChatMemoryRepository repository = new BoundedChatMemoryRepository(
+                10, Duration.ofMinutes(30), null, Clock.systemUTC());
+        SummarizingChatMemory memory = new SummarizingChatMemory(repository, summarizer, Runnable::run, 100, 1000, 4, 2);
+
+        memory.add("a", List.of(new UserMessage("一二三"), new AssistantMessage("四五六"),
+                new UserMessage("七"), new AssistantMessage("八")));
+
+        assertEquals(4, memory.get("a").size());
+        assertEquals(1, memory.getFailureCount());
+    }
+}
@@ -0,0 +1,209 @@
+package org.alanzheng.demo.springaidemo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.alanzheng.demo.springaidemo.dto.BatchItemResult;
+import org.alanzheng.demo.springaidemo.dto.WeatherInfo;
+import org.alanzheng.demo.springaidemo.dto.WeatherQuery;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.tracing.StageTracer;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量结构化输出测试
+ * 用按提示词返回固定JSON的模型代替真实模型，检查合并请求的结果对应和逐条补查
+ */
+class StructuredOutputServiceTest {
+
+    private static final Pattern PACKED_ITEM = Pattern.compile("^\\d+\\. (.+?)，(\\d+)月", Pattern.MULTILINE);
+    private static final Pattern SINGLE_ITEM = Pattern.compile("请告诉我(.+)在(\\d+)月份");
+
+    private final List<WeatherQuery> queries = List.of(query("北京", 7), query("上海", 7), query("广州", 7));
+
+    @Test
+    void testReorderedItemsAreMatchedByCityAndMonth() {
+        ScriptedChatModel model = new ScriptedChatModel(packed -> {
+            List<String> items = new ArrayList<>(packed.stream().map(q -> weather(q.getCity(), q.getMonth())).toList());
+            Collections.reverse(items);
+            return items;
+        });
+
+        List<BatchItemResult<WeatherInfo>> results = service(model).getWeatherInfoBatch(queries, 1);
+
+        assertEquals(List.of("北京", "上海", "广州"), cities(results));
+        assertEquals(1, model.calls.get(), "顺序打乱的结果也应在一次请求内对应上");
+    }
+
+    @Test
+    void testMissingAndMismatchedItemsFallBackToSingleRequests() {
+        // 上海的月份不符，广州缺失
+        ScriptedChatModel model = new ScriptedChatModel(packed -> List.of(weather("北京", 7), weather("上海", 8)));
+
+        List<BatchItemResult<WeatherInfo>> results = service(model).getWeatherInfoBatch(queries, 1);
+
+        assertEquals(List.of("北京", "上海", "广州"), cities(results));
+        assertTrue(results.stream().allMatch(result -> result.getData().month() == 7));
+        assertEquals(3, model.calls.get(), "上海和广州应各自单独补查一次");
+        assertEquals(Set.of("上海", "广州"), Set.copyOf(model.singles));
+    }
+
+    @Test
+    void testFailedBatchFallsBackToSingleRequests() {
+        ScriptedChatModel model = new ScriptedChatModel(packed -> {
+            throw new IllegalStateException("模型不可用");
+        });
+
+        List<BatchItemResult<WeatherInfo>> results = service(model).getWeatherInfoBatch(queries, 1);
+
+        assertEquals(List.of("北京", "上海", "广州"), cities(results));
+        assertEquals(4, model.calls.get());
+    }
+
+    @Test
+    void testOneResultIsNotMatchedToTwoQueries() {
+        // "上海"按包含关系也能对上"上海浦东"，但这条结果只属于"上海浦东"
+        ScriptedChatModel model = new ScriptedChatModel(packed -> List.of(weather("上海浦东", 7)));
+
+        List<BatchItemResult<WeatherInfo>> results = service(model)
+                .getWeatherInfoBatch(List.of(query("上海", 7), query("上海浦东", 7)), 1);
+
+        assertEquals(List.of("上海", "上海浦东"), cities(results));
+        assertEquals(List.of("上海"), model.singles, "上海应单独补查，而不是复用上海浦东的结果");
+    }
+
+    @Test
+    void testMatchPrefersExactCityOverContainment() {
+        List<WeatherQuery> packed = List.of(query("北京", 7), query("北京市", 7));
+        List<WeatherInfo> items = List.of(info("北京市", 7), info("北京", 7));
+
+        WeatherInfo[] matched = StructuredOutputService.match(packed, items);
+
+        assertEquals("北京", matched[0].city());
+        assertEquals("北京市", matched[1].city());
+    }
+
+    @Test
+    void testStreamRetryContinuesFromAlreadyEmittedPosition() {
+        // 第一次生成推送两部后遇到null元素被中止，重试的生成从第三部开始推送
+        StreamingChatModel model = new StreamingChatModel(
+                "{\"actor\":\"周星驰\",\"movies\":[\"功夫\",\"少林足球\",null]}",
+                "{\"actor\":\"周星驰\",\"movies\":[\"喜剧之王\",\"功夫\",\"大话西游\",\"长江七号\"]}");
+
+        List<String> movies = service(model).streamActorsFilms("周星驰", 3, 1).collectList().block();
+
+        assertEquals(List.of("功夫", "少林足球", "大话西游"), movies);
+        assertEquals(2, model.calls.get());
+    }
+
+    @Test
+    void testStreamKeepsRepeatedTitles() {
+        StreamingChatModel model = new StreamingChatModel("{\"actor\":\"周星驰\",\"movies\":[\"功夫\",\"功夫\"]}");
+
+        assertEquals(List.of("功夫", "功夫"), service(model).streamActorsFilms("周星驰", 2, 0).collectList().block());
+    }
+
+    private static StructuredOutputService service(ChatModel model) {
+        AiMetrics metrics = new AiMetrics(new SimpleMeterRegistry(), StageTracer.NOOP, "test", "test");
+        StructuredOutputService service = new StructuredOutputService(
+                new StructuredOutputClients(model, metrics), new ObjectMapper(), metrics);
+        ReflectionTestUtils.setField(service, "batchConcurrency", 2);
+        ReflectionTestUtils.setField(service, "batchPackSize", 10);
+        ReflectionTestUtils.setField(service, "batchMaxItems", 100);
+        return service;
+    }
+
+    private static List<String> cities(List<BatchItemResult<WeatherInfo>> results) {
+        assertTrue(results.stream().allMatch(result -> Boolean.TRUE.equals(result.getSuccess())));
+        return results.stream().map(result -> result.getData().city()).toList();
+    }
+
+    private static WeatherQuery query(String city, int month) {
+        return WeatherQuery.builder().city(city).month(month).build();
+    }
+
+    private static WeatherInfo info(String city, int month) {
+        return new WeatherInfo(city, month, 26.5, "高温多雨");
+    }
+
+    private static String weather(String city, int month) {
+        return "{\"city\":\"" + city + "\",\"month\":" + month + ",\"averageTemperature\":26.5,\"description\":\"高温多雨\"}";
+    }
+
+    /**
+     * 流式模型：第N次请求逐字推送第N个回复
+     */
+    private static final class StreamingChatModel implements ChatModel {
+
+        private final List<String> replies;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private StreamingChatModel(String... replies) {
+            this.replies = List.of(replies);
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            String reply = replies.get(calls.getAndIncrement());
+            return Flux.fromStream(reply.codePoints().mapToObj(Character::toString))
+                    .map(chunk -> new ChatResponse(List.of(new Generation(new AssistantMessage(chunk)))));
+        }
+    }
+
+    /**
+     * 按提示词返回固定JSON的模型：合并请求交给packResponder生成条目，单条请求返回对应城市的结果
+     */
+    private static final class ScriptedChatModel implements ChatModel {
+
+        private final Function<List<WeatherQuery>, List<String>> packResponder;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final List<String> singles = Collections.synchronizedList(new ArrayList<>());
+
+        private ScriptedChatModel(Function<List<WeatherQuery>, List<String>> packResponder) {
+            this.packResponder = packResponder;
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            String text = prompt.getUserMessage().getText();
+            String reply;
+            Matcher single = SINGLE_ITEM.matcher(text);
+            if (single.find()) {
+                singles.add(single.group(1));
+                reply = weather(single.group(1), Integer.parseInt(single.group(2)));
+            } else {
+                List<WeatherQuery> packed = new ArrayList<>();
+                Matcher item = PACKED_ITEM.matcher(text);
+                while (item.find()) {
+                    packed.add(query(item.group(1), Integer.parseInt(item.group(2))));
+                }
+                reply = packResponder.apply(packed).stream().collect(Collectors.joining(",", "{\"items\":[", "]}"));
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(reply))));
+        }
+    }
+}
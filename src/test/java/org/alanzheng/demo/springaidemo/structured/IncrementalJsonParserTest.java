@@ -0,0 +1,69 @@
+package org.alanzheng.demo.springaidemo.structured;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.alanzheng.demo.springaidemo.dto.ActorsFilms;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 结构化输出增量JSON解析器测试
+ */
+class IncrementalJsonParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private IncrementalJsonParser<ActorsFilms, String> parser() {
+        return new IncrementalJsonParser<>(objectMapper, ActorsFilms.class, "movies", String.class);
+    }
+
+    @Test
+    void testElementsAreEmittedAsSoonAsComplete() {
+        IncrementalJsonParser<ActorsFilms, String> parser = parser();
+
+        assertTrue(parser.feed("```json\n{\"actor\":\"周星驰\",\"movies\":[\"大话").isEmpty());
+        assertEquals(List.of("大话西游"), parser.feed("西游\",\"少林"));
+        assertEquals(List.of("少林足球"), parser.feed("足球\"]}\n```"));
+
+        ActorsFilms result = parser.finish();
+        assertEquals("周星驰", result.getActor());
+        assertEquals(List.of("大话西游", "少林足球"), result.getMovies());
+    }
+
+    @Test
+    void testCharacterByCharacterFeeding() {
+        IncrementalJsonParser<ActorsFilms, String> parser = parser();
+        String json = "{\"movies\":[\"喜剧之王\",\"功夫\"],\"actor\":\"周星驰\"} ";
+        List<String> emitted = new ArrayList<>();
+        json.codePoints().forEach(cp -> emitted.addAll(parser.feed(Character.toString(cp))));
+
+        assertEquals(List.of("喜剧之王", "功夫"), emitted);
+        assertEquals("周星驰", parser.finish().getActor());
+    }
+
+    @Test
+    void testViolationsAreReportedBeforeOutputEnds() {
+        assertThrows(StructuredOutputViolationException.class,
+                () -> parser().feed("好的，以下是周星驰的电影："));
+        assertThrows(StructuredOutputViolationException.class,
+                () -> parser().feed("{\"actor\":\"周星驰\",\"films\":["));
+        assertThrows(StructuredOutputViolationException.class,
+                () -> parser().feed("{\"actor\":\"周星驰\",\"movies\":\"功夫\""));
+        assertThrows(StructuredOutputViolationException.class,
+                () -> parser().feed("{\"actor\":[1,2],"));
+    }
+
+    @Test
+    void testIncompleteOrMissingFieldsFailOnFinish() {
+        IncrementalJsonParser<ActorsFilms, String> truncated = parser();
+        truncated.feed("{\"actor\":\"周星驰\",\"movies\":[\"功夫\"");
+        assertThrows(StructuredOutputViolationException.class, truncated::finish);
+
+        IncrementalJsonParser<ActorsFilms, String> missing = parser();
+        missing.feed("{\"movies\":[\"功夫\"]}");
+        assertThrows(StructuredOutputViolationException.class, missing::finish);
+    }
+}
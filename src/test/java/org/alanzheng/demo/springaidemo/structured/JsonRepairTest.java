@@ -0,0 +1,65 @@
+package org.alanzheng.demo.springaidemo.structured;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.alanzheng.demo.springaidemo.dto.WeatherInfo;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.tracing.StageTracer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 结构化输出JSON修复测试
+ */
+class JsonRepairTest {
+
+    @Test
+    void testStripsProseAndCodeFence() {
+        String text = "好的，结果如下：\n```json\n{\"city\":\"北京\",\"month\":7}\n```\n希望对你有帮助";
+        assertEquals("{\"city\":\"北京\",\"month\":7}", JsonRepair.repair(text));
+    }
+
+    @Test
+    void testSingleQuotesAndTrailingComma() {
+        assertEquals("{\"city\":\"北京\",\"tags\":[\"热\",\"多雨\"]}",
+                JsonRepair.repair("{'city':'北京','tags':['热','多雨',],}"));
+    }
+
+    @Test
+    void testClosesTruncatedOutput() {
+        assertEquals("{\"city\":\"北京\",\"description\":\"高温\"}",
+                JsonRepair.repair("{\"city\":\"北京\",\"description\":\"高温"));
+        assertEquals("{\"movies\":[\"功夫\"]}", JsonRepair.repair("{\"movies\":[\"功夫\","));
+        assertNull(JsonRepair.repair("抱歉，我无法回答"));
+    }
+
+    @Test
+    void testStopsAtClosingFenceOfUnclosedObject() {
+        assertEquals("{\"city\":\"北京\",\"month\":7}",
+                JsonRepair.repair("```json\n{\"city\":\"北京\",\"month\":7\n```\n"));
+        assertEquals("{\"movies\":[\"功夫\"]}", JsonRepair.repair("{\"movies\":[\"功夫\"\n以上是推荐的电影"));
+    }
+
+    @Test
+    void testDropsDanglingKey() {
+        assertEquals("{\"city\":\"北京\"}", JsonRepair.repair("{\"city\":\"北京\",\"month\""));
+        assertEquals("{\"city\":\"北京\"}", JsonRepair.repair("{\"city\":\"北京\",\"mon"));
+        assertEquals("{\"city\":\"北京\",\"month\":null}", JsonRepair.repair("{\"city\":\"北京\",\"month\": "));
+        assertEquals("{\"tags\":[\"热\"]}", JsonRepair.repair("{\"tags\":[\"热\""));
+    }
+
+    @Test
+    void testUnescapesSingleQuoteInSingleQuotedString() {
+        assertEquals("{\"description\":\"It's hot\"}", JsonRepair.repair("{'description':'It\\'s hot'}"));
+    }
+
+    @Test
+    void testAdvisorNormalizesToTargetType() {
+        AiMetrics metrics = new AiMetrics(new SimpleMeterRegistry(), StageTracer.NOOP, "test", "test");
+        JsonRepairAdvisor advisor = new JsonRepairAdvisor(WeatherInfo.class, metrics, true);
+
+        assertEquals("{\"city\":\"北京\",\"month\":7,\"averageTemperature\":26.8,\"description\":\"高温多雨\"}",
+                advisor.normalize("```json\n{'city':'北京','month':'7','averageTemperature':'26.8','description':'高温多雨'\n```"));
+        assertNull(advisor.normalize("{\"city\":\"北京\",\"month\":7}"), "缺少字段时无法本地修复");
+    }
+}
@@ -0,0 +1,224 @@
+package org.alanzheng.demo.springaidemo.tool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.alanzheng.demo.springaidemo.metrics.AiMetrics;
+import org.alanzheng.demo.springaidemo.tracing.StageTracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.observation.ToolCallingObservationContext;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并行工具调用测试
+ */
+class ParallelToolCallingManagerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testRunsToolCallsConcurrentlyInRequestOrder() {
+        ParallelToolCallingManager manager = manager(Duration.ofSeconds(5));
+        Prompt prompt = prompt(tool("slowA", 300, "A"), tool("slowB", 300, "B"));
+
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt, response("slowB", "slowA"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 550, "两个300ms的工具应并行执行，实际耗时: " + elapsedMillis + "ms");
+        List<ToolResponseMessage.ToolResponse> responses = toolResponses(result);
+        assertEquals(List.of("slowB", "slowA"), responses.stream().map(ToolResponseMessage.ToolResponse::name).toList());
+        assertEquals(List.of("B", "A"), responses.stream().map(ToolResponseMessage.ToolResponse::responseData).toList());
+        assertFalse(result.returnDirect());
+    }
+
+    @Test
+    void testTimedOutToolReturnsErrorWithoutBlockingOthers() {
+        ParallelToolCallingManager manager = manager(Duration.ofMillis(200));
+        Prompt prompt = prompt(tool("fast", 10, "ok"), tool("hang", 5_000, "late"));
+
+        ToolExecutionResult result = manager.executeToolCalls(prompt, response("fast", "hang"));
+
+        List<ToolResponseMessage.ToolResponse> responses = toolResponses(result);
+        assertEquals("ok", responses.get(0).responseData());
+        assertTrue(responses.get(1).responseData().contains("超时"));
+    }
+
+    @Test
+    void testQueueTimeDoesNotCountAgainstTimeout() {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            ParallelToolCallingManager manager = manager(single, Duration.ofMillis(250), ObservationRegistry.NOOP);
+            Prompt prompt = prompt(tool("first", 150, "1"), tool("second", 150, "2"));
+
+            // second排队约150ms后才开始执行，总耗时超过timeout但执行时间没有超过
+            ToolExecutionResult result = manager.executeToolCalls(prompt, response("first", "second"));
+
+            assertEquals(List.of("1", "2"), toolResponses(result).stream()
+                    .map(ToolResponseMessage.ToolResponse::responseData).toList());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFullQueueRejectsCallWithToolError() {
+        ExecutorService bounded = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        try {
+            ParallelToolCallingManager manager = manager(bounded, Duration.ofSeconds(5), ObservationRegistry.NOOP);
+            Prompt prompt = prompt(tool("a", 100, "A"), tool("b", 100, "B"), tool("c", 100, "C"));
+
+            ToolExecutionResult result = manager.executeToolCalls(prompt, response("a", "b", "c"));
+
+            List<ToolResponseMessage.ToolResponse> responses = toolResponses(result);
+            assertEquals("A", responses.get(0).responseData());
+            assertEquals("B", responses.get(1).responseData());
+            assertTrue(responses.get(2).responseData().contains("线程池已满"));
+        } finally {
+            bounded.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailingToolCancelsRemainingCalls() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ToolCallback hang = new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return ToolDefinition.builder().name("hang").description("hang").inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                started.countDown();
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return "late";
+            }
+        };
+        ToolCallback boom = new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return ToolDefinition.builder().name("boom").description("boom").inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                try {
+                    started.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("工具内部错误");
+            }
+        };
+        ParallelToolCallingManager manager = manager(Duration.ofSeconds(10));
+
+        assertThrows(IllegalStateException.class,
+                () -> manager.executeToolCalls(prompt(boom, hang), response("boom", "hang")));
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "本轮失败后其余工具调用应被取消");
+    }
+
+    @Test
+    void testRecordsObservationForEachToolCall() {
+        List<String> observed = new CopyOnWriteArrayList<>();
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new ObservationHandler<ToolCallingObservationContext>() {
+            @Override
+            public void onStop(ToolCallingObservationContext context) {
+                observed.add(context.getToolDefinition().name() + "=" + context.getToolCallResult());
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return context instanceof ToolCallingObservationContext;
+            }
+        });
+        ParallelToolCallingManager manager = manager(executor, Duration.ofSeconds(5), registry);
+
+        manager.executeToolCalls(prompt(tool("a", 10, "A"), tool("b", 10, "B")), response("a", "b"));
+
+        assertEquals(List.of("a=A", "b=B"), observed.stream().sorted().toList());
+    }
+
+    private ParallelToolCallingManager manager(Duration timeout) {
+        return manager(executor, timeout, ObservationRegistry.NOOP);
+    }
+
+    private static ParallelToolCallingManager manager(ExecutorService executor, Duration timeout,
+                                                      ObservationRegistry registry) {
+        AiMetrics metrics = new AiMetrics(new SimpleMeterRegistry(), StageTracer.NOOP, "test", "test");
+        return new ParallelToolCallingManager(DefaultToolCallingManager.builder().build(),
+                name -> null, Throwable::getMessage, executor, timeout, true, metrics, registry);
+    }
+
+    private static Prompt prompt(ToolCallback... tools) {
+        return new Prompt("查询", ToolCallingChatOptions.builder().toolCallbacks(tools).build());
+    }
+
+    private static ChatResponse response(String... toolNames) {
+        List<AssistantMessage.ToolCall> toolCalls = Arrays.stream(toolNames)
+                .map(name -> new AssistantMessage.ToolCall("id-" + name, "function", name, "{}"))
+                .toList();
+        AssistantMessage message = AssistantMessage.builder().content("").toolCalls(toolCalls).build();
+        return new ChatResponse(List.of(new Generation(message)));
+    }
+
+    private static List<ToolResponseMessage.ToolResponse> toolResponses(ToolExecutionResult result) {
+        List<?> history = result.conversationHistory();
+        return ((ToolResponseMessage) history.get(history.size() - 1)).getResponses();
+    }
+
+    private static ToolCallback tool(String name, long sleepMillis, String result) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package org.alanzheng.demo.springaidemo.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.alanzheng.demo.springaidemo.dto.TraceSpanInfo;
+import org.alanzheng.demo.springaidemo.dto.TraceSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内存trace存储测试
+ */
+class RecentTraceStoreTest {
+
+    @Test
+    void testTraceIsExpandedWithDepthAndOffsets() {
+        RecentTraceStore store = new RecentTraceStore(10);
+        try (SdkTracerProvider provider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(store))
+                .build()) {
+            Tracer tracer = provider.get("test");
+
+            Span root = tracer.spanBuilder("http post /api/chat/rag").startSpan();
+            Context rootContext = Context.current().with(root);
+            Span answer = tracer.spanBuilder("rag.answer").setParent(rootContext).startSpan();
+            Span search = tracer.spanBuilder("ai.vectorstore.search").setParent(rootContext.with(answer))
+                    .setAttribute("store", "HnswVectorStore").startSpan();
+            search.end();
+            answer.end();
+            root.end();
+
+            String traceId = root.getSpanContext().getTraceId();
+            List<TraceSpanInfo> spans = store.trace(traceId);
+
+            assertEquals(List.of("http post /api/chat/rag", "rag.answer", "ai.vectorstore.search"),
+                    spans.stream().map(TraceSpanInfo::getName).toList());
+            assertEquals(List.of(0, 1, 2), spans.stream().map(TraceSpanInfo::getDepth).toList());
+            assertNull(spans.get(0).getParentSpanId());
+            assertEquals(0.0, spans.get(0).getStartOffsetMillis());
+            assertEquals("HnswVectorStore", spans.get(2).getAttributes().get("store"));
+
+            List<TraceSummary> recent = store.recent(5);
+            assertEquals(1, recent.size());
+            assertEquals("http post /api/chat/rag", recent.get(0).getRootName());
+            assertEquals(3, recent.get(0).getSpanCount());
+        }
+    }
+
+    @Test
+    void testOldestTracesAreEvicted() {
+        RecentTraceStore store = new RecentTraceStore(2);
+        try (SdkTracerProvider provider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(store))
+                .build()) {
+            Tracer tracer = provider.get("test");
+            String first = null;
+            for (int i = 0; i < 3; i++) {
+                Span span = tracer.spanBuilder("request-" + i).setNoParent().startSpan();
+                span.end();
+                if (i == 0) {
+                    first = span.getSpanContext().getTraceId();
+                }
+            }
+
+            assertTrue(store.trace(first).isEmpty());
+            assertEquals(2, store.recent(10).size());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.alanzheng.demo.springaidemo.vectorstore;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 确定性的离线嵌入模型
+ * 将字符二元组哈希到固定维度，相近文本得到相近向量，便于离线测试
+ */
+public class FakeEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+    private final AtomicInteger callCount = new AtomicInteger();
+
+    public FakeEmbeddingModel(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        callCount.incrementAndGet();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<String> inputs = request.getInstructions();
+        for (int i = 0; i < inputs.size(); i++) {
+            embeddings.add(new Embedding(vectorOf(inputs.get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 已发生的嵌入请求次数
+     */
+    public int getCallCount() {
+        return callCount.get();
+    }
+
+    private float[] vectorOf(String text) {
+        float[] vector = new float[dimensions];
+        String value = text == null ? "" : text;
+        for (int i = 0; i + 1 < value.length(); i++) {
+            int hash = 31 * value.charAt(i) + value.charAt(i + 1);
+            vector[Math.floorMod(hash, dimensions)] += 1.0f;
+        }
+        if (value.length() == 1) {
+            vector[Math.floorMod(value.charAt(0), dimensions)] = 1.0f;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,108 @@
+package org.alanzheng.demo.springaidemo.vectorstore;
+
+import org.alanzheng.demo.springaidemo.dto.IndexRecallReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HNSW向量存储测试
+ */
+class HnswVectorStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRecallAgainstExactScan() throws Exception {
+        try (HnswVectorStore store = newStore()) {
+            List<Document> documents = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                documents.add(new Document("doc-" + i, "知识库条目" + i + " 关键字" + (i * 7919 % 113), Map.of()));
+            }
+            store.add(documents);
+            assertTrue(store.awaitReady(Duration.ofSeconds(30)));
+
+            IndexRecallReport report = store.evaluateRecall(50, 4);
+
+            assertEquals(500, report.getIndexSize());
+            IndexRecallReport.Entry widest = report.getEntries().get(report.getEntries().size() - 1);
+            assertTrue(widest.getRecall() >= 0.9, "最大efSearch下召回率应不低于0.9，实际: " + widest.getRecall());
+        }
+    }
+
+    @Test
+    void testIndexRebuiltFromPersistedVectors() throws Exception {
+        try (HnswVectorStore store = newStore()) {
+            store.add(List.of(
+                    new Document("a", "会议室预约需要提前一天提交申请", Map.of()),
+                    new Document("b", "产品故障时请先检查电源和网络连接", Map.of())));
+            store.delete(List.of("b"));
+        }
+
+        try (HnswVectorStore reopened = newStore()) {
+            assertEquals(1, reopened.size());
+            List<Document> results = reopened.similaritySearch(
+                    SearchRequest.builder().query("产品故障").topK(4).build());
+            assertEquals(List.of("a"), results.stream().map(Document::getId).toList());
+        }
+    }
+
+    @Test
+    void testSearchFillsTopKWhenMostNodesAreDeleted() throws Exception {
+        try (HnswVectorStore store = newStore()) {
+            List<Document> documents = new ArrayList<>();
+            List<String> deleted = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                documents.add(new Document("doc-" + i, "知识库条目" + i + " 关键字" + (i * 7919 % 113), Map.of()));
+                if (i % 10 != 0) {
+                    deleted.add("doc-" + i);
+                }
+            }
+            store.add(documents);
+            assertTrue(store.awaitReady(Duration.ofSeconds(30)));
+            store.delete(deleted);
+
+            List<Document> results = store.similaritySearch(
+                    SearchRequest.builder().query("知识库条目15 关键字").topK(20).build());
+            assertEquals(20, results.size());
+            assertTrue(results.stream().allMatch(document -> Integer.parseInt(document.getId().substring(4)) % 10 == 0));
+        }
+    }
+
+    @Test
+    void testSearchFallsBackToExactScanUntilIndexIsReady() throws Exception {
+        try (HnswVectorStore store = newStore()) {
+            store.add(List.of(new Document("a", "会议室预约需要提前一天提交申请", Map.of())));
+        }
+
+        try (HnswVectorStore reopened = newStore()) {
+            List<Document> results = reopened.similaritySearch(
+                    SearchRequest.builder().query("会议室预约").topK(1).build());
+            assertEquals("a", results.get(0).getId());
+            assertTrue(reopened.awaitReady(Duration.ofSeconds(30)));
+            assertTrue(reopened.isReady());
+        }
+    }
+
+    private HnswVectorStore newStore() {
+        MappedVectorStore storage = MappedVectorStore.builder(new FakeEmbeddingModel(64))
+                .path(tempDir)
+                .rowsPerSegment(128)
+                .build();
+        return HnswVectorStore.builder(storage)
+                .m(8)
+                .efConstruction(64)
+                .efSearch(16)
+                .build();
+    }
+}
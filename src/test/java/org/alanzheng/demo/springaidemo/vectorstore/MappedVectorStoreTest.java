@@ -0,0 +1,164 @@
+package org.alanzheng.demo.springaidemo.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内存映射向量存储测试
+ */
+class MappedVectorStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSearchReturnsMostSimilarDocument() throws Exception {
+        try (MappedVectorStore store = newStore(4)) {
+            store.add(List.of(
+                    new Document("a", "会议室预约需要提前一天提交申请", Map.of("source", "meeting.txt")),
+                    new Document("b", "产品故障时请先检查电源和网络连接", Map.of("source", "guide.txt"))));
+
+            List<Document> results = store.similaritySearch(
+                    SearchRequest.builder().query("如何预约会议室").topK(1).build());
+
+            assertEquals(1, results.size());
+            assertEquals("a", results.get(0).getId());
+            assertEquals("meeting.txt", results.get(0).getMetadata().get("source"));
+            assertNotNull(results.get(0).getScore());
+        }
+    }
+
+    @Test
+    void testDataSurvivesReopenAcrossSegments() throws Exception {
+        try (MappedVectorStore store = newStore(2)) {
+            for (int i = 0; i < 5; i++) {
+                store.add(List.of(new Document("doc-" + i, "文档内容 " + i, Map.of())));
+            }
+        }
+
+        try (MappedVectorStore reopened = newStore(2)) {
+            assertEquals(5, reopened.size());
+            List<Document> results = reopened.similaritySearch(
+                    SearchRequest.builder().query("文档内容 3").topK(1).build());
+            assertEquals("doc-3", results.get(0).getId());
+        }
+    }
+
+    @Test
+    void testUpsertAndDelete() throws Exception {
+        try (MappedVectorStore store = newStore(4)) {
+            store.add(List.of(new Document("a", "旧内容", Map.of())));
+            store.add(List.of(new Document("a", "新内容", Map.of())));
+            assertEquals(1, store.size());
+
+            List<Document> results = store.similaritySearch(
+                    SearchRequest.builder().query("新内容").topK(4).build());
+            assertEquals(1, results.size());
+            assertEquals("新内容", results.get(0).getText());
+
+            store.delete(List.of("a"));
+            assertEquals(0, store.size());
+        }
+
+        try (MappedVectorStore reopened = newStore(4)) {
+            assertEquals(0, reopened.size());
+        }
+    }
+
+    @Test
+    void testFilterExpression() throws Exception {
+        try (MappedVectorStore store = newStore(4)) {
+            store.add(List.of(
+                    new Document("a", "网络故障排查", Map.of("type", "guide")),
+                    new Document("b", "网络故障记录", Map.of("type", "log"))));
+
+            List<Document> results = store.similaritySearch(SearchRequest.builder()
+                    .query("网络故障")
+                    .topK(4)
+                    .filterExpression("type == 'log'")
+                    .build());
+
+            assertEquals(1, results.size());
+            assertEquals("b", results.get(0).getId());
+        }
+    }
+
+    @Test
+    void testCompactKeepsLiveRowsAndDropsStaleSegments() throws Exception {
+        try (MappedVectorStore store = newStore(2)) {
+            for (int i = 0; i < 6; i++) {
+                store.add(List.of(new Document("doc-" + i, "文档内容 " + i, Map.of("n", i))));
+            }
+            store.add(List.of(new Document("doc-1", "更新后的内容 1", Map.of("n", 1))));
+            store.delete(List.of("doc-2", "doc-3", "doc-4"));
+
+            assertTrue(store.compact());
+            assertFalse(store.compact());
+            assertEquals(3, store.size());
+            assertEquals("更新后的内容 1", store.similaritySearch(
+                    SearchRequest.builder().query("更新后的内容 1").topK(1).build()).get(0).getText());
+        }
+
+        assertFalse(Files.exists(tempDir.resolve("segment-00002.f32")));
+        assertFalse(Files.exists(tempDir.resolve("compacting")));
+
+        try (MappedVectorStore reopened = newStore(2)) {
+            assertEquals(3, reopened.size());
+            List<Document> results = reopened.similaritySearch(
+                    SearchRequest.builder().query("文档内容 5").topK(1).build());
+            assertEquals("doc-5", results.get(0).getId());
+            assertEquals(5, ((Number) results.get(0).getMetadata().get("n")).intValue());
+        }
+    }
+
+    @Test
+    void testUnfinishedCompactionIsDiscardedOnOpen() throws Exception {
+        try (MappedVectorStore store = newStore(4)) {
+            store.add(List.of(new Document("a", "会议室预约", Map.of())));
+        }
+        Path work = Files.createDirectories(tempDir.resolve("compacting"));
+        Files.writeString(work.resolve("ids.log"), "partial\n");
+
+        try (MappedVectorStore reopened = newStore(4)) {
+            assertEquals(1, reopened.size());
+            assertFalse(Files.exists(work));
+        }
+    }
+
+    @Test
+    void testFailedWriteIsRolledBackAndDoesNotReplaceExistingRow() throws Exception {
+        try (MappedVectorStore store = newStore(4)) {
+            store.add(List.of(new Document("a", "旧内容", Map.of())));
+            // 第二行维度错误，第一行已经写入文件
+            assertThrows(IllegalArgumentException.class, () -> store.write(
+                    List.of(new Document("a", "新内容", Map.of()), new Document("b", "其他内容", Map.of())),
+                    List.of(new float[64], new float[8])));
+            assertEquals(1, store.size());
+            store.add(List.of(new Document("c", "会议室预约", Map.of())));
+        }
+
+        try (MappedVectorStore reopened = newStore(4)) {
+            assertEquals(2, reopened.size());
+            assertEquals(List.of("a", "c"), List.copyOf(Files.readAllLines(tempDir.resolve("ids.log"))));
+            List<Document> results = reopened.similaritySearch(
+                    SearchRequest.builder().query("旧内容").topK(1).build());
+            assertEquals("旧内容", results.get(0).getText());
+        }
+    }
+
+    private MappedVectorStore newStore(int rowsPerSegment) {
+        return MappedVectorStore.builder(new FakeEmbeddingModel(64))
+                .path(tempDir)
+                .rowsPerSegment(rowsPerSegment)
+                .build();
+    }
+}